@@ -342,6 +342,18 @@ public interface Text extends Messages
 	@Key("notification.job.long.running")
 	String notificationLongRunning();
 
+	@Key("notification.job.export.not.started")
+	@DefaultMessage("The export job couldn''t be started.")
+	String notificationExportJobNotStarted();
+
+	@Key("notification.job.export.not.found")
+	@DefaultMessage("The export job doesn''t exist anymore.")
+	String notificationExportJobNotFound();
+
+	@Key("notification.job.export.cancelled")
+	@DefaultMessage("The export job has been cancelled.")
+	String notificationExportJobCancelled();
+
 	@Key("notification.login.unsuccessful")
 	String notificationLoginUnsuccessful();
 
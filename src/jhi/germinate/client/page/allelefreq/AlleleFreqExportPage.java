@@ -52,7 +52,7 @@ public class AlleleFreqExportPage extends GerminateComposite implements HasHyper
 		Long mapToUse = maps.size() > 0 ? maps.get(0) : null;
 
 		AlleleFrequencyService.Inst.get().createHistogram(Cookie.getRequestProperties(), accessionGroups, markedAccessionIds, markerGroups, markedMarkerIds, datasets.get(0), missingOn, mapToUse, NR_OF_BINS,
-				new DefaultAsyncCallback<ServerResult<FlapjackAllelefreqBinningResult>>(true)
+				new ExportJobCallback<ServerResult<FlapjackAllelefreqBinningResult>>((jobId, callback) -> AlleleFrequencyService.Inst.get().getHistogram(Cookie.getRequestProperties(), jobId, callback), new DefaultAsyncCallback<ServerResult<FlapjackAllelefreqBinningResult>>()
 				{
 					@Override
 					public void onFailureImpl(Throwable caught)
@@ -74,7 +74,7 @@ public class AlleleFreqExportPage extends GerminateComposite implements HasHyper
 							History.newItem(Page.ALLELE_FREQUENCY_RESULT.name());
 						}
 					}
-				});
+				}));
 	}
 
 	@Override
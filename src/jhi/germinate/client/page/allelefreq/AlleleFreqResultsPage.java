@@ -239,7 +239,7 @@ public class AlleleFreqResultsPage extends Composite implements HasLibraries
 		List<Dataset> selectedDatasets = DatasetListParameterStore.Inst.get().get(Parameter.allelefreqDatasets);
 		params.datasetIds = DatabaseObject.getIds(selectedDatasets);
 
-		AlleleFrequencyService.Inst.get().createProject(Cookie.getRequestProperties(), getHistogramParams(), new DefaultAsyncCallback<Tuple.Pair<String, FlapjackProjectCreationResult>>(true)
+		AlleleFrequencyService.Inst.get().createProject(Cookie.getRequestProperties(), getHistogramParams(), new ExportJobCallback<Tuple.Pair<String, FlapjackProjectCreationResult>>((jobId, callback) -> AlleleFrequencyService.Inst.get().getProject(Cookie.getRequestProperties(), jobId, callback), new DefaultAsyncCallback<Tuple.Pair<String, FlapjackProjectCreationResult>>()
 		{
 			@Override
 			public void onFailureImpl(Throwable caught)
@@ -300,7 +300,7 @@ public class AlleleFreqResultsPage extends Composite implements HasLibraries
 					markerWrapper.setVisible(false);
 				}
 			}
-		});
+		}));
 	}
 
 	@Override
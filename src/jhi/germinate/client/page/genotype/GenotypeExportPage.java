@@ -76,7 +76,7 @@ public class GenotypeExportPage extends GerminateComposite implements HasHyperli
 		Long mapToUse = maps.size() > 0 ? maps.get(0) : null;
 
 		GenotypeService.Inst.get().computeExportDataset(Cookie.getRequestProperties(), accessionGroups, markedAccessionIds, markerGroups, markedMarkerIds, datasets.get(0), heterozygousOn, missingOn, mapToUse,
-				new DefaultAsyncCallback<ServerResult<List<CreatedFile>>>(true)
+				new ExportJobCallback<ServerResult<List<CreatedFile>>>((jobId, callback) -> GenotypeService.Inst.get().getExportDataset(Cookie.getRequestProperties(), jobId, callback), new DefaultAsyncCallback<ServerResult<List<CreatedFile>>>()
 				{
 					@Override
 					public void onFailureImpl(Throwable caught)
@@ -188,12 +188,12 @@ public class GenotypeExportPage extends GerminateComposite implements HasHyperli
 							JavaScript.smoothScrollTo(resultPanel.getElement());
 						}
 					}
-				});
+				}));
 	}
 
 	private void exportToFlapjack(final String map, final String genotype, AsyncCallback<ServerResult<String>> callback)
 	{
-		GenotypeService.Inst.get().convertToFlapjack(Cookie.getRequestProperties(), map, genotype, new DefaultAsyncCallback<ServerResult<FlapjackProjectCreationResult>>()
+		GenotypeService.Inst.get().convertToFlapjack(Cookie.getRequestProperties(), map, genotype, new ExportJobCallback<ServerResult<FlapjackProjectCreationResult>>((jobId, cb) -> GenotypeService.Inst.get().getFlapjackProject(Cookie.getRequestProperties(), jobId, cb), new DefaultAsyncCallback<ServerResult<FlapjackProjectCreationResult>>()
 		{
 			@Override
 			protected void onFailureImpl(Throwable caught)
@@ -242,7 +242,7 @@ public class GenotypeExportPage extends GerminateComposite implements HasHyperli
 					resultPanel.add(section);
 				}
 			}
-		});
+		}));
 	}
 
 	@Override
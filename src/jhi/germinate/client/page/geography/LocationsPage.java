@@ -95,9 +95,9 @@ public class LocationsPage extends Composite implements HasLibraries, ParallaxBa
 	@UiField
 	SimplePanel chartPanel;
 
-	private LeafletUtils.ClusteredMarkerCreator clusteredMap;
-	private LeafletUtils.HeatmapCreator         heatmapMap;
-	private LocationTreemapChart                chart;
+	private LeafletUtils.GridMarkerCreator  clusteredMap;
+	private LeafletUtils.GridHeatmapCreator heatmapMap;
+	private LocationTreemapChart            chart;
 
 	private LeafletUtils.ImageOverlayWrapper clusteredClimateOverlays = new LeafletUtils.ImageOverlayWrapper();
 	private LeafletUtils.ImageOverlayWrapper heatmapClimateOverlays   = new LeafletUtils.ImageOverlayWrapper();
@@ -194,57 +194,49 @@ public class LocationsPage extends Composite implements HasLibraries, ParallaxBa
 		});
 	}
 
-	private void updateMaps(List<Location> result)
+	private void updateMaps(LocationType selectedType)
 	{
 		climateBox.selectItem(0, true);
 
-		if (result == null || result.size() < 1)
-		{
-			clusteredMap.updateData(null);
-			heatmapMap.updateData(null);
-		}
-		//		else if
-		else
-		{
-			if (clusteredMap == null)
-				clusteredMap = new LeafletUtils.ClusteredMarkerCreator(clusteredPanel, result, (id, name, type) -> {
-					if (!StringUtils.isEmpty(id))
-					{
-						LocationType locationType = LocationType.getByName(type);
+		/* The maps request the clusters of the visible area themselves */
+		if (clusteredMap == null)
+			clusteredMap = new LeafletUtils.GridMarkerCreator(clusteredPanel, selectedType, (id, name, type) -> {
+				if (!StringUtils.isEmpty(id))
+				{
+					LocationType locationType = LocationType.getByName(type);
 
-						try
-						{
-							PartialSearchQuery query = new PartialSearchQuery();
-							switch (locationType)
-							{
-								case collectingsites:
-									LongParameterStore.Inst.get().putAsString(Parameter.collectingsiteId, id);
-									History.newItem(Page.ACCESSIONS_FOR_COLLSITE.name());
-									break;
-								case trialsite:
-									LongParameterStore.Inst.get().putAsString(Parameter.trialsiteId, id);
-									History.newItem(Page.TRIAL_SITE_DETAILS.name());
-									break;
-								case datasets:
-									query.add(new SearchCondition(Location.SITE_NAME, new Equal(), name, String.class));
-									FilterMappingParameterStore.Inst.get().put(Parameter.tableFilterMapping, query);
-									//									StringParameterStore.Inst.get().put(Parameter.datasetLocationName, name);
-									History.newItem(Page.DATASET_OVERVIEW.name());
-							}
-						}
-						catch (UnsupportedDataTypeException e)
+					try
+					{
+						PartialSearchQuery query = new PartialSearchQuery();
+						switch (locationType)
 						{
+							case collectingsites:
+								LongParameterStore.Inst.get().putAsString(Parameter.collectingsiteId, id);
+								History.newItem(Page.ACCESSIONS_FOR_COLLSITE.name());
+								break;
+							case trialsite:
+								LongParameterStore.Inst.get().putAsString(Parameter.trialsiteId, id);
+								History.newItem(Page.TRIAL_SITE_DETAILS.name());
+								break;
+							case datasets:
+								query.add(new SearchCondition(Location.SITE_NAME, new Equal(), name, String.class));
+								FilterMappingParameterStore.Inst.get().put(Parameter.tableFilterMapping, query);
+								//									StringParameterStore.Inst.get().put(Parameter.datasetLocationName, name);
+								History.newItem(Page.DATASET_OVERVIEW.name());
 						}
 					}
-				}, null);
-			else
-				clusteredMap.updateData(result);
-
-			if (heatmapMap == null)
-				heatmapMap = new LeafletUtils.HeatmapCreator(heatmapPanel, result, null);
-			else
-				heatmapMap.updateData(result);
-		}
+					catch (UnsupportedDataTypeException e)
+					{
+					}
+				}
+			}, null);
+		else
+			clusteredMap.updateData(selectedType);
+
+		if (heatmapMap == null)
+			heatmapMap = new LeafletUtils.GridHeatmapCreator(heatmapPanel, selectedType, null);
+		else
+			heatmapMap.updateData(selectedType);
 	}
 
 	@UiHandler("climateBox")
@@ -294,23 +286,7 @@ public class LocationsPage extends Composite implements HasLibraries, ParallaxBa
 			filter.add(new SearchCondition(LocationType.NAME, new Equal(), type.name(), String.class));
 		}
 
-		LocationService.Inst.get().getForFilter(Cookie.getRequestProperties(), filter, Pagination.getDefault(), new DefaultAsyncCallback<PaginatedServerResult<List<Location>>>()
-		{
-			@Override
-			public void onFailureImpl(Throwable caught)
-			{
-				heatmapPanel.clear();
-				clusteredPanel.clear();
-
-				super.onFailureImpl(caught);
-			}
-
-			@Override
-			public void onSuccessImpl(PaginatedServerResult<List<Location>> result)
-			{
-				updateMaps(result.getServerResult());
-			}
-		});
+		updateMaps(type);
 
 		if (type != LocationType.all)
 		{
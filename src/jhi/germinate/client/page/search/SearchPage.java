@@ -32,6 +32,7 @@ import org.gwtbootstrap3.client.ui.TextBox;
 import org.gwtbootstrap3.client.ui.constants.*;
 
 import java.util.*;
+import java.util.Map;
 
 import jhi.germinate.client.*;
 import jhi.germinate.client.i18n.*;
@@ -112,6 +113,11 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 
 	private List<ExperimentType> experimentTypes = new ArrayList<>();
 
+	/** The pending request of the search of all categories */
+	private Request         searchRequest;
+	/** The first pages of the categories that haven't been passed to their table yet */
+	private SearchAllResult prefetched;
+
 	public SearchPage()
 	{
 		operator = new DropdownInputButton<ComparisonOperator>()
@@ -208,6 +214,12 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 	{
 		resultHeading.setSubText("\"" + searchString + "\"");
 
+		/* Don't let the results of a previous search end up in the new tables */
+		if (searchRequest != null && searchRequest.isPending())
+			searchRequest.cancel();
+		searchRequest = null;
+		prefetched = null;
+
 		final SearchType section = typeBox.getSelection();
 
 		resultPanel.setVisible(true);
@@ -277,7 +289,12 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 				@Override
 				protected Request getData(Pagination pagination, PartialSearchQuery filter, final AsyncCallback<PaginatedServerResult<List<Accession>>> callback)
 				{
-					return AccessionService.Inst.get().getForFilter(Cookie.getRequestProperties(), pagination, filter, new SearchCallback<>(accessionSection, callback));
+					SearchCallback<List<Accession>> searchCallback = new SearchCallback<>(accessionSection, callback);
+
+					if (usePrefetched(SearchCategory.ACCESSION_DATA, pagination, searchCallback))
+						return null;
+
+					return AccessionService.Inst.get().getForFilter(Cookie.getRequestProperties(), pagination, filter, searchCallback);
 				}
 			};
 			accessionSection.add(accessionDataTable);
@@ -318,7 +335,12 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 				@Override
 				protected Request getData(Pagination pagination, PartialSearchQuery filter, final AsyncCallback<PaginatedServerResult<List<AttributeData>>> callback)
 				{
-					return AttributeService.Inst.get().getDataForFilter(Cookie.getRequestProperties(), pagination, GerminateDatabaseTable.germinatebase, filter, new SearchCallback<>(accessionAttributeSection, callback));
+					SearchCallback<List<AttributeData>> searchCallback = new SearchCallback<>(accessionAttributeSection, callback);
+
+					if (usePrefetched(SearchCategory.ACCESSION_ATTRIBUTE_DATA, pagination, searchCallback))
+						return null;
+
+					return AttributeService.Inst.get().getDataForFilter(Cookie.getRequestProperties(), pagination, GerminateDatabaseTable.germinatebase, filter, searchCallback);
 				}
 			};
 			accessionAttributeSection.add(accessionAttributeDataTable);
@@ -359,7 +381,12 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 				@Override
 				protected Request getData(Pagination pagination, PartialSearchQuery filter, final AsyncCallback<PaginatedServerResult<List<PhenotypeData>>> callback)
 				{
-					return PhenotypeService.Inst.get().getDataForFilter(Cookie.getRequestProperties(), pagination, filter, new SearchCallback<>(phenotypeSection, callback));
+					SearchCallback<List<PhenotypeData>> searchCallback = new SearchCallback<>(phenotypeSection, callback);
+
+					if (usePrefetched(SearchCategory.PHENOTYPE_DATA, pagination, searchCallback))
+						return null;
+
+					return PhenotypeService.Inst.get().getDataForFilter(Cookie.getRequestProperties(), pagination, filter, searchCallback);
 				}
 			};
 			phenotypeSection.add(phenotypeDataTable);
@@ -400,7 +427,12 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 				@Override
 				protected Request getData(Pagination pagination, PartialSearchQuery filter, final AsyncCallback<PaginatedServerResult<List<CompoundData>>> callback)
 				{
-					return CompoundService.Inst.get().getDataForFilter(Cookie.getRequestProperties(), pagination, filter, new SearchCallback<>(compoundSection, callback));
+					SearchCallback<List<CompoundData>> searchCallback = new SearchCallback<>(compoundSection, callback);
+
+					if (usePrefetched(SearchCategory.COMPOUND_DATA, pagination, searchCallback))
+						return null;
+
+					return CompoundService.Inst.get().getDataForFilter(Cookie.getRequestProperties(), pagination, filter, searchCallback);
 				}
 			};
 			compoundSection.add(compoundDataTable);
@@ -441,7 +473,12 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 				@Override
 				protected Request getData(Pagination pagination, PartialSearchQuery filter, final AsyncCallback<PaginatedServerResult<List<MapDefinition>>> callback)
 				{
-					return MarkerService.Inst.get().getMapDefinitionForFilter(Cookie.getRequestProperties(), pagination, filter, new SearchCallback<>(mapDefinitionSection, callback));
+					SearchCallback<List<MapDefinition>> searchCallback = new SearchCallback<>(mapDefinitionSection, callback);
+
+					if (usePrefetched(SearchCategory.MAPDEFINITION_DATA, pagination, searchCallback))
+						return null;
+
+					return MarkerService.Inst.get().getMapDefinitionForFilter(Cookie.getRequestProperties(), pagination, filter, searchCallback);
 				}
 			};
 			mapDefinitionSection.add(mapDefinitionTable);
@@ -473,24 +510,17 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 					return true;
 				}
 
-				private PartialSearchQuery addToFilter(PartialSearchQuery filter)
-				{
-					if (filter == null)
-						filter = new PartialSearchQuery();
-					filter.add(new SearchCondition(Dataset.IS_EXTERNAL, new Equal(), 0, Integer.class));
-
-					if (filter.getAll().size() > 1)
-						filter.addLogicalOperator(new And());
-
-					return filter;
-				}
-
 				@Override
 				protected Request getData(Pagination pagination, PartialSearchQuery filter, final AsyncCallback<PaginatedServerResult<List<Dataset>>> callback)
 				{
-					filter = addToFilter(filter);
+					filter = addInternalDatasetFilter(filter);
+
+					SearchCallback<List<Dataset>> searchCallback = new SearchCallback<>(datasetSection, callback);
+
+					if (usePrefetched(SearchCategory.DATASETS, pagination, searchCallback))
+						return null;
 
-					return DatasetService.Inst.get().getForFilter(Cookie.getRequestProperties(), filter, null, pagination, new SearchCallback<>(datasetSection, callback));
+					return DatasetService.Inst.get().getForFilter(Cookie.getRequestProperties(), filter, null, pagination, searchCallback);
 				}
 			};
 			datasetSection.add(datasetTable);
@@ -525,7 +555,12 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 				@Override
 				protected Request getData(Pagination pagination, PartialSearchQuery filter, final AsyncCallback<PaginatedServerResult<List<AttributeData>>> callback)
 				{
-					return AttributeService.Inst.get().getDataForFilter(Cookie.getRequestProperties(), pagination, GerminateDatabaseTable.datasets, filter, new SearchCallback<>(datasetAttributeSection, callback));
+					SearchCallback<List<AttributeData>> searchCallback = new SearchCallback<>(datasetAttributeSection, callback);
+
+					if (usePrefetched(SearchCategory.DATASET_ATTRIBUTE_DATA, pagination, searchCallback))
+						return null;
+
+					return AttributeService.Inst.get().getDataForFilter(Cookie.getRequestProperties(), pagination, GerminateDatabaseTable.datasets, filter, searchCallback);
 				}
 			};
 			datasetAttributeSection.add(datasetAttributeDataTable);
@@ -560,7 +595,12 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 				@Override
 				protected Request getData(Pagination pagination, PartialSearchQuery filter, final AsyncCallback<PaginatedServerResult<List<Pedigree>>> callback)
 				{
-					return PedigreeService.Inst.get().getForFilter(Cookie.getRequestProperties(), filter, pagination, new SearchCallback<>(pedigreeSection, callback));
+					SearchCallback<List<Pedigree>> searchCallback = new SearchCallback<>(pedigreeSection, callback);
+
+					if (usePrefetched(SearchCategory.PEDIGREE_DATA, pagination, searchCallback))
+						return null;
+
+					return PedigreeService.Inst.get().getForFilter(Cookie.getRequestProperties(), filter, pagination, searchCallback);
 				}
 			};
 			pedigreeSection.add(pedigreeTable);
@@ -601,7 +641,12 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 				@Override
 				protected Request getData(Pagination pagination, PartialSearchQuery filter, final AsyncCallback<PaginatedServerResult<List<Location>>> callback)
 				{
-					return LocationService.Inst.get().getForFilter(Cookie.getRequestProperties(), filter, pagination, new SearchCallback<>(locationSection, callback));
+					SearchCallback<List<Location>> searchCallback = new SearchCallback<>(locationSection, callback);
+
+					if (usePrefetched(SearchCategory.LOCATION_DATA, pagination, searchCallback))
+						return null;
+
+					return LocationService.Inst.get().getForFilter(Cookie.getRequestProperties(), filter, pagination, searchCallback);
 				}
 			};
 			locationSection.add(locationTable);
@@ -609,107 +654,35 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 
 		if (!StringUtils.isEmpty(searchString))
 		{
+			final ComparisonOperator comparator = operator.getSelection();
+
 			Scheduler.get().scheduleDeferred(() ->
 			{
 				experimentTypes.clear();
 				experimentTypes = new ArrayList<>();
-				if (section.is(SearchType.ACCESSION_DATA))
-				{
-					PartialSearchQuery query = new PartialSearchQuery();
-					query.add(new SearchCondition(Accession.GENERAL_IDENTIFIER, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Accession.NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Accession.NUMBER, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Accession.COLLNUMB, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Taxonomy.GENUS, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Taxonomy.SPECIES, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Taxonomy.SUBTAXA, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Country.COUNTRY_NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Synonym.SYNONYM, operator.getSelection(), searchString, String.class));
-					accessionDataTable.forceFilter(query, false);
-				}
-				if (section.is(SearchType.ACCESSION_ATTRIBUTE_DATA))
-				{
-					PartialSearchQuery query = new PartialSearchQuery();
-					query.add(new SearchCondition(Accession.GENERAL_IDENTIFIER, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Accession.NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Attribute.NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Attribute.DESCRIPTION, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(AttributeData.VALUE, operator.getSelection(), searchString, String.class));
-					accessionAttributeDataTable.forceFilter(query, false);
-				}
-				if (section.is(SearchType.PHENOTYPE_DATA))
+
+				Map<SearchCategory, PartialSearchQuery> queries = new HashMap<>();
+				for (SearchCategory category : SearchCategory.values())
 				{
+					if (!section.is(category))
+						continue;
+
+					PartialSearchQuery query = createQuery(category, comparator, searchString);
+
+					if (category == SearchCategory.DATASETS)
+						query = addInternalDatasetFilter(query);
+
+					queries.put(category, query);
+				}
+
+				if (section.is(SearchCategory.PHENOTYPE_DATA))
 					experimentTypes.add(ExperimentType.trials);
-					PartialSearchQuery query = new PartialSearchQuery();
-					query.add(new SearchCondition(Accession.GENERAL_IDENTIFIER, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Accession.NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Dataset.NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Dataset.DESCRIPTION, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Phenotype.NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Phenotype.SHORT_NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Location.SITE_NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Country.COUNTRY_NAME, operator.getSelection(), searchString, String.class));
-					phenotypeDataTable.forceFilter(query, false);
-				}
-				if (section.is(SearchType.COMPOUND_DATA))
-				{
+				if (section.is(SearchCategory.COMPOUND_DATA))
 					experimentTypes.add(ExperimentType.compound);
-					PartialSearchQuery query = new PartialSearchQuery();
-					query.add(new SearchCondition(Accession.GENERAL_IDENTIFIER, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Accession.NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Compound.NAME, operator.getSelection(), searchString, String.class));
-					compoundDataTable.forceFilter(query, false);
-				}
-				if (section.is(SearchType.MAPDEFINITION_DATA))
-				{
-					PartialSearchQuery query = new PartialSearchQuery();
-					query.add(new SearchCondition(Marker.MARKER_NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(MapFeatureType.DESCRIPTION, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(jhi.germinate.shared.datastructure.database.Map.DESCRIPTION, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(MapDefinition.CHROMOSOME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Synonym.SYNONYM, operator.getSelection(), searchString, String.class));
-					mapDefinitionTable.forceFilter(query, false);
-				}
-				if (section.is(SearchType.DATASETS))
-				{
-					PartialSearchQuery query = new PartialSearchQuery();
-					query.add(new SearchCondition(Dataset.NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Dataset.DESCRIPTION, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Location.SITE_NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Country.COUNTRY_NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(ExperimentType.DESCRIPTION, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Experiment.EXPERIMENT_NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Dataset.CONTACT, operator.getSelection(), searchString, String.class));
-					datasetTable.forceFilter(query, false);
-				}
-				if (section.is(SearchType.DATASET_ATTRIBUTE_DATA))
-				{
-					PartialSearchQuery query = new PartialSearchQuery();
-					query.add(new SearchCondition(Dataset.NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Dataset.DESCRIPTION, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Attribute.NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Attribute.DESCRIPTION, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(AttributeData.VALUE, operator.getSelection(), searchString, String.class));
-					datasetAttributeDataTable.forceFilter(query, false);
-				}
-				if (section.is(SearchType.PEDIGREE_DATA))
-				{
-					PartialSearchQuery query = new PartialSearchQuery();
-					query.add(new SearchCondition(PedigreeService.CHILD_GID, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(PedigreeService.CHILD_NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(PedigreeService.PARENT_GID, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(PedigreeService.PARENT_NAME, operator.getSelection(), searchString, String.class));
-					pedigreeTable.forceFilter(query, false);
-				}
-				if (section.is(SearchType.LOCATION_DATA))
-				{
-					PartialSearchQuery query = new PartialSearchQuery();
-					query.add(new SearchCondition(Location.SITE_NAME, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Location.REGION, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Location.STATE, operator.getSelection(), searchString, String.class));
-					query.add(new SearchCondition(Country.COUNTRY_NAME, operator.getSelection(), searchString, String.class));
-					locationTable.forceFilter(query, false);
-				}
+
+				/* Get the first page of all categories at once, the tables pick them up as they arrive */
+				Pagination pagination = new Pagination(0, IntegerParameterStore.Inst.get().get(Parameter.paginationPageSize, DatabaseObjectPaginationTable.DEFAULT_NR_OF_ITEMS_PER_PAGE));
+				searchRequest = SearchService.Inst.get().searchAll(Cookie.getRequestProperties(), queries, pagination, new SearchAllCallback(queries.keySet(), comparator, searchString));
 
 				additionalDataPanel.update();
 
@@ -718,6 +691,166 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 		}
 	}
 
+	/**
+	 * Applies the search to the tables of the given {@link SearchCategory}s. Tables whose first page has been prefetched show it straight away, all
+	 * others (i.e. categories that timed out or failed on the server) request their own data.
+	 */
+	private void applyFilters(Set<SearchCategory> categories, ComparisonOperator comparator, String searchString)
+	{
+		for (SearchCategory category : categories)
+		{
+			DatabaseObjectPaginationTable<?> table = getTable(category);
+
+			if (table != null)
+				table.forceFilter(createQuery(category, comparator, searchString), false);
+		}
+	}
+
+	/**
+	 * Passes the prefetched first page of the given {@link SearchCategory} to the callback
+	 *
+	 * @return <code>true</code> if there was a prefetched page that matches the given {@link Pagination}
+	 */
+	private <T extends DatabaseObject> boolean usePrefetched(SearchCategory category, Pagination pagination, AsyncCallback<PaginatedServerResult<List<T>>> callback)
+	{
+		if (prefetched == null || pagination.getStart() != 0 || !StringUtils.isEmpty(pagination.getSortColumn()))
+			return false;
+
+		PaginatedServerResult<List<T>> result = prefetched.remove(category);
+
+		if (result == null)
+			return false;
+
+		/* The server limits the length of the first page, so it may be shorter than the page of the table */
+		int size = result.getServerResult() == null ? 0 : result.getServerResult().size();
+		if (size < pagination.getLength() && (result.getResultSize() == null || result.getResultSize() > size))
+			return false;
+
+		callback.onSuccess(result);
+		return true;
+	}
+
+	private DatabaseObjectPaginationTable<?> getTable(SearchCategory category)
+	{
+		switch (category)
+		{
+			case ACCESSION_DATA:
+				return accessionDataTable;
+			case ACCESSION_ATTRIBUTE_DATA:
+				return accessionAttributeDataTable;
+			case PHENOTYPE_DATA:
+				return phenotypeDataTable;
+			case COMPOUND_DATA:
+				return compoundDataTable;
+			case MAPDEFINITION_DATA:
+				return mapDefinitionTable;
+			case DATASETS:
+				return datasetTable;
+			case DATASET_ATTRIBUTE_DATA:
+				return datasetAttributeDataTable;
+			case PEDIGREE_DATA:
+				return pedigreeTable;
+			case LOCATION_DATA:
+				return locationTable;
+			default:
+				return null;
+		}
+	}
+
+	private static PartialSearchQuery createQuery(SearchCategory category, ComparisonOperator comparator, String searchString)
+	{
+		PartialSearchQuery query = new PartialSearchQuery();
+
+		switch (category)
+		{
+			case ACCESSION_DATA:
+				query.add(new SearchCondition(Accession.GENERAL_IDENTIFIER, comparator, searchString, String.class));
+				query.add(new SearchCondition(Accession.NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Accession.NUMBER, comparator, searchString, String.class));
+				query.add(new SearchCondition(Accession.COLLNUMB, comparator, searchString, String.class));
+				query.add(new SearchCondition(Taxonomy.GENUS, comparator, searchString, String.class));
+				query.add(new SearchCondition(Taxonomy.SPECIES, comparator, searchString, String.class));
+				query.add(new SearchCondition(Taxonomy.SUBTAXA, comparator, searchString, String.class));
+				query.add(new SearchCondition(Country.COUNTRY_NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Synonym.SYNONYM, comparator, searchString, String.class));
+				break;
+			case ACCESSION_ATTRIBUTE_DATA:
+				query.add(new SearchCondition(Accession.GENERAL_IDENTIFIER, comparator, searchString, String.class));
+				query.add(new SearchCondition(Accession.NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Attribute.NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Attribute.DESCRIPTION, comparator, searchString, String.class));
+				query.add(new SearchCondition(AttributeData.VALUE, comparator, searchString, String.class));
+				break;
+			case PHENOTYPE_DATA:
+				query.add(new SearchCondition(Accession.GENERAL_IDENTIFIER, comparator, searchString, String.class));
+				query.add(new SearchCondition(Accession.NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Dataset.NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Dataset.DESCRIPTION, comparator, searchString, String.class));
+				query.add(new SearchCondition(Phenotype.NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Phenotype.SHORT_NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Location.SITE_NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Country.COUNTRY_NAME, comparator, searchString, String.class));
+				break;
+			case COMPOUND_DATA:
+				query.add(new SearchCondition(Accession.GENERAL_IDENTIFIER, comparator, searchString, String.class));
+				query.add(new SearchCondition(Accession.NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Compound.NAME, comparator, searchString, String.class));
+				break;
+			case MAPDEFINITION_DATA:
+				query.add(new SearchCondition(Marker.MARKER_NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(MapFeatureType.DESCRIPTION, comparator, searchString, String.class));
+				query.add(new SearchCondition(jhi.germinate.shared.datastructure.database.Map.DESCRIPTION, comparator, searchString, String.class));
+				query.add(new SearchCondition(MapDefinition.CHROMOSOME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Synonym.SYNONYM, comparator, searchString, String.class));
+				break;
+			case DATASETS:
+				query.add(new SearchCondition(Dataset.NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Dataset.DESCRIPTION, comparator, searchString, String.class));
+				query.add(new SearchCondition(Location.SITE_NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Country.COUNTRY_NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(ExperimentType.DESCRIPTION, comparator, searchString, String.class));
+				query.add(new SearchCondition(Experiment.EXPERIMENT_NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Dataset.CONTACT, comparator, searchString, String.class));
+				break;
+			case DATASET_ATTRIBUTE_DATA:
+				query.add(new SearchCondition(Dataset.NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Dataset.DESCRIPTION, comparator, searchString, String.class));
+				query.add(new SearchCondition(Attribute.NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Attribute.DESCRIPTION, comparator, searchString, String.class));
+				query.add(new SearchCondition(AttributeData.VALUE, comparator, searchString, String.class));
+				break;
+			case PEDIGREE_DATA:
+				query.add(new SearchCondition(PedigreeService.CHILD_GID, comparator, searchString, String.class));
+				query.add(new SearchCondition(PedigreeService.CHILD_NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(PedigreeService.PARENT_GID, comparator, searchString, String.class));
+				query.add(new SearchCondition(PedigreeService.PARENT_NAME, comparator, searchString, String.class));
+				break;
+			case LOCATION_DATA:
+				query.add(new SearchCondition(Location.SITE_NAME, comparator, searchString, String.class));
+				query.add(new SearchCondition(Location.REGION, comparator, searchString, String.class));
+				query.add(new SearchCondition(Location.STATE, comparator, searchString, String.class));
+				query.add(new SearchCondition(Country.COUNTRY_NAME, comparator, searchString, String.class));
+				break;
+		}
+
+		return query;
+	}
+
+	/**
+	 * Restricts the given {@link PartialSearchQuery} to datasets that aren't external
+	 */
+	private static PartialSearchQuery addInternalDatasetFilter(PartialSearchQuery filter)
+	{
+		if (filter == null)
+			filter = new PartialSearchQuery();
+		filter.add(new SearchCondition(Dataset.IS_EXTERNAL, new Equal(), 0, Integer.class));
+
+		if (filter.getAll().size() > 1)
+			filter.addLogicalOperator(new And());
+
+		return filter;
+	}
+
 	private void updateTables()
 	{
 		if (accessionDataTable != null)
@@ -757,24 +890,74 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 		doSearch(searchBox.getText());
 	}
 
+	/**
+	 * {@link SearchAllCallback} passes the first page of each category to its table as soon as it arrives and asks the server for the categories
+	 * that are still running until all of them have arrived
+	 */
+	private class SearchAllCallback implements AsyncCallback<ServerResult<SearchAllResult>>
+	{
+		/** The categories that haven't been passed to their table yet */
+		private final Set<SearchCategory> waiting;
+		private final ComparisonOperator  comparator;
+		private final String              searchString;
+
+		private SearchAllCallback(Set<SearchCategory> categories, ComparisonOperator comparator, String searchString)
+		{
+			this.waiting = new HashSet<>(categories);
+			this.comparator = comparator;
+			this.searchString = searchString;
+		}
+
+		@Override
+		public void onFailure(Throwable caught)
+		{
+			/* Let each table request its own data instead */
+			searchRequest = null;
+			applyFilters(waiting, comparator, searchString);
+			waiting.clear();
+		}
+
+		@Override
+		public void onSuccess(ServerResult<SearchAllResult> result)
+		{
+			searchRequest = null;
+
+			SearchAllResult searchResult = result.getServerResult();
+
+			/* Categories the server doesn't list as running anymore have either arrived or will request their own data */
+			Set<SearchCategory> arrived = new HashSet<>(waiting);
+			arrived.removeAll(searchResult.getRunning());
+			waiting.removeAll(arrived);
+
+			prefetched = searchResult;
+			applyFilters(arrived, comparator, searchString);
+			prefetched = null;
+
+			if (!waiting.isEmpty())
+				searchRequest = SearchService.Inst.get().getResults(Cookie.getRequestProperties(), searchResult.getSearchId(), this);
+		}
+	}
+
 	public enum SearchType
 	{
-		ALL(Text.LANG.searchSectionAll()),
-		ACCESSION_DATA(Text.LANG.searchSectionAccessionData()),
-		ACCESSION_ATTRIBUTE_DATA(Text.LANG.searchSectionAccessionAttributeData()),
-		PHENOTYPE_DATA(Text.LANG.searchSectionPhenotypeData()),
-		COMPOUND_DATA(Text.LANG.searchSectionCompoundData()),
-		MAPDEFINITION_DATA(Text.LANG.searchSectionMapDefinitionData()),
-		DATASETS(Text.LANG.searchSectionDatasets()),
-		DATASET_ATTRIBUTE_DATA(Text.LANG.searchSectionDatasetAttributeData()),
-		PEDIGREE_DATA(Text.LANG.searchSectionPedigreeData()),
-		LOCATION_DATA(Text.LANG.searchSectionLocationData());
-
-		String title;
-
-		SearchType(String title)
+		ALL(Text.LANG.searchSectionAll(), null),
+		ACCESSION_DATA(Text.LANG.searchSectionAccessionData(), SearchCategory.ACCESSION_DATA),
+		ACCESSION_ATTRIBUTE_DATA(Text.LANG.searchSectionAccessionAttributeData(), SearchCategory.ACCESSION_ATTRIBUTE_DATA),
+		PHENOTYPE_DATA(Text.LANG.searchSectionPhenotypeData(), SearchCategory.PHENOTYPE_DATA),
+		COMPOUND_DATA(Text.LANG.searchSectionCompoundData(), SearchCategory.COMPOUND_DATA),
+		MAPDEFINITION_DATA(Text.LANG.searchSectionMapDefinitionData(), SearchCategory.MAPDEFINITION_DATA),
+		DATASETS(Text.LANG.searchSectionDatasets(), SearchCategory.DATASETS),
+		DATASET_ATTRIBUTE_DATA(Text.LANG.searchSectionDatasetAttributeData(), SearchCategory.DATASET_ATTRIBUTE_DATA),
+		PEDIGREE_DATA(Text.LANG.searchSectionPedigreeData(), SearchCategory.PEDIGREE_DATA),
+		LOCATION_DATA(Text.LANG.searchSectionLocationData(), SearchCategory.LOCATION_DATA);
+
+		String         title;
+		SearchCategory category;
+
+		SearchType(String title, SearchCategory category)
 		{
 			this.title = title;
+			this.category = category;
 		}
 
 		public String getTitle()
@@ -786,6 +969,11 @@ public class SearchPage extends Composite implements HasHyperlinkButton, HasHelp
 		{
 			return this == other || this == ALL;
 		}
+
+		public boolean is(SearchCategory other)
+		{
+			return this == ALL || category == other;
+		}
 	}
 
 	@Override
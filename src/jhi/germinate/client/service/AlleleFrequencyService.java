@@ -108,18 +108,32 @@ public interface AlleleFrequencyService extends RemoteService
 	Pair<String, HistogramImageData> getHistogramImageData(RequestProperties properties, HistogramParams params) throws InvalidSessionException, IOException, FlapjackException;
 
 	/**
-	 * Creates the Flapjack project file and returns the {@link FlapjackProjectCreationResult} with all the necessary information.
+	 * Starts creating the Flapjack project file as an export job and returns its id. Follow the job via {@link ExportJobService} and get the
+	 * result via {@link #getProject(RequestProperties, String)} once it has finished.
 	 *
 	 * @param properties      The {@link RequestProperties}
 	 * @param histogramParams The {@link HistogramParams}
+	 * @return The id of the export job
+	 * @throws InvalidSessionException Thrown if the current session is invalid
+	 * @throws FlapjackException       Thrown if Flapjack crashes
+	 */
+	ServerResult<String> createProject(RequestProperties properties, HistogramParams histogramParams) throws InvalidSessionException, FlapjackException;
+
+	/**
+	 * Returns the {@link FlapjackProjectCreationResult} with all the necessary information of the export job started via {@link
+	 * #createProject(RequestProperties, HistogramParams)}
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The id of the export job
 	 * @return The {@link FlapjackProjectCreationResult} with all the necessary information.
 	 * @throws InvalidSessionException Thrown if the current session is invalid
 	 * @throws FlapjackException       Thrown if Flapjack crashes
 	 */
-	Pair<String, FlapjackProjectCreationResult> createProject(RequestProperties properties, HistogramParams histogramParams) throws InvalidSessionException, FlapjackException;
+	Pair<String, FlapjackProjectCreationResult> getProject(RequestProperties properties, String jobId) throws InvalidSessionException, FlapjackException;
 
 	/**
-	 * Creates the histogram data and returns the {@link FlapjackAllelefreqBinningResult} with all the necessary information.
+	 * Starts creating the histogram data as an export job and returns its id. Follow the job via {@link ExportJobService} and get the result via
+	 * {@link #getHistogram(RequestProperties, String)} once it has finished.
 	 *
 	 * @param properties      The {@link RequestProperties}
 	 * @param accessionGroups The ids of the {@link jhi.germinate.shared.datastructure.database.Accession} {@link
@@ -129,12 +143,27 @@ public interface AlleleFrequencyService extends RemoteService
 	 * @param missingOn       Should the missing data filter be applied?
 	 * @param mapId           The {@link jhi.germinate.shared.datastructure.database.Map} id
 	 * @param nrOfBins        The number of bins to use for the histogram
-	 * @return The {@link FlapjackAllelefreqBinningResult} with all the necessary information.
+	 * @return The id of the export job
 	 * @throws InvalidSessionException  Thrown if the current session is invalid
 	 * @throws DatabaseException        Thrown if the query fails on the server
 	 * @throws InvalidArgumentException Thrown if there is no data to export for the selected parameters
 	 * @throws IOException              Thrown if an I/O operation fails
 	 * @throws FlapjackException        Thrown if Flapjack crashes
 	 */
-	ServerResult<FlapjackAllelefreqBinningResult> createHistogram(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datastId, boolean missingOn, Long mapId, int nrOfBins) throws InvalidSessionException, DatabaseException, InvalidArgumentException, IOException, FlapjackException;
-}
\ No newline at end of file
+	ServerResult<String> createHistogram(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datastId, boolean missingOn, Long mapId, int nrOfBins) throws InvalidSessionException, DatabaseException, InvalidArgumentException, IOException, FlapjackException;
+
+	/**
+	 * Returns the {@link FlapjackAllelefreqBinningResult} with all the necessary information of the export job started via {@link
+	 * #createHistogram(RequestProperties, List, Set, List, Set, Long, boolean, Long, int)}
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The id of the export job
+	 * @return The {@link FlapjackAllelefreqBinningResult} with all the necessary information.
+	 * @throws InvalidSessionException  Thrown if the current session is invalid
+	 * @throws DatabaseException        Thrown if the query fails on the server
+	 * @throws InvalidArgumentException Thrown if the job doesn't exist or there is no data to export for the selected parameters
+	 * @throws IOException              Thrown if an I/O operation fails
+	 * @throws FlapjackException        Thrown if Flapjack crashes
+	 */
+	ServerResult<FlapjackAllelefreqBinningResult> getHistogram(RequestProperties properties, String jobId) throws InvalidSessionException, DatabaseException, InvalidArgumentException, IOException, FlapjackException;
+}
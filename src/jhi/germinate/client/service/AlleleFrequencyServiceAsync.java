@@ -43,16 +43,26 @@ public interface AlleleFrequencyServiceAsync
 	void getHistogramImageData(RequestProperties properties, HistogramParams params, AsyncCallback<Pair<String, HistogramImageData>> callback);
 
 	/**
-	 * Creates the Flapjack project file and returns the {@link FlapjackProjectCreationResult} with all the necessary information.
+	 * Starts creating the Flapjack project file as an export job and returns its id.
 	 *
 	 * @param properties      The {@link RequestProperties}
 	 * @param histogramParams The {@link HistogramParams}
 	 * @param callback        The {@link AsyncCallback}
 	 */
-	void createProject(RequestProperties properties, HistogramParams histogramParams, AsyncCallback<Pair<String, FlapjackProjectCreationResult>> callback);
+	void createProject(RequestProperties properties, HistogramParams histogramParams, AsyncCallback<ServerResult<String>> callback);
 
 	/**
-	 * Creates the histogram data and returns the {@link FlapjackAllelefreqBinningResult} with all the necessary information.
+	 * Returns the {@link FlapjackProjectCreationResult} with all the necessary information of the export job started via {@link
+	 * #createProject(RequestProperties, HistogramParams, AsyncCallback)}
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The id of the export job
+	 * @param callback   The {@link AsyncCallback}
+	 */
+	void getProject(RequestProperties properties, String jobId, AsyncCallback<Pair<String, FlapjackProjectCreationResult>> callback);
+
+	/**
+	 * Starts creating the histogram data as an export job and returns its id.
 	 *
 	 * @param properties      The {@link RequestProperties}
 	 * @param accessionGroups The ids of the {@link jhi.germinate.shared.datastructure.database.Accession} {@link
@@ -63,5 +73,15 @@ public interface AlleleFrequencyServiceAsync
 	 * @param mapId           The {@link jhi.germinate.shared.datastructure.database.Map} id
 	 * @param callback        The {@link AsyncCallback}
 	 */
-	void createHistogram(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datastId, boolean missingOn, Long mapId, int nrOfBins, AsyncCallback<ServerResult<FlapjackAllelefreqBinningResult>> callback);
+	void createHistogram(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datastId, boolean missingOn, Long mapId, int nrOfBins, AsyncCallback<ServerResult<String>> callback);
+
+	/**
+	 * Returns the {@link FlapjackAllelefreqBinningResult} with all the necessary information of the export job started via {@link
+	 * #createHistogram(RequestProperties, List, Set, List, Set, Long, boolean, Long, int, AsyncCallback)}
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The id of the export job
+	 * @param callback   The {@link AsyncCallback}
+	 */
+	void getHistogram(RequestProperties properties, String jobId, AsyncCallback<ServerResult<FlapjackAllelefreqBinningResult>> callback);
 }
@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.client.service;
+
+import com.google.gwt.core.shared.*;
+import com.google.gwt.user.client.rpc.*;
+
+import java.util.*;
+
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * {@link ExportJobService} is a {@link RemoteService} providing methods to follow and cancel the export jobs of the current session.
+ *
+ * @author Sebastian Raubach
+ */
+@RemoteServiceRelativePath("export-job")
+public interface ExportJobService extends RemoteService
+{
+	final class Inst
+	{
+		private static final class InstanceHolder
+		{
+			private static final ExportJobServiceAsync INSTANCE = GWT.create(ExportJobService.class);
+		}
+
+		public static ExportJobServiceAsync get()
+		{
+			return InstanceHolder.INSTANCE;
+		}
+	}
+
+	/**
+	 * Returns the status of the most recent unfinished export job of the current session
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @return The {@link ExportJobStatus} or <code>null</code> if there is no unfinished export job
+	 * @throws InvalidSessionException Thrown if the current session id is not valid
+	 */
+	ExportJobStatus getProgress(RequestProperties properties) throws InvalidSessionException;
+
+	/**
+	 * Returns the status of the export job with the given id
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The job id
+	 * @return The {@link ExportJobStatus} or <code>null</code> if the job doesn't exist or doesn't belong to the current session
+	 * @throws InvalidSessionException Thrown if the current session id is not valid
+	 */
+	ExportJobStatus getStatus(RequestProperties properties, String jobId) throws InvalidSessionException;
+
+	/**
+	 * Returns the status of all known export jobs of the current session
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @return The status of all known export jobs of the current session
+	 * @throws InvalidSessionException Thrown if the current session id is not valid
+	 */
+	List<ExportJobStatus> getJobs(RequestProperties properties) throws InvalidSessionException;
+
+	/**
+	 * Cancels the export job with the given id
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The job id
+	 * @return <code>true</code> if the job has been found and cancelled
+	 * @throws InvalidSessionException Thrown if the current session id is not valid
+	 */
+	Boolean cancel(RequestProperties properties, String jobId) throws InvalidSessionException;
+}
@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.client.service;
+
+import com.google.gwt.user.client.rpc.*;
+
+import java.util.*;
+
+import jhi.germinate.shared.datastructure.*;
+
+/**
+ * Async version of {@link ExportJobService}
+ *
+ * @author Sebastian Raubach
+ */
+public interface ExportJobServiceAsync
+{
+	/**
+	 * Returns the status of the most recent unfinished export job of the current session
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param callback   The {@link AsyncCallback}
+	 */
+	void getProgress(RequestProperties properties, AsyncCallback<ExportJobStatus> callback);
+
+	/**
+	 * Returns the status of the export job with the given id
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The job id
+	 * @param callback   The {@link AsyncCallback}
+	 */
+	void getStatus(RequestProperties properties, String jobId, AsyncCallback<ExportJobStatus> callback);
+
+	/**
+	 * Returns the status of all known export jobs of the current session
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param callback   The {@link AsyncCallback}
+	 */
+	void getJobs(RequestProperties properties, AsyncCallback<List<ExportJobStatus>> callback);
+
+	/**
+	 * Cancels the export job with the given id
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The job id
+	 * @param callback   The {@link AsyncCallback}
+	 */
+	void cancel(RequestProperties properties, String jobId, AsyncCallback<Boolean> callback);
+}
@@ -47,7 +47,8 @@ public interface GenotypeService extends RemoteService
 	}
 
 	/**
-	 * Kicks of the data extraction and returns the list of generated files.
+	 * Kicks of the data extraction as an export job and returns its id. Follow the job via {@link ExportJobService} and get the list of generated
+	 * files via {@link #getExportDataset(RequestProperties, String)} once it has finished.
 	 *
 	 * @param properties         The {@link RequestProperties}
 	 * @param accessionGroups    The {@link jhi.germinate.shared.datastructure.database.Accession} {@link jhi.germinate.shared.datastructure.database.Group}
@@ -58,12 +59,26 @@ public interface GenotypeService extends RemoteService
 	 * @param heterozygousFilter Should the heterozygous data filtering be enabled?
 	 * @param misingDataFilter   Should the missing data filtering be enabled?
 	 * @param mapToUse           The {@link jhi.germinate.shared.datastructure.database.Map} file to use
-	 * @return The list of generated files.
+	 * @return The id of the export job
 	 * @throws InvalidSessionException  Thrown if the current session is invalid
 	 * @throws DatabaseException        Thrown if the query fails on the server
 	 * @throws IOException              Thrown if the file I/O fails
 	 */
-	ServerResult<List<CreatedFile>> computeExportDataset(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datasetId, boolean heterozygousFilter, boolean misingDataFilter, Long mapToUse) throws InvalidSessionException, DatabaseException, IOException, InvalidArgumentException;
+	ServerResult<String> computeExportDataset(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datasetId, boolean heterozygousFilter, boolean misingDataFilter, Long mapToUse) throws InvalidSessionException, DatabaseException, IOException, InvalidArgumentException;
+
+	/**
+	 * Returns the list of files generated by the export job started via {@link #computeExportDataset(RequestProperties, List, Set, List, Set, Long,
+	 * boolean, boolean, Long)}
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The id of the export job
+	 * @return The list of generated files (map, data)
+	 * @throws InvalidSessionException  Thrown if the current session is invalid
+	 * @throws DatabaseException        Thrown if the query fails on the server
+	 * @throws IOException              Thrown if the file I/O fails
+	 * @throws InvalidArgumentException Thrown if the job doesn't exist or no data is available for the given selection
+	 */
+	ServerResult<List<CreatedFile>> getExportDataset(RequestProperties properties, String jobId) throws InvalidSessionException, DatabaseException, IOException, InvalidArgumentException;
 
 	/**
 	 * Exports the Hdf5 file of the specified {@link jhi.germinate.shared.datastructure.database.Dataset} id to a flat file and returns the result
@@ -79,12 +94,22 @@ public interface GenotypeService extends RemoteService
 	ServerResult<String> convertHdf5ToText(RequestProperties properties, Long datasetId) throws InvalidSessionException, DatabaseException, InvalidArgumentException;
 
 	/**
-	 * Converts the given genotype and map file into a Flapjack project file.
+	 * Starts converting the given genotype and map file into a Flapjack project file as an export job and returns its id. Follow the job via
+	 * {@link ExportJobService} and get the result via {@link #getFlapjackProject(RequestProperties, String)} once it has finished.
 	 *
 	 * @param properties The {@link RequestProperties}
 	 * @param map        The filename of the map file
 	 * @param genotype   The filename of the genotype file
+	 * @return The id of the export job
+	 */
+	ServerResult<String> convertToFlapjack(RequestProperties properties, String map, String genotype) throws InvalidSessionException, FlapjackException;
+
+	/**
+	 * Returns the result of the export job started via {@link #convertToFlapjack(RequestProperties, String, String)}
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The id of the export job
 	 * @return The {@link FlapjackProjectCreationResult} generated by the Flapjack code.
 	 */
-	ServerResult<FlapjackProjectCreationResult> convertToFlapjack(RequestProperties properties, String map, String genotype) throws InvalidSessionException, FlapjackException;
+	ServerResult<FlapjackProjectCreationResult> getFlapjackProject(RequestProperties properties, String jobId) throws InvalidSessionException, FlapjackException;
 }
@@ -31,7 +31,7 @@ import jhi.germinate.shared.datastructure.*;
 public interface GenotypeServiceAsync
 {
 	/**
-	 * Kicks of the data extraction and returns the list of generated files.
+	 * Kicks of the data extraction as an export job and returns its id.
 	 *
 	 * @param properties         The {@link RequestProperties}
 	 * @param accessionGroups    The {@link jhi.germinate.shared.datastructure.database.Accession} {@link jhi.germinate.shared.datastructure.database.Group}
@@ -44,7 +44,17 @@ public interface GenotypeServiceAsync
 	 * @param mapToUse           The {@link jhi.germinate.shared.datastructure.database.Map} file to use
 	 * @param callback           The {@link AsyncCallback}
 	 */
-	void computeExportDataset(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datasetId, boolean heterozygousFilter, boolean misingDataFilter, Long mapToUse, AsyncCallback<ServerResult<List<CreatedFile>>> callback);
+	void computeExportDataset(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datasetId, boolean heterozygousFilter, boolean misingDataFilter, Long mapToUse, AsyncCallback<ServerResult<String>> callback);
+
+	/**
+	 * Returns the list of files generated by the export job started via {@link #computeExportDataset(RequestProperties, List, Set, List, Set, Long,
+	 * boolean, boolean, Long, AsyncCallback)}
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The id of the export job
+	 * @param callback   The {@link AsyncCallback}
+	 */
+	void getExportDataset(RequestProperties properties, String jobId, AsyncCallback<ServerResult<List<CreatedFile>>> callback);
 
 	/**
 	 * Exports the Hdf5 file of the specified {@link jhi.germinate.shared.datastructure.database.Dataset} id to a flat file and returns the result
@@ -57,12 +67,21 @@ public interface GenotypeServiceAsync
 	void convertHdf5ToText(RequestProperties properties, Long datasetId, AsyncCallback<ServerResult<String>> callback);
 
 	/**
-	 * Converts the given genotype and map file into a Flapjack project file.
+	 * Starts converting the given genotype and map file into a Flapjack project file as an export job and returns its id.
 	 *
 	 * @param properties The {@link RequestProperties}
 	 * @param map        The filename of the map file
 	 * @param genotype   The filename of the genotype file
 	 * @param callback   The {@link AsyncCallback}
 	 */
-	void convertToFlapjack(RequestProperties properties, String map, String genotype, AsyncCallback<ServerResult<FlapjackProjectCreationResult>> callback);
+	void convertToFlapjack(RequestProperties properties, String map, String genotype, AsyncCallback<ServerResult<String>> callback);
+
+	/**
+	 * Returns the result of the export job started via {@link #convertToFlapjack(RequestProperties, String, String, AsyncCallback)}
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param jobId      The id of the export job
+	 * @param callback   The {@link AsyncCallback}
+	 */
+	void getFlapjackProject(RequestProperties properties, String jobId, AsyncCallback<ServerResult<FlapjackProjectCreationResult>> callback);
 }
@@ -200,6 +200,22 @@ public interface LocationService extends RemoteService
 	 */
 	ServerResult<List<String>> getIdsInPolygon(RequestProperties properties, List<List<LatLngPoint>> polygon) throws InvalidSessionException, DatabaseException;
 
+	/**
+	 * Returns the {@link MapCluster}s of the {@link Location}s within the visible area of a map at the given zoom level.
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param type       The {@link LocationType} of the {@link Location}s, {@link LocationType#all} for all of them
+	 * @param southWest  The south west corner of the visible area
+	 * @param northEast  The north east corner of the visible area
+	 * @param zoom       The zoom level of the map
+	 * @param locations  Include the {@link Location} of {@link MapCluster}s that only contain one?
+	 * @return The {@link MapCluster}s of the {@link Location}s within the visible area
+	 * @throws InvalidSessionException Thrown if the current session is invalid
+	 * @throws DatabaseException       Thrown if the query fails on the server
+	 * @throws InvalidColumnException  Thrown if the specified sort column isn't valid
+	 */
+	ServerResult<List<MapCluster>> getClusters(RequestProperties properties, LocationType type, LatLngPoint southWest, LatLngPoint northEast, int zoom, boolean locations) throws InvalidSessionException, DatabaseException, InvalidColumnException;
+
 	/**
 	 * Exports all the data associated with {@link Location}s mathing the given {@link PartialSearchQuery}.
 	 *
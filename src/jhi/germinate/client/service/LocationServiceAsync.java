@@ -140,6 +140,19 @@ public interface LocationServiceAsync
 	 */
 	void getIdsInPolygon(RequestProperties properties, List<List<LatLngPoint>> polygon, AsyncCallback<ServerResult<List<String>>> callback);
 
+	/**
+	 * Returns the {@link MapCluster}s of the {@link Location}s within the visible area of a map at the given zoom level.
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param type       The {@link LocationType} of the {@link Location}s, {@link LocationType#all} for all of them
+	 * @param southWest  The south west corner of the visible area
+	 * @param northEast  The north east corner of the visible area
+	 * @param zoom       The zoom level of the map
+	 * @param locations  Include the {@link Location} of {@link MapCluster}s that only contain one?
+	 * @param callback   The {@link AsyncCallback}
+	 */
+	Request getClusters(RequestProperties properties, LocationType type, LatLngPoint southWest, LatLngPoint northEast, int zoom, boolean locations, AsyncCallback<ServerResult<List<MapCluster>>> callback);
+
 	/**
 	 * Exports all the data associated with {@link Location}s mathing the given {@link PartialSearchQuery}.
 	 *
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.client.service;
+
+import com.google.gwt.core.shared.*;
+import com.google.gwt.user.client.rpc.*;
+
+import java.util.*;
+
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+import jhi.germinate.shared.search.*;
+
+/**
+ * {@link SearchService} is a {@link RemoteService} providing methods to search all data categories at once.
+ *
+ * @author Sebastian Raubach
+ */
+@RemoteServiceRelativePath("search")
+public interface SearchService extends RemoteService
+{
+	final class Inst
+	{
+		private static final class InstanceHolder
+		{
+
+			private static final SearchServiceAsync INSTANCE = GWT.create(SearchService.class);
+
+		}
+
+		public static SearchServiceAsync get()
+		{
+			return InstanceHolder.INSTANCE;
+		}
+	}
+
+	/**
+	 * Starts searching each {@link SearchCategory} for its {@link PartialSearchQuery}. The categories are searched in parallel. The first page of
+	 * the results of the categories that have finished so far is returned, the others are listed as running and can be requested via {@link
+	 * #getResults(RequestProperties, String)}. Categories that don't finish within the time budget of the server or fail are reported in the
+	 * {@link SearchAllResult} without a result.
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param queries    The {@link PartialSearchQuery} of each {@link SearchCategory} to search
+	 * @param pagination The {@link Pagination} of the first page. The server may limit its length.
+	 * @return The first page of the results of each {@link SearchCategory} that has finished
+	 * @throws InvalidSessionException Thrown if the current session is invalid
+	 * @throws DatabaseException       Thrown if the query fails on the server
+	 */
+	ServerResult<SearchAllResult> searchAll(RequestProperties properties, Map<SearchCategory, PartialSearchQuery> queries, Pagination pagination) throws InvalidSessionException, DatabaseException;
+
+	/**
+	 * Returns the first page of the results of the categories of a search started via {@link #searchAll(RequestProperties, Map, Pagination)}
+	 * that have finished since the last request. Waits for at least one category to finish.
+	 *
+	 * @param properties The {@link RequestProperties}
+	 * @param searchId   The id of the search ({@link SearchAllResult#getSearchId()})
+	 * @return The first page of the results of each {@link SearchCategory} that has finished since the last request
+	 * @throws InvalidSessionException Thrown if the current session is invalid
+	 */
+	ServerResult<SearchAllResult> getResults(RequestProperties properties, String searchId) throws InvalidSessionException;
+}
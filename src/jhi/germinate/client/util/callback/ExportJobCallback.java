@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.client.util.callback;
+
+import com.google.gwt.user.client.*;
+import com.google.gwt.user.client.rpc.*;
+
+import jhi.germinate.client.i18n.*;
+import jhi.germinate.client.service.*;
+import jhi.germinate.client.util.*;
+import jhi.germinate.client.widget.element.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * {@link ExportJobCallback} is the callback of service calls that submit an export job and return its id. It polls the status of the job via
+ * {@link ExportJobService} and shows its progress. Once the job is done, the result (or the exception the job failed with) is requested via the
+ * given {@link ResultLoader} and passed on to the given {@link AsyncCallback}.
+ *
+ * @param <T> The type of the result of the export job
+ * @author Sebastian Raubach
+ */
+public class ExportJobCallback<T> extends DefaultAsyncCallback<ServerResult<String>>
+{
+	private static final int UPDATE_INTERVAL = 1000;
+
+	/**
+	 * Requests the result of a finished export job
+	 */
+	public interface ResultLoader<T>
+	{
+		void load(String jobId, AsyncCallback<T> callback);
+	}
+
+	private final ResultLoader<T>  loader;
+	private final AsyncCallback<T> callback;
+	private final LoadingIndicator indicator;
+
+	public ExportJobCallback(ResultLoader<T> loader, AsyncCallback<T> callback)
+	{
+		super(false);
+
+		this.loader = loader;
+		this.callback = callback;
+
+		indicator = new LoadingIndicator(Text.LANG.notificationLongRunning());
+		indicator.show();
+	}
+
+	@Override
+	protected void onFailureImpl(Throwable caught)
+	{
+		indicator.hide();
+		callback.onFailure(caught);
+	}
+
+	@Override
+	protected void onSuccessImpl(ServerResult<String> result)
+	{
+		if (result.hasData())
+			poll(result.getServerResult());
+		else
+			onFailureImpl(new IOException(Text.LANG.notificationExportJobNotStarted()));
+	}
+
+	private void poll(final String jobId)
+	{
+		ExportJobService.Inst.get().getStatus(Cookie.getRequestProperties(), jobId, new DefaultAsyncCallback<ExportJobStatus>()
+		{
+			@Override
+			protected void onFailureImpl(Throwable caught)
+			{
+				ExportJobCallback.this.onFailureImpl(caught);
+			}
+
+			@Override
+			protected void onSuccessImpl(ExportJobStatus status)
+			{
+				if (status == null)
+				{
+					ExportJobCallback.this.onFailureImpl(new IOException(Text.LANG.notificationExportJobNotFound()));
+				}
+				else if (status.getStatus() == ExportJobStatus.Status.CANCELLED)
+				{
+					ExportJobCallback.this.onFailureImpl(new IOException(Text.LANG.notificationExportJobCancelled()));
+				}
+				else if (status.isDone())
+				{
+					/* Failed jobs are loaded as well, so that the callback receives the original exception */
+					indicator.hide();
+					loader.load(jobId, callback);
+				}
+				else
+				{
+					if (status.getProgress() != null)
+						indicator.setProgress(status.getProgress() * 100);
+
+					new Timer()
+					{
+						@Override
+						public void run()
+						{
+							poll(jobId);
+						}
+					}.schedule(UPDATE_INTERVAL);
+				}
+			}
+		});
+	}
+}
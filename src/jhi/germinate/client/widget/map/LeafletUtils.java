@@ -19,6 +19,7 @@ package jhi.germinate.client.widget.map;
 
 import com.google.gwt.core.client.*;
 import com.google.gwt.dom.client.*;
+import com.google.gwt.http.client.*;
 import com.google.gwt.i18n.client.*;
 import com.google.gwt.user.client.ui.*;
 
@@ -28,8 +29,10 @@ import java.util.Map;
 import jhi.germinate.client.i18n.Text;
 import jhi.germinate.client.service.*;
 import jhi.germinate.client.util.*;
+import jhi.germinate.client.util.callback.*;
 import jhi.germinate.shared.*;
 import jhi.germinate.shared.Style;
+import jhi.germinate.shared.datastructure.*;
 import jhi.germinate.shared.datastructure.database.*;
 import jhi.germinate.shared.enums.*;
 import jhi.gwt.leaflet.client.basic.*;
@@ -120,23 +123,154 @@ public class LeafletUtils
 					points.push(LeafletLatLng.newInstance(latitude, longitude, 1));
 				}
 
-				List<String> colors = GerminateSettingsHolder.get().templateGradientColors.getValue();
+				heatmap = LeafletHeatmap.newInstance(map, getHeatmapOptions().setMax(1), points);
+			}
+			else
+			{
+				heatmap = null;
+			}
+		}
+	}
+
+	private static LeafletHeatmap.Options getHeatmapOptions()
+	{
+		List<String> colors = GerminateSettingsHolder.get().templateGradientColors.getValue();
+
+		LeafletHeatmap.GradientOptions o = LeafletHeatmap.GradientOptions.newInstance();
+
+		// TODO: Wait for https://github.com/Leaflet/Leaflet.heat/issues/87 to be fixed
+		float start = 0.3f;
+
+		for (int i = 0; i < colors.size(); i++)
+			o.add(start + ((1 - start) * i) / (colors.size() - 1), colors.get(i));
+
+		return LeafletHeatmap.Options.newInstance()
+									 .setGradient(o)
+									 .setMaxZoom(12)
+									 .setMinOpacity(0.4)
+									 .setRadius(10)
+									 .setBlur(10);
+	}
+
+	/**
+	 * Base class of the maps showing the {@link MapCluster}s of the visible area. They're requested from the server whenever the map has been
+	 * moved or zoomed, so the client never has to receive all {@link Location}s.
+	 */
+	public static abstract class GridCreator extends MapCreator<LocationType>
+	{
+		private LocationType type;
+		private Request      request;
+
+		public GridCreator(Panel parent, LocationType type, OnMapLoadHandler handler)
+		{
+			super(parent, handler);
+			this.type = type;
+		}
+
+		@Override
+		protected void onMapLoad()
+		{
+			map.on("moveend", this::requestClusters);
+
+			requestClusters();
+
+			super.onMapLoad();
+		}
+
+		@Override
+		public void updateData(LocationType data)
+		{
+			this.type = data;
+
+			if (map != null)
+				requestClusters();
+		}
 
-				LeafletHeatmap.GradientOptions o = LeafletHeatmap.GradientOptions.newInstance();
+		private void requestClusters()
+		{
+			/* Only the clusters of the current view are of interest */
+			if (request != null && request.isPending())
+				request.cancel();
+
+			LatLngPoint southWest = new LatLngPoint(getSouth(map), getWest(map));
+			LatLngPoint northEast = new LatLngPoint(getNorth(map), getEast(map));
 
-				// TODO: Wait for https://github.com/Leaflet/Leaflet.heat/issues/87 to be fixed
-				float start = 0.3f;
+			request = LocationService.Inst.get().getClusters(Cookie.getRequestProperties(), type, southWest, northEast, getZoom(map) + getZoomOffset(), includeLocations(), new DefaultAsyncCallback<ServerResult<List<MapCluster>>>()
+			{
+				@Override
+				protected void onSuccessImpl(ServerResult<List<MapCluster>> result)
+				{
+					updateClusters(result.getServerResult());
+				}
+			});
+		}
 
-				for (int i = 0; i < colors.size(); i++)
-					o.add(start + ((1 - start) * i) / (colors.size() - 1), colors.get(i));
+		/**
+		 * Returns the number of zoom levels to add to the zoom level of the map when requesting the {@link MapCluster}s. Each additional level
+		 * splits the cells into four.
+		 *
+		 * @return The number of zoom levels to add to the zoom level of the map
+		 */
+		protected int getZoomOffset()
+		{
+			return 0;
+		}
 
-				heatmap = LeafletHeatmap.newInstance(map, LeafletHeatmap.Options.newInstance()
-																				.setGradient(o)
-																				.setMaxZoom(12)
-																				.setMinOpacity(0.4)
-																				.setRadius(10)
-																				.setMax(1)
-																				.setBlur(10), points);
+		/**
+		 * Should {@link MapCluster}s containing a single {@link Location} include the {@link Location}?
+		 *
+		 * @return <code>true</code> if {@link MapCluster}s containing a single {@link Location} should include the {@link Location}
+		 */
+		protected abstract boolean includeLocations();
+
+		/**
+		 * Shows the given {@link MapCluster}s on the map, replacing the previous ones
+		 *
+		 * @param clusters The {@link MapCluster}s of the current view
+		 */
+		protected abstract void updateClusters(List<MapCluster> clusters);
+	}
+
+	public static class GridHeatmapCreator extends GridCreator
+	{
+		private LeafletHeatmap heatmap;
+
+		public GridHeatmapCreator(Panel parent, LocationType type, OnMapLoadHandler handler)
+		{
+			super(parent, type, handler);
+		}
+
+		@Override
+		protected int getZoomOffset()
+		{
+			/* The heatmap needs finer cells than the markers */
+			return 2;
+		}
+
+		@Override
+		protected boolean includeLocations()
+		{
+			return false;
+		}
+
+		@Override
+		protected void updateClusters(List<MapCluster> clusters)
+		{
+			if (heatmap != null)
+				map.removeLayer(heatmap);
+
+			if (!CollectionUtils.isEmpty(clusters))
+			{
+				JsArray<LeafletLatLng> points = JsArray.createArray().cast();
+				int max = 1;
+
+				for (MapCluster cluster : clusters)
+				{
+					points.push(LeafletLatLng.newInstance(cluster.getLatitude(), cluster.getLongitude(), cluster.getCount()));
+					max = Math.max(max, cluster.getCount());
+				}
+
+				heatmap = LeafletHeatmap.newInstance(map, getHeatmapOptions().setMax(max), points);
 			}
 			else
 			{
@@ -145,6 +279,102 @@ public class LeafletUtils
 		}
 	}
 
+	public static class GridMarkerCreator extends GridCreator
+	{
+		private LeafletFeatureGroup  markers;
+		private OnMarkerClickHandler clickHandler;
+
+		public GridMarkerCreator(Panel parent, LocationType type, OnMarkerClickHandler clickHandler, OnMapLoadHandler handler)
+		{
+			super(parent, type, handler);
+			this.clickHandler = clickHandler;
+		}
+
+		@Override
+		protected boolean includeLocations()
+		{
+			return true;
+		}
+
+		@Override
+		protected void updateClusters(List<MapCluster> clusters)
+		{
+			addMarkerLinkFunction(clickHandler);
+
+			if (markers != null)
+				map.removeLayer(markers);
+
+			JsArray<LeafletMarker> array = JsArray.createArray().cast();
+
+			if (!CollectionUtils.isEmpty(clusters))
+			{
+				for (MapCluster cluster : clusters)
+				{
+					Location location = cluster.getLocation();
+
+					if (location != null)
+					{
+						StringBuilder title = getLocationInfoWindowContent(location, clickHandler != null);
+
+						title.append("</div>");
+
+						array.push(LeafletMarker.newInstance(cluster.getLatitude(), cluster.getLongitude())
+												.bindPopup(title.toString()));
+					}
+					else
+					{
+						array.push(createClusterMarker(map, cluster.getLatitude(), cluster.getLongitude(), cluster.getCount()));
+					}
+				}
+			}
+
+			markers = LeafletFeatureGroup.newInstance(array);
+			addLayer(map, markers);
+		}
+	}
+
+	/**
+	 * Creates a marker that looks like the clusters of PruneCluster. Clicking it zooms into the cluster.
+	 */
+	private static native LeafletMarker createClusterMarker(LeafletMap map, double latitude, double longitude, int count)/*-{
+		var size = count < 10 ? 'small' : (count < 100 ? 'medium' : 'large');
+		var marker = $wnd.L.marker([latitude, longitude], {
+			icon: $wnd.L.divIcon({
+				html: '<div><span>' + count + '</span></div>',
+				className: 'prunecluster prunecluster-' + size,
+				iconSize: $wnd.L.point(40, 40)
+			})
+		});
+		marker.on('click', function () {
+			map.setView(marker.getLatLng(), Math.min(map.getZoom() + 2, map.getMaxZoom()));
+		});
+		return marker;
+	}-*/;
+
+	private static native void addLayer(LeafletMap map, LeafletFeatureGroup layer)/*-{
+		map.addLayer(layer);
+	}-*/;
+
+	private static native int getZoom(LeafletMap map)/*-{
+		return map.getZoom();
+	}-*/;
+
+	private static native double getSouth(LeafletMap map)/*-{
+		return map.getBounds().getSouth();
+	}-*/;
+
+	private static native double getWest(LeafletMap map)/*-{
+		return map.getBounds().getWest();
+	}-*/;
+
+	private static native double getNorth(LeafletMap map)/*-{
+		return map.getBounds().getNorth();
+	}-*/;
+
+	private static native double getEast(LeafletMap map)/*-{
+		return map.getBounds().getEast();
+	}-*/;
+
 	public static class ClusteredMarkerCreator extends MapCreator<Collection<Location>>
 	{
 		private LeafletPruneCluster  clusterer;
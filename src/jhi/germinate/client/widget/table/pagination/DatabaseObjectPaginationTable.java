@@ -420,6 +420,7 @@ public abstract class DatabaseObjectPaginationTable<T extends DatabaseObject> ex
 
 		/* We need to fetch the result size again */
 		pagination.setResultSize(null);
+		pagination.setCursor(null);
 
 		/* Then let the table know, we're starting on page 1 (cause filter may have changed and the number of pages as well), then fire event */
 		table.setVisibleRangeAndClearData(new Range(0, nrOfItemsPerPage), true);
@@ -595,6 +596,29 @@ public abstract class DatabaseObjectPaginationTable<T extends DatabaseObject> ex
 		}
 	}
 
+	/**
+	 * Shows the table while the server is still counting the results. The pagers only know about the rows up to the current page (plus one if there
+	 * are more), so the result size isn't kept and the next request asks for it again.
+	 *
+	 * @param lowerBound The number of rows known to exist
+	 */
+	private void updatePanelsForLowerBound(int lowerBound)
+	{
+		pagination.setResultSize(null);
+
+		table.setPageSize(nrOfItemsPerPage);
+
+		topPager.setVisible(lowerBound > nrOfItemsPerPage);
+		bottomPager.setVisible(lowerBound > nrOfItemsPerPage);
+
+		table.setVisible(true);
+		topPanel.setVisible(true);
+		bottomPanel.setVisible(true);
+		extrasPlaceholder.setVisible(true);
+
+		table.setRowCount(lowerBound, false);
+	}
+
 	/**
 	 * Initializes the async data provider that fills the table with data from the server
 	 */
@@ -660,6 +684,7 @@ public abstract class DatabaseObjectPaginationTable<T extends DatabaseObject> ex
 						@Override
 						public void onFailureImpl(Throwable caught)
 						{
+							pagination.setCursor(null);
 							updateRowData(0, new ArrayList<>());
 
 							if (caught instanceof InvalidArgumentException)
@@ -673,6 +698,9 @@ public abstract class DatabaseObjectPaginationTable<T extends DatabaseObject> ex
 						{
 							List<T> data = result.getServerResult();
 
+							/* Let the server continue after the last row if the next page is requested */
+							pagination.setCursor(result.getCursor());
+
 							noDataHeading.setVisible(false);
 
 							if (data == null)
@@ -703,9 +731,16 @@ public abstract class DatabaseObjectPaginationTable<T extends DatabaseObject> ex
 								if (selectPageHeader != null)
 									selectPageHeader.setValue(result.getResultSize());
 
-								updatePanels(filterApplied, result.getResultSize());
+								if (result.isResultSizeExact())
+								{
+									updatePanels(filterApplied, result.getResultSize());
 
-								table.setRowCount(pagination.getResultSize(), true);
+									table.setRowCount(pagination.getResultSize(), true);
+								}
+								else
+								{
+									updatePanelsForLowerBound(result.getResultSize());
+								}
 								/* Show debug information */
 
 								/* Update table */
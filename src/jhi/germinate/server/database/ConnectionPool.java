@@ -0,0 +1,532 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.database;
+
+import java.nio.charset.*;
+import java.security.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.enums.*;
+
+/**
+ * {@link ConnectionPool} is a bounded pool of JDBC {@link Connection}s to a single database and user. {@link Database#connect(Database.DatabaseType,
+ * String, String, String)} borrows a {@link Connection} from the pool and {@link Database#close()} returns it.
+ * <p>
+ * At most {@link ServerProperty#GERMINATE_DATABASE_POOL_MAX_SIZE} connections are open at any time, further callers wait up to {@link
+ * ServerProperty#GERMINATE_DATABASE_POOL_MAX_WAIT_SECONDS} for one to be returned. Idle connections are validated before they're handed out
+ * unless they have been used within the last {@link #VALIDATION_INTERVAL_MILLIS} and closed after being idle for {@link
+ * ServerProperty#GERMINATE_DATABASE_POOL_IDLE_TIMEOUT_MINUTES}. Connections that haven't been returned after {@link
+ * ServerProperty#GERMINATE_DATABASE_POOL_LEAK_THRESHOLD_SECONDS} are logged together with the stack trace of the caller that borrowed them.
+ *
+ * @author Sebastian Raubach
+ */
+public class ConnectionPool
+{
+	private static final long VALIDATION_INTERVAL_MILLIS = 500;
+	private static final int  VALIDATION_TIMEOUT_SECONDS = 5;
+	private static final long MAINTENANCE_SECONDS        = 30;
+
+	private static final Map<String, ConnectionPool> POOLS       = new ConcurrentHashMap<>();
+	private static final ScheduledExecutorService    MAINTENANCE = Executors.newSingleThreadScheduledExecutor(r ->
+	{
+		Thread thread = new Thread(r, "ConnectionPool");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static
+	{
+		MAINTENANCE.scheduleAtFixedRate(() -> POOLS.values().forEach(ConnectionPool::maintain), MAINTENANCE_SECONDS, MAINTENANCE_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Opens new {@link Connection}s for the pool
+	 */
+	public interface ConnectionFactory
+	{
+		Connection create() throws SQLException;
+	}
+
+	private final String            name;
+	private final ConnectionFactory factory;
+	private final int               maxSize;
+	private final long              maxWaitMillis;
+	private final long              idleTimeoutMillis;
+	private final long              leakThresholdMillis;
+
+	/** Idle connections, the most recently returned one first */
+	private final Deque<IdleConnection>  idle   = new ArrayDeque<>();
+	private final Map<Connection, Lease> leased = new IdentityHashMap<>();
+	/** The number of open connections including the ones that are currently being opened */
+	private       int                    total  = 0;
+	private       boolean                closed = false;
+
+	private final AtomicLong borrowed           = new AtomicLong();
+	private final AtomicLong created            = new AtomicLong();
+	private final AtomicLong destroyed          = new AtomicLong();
+	private final AtomicLong validationFailures = new AtomicLong();
+	private final AtomicLong timeouts           = new AtomicLong();
+	private final AtomicLong leaks              = new AtomicLong();
+	private final AtomicLong totalWaitNanos     = new AtomicLong();
+	private final AtomicLong maxWaitNanos       = new AtomicLong();
+
+	/**
+	 * Creates a new {@link ConnectionPool}
+	 *
+	 * @param name                A name used in log messages
+	 * @param factory             The {@link ConnectionFactory} that opens new connections
+	 * @param maxSize             The maximal number of open connections
+	 * @param maxWaitMillis       The maximal time to wait for a connection
+	 * @param idleTimeoutMillis   The time after which idle connections are closed
+	 * @param leakThresholdMillis The time after which a borrowed connection is reported as leaked, <code>0</code> to disable leak detection
+	 */
+	public ConnectionPool(String name, ConnectionFactory factory, int maxSize, long maxWaitMillis, long idleTimeoutMillis, long leakThresholdMillis)
+	{
+		this.name = name;
+		this.factory = factory;
+		this.maxSize = Math.max(1, maxSize);
+		this.maxWaitMillis = Math.max(0, maxWaitMillis);
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.leakThresholdMillis = leakThresholdMillis;
+	}
+
+	/**
+	 * Returns <code>true</code> if connections should be pooled
+	 *
+	 * @return <code>true</code> if connections should be pooled
+	 */
+	public static boolean isEnabled()
+	{
+		Integer size = PropertyWatcher.getInteger(ServerProperty.GERMINATE_DATABASE_POOL_MAX_SIZE);
+		return size != null && size > 0;
+	}
+
+	/**
+	 * Returns the {@link ConnectionPool} for the given database url and credentials. The pool is created with the current settings when it is
+	 * first requested.
+	 *
+	 * @param url      The JDBC url
+	 * @param username The username
+	 * @param password The password
+	 * @return The {@link ConnectionPool}
+	 */
+	public static ConnectionPool get(String url, String username, String password)
+	{
+		return POOLS.computeIfAbsent(getKey(url, username, password), k -> new ConnectionPool(username + "@" + url, () -> DriverManager.getConnection(url, username, password),
+				getInteger(ServerProperty.GERMINATE_DATABASE_POOL_MAX_SIZE),
+				TimeUnit.SECONDS.toMillis(getInteger(ServerProperty.GERMINATE_DATABASE_POOL_MAX_WAIT_SECONDS)),
+				TimeUnit.MINUTES.toMillis(getInteger(ServerProperty.GERMINATE_DATABASE_POOL_IDLE_TIMEOUT_MINUTES)),
+				TimeUnit.SECONDS.toMillis(getInteger(ServerProperty.GERMINATE_DATABASE_POOL_LEAK_THRESHOLD_SECONDS))));
+	}
+
+	/**
+	 * Returns the key of the pool for the given database url and credentials. A changed password gets a new pool, but the password itself isn't
+	 * kept in the key.
+	 */
+	private static String getKey(String url, String username, String password)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(Objects.toString(password).getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder builder = new StringBuilder(url).append('\u0000').append(username).append('\u0000');
+			for (byte b : digest.digest())
+				builder.append(String.format("%02x", b));
+
+			return builder.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static int getInteger(ServerProperty property)
+	{
+		Integer value = PropertyWatcher.getInteger(property);
+		return value == null ? Integer.parseInt(property.getDefaultValue()) : value;
+	}
+
+	/**
+	 * Borrows a {@link Connection} from the pool. Idle connections are reused if they're still valid, otherwise a new connection is opened as
+	 * long as the pool isn't full. If it is, this waits for another connection to be returned.
+	 *
+	 * @return The {@link Connection}. Return it using {@link #release(Connection)}.
+	 * @throws SQLException Thrown if opening a connection fails, the pool has been closed or no connection became available in time
+	 */
+	public Connection borrow() throws SQLException
+	{
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+		while (true)
+		{
+			IdleConnection candidate = null;
+
+			synchronized (this)
+			{
+				while (candidate == null)
+				{
+					if (closed)
+						throw new SQLException("The connection pool has been closed: " + name);
+
+					if (!idle.isEmpty())
+					{
+						candidate = idle.pollFirst();
+					}
+					else if (total < maxSize)
+					{
+						total++;
+						break;
+					}
+					else
+					{
+						long remaining = deadline - System.nanoTime();
+						if (remaining <= 0)
+						{
+							timeouts.incrementAndGet();
+							throw new SQLTransientConnectionException("Timed out after " + maxWaitMillis + " ms waiting for a database connection: " + this);
+						}
+
+						try
+						{
+							TimeUnit.NANOSECONDS.timedWait(this, remaining);
+						}
+						catch (InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+							throw new SQLException("Interrupted while waiting for a database connection", e);
+						}
+					}
+				}
+			}
+
+			if (candidate == null)
+			{
+				// There's room for a new connection
+				Connection connection;
+				try
+				{
+					connection = factory.create();
+				}
+				catch (SQLException | RuntimeException e)
+				{
+					synchronized (this)
+					{
+						total--;
+						notifyAll();
+					}
+					throw e;
+				}
+
+				created.incrementAndGet();
+				return lease(connection, start);
+			}
+			else if (isValid(candidate))
+			{
+				return lease(candidate.connection, start);
+			}
+			else
+			{
+				validationFailures.incrementAndGet();
+				destroy(candidate.connection);
+			}
+		}
+	}
+
+	private boolean isValid(IdleConnection candidate)
+	{
+		// Connections that have been used a moment ago don't need another round trip
+		if (System.currentTimeMillis() - candidate.since < VALIDATION_INTERVAL_MILLIS)
+			return true;
+
+		try
+		{
+			return candidate.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+		}
+		catch (SQLException e)
+		{
+			return false;
+		}
+	}
+
+	private Connection lease(Connection connection, long start)
+	{
+		long wait = System.nanoTime() - start;
+		borrowed.incrementAndGet();
+		totalWaitNanos.addAndGet(wait);
+		maxWaitNanos.accumulateAndGet(wait, Math::max);
+
+		// Only remember who borrowed the connection if anybody is going to look at it
+		Throwable caller = leakThresholdMillis > 0 ? new Throwable("Connection borrowed by thread '" + Thread.currentThread().getName() + "'") : null;
+
+		synchronized (this)
+		{
+			leased.put(connection, new Lease(caller));
+		}
+
+		return connection;
+	}
+
+	/**
+	 * Returns a borrowed {@link Connection} to the pool. Open transactions are rolled back and the auto-commit mode is restored. Broken
+	 * connections are closed instead. Releasing a connection more than once has no effect.
+	 *
+	 * @param connection The {@link Connection}
+	 */
+	public void release(Connection connection)
+	{
+		Lease lease;
+		synchronized (this)
+		{
+			lease = leased.remove(connection);
+		}
+
+		if (lease == null)
+			return;
+
+		if (lease.reported)
+			Logger.getLogger("").log(Level.INFO, "Previously reported database connection returned after " + (System.currentTimeMillis() - lease.since) + " ms: " + name);
+
+		boolean reusable;
+		try
+		{
+			reusable = !connection.isClosed();
+
+			if (reusable)
+			{
+				if (!connection.getAutoCommit())
+				{
+					connection.rollback();
+					connection.setAutoCommit(true);
+				}
+				connection.clearWarnings();
+			}
+		}
+		catch (SQLException e)
+		{
+			reusable = false;
+		}
+
+		synchronized (this)
+		{
+			if (reusable && !closed)
+			{
+				idle.addFirst(new IdleConnection(connection));
+				notifyAll();
+				return;
+			}
+		}
+
+		destroy(connection);
+	}
+
+	private void destroy(Connection connection)
+	{
+		try
+		{
+			connection.close();
+		}
+		catch (SQLException e)
+		{
+			/* Do nothing here! */
+		}
+
+		destroyed.incrementAndGet();
+
+		synchronized (this)
+		{
+			total--;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Closes connections that have been idle for too long and reports connections that haven't been returned
+	 */
+	void maintain()
+	{
+		long now = System.currentTimeMillis();
+		List<Connection> expired = new ArrayList<>();
+		List<Lease> leaked = new ArrayList<>();
+
+		synchronized (this)
+		{
+			// The oldest idle connections are at the end
+			while (!idle.isEmpty() && now - idle.peekLast().since > idleTimeoutMillis)
+				expired.add(idle.pollLast().connection);
+
+			if (leakThresholdMillis > 0)
+			{
+				for (Lease lease : leased.values())
+				{
+					if (!lease.reported && now - lease.since > leakThresholdMillis)
+					{
+						lease.reported = true;
+						leaked.add(lease);
+					}
+				}
+			}
+		}
+
+		expired.forEach(this::destroy);
+
+		for (Lease lease : leaked)
+		{
+			leaks.incrementAndGet();
+			Logger.getLogger("").log(Level.WARNING, "Database connection not returned after " + (now - lease.since) + " ms: " + name, lease.caller);
+		}
+	}
+
+	/**
+	 * Closes all idle connections and rejects further requests. Borrowed connections are closed when they're returned.
+	 */
+	public void close()
+	{
+		List<IdleConnection> toClose;
+		synchronized (this)
+		{
+			closed = true;
+			toClose = new ArrayList<>(idle);
+			idle.clear();
+			notifyAll();
+		}
+
+		toClose.forEach(c -> destroy(c.connection));
+	}
+
+	/**
+	 * Closes all pools
+	 */
+	public static void shutdown()
+	{
+		MAINTENANCE.shutdownNow();
+
+		POOLS.values().forEach(pool ->
+		{
+			Logger.getLogger("").log(Level.INFO, "Closing " + pool);
+			pool.close();
+		});
+		POOLS.clear();
+	}
+
+	public synchronized int getActive()
+	{
+		return leased.size();
+	}
+
+	public synchronized int getIdle()
+	{
+		return idle.size();
+	}
+
+	public long getBorrowed()
+	{
+		return borrowed.get();
+	}
+
+	public long getTimeouts()
+	{
+		return timeouts.get();
+	}
+
+	public long getLeaks()
+	{
+		return leaks.get();
+	}
+
+	public double getAverageWaitMillis()
+	{
+		long count = borrowed.get();
+		return count == 0 ? 0 : totalWaitNanos.get() / (count * 1_000_000d);
+	}
+
+	public double getMaxWaitMillis()
+	{
+		return maxWaitNanos.get() / 1_000_000d;
+	}
+
+	/**
+	 * Returns a short summary of all pools
+	 *
+	 * @return A short summary of all pools
+	 */
+	public static String getSummary()
+	{
+		StringBuilder builder = new StringBuilder();
+		for (ConnectionPool pool : POOLS.values())
+			builder.append(pool).append('\n');
+		return builder.toString();
+	}
+
+	@Override
+	public String toString()
+	{
+		int active;
+		int idleCount;
+		synchronized (this)
+		{
+			active = leased.size();
+			idleCount = idle.size();
+		}
+
+		return "ConnectionPool{" +
+				"name='" + name.replaceAll("\\?.*", "") + '\'' +
+				", maxSize=" + maxSize +
+				", active=" + active +
+				", idle=" + idleCount +
+				", borrowed=" + borrowed.get() +
+				", created=" + created.get() +
+				", destroyed=" + destroyed.get() +
+				", validationFailures=" + validationFailures.get() +
+				", timeouts=" + timeouts.get() +
+				", leaks=" + leaks.get() +
+				", averageWaitMillis=" + String.format("%.3f", getAverageWaitMillis()) +
+				", maxWaitMillis=" + String.format("%.3f", getMaxWaitMillis()) +
+				'}';
+	}
+
+	private static class IdleConnection
+	{
+		private final Connection connection;
+		private final long       since = System.currentTimeMillis();
+
+		IdleConnection(Connection connection)
+		{
+			this.connection = connection;
+		}
+	}
+
+	private static class Lease
+	{
+		private final Throwable caller;
+		private final long      since    = System.currentTimeMillis();
+		private       boolean   reported = false;
+
+		Lease(Throwable caller)
+		{
+			this.caller = caller;
+		}
+	}
+}
@@ -19,6 +19,7 @@ package jhi.germinate.server.database;
 
 import java.sql.*;
 import java.util.*;
+import java.util.regex.*;
 
 import jhi.germinate.server.util.*;
 import jhi.germinate.server.watcher.*;
@@ -34,16 +35,25 @@ import jhi.germinate.shared.exception.*;
  */
 public final class Database
 {
-	private static DatabaseType type = DatabaseType.MYSQL;
-	private static String       server;
-	private static String       database;
-	private static String       port;
-	private static String       username;
-	private static String       password;
-	private        Connection   connection;
+	private static DatabaseType    type = DatabaseType.MYSQL;
+	private static String          server;
+	private static String          database;
+	private static String          port;
+	private static String          username;
+	private static String          password;
+	private        Connection      connection;
+	private        ConnectionPool  pool;
+	private        boolean         replica    = false;
+	/** The statements created by this instance, they're closed before the connection is returned to the pool */
+	private final  List<Statement> statements = new ArrayList<>();
 
 	private static String utc = TimeZone.getDefault().getID();
 
+	/** Lets the driver keep the prepared statements of each connection, keyed by their SQL */
+	private static final String  STATEMENT_CACHE_PARAMETERS = "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=%d&prepStmtCacheSqlLimit=8192";
+	/** The statements that may generate keys */
+	private static final Pattern GENERATES_KEYS             = Pattern.compile("\\s*(INSERT|REPLACE|UPDATE)\\b", Pattern.CASE_INSENSITIVE);
+
 	/* Initialize the stored procedures and views */
 	public static void initialize()
 	{
@@ -98,7 +108,8 @@ public final class Database
 	}
 
 	/**
-	 * Connects to the given MySQL database with specified credentials
+	 * Connects to the given MySQL database with specified credentials. The connection is borrowed from the {@link ConnectionPool} for this
+	 * database unless pooling has been disabled.
 	 *
 	 * @param type     The {@link DatabaseType}
 	 * @param dbPath   The location of the database
@@ -117,7 +128,23 @@ public final class Database
 		{
 			Class.forName(type.classForName).newInstance();
 			String url = type.getUrl(dbPath);
-			database.connection = DriverManager.getConnection(url, username, password);
+
+			if (ConnectionPool.isEnabled())
+			{
+				/* Pooled connections live long enough to reuse their prepared statements */
+				Integer statementCacheSize = PropertyWatcher.getInteger(ServerProperty.GERMINATE_DATABASE_STATEMENT_CACHE_SIZE);
+				if (statementCacheSize == null)
+					statementCacheSize = Integer.parseInt(ServerProperty.GERMINATE_DATABASE_STATEMENT_CACHE_SIZE.getDefaultValue());
+				if (statementCacheSize > 0)
+					url += String.format(STATEMENT_CACHE_PARAMETERS, statementCacheSize);
+
+				database.pool = ConnectionPool.get(url, username, password);
+				database.connection = database.pool.borrow();
+			}
+			else
+			{
+				database.connection = DriverManager.getConnection(url, username, password);
+			}
 		}
 		catch (IllegalAccessException | InstantiationException | ClassNotFoundException e)
 		{
@@ -135,7 +162,33 @@ public final class Database
 	}
 
 	/**
-	 * Creates and returns a prepared DatabaseStatement
+	 * Connects to a read replica of the Germinate database. The replica is expected to use the same credentials as the primary and, unless given,
+	 * the same database name.
+	 *
+	 * @param server The server of the replica, optionally followed by its port and database, i.e. &lt;SERVER&gt;[:&lt;PORT&gt;][/&lt;DATABASE&gt;]
+	 * @return The new database object
+	 * @throws DatabaseException Thrown if the interaction with the database fails
+	 */
+	static Database connectToReplica(String server) throws DatabaseException
+	{
+		Database result = connect(type, server.contains("/") ? server : server + "/" + database, username, password);
+		result.replica = true;
+		return result;
+	}
+
+	/**
+	 * Checks if this is a connection to a read replica, which may not have caught up with the latest changes
+	 *
+	 * @return <code>true</code> if this is a connection to a read replica
+	 */
+	public boolean isReplica()
+	{
+		return replica;
+	}
+
+	/**
+	 * Creates and returns a prepared DatabaseStatement. Generated keys are only requested for <code>INSERT</code>, <code>REPLACE</code> and
+	 * <code>UPDATE</code> statements.
 	 *
 	 * @param sql The String representation of the sql query
 	 * @return The Prepared Statement
@@ -146,9 +199,16 @@ public final class Database
 	{
 		try
 		{
-			PreparedStatement stmt = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
-			// stmt.setQueryTimeout(120);
-			return new DatabaseStatement(stmt, this);
+			boolean generatesKeys = GENERATES_KEYS.matcher(sql).lookingAt();
+
+			PreparedStatement stmt;
+			if (generatesKeys)
+				stmt = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
+			else
+				stmt = connection.prepareStatement(sql);
+			statements.add(stmt);
+			QueryDeadline.apply(stmt);
+			return new DatabaseStatement(stmt, this, sql, generatesKeys);
 		}
 		catch (SQLException e)
 		{
@@ -175,14 +235,34 @@ public final class Database
 	}
 
 	/**
-	 * Closes the connection to the database
+	 * Closes the connection to the database or returns it to the {@link ConnectionPool}
 	 */
 	public final void close()
 	{
 		try
 		{
+			for (Statement stmt : statements)
+			{
+				try
+				{
+					/* Cached statements are reused, so don't let them keep streaming */
+					stmt.setFetchSize(0);
+					stmt.close();
+				}
+				catch (SQLException e)
+				{
+					/* Do nothing here! */
+				}
+			}
+			statements.clear();
+
 			if (connection != null)
-				connection.close();
+			{
+				if (pool != null)
+					pool.release(connection);
+				else
+					connection.close();
+			}
 			connection = null;
 		}
 		catch (SQLException e)
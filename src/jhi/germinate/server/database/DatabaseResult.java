@@ -29,9 +29,16 @@ import jhi.germinate.shared.exception.*;
  */
 public final class DatabaseResult
 {
-	private final ResultSet         rs;
-	private       Database          database;
-	private       ResultSetMetaData rsmd;
+	private final ResultSet            rs;
+	private       Database             database;
+	private       ResultSetMetaData    rsmd;
+	/** The resolved column indices by label, <code>-1</code> for labels that aren't part of the result */
+	private final Map<String, Integer> columnIndices = new HashMap<>();
+	/** The {@link QueryStatistics} that count the rows or <code>null</code> */
+	private final QueryStatistics      statistics;
+	/** The current row and the furthest row so far, so that rows read again after {@link #beforeFirst()} aren't counted twice */
+	private       long                 row          = 0;
+	private       long                 maxRow       = 0;
 
 	/**
 	 * Creates a new {@link DatabaseResult} wrapping the given {@link ResultSet} and the {@link Database}.
@@ -40,9 +47,22 @@ public final class DatabaseResult
 	 * @param database The {@link Database} used to create the {@link ResultSet}
 	 */
 	public DatabaseResult(ResultSet rs, Database database) throws DatabaseException
+	{
+		this(rs, database, null);
+	}
+
+	/**
+	 * Creates a new {@link DatabaseResult} wrapping the given {@link ResultSet} and the {@link Database}.
+	 *
+	 * @param rs         The {@link ResultSet} containing the actual data
+	 * @param database   The {@link Database} used to create the {@link ResultSet}
+	 * @param statistics The {@link QueryStatistics} that count the rows or <code>null</code>
+	 */
+	public DatabaseResult(ResultSet rs, Database database, QueryStatistics statistics) throws DatabaseException
 	{
 		this.rs = rs;
 		this.database = database;
+		this.statistics = statistics;
 		try
 		{
 			this.rsmd = rs.getMetaData();
@@ -55,6 +75,45 @@ public final class DatabaseResult
 		}
 	}
 
+	/**
+	 * Returns the index of the column with the given label. The result of {@link ResultSet#findColumn(String)} is remembered, so each label is only
+	 * resolved once per {@link ResultSet} rather than once per row.
+	 *
+	 * @param columnLabel The column label
+	 * @return The index of the column or <code>-1</code> if there is no such column
+	 */
+	private int getColumnIndex(String columnLabel)
+	{
+		Integer index = columnIndices.get(columnLabel);
+
+		if (index == null)
+		{
+			try
+			{
+				index = rs.findColumn(columnLabel);
+			}
+			catch (SQLException e)
+			{
+				index = -1;
+			}
+
+			columnIndices.put(columnLabel, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Checks if the result contains a column with the given label
+	 *
+	 * @param columnLabel The column label
+	 * @return <code>true</code> if the result contains a column with the given label
+	 */
+	public boolean hasColumn(String columnLabel)
+	{
+		return getColumnIndex(columnLabel) != -1;
+	}
+
 	/**
 	 * Moves the cursor forward one row from its current position. A ResultSet cursor is initially positioned before the first row; the first call to
 	 * the method next makes the first row the current row; the second call makes the second row the current row, and so on. When a call to the next
@@ -73,7 +132,17 @@ public final class DatabaseResult
 	{
 		try
 		{
-			return this.rs.next();
+			boolean hasNext = this.rs.next();
+
+			if (hasNext && ++row > maxRow)
+			{
+				maxRow = row;
+
+				if (statistics != null)
+					statistics.addRow();
+			}
+
+			return hasNext;
 		}
 		catch (SQLException e)
 		{
@@ -110,6 +179,27 @@ public final class DatabaseResult
 		}
 	}
 
+	/**
+	 * Moves the cursor back to before the first row, so the rows can be read again. Unlike {@link ResultSet#beforeFirst()}, this doesn't fail if the
+	 * {@link ResultSet} doesn't support it (e.g. streaming result sets), but returns <code>false</code>.
+	 *
+	 * @return <code>true</code> if the cursor has been moved to before the first row
+	 * @see ResultSet#beforeFirst()
+	 */
+	public boolean beforeFirst()
+	{
+		try
+		{
+			this.rs.beforeFirst();
+			row = 0;
+			return true;
+		}
+		catch (SQLException e)
+		{
+			return false;
+		}
+	}
+
 	/**
 	 * Retrieves the value of the designated column in the current row of this {@link DatabaseResult} object as an int in the Java programming
 	 * language.
@@ -122,20 +212,14 @@ public final class DatabaseResult
 	 */
 	public Integer getInt(String columnLabel) throws DatabaseException
 	{
-		try
-		{
-			/* Check if this column exists in the result */
-			this.rs.findColumn(columnLabel);
-		}
-		catch (SQLException e)
-		{
-			/* If not, fail gracefully */
+		/* Check if this column exists in the result, if not, fail gracefully */
+		int columnIndex = getColumnIndex(columnLabel);
+		if (columnIndex == -1)
 			return null;
-		}
 
 		try
 		{
-			int result = this.rs.getInt(columnLabel);
+			int result = this.rs.getInt(columnIndex);
 
 			if (this.rs.wasNull())
 				return null;
@@ -185,20 +269,14 @@ public final class DatabaseResult
 	 */
 	public Long getLong(String columnLabel) throws DatabaseException
 	{
-		try
-		{
-			/* Check if this column exists in the result */
-			this.rs.findColumn(columnLabel);
-		}
-		catch (SQLException e)
-		{
-			/* If not, fail gracefully */
+		/* Check if this column exists in the result, if not, fail gracefully */
+		int columnIndex = getColumnIndex(columnLabel);
+		if (columnIndex == -1)
 			return null;
-		}
 
 		try
 		{
-			Long result = this.rs.getLong(columnLabel);
+			Long result = this.rs.getLong(columnIndex);
 
 			if (this.rs.wasNull())
 				result = null;
@@ -249,20 +327,14 @@ public final class DatabaseResult
 	 */
 	public String getString(String columnLabel) throws DatabaseException
 	{
-		try
-		{
-			/* Check if this column exists in the result */
-			this.rs.findColumn(columnLabel);
-		}
-		catch (SQLException e)
-		{
-			/* If not, fail gracefully */
+		/* Check if this column exists in the result, if not, fail gracefully */
+		int columnIndex = getColumnIndex(columnLabel);
+		if (columnIndex == -1)
 			return null;
-		}
 
 		try
 		{
-			return this.rs.getString(columnLabel);
+			return this.rs.getString(columnIndex);
 		}
 		catch (SQLException e)
 		{
@@ -274,20 +346,14 @@ public final class DatabaseResult
 
 	public java.util.Date getDate(String columnLabel) throws DatabaseException
 	{
-		try
-		{
-			/* Check if this column exists in the result */
-			this.rs.findColumn(columnLabel);
-		}
-		catch (SQLException e)
-		{
-			/* If not, fail gracefully */
+		/* Check if this column exists in the result, if not, fail gracefully */
+		int columnIndex = getColumnIndex(columnLabel);
+		if (columnIndex == -1)
 			return null;
-		}
 
 		try
 		{
-			return this.rs.getDate(columnLabel);
+			return this.rs.getDate(columnIndex);
 		}
 		catch (SQLException e)
 		{
@@ -299,20 +365,14 @@ public final class DatabaseResult
 
 	public java.util.Date getTimestamp(String columnLabel) throws DatabaseException
 	{
-		try
-		{
-			/* Check if this column exists in the result */
-			this.rs.findColumn(columnLabel);
-		}
-		catch (SQLException e)
-		{
-			/* If not, fail gracefully */
+		/* Check if this column exists in the result, if not, fail gracefully */
+		int columnIndex = getColumnIndex(columnLabel);
+		if (columnIndex == -1)
 			return null;
-		}
 
 		try
 		{
-			return this.rs.getTimestamp(columnLabel);
+			return this.rs.getTimestamp(columnIndex);
 		}
 		catch (SQLException e)
 		{
@@ -334,20 +394,14 @@ public final class DatabaseResult
 	 */
 	public Double getDouble(String columnLabel) throws DatabaseException
 	{
-		try
-		{
-			/* Check if this column exists in the result */
-			this.rs.findColumn(columnLabel);
-		}
-		catch (SQLException e)
-		{
-			/* If not, fail gracefully */
+		/* Check if this column exists in the result, if not, fail gracefully */
+		int columnIndex = getColumnIndex(columnLabel);
+		if (columnIndex == -1)
 			return null;
-		}
 
 		try
 		{
-			double result = this.rs.getDouble(columnLabel);
+			double result = this.rs.getDouble(columnIndex);
 
 			if (this.rs.wasNull())
 				return null;
@@ -378,20 +432,14 @@ public final class DatabaseResult
 	 */
 	public Boolean getBoolean(String columnLabel) throws DatabaseException
 	{
-		try
-		{
-			/* Check if this column exists in the result */
-			this.rs.findColumn(columnLabel);
-		}
-		catch (SQLException e)
-		{
-			/* If not, fail gracefully */
+		/* Check if this column exists in the result, if not, fail gracefully */
+		int columnIndex = getColumnIndex(columnLabel);
+		if (columnIndex == -1)
 			return null;
-		}
 
 		try
 		{
-			return this.rs.getBoolean(columnLabel);
+			return this.rs.getBoolean(columnIndex);
 		}
 		catch (SQLException e)
 		{
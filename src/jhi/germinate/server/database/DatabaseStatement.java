@@ -32,6 +32,12 @@ public final class DatabaseStatement
 {
 	private final PreparedStatement stmt;
 	private       Database          database;
+	/** Has the statement been prepared with {@link Statement#RETURN_GENERATED_KEYS}? */
+	private final boolean           generatesKeys;
+	/** The SQL of the statement, used to collect the {@link QueryStatistics} */
+	private final String            sql;
+	/** The values of the parameters in order, <code>null</code> values are represented by {@link NullParameter}s */
+	private final List<Object>      parameters = new ArrayList<>();
 
 	/**
 	 * Creates a new instance of {@link DatabaseStatement} wrapping the {@link PreparedStatement} and the {@link Database}
@@ -40,9 +46,24 @@ public final class DatabaseStatement
 	 * @param database The {@link Database} used to create the {@link PreparedStatement}
 	 */
 	public DatabaseStatement(PreparedStatement stmt, Database database)
+	{
+		this(stmt, database, null, true);
+	}
+
+	/**
+	 * Creates a new instance of {@link DatabaseStatement} wrapping the {@link PreparedStatement} and the {@link Database}
+	 *
+	 * @param stmt          The {@link PreparedStatement} holding the actual handle
+	 * @param database      The {@link Database} used to create the {@link PreparedStatement}
+	 * @param sql           The SQL of the {@link PreparedStatement}
+	 * @param generatesKeys Has the statement been prepared with {@link Statement#RETURN_GENERATED_KEYS}?
+	 */
+	public DatabaseStatement(PreparedStatement stmt, Database database, String sql, boolean generatesKeys)
 	{
 		this.stmt = stmt;
 		this.database = database;
+		this.sql = sql;
+		this.generatesKeys = generatesKeys;
 	}
 
 	/**
@@ -62,6 +83,8 @@ public final class DatabaseStatement
 				stmt.setNull(parameterIndex, Types.INTEGER);
 			else
 				stmt.setInt(parameterIndex, val);
+
+			record(parameterIndex, val == null ? new NullParameter(Types.INTEGER) : val);
 		}
 		catch (SQLException e)
 		{
@@ -87,6 +110,8 @@ public final class DatabaseStatement
 				stmt.setNull(parameterIndex, Types.BIGINT);
 			else
 				stmt.setLong(parameterIndex, val);
+
+			record(parameterIndex, val == null ? new NullParameter(Types.BIGINT) : val);
 		}
 		catch (SQLException e)
 		{
@@ -108,6 +133,8 @@ public final class DatabaseStatement
 		try
 		{
 			stmt.setNull(parameterIndex, type);
+
+			record(parameterIndex, new NullParameter(type));
 		}
 		catch (SQLException e)
 		{
@@ -134,6 +161,8 @@ public final class DatabaseStatement
 				stmt.setNull(parameterIndex, Types.VARCHAR);
 			else
 				stmt.setString(parameterIndex, val);
+
+			record(parameterIndex, val == null ? new NullParameter(Types.VARCHAR) : val);
 		}
 		catch (SQLException e)
 		{
@@ -159,6 +188,8 @@ public final class DatabaseStatement
 				stmt.setNull(parameterIndex, Types.DOUBLE);
 			else
 				stmt.setDouble(parameterIndex, val);
+
+			record(parameterIndex, val == null ? new NullParameter(Types.DOUBLE) : val);
 		}
 		catch (SQLException e)
 		{
@@ -184,6 +215,8 @@ public final class DatabaseStatement
 				stmt.setNull(parameterIndex, Types.DATE);
 			else
 				stmt.setDate(parameterIndex, new java.sql.Date(val.getTime()));
+
+			record(parameterIndex, val == null ? new NullParameter(Types.DATE) : new java.sql.Date(val.getTime()));
 		}
 		catch (SQLException e)
 		{
@@ -200,6 +233,8 @@ public final class DatabaseStatement
 				stmt.setNull(parameterIndex, Types.TIMESTAMP);
 			else
 				stmt.setTimestamp(parameterIndex, new Timestamp(val.getTime()));
+
+			record(parameterIndex, val == null ? new NullParameter(Types.TIMESTAMP) : new Timestamp(val.getTime()));
 		}
 		catch (SQLException e)
 		{
@@ -225,6 +260,8 @@ public final class DatabaseStatement
 				stmt.setNull(parameterIndex, Types.BOOLEAN);
 			else
 				stmt.setBoolean(parameterIndex, val);
+
+			record(parameterIndex, val == null ? new NullParameter(Types.BOOLEAN) : val);
 		}
 		catch (SQLException e)
 		{
@@ -244,7 +281,12 @@ public final class DatabaseStatement
 	{
 		try
 		{
-			return new DatabaseResult(this.stmt.executeQuery(), database);
+			QueryStatistics statistics = QueryStatistics.get(sql);
+			long start = System.nanoTime();
+			ResultSet rs = this.stmt.executeQuery();
+			statistics.record(System.nanoTime() - start, this);
+
+			return new DatabaseResult(rs, database, statistics);
 		}
 		catch (SQLException e)
 		{
@@ -267,17 +309,15 @@ public final class DatabaseStatement
 	{
 		try
 		{
+			QueryStatistics statistics = QueryStatistics.get(sql);
+			long start = System.nanoTime();
 			this.stmt.execute();
+			statistics.record(System.nanoTime() - start, this);
 
-			ResultSet generatedKeys = stmt.getGeneratedKeys();
-			List<Long> ids = new ArrayList<>();
-
-			while (generatedKeys.next())
-			{
-				ids.add(generatedKeys.getLong(1));
-			}
+			// The data may have changed
+			RowCountCache.invalidate();
 
-			return ids;
+			return getGeneratedKeys();
 		}
 		catch (SQLException e)
 		{
@@ -286,22 +326,21 @@ public final class DatabaseStatement
 		}
 	}
 
-	public int getCount()
+	private List<Long> getGeneratedKeys() throws SQLException
 	{
-		int totalCount = 0;
+		List<Long> ids = new ArrayList<>();
 
-		try
-		{
-			ResultSet rs = stmt.executeQuery("SELECT FOUND_ROWS()");
-			if (rs.next())
-				totalCount = rs.getInt(1);
-		}
-		catch (SQLException e)
+		if (!generatesKeys)
+			return ids;
+
+		ResultSet generatedKeys = stmt.getGeneratedKeys();
+
+		while (generatedKeys.next())
 		{
-			e.printStackTrace();
+			ids.add(generatedKeys.getLong(1));
 		}
 
-		return totalCount;
+		return ids;
 	}
 
 	/**
@@ -313,7 +352,7 @@ public final class DatabaseStatement
 	public String getStringRepresentation()
 	{
 		// return stmt.toString();
-		return stmt.toString().replaceAll("^[a-zA-Z0-9\\.]+@[a-zA-Z0-9]{1,8}:\\s", "");
+		return stmt.toString().replaceAll("^[a-zA-Z0-9\\.]+(@[a-zA-Z0-9]{1,8}|\\[[0-9]+\\])?:\\s", "");
 	}
 
 	/**
@@ -354,17 +393,15 @@ public final class DatabaseStatement
 	{
 		try
 		{
+			QueryStatistics statistics = QueryStatistics.get(sql);
+			long start = System.nanoTime();
 			stmt.executeBatch();
+			statistics.record(System.nanoTime() - start, this);
 
-			ResultSet generatedKeys = stmt.getGeneratedKeys();
-			List<Long> ids = new ArrayList<>();
+			// The data may have changed
+			RowCountCache.invalidate();
 
-			while (generatedKeys.next())
-			{
-				ids.add(generatedKeys.getLong(1));
-			}
-
-			return ids;
+			return getGeneratedKeys();
 		}
 		catch (SQLException e)
 		{
@@ -372,4 +409,66 @@ public final class DatabaseStatement
 			throw new DatabaseException(e);
 		}
 	}
+
+	private void record(int parameterIndex, Object value)
+	{
+		while (parameters.size() < parameterIndex)
+			parameters.add(null);
+		parameters.set(parameterIndex - 1, value);
+	}
+
+	/**
+	 * Returns the values of the parameters that have been set so far
+	 *
+	 * @return The values of the parameters in order
+	 */
+	public List<Object> getParameters()
+	{
+		return Collections.unmodifiableList(parameters);
+	}
+
+	/**
+	 * Sets the given parameter values (as returned by {@link #getParameters()}) on another {@link PreparedStatement}
+	 *
+	 * @param stmt       The {@link PreparedStatement}
+	 * @param parameters The parameter values
+	 * @throws SQLException Thrown if setting a parameter fails
+	 */
+	public static void setParameters(PreparedStatement stmt, List<Object> parameters) throws SQLException
+	{
+		for (int i = 0; i < parameters.size(); i++)
+		{
+			Object value = parameters.get(i);
+
+			if (value instanceof NullParameter)
+				stmt.setNull(i + 1, ((NullParameter) value).type);
+			else
+				stmt.setObject(i + 1, value);
+		}
+	}
+
+	/**
+	 * A <code>null</code> parameter of a specific {@link Types}
+	 */
+	private static class NullParameter
+	{
+		private final int type;
+
+		NullParameter(int type)
+		{
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			return o instanceof NullParameter && ((NullParameter) o).type == type;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return type;
+		}
+	}
 }
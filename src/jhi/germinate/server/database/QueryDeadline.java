@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.database;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * {@link QueryDeadline} stops the queries of a task that has run out of time. Interrupting the thread of the task doesn't do this, JDBC calls
+ * aren't interruptible.
+ * <p>
+ * All statements prepared via {@link Database#prepareStatement(String)} by a thread that has {@link #enter()}ed the {@link QueryDeadline} get the
+ * remaining time as their query timeout, so the database server stops them at the deadline. {@link #cancel()} stops them right away.
+ *
+ * @author Sebastian Raubach
+ */
+public class QueryDeadline
+{
+	private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+	/** The deadline in terms of {@link System#nanoTime()} */
+	private final    long           deadline;
+	private final    Set<Statement> statements = ConcurrentHashMap.newKeySet();
+	private volatile boolean        cancelled  = false;
+
+	/**
+	 * Creates a new {@link QueryDeadline}
+	 *
+	 * @param deadline The deadline in terms of {@link System#nanoTime()}
+	 */
+	public QueryDeadline(long deadline)
+	{
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Applies this {@link QueryDeadline} to the statements of the current thread until the returned {@link Scope} is closed
+	 *
+	 * @return The {@link Scope} to close when the task is done
+	 */
+	public Scope enter()
+	{
+		CURRENT.set(this);
+		return new Scope();
+	}
+
+	/**
+	 * Stops all running queries of this {@link QueryDeadline}. Queries that are started afterwards fail straight away.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+
+		for (Statement stmt : statements)
+		{
+			try
+			{
+				stmt.cancel();
+			}
+			catch (SQLException e)
+			{
+				/* The statement has been closed in the meantime */
+			}
+		}
+
+		statements.clear();
+	}
+
+	/**
+	 * Applies the {@link QueryDeadline} of the current thread to the given statement. Without one, the statement doesn't time out.
+	 *
+	 * @param stmt The {@link Statement}
+	 * @throws SQLException Thrown if the deadline has passed or the {@link QueryDeadline} has been cancelled
+	 */
+	static void apply(Statement stmt) throws SQLException
+	{
+		QueryDeadline current = CURRENT.get();
+
+		if (current == null)
+		{
+			/* Pooled connections reuse their prepared statements, don't keep the timeout of a previous deadline */
+			stmt.setQueryTimeout(0);
+			return;
+		}
+
+		long remaining = current.deadline - System.nanoTime();
+
+		if (current.cancelled || remaining <= 0)
+			throw new SQLTimeoutException("The query has run out of time");
+
+		/* The timeout is in whole seconds, round up so it doesn't end before the deadline */
+		stmt.setQueryTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1)));
+		current.statements.add(stmt);
+
+		/* It may have been cancelled while the statement was added */
+		if (current.cancelled)
+			stmt.cancel();
+	}
+
+	/**
+	 * {@link Scope} ends the {@link QueryDeadline} of the current thread when it's closed
+	 */
+	public static class Scope implements AutoCloseable
+	{
+		private Scope()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+			CURRENT.remove();
+		}
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.database;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+import java.util.regex.*;
+import java.util.stream.*;
+
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.enums.*;
+
+/**
+ * {@link QueryStatistics} collects the execution times and the number of returned rows of each SQL statement. The times are kept in a {@link
+ * Histogram} with logarithmic buckets, so percentiles can be reported without keeping every single value. Executions that take longer than {@link
+ * ServerProperty#GERMINATE_DATABASE_SLOW_QUERY_MILLIS} are logged with their bound parameters and the calling method.
+ * <p>
+ * Walking the stack is expensive, so the methods running a statement are only sampled: the first execution and every {@link
+ * #CALLER_SAMPLE_INTERVAL}th one after that record their caller, up to {@link #MAX_CALLERS} per statement.
+ * <p>
+ * The statistics are reported by {@link jhi.germinate.server.service.QueryStatisticsServlet}.
+ *
+ * @author Sebastian Raubach
+ */
+public class QueryStatistics
+{
+	/** The maximal number of distinct statements, any further ones are collected under {@link #OTHER} */
+	private static final int    MAX_ENTRIES            = 1000;
+	/** The maximal number of statements as passed to {@link #get(String)}, which skips normalizing them again */
+	private static final int    MAX_RAW_ENTRIES        = 5000;
+	private static final int    CALLER_SAMPLE_INTERVAL = 100;
+	private static final int    MAX_CALLERS            = 5;
+	private static final String OTHER                  = "<other>";
+
+	/** Placeholder lists like <code>IN (?,?,?)</code> only differ in their length, so they're collapsed */
+	private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+	private static final Pattern WHITESPACE       = Pattern.compile("\\s+");
+
+	private static final Map<String, QueryStatistics> STATISTICS = new ConcurrentHashMap<>();
+	private static final Map<String, QueryStatistics> RAW        = new ConcurrentHashMap<>();
+
+	private final String      sql;
+	private final Set<String> callers   = ConcurrentHashMap.newKeySet();
+	private final AtomicLong  calls     = new AtomicLong();
+	private final Histogram   histogram = new Histogram();
+	private final LongAdder   rows      = new LongAdder();
+
+	private QueryStatistics(String sql)
+	{
+		this.sql = sql;
+	}
+
+	/**
+	 * Returns the {@link QueryStatistics} of the given SQL statement
+	 *
+	 * @param sql The SQL statement with its placeholders
+	 * @return The {@link QueryStatistics}
+	 */
+	public static QueryStatistics get(String sql)
+	{
+		QueryStatistics result = sql == null ? null : RAW.get(sql);
+
+		if (result == null)
+		{
+			String normalized = sql == null ? OTHER : WHITESPACE.matcher(PLACEHOLDER_LIST.matcher(sql).replaceAll("?, ...")).replaceAll(" ").trim();
+
+			result = STATISTICS.get(normalized);
+
+			if (result == null)
+			{
+				if (STATISTICS.size() >= MAX_ENTRIES)
+					normalized = OTHER;
+
+				result = STATISTICS.computeIfAbsent(normalized, QueryStatistics::new);
+			}
+
+			if (sql != null && RAW.size() < MAX_RAW_ENTRIES)
+				RAW.put(sql, result);
+		}
+
+		if (result.calls.getAndIncrement() % CALLER_SAMPLE_INTERVAL == 0 && result.callers.size() < MAX_CALLERS)
+			result.callers.add(findCaller());
+
+		return result;
+	}
+
+	/**
+	 * Returns the first method outside of the database layer, usually a method of a manager
+	 */
+	private static String findCaller()
+	{
+		for (StackTraceElement element : new Throwable().getStackTrace())
+		{
+			String className = element.getClassName();
+
+			if (className.startsWith("jhi.germinate.") && !className.startsWith(Database.class.getPackage().getName()))
+				return className.substring(className.lastIndexOf('.') + 1) + "." + element.getMethodName();
+		}
+
+		return OTHER;
+	}
+
+	/**
+	 * Records an execution of the statement. Call it on the thread that ran the statement, so that slow executions are logged with their caller.
+	 *
+	 * @param nanos     The execution time in nano seconds
+	 * @param statement The {@link DatabaseStatement} that has been executed. It's only used to log slow executions.
+	 */
+	public void record(long nanos, DatabaseStatement statement)
+	{
+		histogram.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+
+		Integer threshold = PropertyWatcher.getInteger(ServerProperty.GERMINATE_DATABASE_SLOW_QUERY_MILLIS);
+		if (threshold == null)
+			threshold = Integer.parseInt(ServerProperty.GERMINATE_DATABASE_SLOW_QUERY_MILLIS.getDefaultValue());
+
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		if (threshold > 0 && millis >= threshold)
+			Logger.getLogger("").log(Level.WARNING, "Slow query in " + findCaller() + " (" + millis + " ms): " + (statement == null ? sql : statement.getStringRepresentation()));
+	}
+
+	/**
+	 * Records that a row of the result has been read
+	 */
+	public void addRow()
+	{
+		rows.increment();
+	}
+
+	public String getSql()
+	{
+		return sql;
+	}
+
+	/**
+	 * Returns the sampled methods that ran this statement
+	 *
+	 * @return The sampled methods that ran this statement, separated by commas
+	 */
+	public String getCaller()
+	{
+		return callers.stream()
+					  .sorted()
+					  .collect(Collectors.joining(", "));
+	}
+
+	public Histogram getHistogram()
+	{
+		return histogram;
+	}
+
+	public long getRows()
+	{
+		return rows.sum();
+	}
+
+	/**
+	 * Returns the statements with the highest total execution time
+	 *
+	 * @param limit The maximal number of statements to return
+	 * @return The statements with the highest total execution time
+	 */
+	public static List<QueryStatistics> getTop(int limit)
+	{
+		return STATISTICS.values()
+						 .stream()
+						 .sorted(Comparator.comparingLong((QueryStatistics s) -> s.histogram.getTotal()).reversed())
+						 .limit(Math.max(0, limit))
+						 .collect(Collectors.toList());
+	}
+
+	/**
+	 * Removes all collected statistics
+	 */
+	public static void reset()
+	{
+		STATISTICS.clear();
+		RAW.clear();
+	}
+
+	/**
+	 * A {@link Histogram} counts values in buckets whose width grows with the value. Each power of two is split into {@link #SUB_BUCKETS} buckets,
+	 * so the relative error of the reported percentiles is below 1/{@link #SUB_BUCKETS}.
+	 */
+	public static class Histogram
+	{
+		private static final int SUB_BUCKET_BITS = 4;
+		private static final int SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+
+		private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+		private final LongAdder       count  = new LongAdder();
+		private final LongAdder       total  = new LongAdder();
+		private final AtomicLong      max    = new AtomicLong();
+
+		/**
+		 * Records the given value
+		 *
+		 * @param value The value, negative values are recorded as <code>0</code>
+		 */
+		public void record(long value)
+		{
+			value = Math.max(0, value);
+
+			counts.incrementAndGet(getIndex(value));
+			count.increment();
+			total.add(value);
+			max.accumulateAndGet(value, Math::max);
+		}
+
+		private static int getIndex(long value)
+		{
+			if (value < SUB_BUCKETS)
+				return (int) value;
+
+			// The position of the highest bit decides the bucket, the next bits the sub-bucket
+			int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+			return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+		}
+
+		private static long getUpperBound(int index)
+		{
+			if (index < SUB_BUCKETS)
+				return index;
+
+			int shift = index / SUB_BUCKETS - 1;
+			long lower = ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) << shift;
+			return lower + (1L << shift) - 1;
+		}
+
+		public long getCount()
+		{
+			return count.sum();
+		}
+
+		public long getTotal()
+		{
+			return total.sum();
+		}
+
+		public long getMax()
+		{
+			return max.get();
+		}
+
+		public double getMean()
+		{
+			long c = getCount();
+			return c == 0 ? 0 : getTotal() / (double) c;
+		}
+
+		/**
+		 * Returns the value below which the given percentage of the recorded values fall
+		 *
+		 * @param percentile The percentile between <code>0</code> and <code>100</code>
+		 * @return The value below which the given percentage of the recorded values fall
+		 */
+		public long getPercentile(double percentile)
+		{
+			long c = getCount();
+
+			if (c == 0)
+				return 0;
+
+			long target = Math.max(1, (long) Math.ceil(c * percentile / 100d));
+			long seen = 0;
+
+			for (int i = 0; i < counts.length(); i++)
+			{
+				seen += counts.get(i);
+
+				if (seen >= target)
+					return Math.min(getUpperBound(i), getMax());
+			}
+
+			return getMax();
+		}
+	}
+}
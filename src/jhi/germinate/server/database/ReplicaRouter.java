@@ -0,0 +1,396 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.database;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+import java.util.regex.*;
+import java.util.stream.*;
+
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * {@link ReplicaRouter} sends read-only queries to the read replicas of the Germinate database listed in {@link
+ * ServerProperty#GERMINATE_DATABASE_REPLICAS}. Everything else, i.e. all writes, all queries of the data importers and all queries that lock rows,
+ * goes to the primary database.
+ * <p>
+ * The replicas are checked every {@link #HEALTH_CHECK_SECONDS}. A replica that can't be reached, whose replication has stopped or that lags more
+ * than {@link ServerProperty#GERMINATE_DATABASE_REPLICA_MAX_LAG_SECONDS} behind the primary isn't used until it has caught up again. A replica
+ * whose lag can't be determined (it isn't configured as a replica or the user lacks <code>REPLICATION CLIENT</code>) isn't used either, unless
+ * {@link ServerProperty#GERMINATE_DATABASE_REPLICA_ASSUME_NO_LAG} is set. If no replica is available, the primary is used.
+ * <p>
+ * After a user has written to the database, all of their queries go to the primary for {@link ServerProperty#GERMINATE_DATABASE_REPLICA_STICKY_SECONDS},
+ * so they can read their own changes (e.g. the members of a group they've just added) even if the replicas haven't caught up yet. Caches that are
+ * shared by all users reload their data within {@link #usePrimaryAfterChange(long)} for the same reason.
+ *
+ * @author Sebastian Raubach
+ */
+public class ReplicaRouter
+{
+	private static final long HEALTH_CHECK_SECONDS         = 10;
+	private static final int  HEALTH_CHECK_TIMEOUT_SECONDS = 5;
+
+	/** Queries that don't change data, unless they lock the rows they read */
+	private static final Pattern READ_ONLY = Pattern.compile("\\s*\\(?\\s*SELECT\\b", Pattern.CASE_INSENSITIVE);
+	private static final Pattern LOCKING   = Pattern.compile("\\bFOR\\s+UPDATE\\b|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b|\\bINTO\\s+(OUTFILE|DUMPFILE)\\b", Pattern.CASE_INSENSITIVE);
+
+	/** Users without an id share this key, i.e. one anonymous write pins all anonymous users to the primary */
+	private static final Long ANONYMOUS = -1L;
+
+	private static final Map<String, Replica> REPLICAS     = new ConcurrentHashMap<>();
+	private static final Map<Long, Long>      PINNED_UNTIL = new ConcurrentHashMap<>();
+	private static final AtomicInteger        NEXT         = new AtomicInteger();
+
+	/** The number of open {@link PrimaryScope}s of the current thread */
+	private static final ThreadLocal<Integer> PRIMARY_SCOPES = ThreadLocal.withInitial(() -> 0);
+
+	private static final AtomicLong REPLICA_READS = new AtomicLong();
+	private static final AtomicLong PRIMARY_READS = new AtomicLong();
+	private static final AtomicLong FALLBACKS     = new AtomicLong();
+
+	private static final ScheduledExecutorService HEALTH_CHECK = Executors.newSingleThreadScheduledExecutor(r ->
+	{
+		Thread thread = new Thread(r, "ReplicaRouter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static
+	{
+		HEALTH_CHECK.scheduleWithFixedDelay(ReplicaRouter::checkReplicas, 0, HEALTH_CHECK_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Connects to the database that should run the given query for the given user
+	 *
+	 * @param sql      The SQL query
+	 * @param userAuth The {@link UserAuth} of the user running the query, may be <code>null</code>
+	 * @return The connected {@link Database}
+	 * @throws DatabaseException Thrown if the interaction with the database fails
+	 */
+	public static Database connect(String sql, UserAuth userAuth) throws DatabaseException
+	{
+		if (REPLICAS.isEmpty() || !isReadOnly(sql))
+			return Database.connect();
+
+		if (isPinned(userAuth) || PRIMARY_SCOPES.get() > 0)
+		{
+			PRIMARY_READS.incrementAndGet();
+			return Database.connect();
+		}
+
+		List<Replica> available = REPLICAS.values()
+										  .stream()
+										  .filter(Replica::isAvailable)
+										  .collect(Collectors.toList());
+
+		if (!available.isEmpty())
+		{
+			Replica replica = available.get(Math.floorMod(NEXT.getAndIncrement(), available.size()));
+
+			try
+			{
+				Database database = Database.connectToReplica(replica.server);
+				REPLICA_READS.incrementAndGet();
+				return database;
+			}
+			catch (DatabaseException e)
+			{
+				/* Don't try this replica again before the next health check says it's fine */
+				replica.healthy = false;
+				Logger.getLogger("").log(Level.WARNING, "Replica " + replica.server + " is unavailable, falling back to the primary: " + e.getLocalizedMessage());
+			}
+		}
+
+		FALLBACKS.incrementAndGet();
+		return Database.connect();
+	}
+
+	/**
+	 * Checks if the given query only reads data and can be run on a replica
+	 *
+	 * @param sql The SQL query
+	 * @return <code>true</code> if the given query only reads data
+	 */
+	static boolean isReadOnly(String sql)
+	{
+		return !StringUtils.isEmpty(sql) && READ_ONLY.matcher(sql).lookingAt() && !LOCKING.matcher(sql).find();
+	}
+
+	/**
+	 * Sends all queries of the given user to the primary for the next {@link ServerProperty#GERMINATE_DATABASE_REPLICA_STICKY_SECONDS}. Call this
+	 * after the user has changed data.
+	 *
+	 * @param userAuth The {@link UserAuth} of the user, may be <code>null</code>
+	 */
+	public static void pin(UserAuth userAuth)
+	{
+		if (REPLICAS.isEmpty())
+			return;
+
+		long until = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(getInteger(ServerProperty.GERMINATE_DATABASE_REPLICA_STICKY_SECONDS));
+		PINNED_UNTIL.merge(getKey(userAuth), until, Math::max);
+	}
+
+	/**
+	 * Sends all queries of the current thread to the primary until the returned {@link PrimaryScope} is closed if the data has changed within the
+	 * last {@link ServerProperty#GERMINATE_DATABASE_REPLICA_STICKY_SECONDS}. Use this when reloading a cache after it has been invalidated, so it
+	 * doesn't cache what a replica that hasn't caught up yet returns.
+	 *
+	 * @param changed The time of the last change in milliseconds, <code>0</code> if it hasn't changed
+	 * @return The {@link PrimaryScope} to close once the data has been loaded
+	 */
+	public static PrimaryScope usePrimaryAfterChange(long changed)
+	{
+		return new PrimaryScope(isRecentChange(changed));
+	}
+
+	/**
+	 * Checks if the given time of a change lies within the last {@link ServerProperty#GERMINATE_DATABASE_REPLICA_STICKY_SECONDS}, i.e. if the
+	 * replicas may not have caught up with the change yet
+	 *
+	 * @param changed The time of the change in milliseconds, <code>0</code> if it hasn't changed
+	 * @return <code>true</code> if the replicas may not have caught up with the change yet
+	 */
+	public static boolean isRecentChange(long changed)
+	{
+		if (REPLICAS.isEmpty() || changed <= 0)
+			return false;
+
+		return changed + TimeUnit.SECONDS.toMillis(getInteger(ServerProperty.GERMINATE_DATABASE_REPLICA_STICKY_SECONDS)) > System.currentTimeMillis();
+	}
+
+	private static boolean isPinned(UserAuth userAuth)
+	{
+		Long until = PINNED_UNTIL.get(getKey(userAuth));
+		return until != null && until > System.currentTimeMillis();
+	}
+
+	private static Long getKey(UserAuth userAuth)
+	{
+		return (userAuth == null || userAuth.getId() == null) ? ANONYMOUS : userAuth.getId();
+	}
+
+	/**
+	 * Updates the list of replicas from {@link ServerProperty#GERMINATE_DATABASE_REPLICAS} and checks the health and lag of each of them. This runs
+	 * every {@link #HEALTH_CHECK_SECONDS}, call it to apply changes right away.
+	 */
+	public static void checkReplicas()
+	{
+		try
+		{
+			Set<String> servers = new HashSet<>();
+			String property = PropertyWatcher.get(ServerProperty.GERMINATE_DATABASE_REPLICAS);
+			if (!StringUtils.isEmpty(property))
+			{
+				for (String server : property.split(","))
+				{
+					if (!StringUtils.isEmpty(server.trim()))
+						servers.add(server.trim());
+				}
+			}
+
+			REPLICAS.keySet().retainAll(servers);
+			servers.forEach(server -> REPLICAS.computeIfAbsent(server, Replica::new));
+
+			REPLICAS.values().forEach(Replica::check);
+
+			long now = System.currentTimeMillis();
+			PINNED_UNTIL.values().removeIf(until -> until <= now);
+		}
+		catch (Exception e)
+		{
+			/* Keep the health check running */
+			Logger.getLogger("").log(Level.WARNING, "Checking the database replicas failed", e);
+		}
+	}
+
+	/**
+	 * Stops the health check. Call this when the application terminates.
+	 */
+	public static void shutdown()
+	{
+		HEALTH_CHECK.shutdownNow();
+		REPLICAS.clear();
+	}
+
+	/**
+	 * Returns a human readable summary of the replicas for monitoring
+	 *
+	 * @return A human readable summary of the replicas
+	 */
+	public static String getSummary()
+	{
+		StringBuilder builder = new StringBuilder();
+
+		builder.append("ReplicaRouter{replicaReads=")
+			   .append(REPLICA_READS.get())
+			   .append(", primaryReads=")
+			   .append(PRIMARY_READS.get())
+			   .append(", fallbacks=")
+			   .append(FALLBACKS.get())
+			   .append(", pinnedUsers=")
+			   .append(PINNED_UNTIL.size())
+			   .append("}\n");
+
+		for (Replica replica : REPLICAS.values())
+			builder.append(replica).append("\n");
+
+		return builder.toString();
+	}
+
+	private static int getInteger(ServerProperty property)
+	{
+		Integer value = PropertyWatcher.getInteger(property);
+		return value == null ? Integer.parseInt(property.getDefaultValue()) : value;
+	}
+
+	/**
+	 * {@link PrimaryScope} sends all queries of the thread that opened it to the primary until it's closed
+	 */
+	public static class PrimaryScope implements AutoCloseable
+	{
+		private boolean open;
+
+		private PrimaryScope(boolean open)
+		{
+			this.open = open;
+
+			if (open)
+				PRIMARY_SCOPES.set(PRIMARY_SCOPES.get() + 1);
+		}
+
+		@Override
+		public void close()
+		{
+			if (!open)
+				return;
+
+			open = false;
+
+			int scopes = PRIMARY_SCOPES.get() - 1;
+			if (scopes <= 0)
+				PRIMARY_SCOPES.remove();
+			else
+				PRIMARY_SCOPES.set(scopes);
+		}
+	}
+
+	private static class Replica
+	{
+		private final    String  server;
+		private volatile boolean healthy = false;
+		/** The lag in seconds, <code>null</code> if replication has stopped or the lag is unknown */
+		private volatile Long    lag     = null;
+
+		private Replica(String server)
+		{
+			this.server = server;
+		}
+
+		private boolean isAvailable()
+		{
+			return healthy && lag != null && lag <= getInteger(ServerProperty.GERMINATE_DATABASE_REPLICA_MAX_LAG_SECONDS);
+		}
+
+		private void check()
+		{
+			Database database = null;
+			try
+			{
+				database = Database.connectToReplica(server);
+
+				try (Statement stmt = database.getConnection().createStatement())
+				{
+					stmt.setQueryTimeout(HEALTH_CHECK_TIMEOUT_SECONDS);
+
+					Long newLag;
+					try (ResultSet rs = stmt.executeQuery("SHOW SLAVE STATUS"))
+					{
+						if (rs.next())
+						{
+							/* NULL if the replication threads aren't running */
+							long seconds = rs.getLong("Seconds_Behind_Master");
+							newLag = rs.wasNull() ? null : seconds;
+						}
+						else
+						{
+							/* Not configured as a replica, e.g. a copy of the database that is kept up-to-date by other means */
+							newLag = getUnknownLag("it isn't configured as a replica");
+						}
+					}
+					catch (SQLException e)
+					{
+						/* The user isn't allowed to see the replication status (REPLICATION CLIENT) */
+						newLag = getUnknownLag(e.getLocalizedMessage());
+					}
+
+					lag = newLag;
+				}
+
+				if (!healthy)
+					Logger.getLogger("").log(Level.INFO, "Replica " + server + " is available");
+				healthy = true;
+			}
+			catch (DatabaseException | SQLException e)
+			{
+				if (healthy)
+					Logger.getLogger("").log(Level.WARNING, "Replica " + server + " is unavailable: " + e.getLocalizedMessage());
+				healthy = false;
+			}
+			finally
+			{
+				if (database != null)
+					database.close();
+			}
+		}
+
+		/**
+		 * Returns the lag to use if it can't be determined: none if {@link ServerProperty#GERMINATE_DATABASE_REPLICA_ASSUME_NO_LAG} is set,
+		 * otherwise <code>null</code>, so the replica isn't used
+		 */
+		private Long getUnknownLag(String reason)
+		{
+			boolean assumeNoLag = PropertyWatcher.getBoolean(ServerProperty.GERMINATE_DATABASE_REPLICA_ASSUME_NO_LAG);
+
+			/* Only log when the state changes */
+			if (!healthy || (lag != null) != assumeNoLag)
+				Logger.getLogger("").log(assumeNoLag ? Level.INFO : Level.WARNING, "Unable to determine the lag of replica " + server + " (" + reason + "), " + (assumeNoLag ? "assuming it doesn't lag" : "it won't be used"));
+
+			return assumeNoLag ? 0L : null;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Replica{" +
+					"server='" + server + '\'' +
+					", healthy=" + healthy +
+					", lag=" + lag +
+					", available=" + isAvailable() +
+					'}';
+		}
+	}
+}
@@ -0,0 +1,551 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.database;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import java.util.regex.*;
+
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * {@link RowCountCache} returns the total number of rows of paginated queries. It replaces <code>SQL_CALC_FOUND_ROWS</code> and
+ * <code>FOUND_ROWS()</code>, which make MySQL read the whole result for every page.
+ * <p>
+ * The query is turned into a separate <code>SELECT COUNT(*)</code> without the trailing <code>LIMIT ?, ?</code>, the <code>ORDER BY</code> and,
+ * where possible, the selected columns. Results are cached for {@link ServerProperty#GERMINATE_DATABASE_COUNT_CACHE_MINUTES} keyed on the
+ * count query, its parameters and the user, because the user's dataset permissions are part of many queries. If counting takes longer than
+ * {@link ServerProperty#GERMINATE_DATABASE_COUNT_TIMEOUT_SECONDS}, the estimate of <code>EXPLAIN</code> is returned instead and the exact count is
+ * calculated in the background. If there is no estimate, the count is unknown until the background count has finished and callers fall back to
+ * {@link #getLowerBound(String, DatabaseStatement, int)}. Estimates are returned as inexact {@link Count}s and aren't cached, so the exact count is
+ * picked up as soon as it's known. Any write through a {@link DatabaseStatement} clears the cache. Until the replicas have
+ * caught up with the write (see {@link ReplicaRouter#isRecentChange(long)}), rows are counted on the primary.
+ *
+ * @author Sebastian Raubach
+ */
+public class RowCountCache
+{
+	private static final int MAX_ENTRIES = 10000;
+
+	private static final Pattern LIMIT = Pattern.compile("\\s+LIMIT\\s+\\?\\s*,\\s*\\?\\s*$", Pattern.CASE_INSENSITIVE);
+
+	private static final Map<Key, Entry> CACHE = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+		{
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private static final Set<Key>          PENDING    = ConcurrentHashMap.newKeySet();
+	/** The estimates of the counts running in the background */
+	private static final Map<Key, Integer> ESTIMATES  = new ConcurrentHashMap<>();
+	private static final ExecutorService   BACKGROUND = Executors.newSingleThreadExecutor(r ->
+	{
+		Thread thread = new Thread(r, "RowCountCache");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Incremented on every invalidation so that counts started before it aren't cached */
+	private static long generation = 0;
+	/** The time of the last invalidation in milliseconds */
+	private static long invalidated = 0;
+
+	/**
+	 * Returns the total number of rows of the given paginated query
+	 *
+	 * @param database The {@link Database} that ran the query. It's used for counting unless it's a replica that may not have caught up with the
+	 *                 last change, and stays open.
+	 * @param query    The SQL query
+	 * @param stmt     The {@link DatabaseStatement} of the query with all its parameters set
+	 * @param userAuth The user running the query
+	 * @return The total number of rows, possibly an inexact estimate for very large results, or <code>null</code> if it's still being counted
+	 * @throws DatabaseException Thrown if the interaction with the database fails
+	 */
+	public static Count getCount(Database database, String query, DatabaseStatement stmt, UserAuth userAuth) throws DatabaseException
+	{
+		List<Object> parameters = stmt.getParameters();
+
+		// Drop the pagination and its two parameters
+		Matcher matcher = LIMIT.matcher(query);
+		if (matcher.find())
+		{
+			query = query.substring(0, matcher.start());
+			parameters = parameters.subList(0, Math.max(0, parameters.size() - 2));
+		}
+
+		CountQuery countQuery = new CountQuery(query);
+		Key key = new Key(countQuery.sql, parameters, userAuth == null ? null : userAuth.getId());
+
+		long currentGeneration;
+		long lastInvalidation;
+		synchronized (CACHE)
+		{
+			Entry entry = CACHE.get(key);
+			if (entry != null && !entry.isExpired())
+				return new Count(entry.count, true);
+			currentGeneration = generation;
+			lastInvalidation = invalidated;
+		}
+
+		// Don't wait for the timeout again while the count is running in the background
+		if (PENDING.contains(key))
+		{
+			Integer estimate = ESTIMATES.get(key);
+			return estimate == null ? null : new Count(estimate, false);
+		}
+
+		long start = System.currentTimeMillis();
+		int timeout = getInteger(ServerProperty.GERMINATE_DATABASE_COUNT_TIMEOUT_SECONDS);
+
+		// Don't cache the count of a replica that hasn't caught up yet
+		Database counting = (database.isReplica() && ReplicaRouter.isRecentChange(lastInvalidation)) ? Database.connect() : database;
+
+		try
+		{
+			try
+			{
+				int count = countQuery.count(counting.getConnection(), parameters, timeout);
+				put(key, count, currentGeneration);
+				return new Count(count, true);
+			}
+			catch (SQLTimeoutException e)
+			{
+				Integer estimate = countQuery.estimate(counting.getConnection(), parameters);
+
+				if (estimate == null)
+				{
+					Logger.getLogger("").log(Level.INFO, "Counting took longer than " + timeout + " s and there is no estimate, counting in the background");
+
+					countInBackground(countQuery, key, parameters);
+					return null;
+				}
+
+				Logger.getLogger("").log(Level.INFO, "Counting took longer than " + timeout + " s, using estimate of " + estimate + " rows and counting in the background");
+
+				ESTIMATES.put(key, estimate);
+				countInBackground(countQuery, key, parameters);
+				return new Count(estimate, false);
+			}
+		}
+		catch (SQLException e)
+		{
+			throw new DatabaseException(e);
+		}
+		finally
+		{
+			if (counting != database)
+				counting.close();
+
+			long duration = System.currentTimeMillis() - start;
+			if (duration > 1000)
+				Logger.getLogger("").log(Level.INFO, "Counting rows took " + duration + " ms: " + countQuery.sql);
+		}
+	}
+
+	/**
+	 * Returns the number of rows known to exist when the total is still unknown: the rows up to and including the given page plus one if the page
+	 * is full, so that the next page can be requested
+	 *
+	 * @param query The SQL query
+	 * @param stmt  The {@link DatabaseStatement} of the query with all its parameters set
+	 * @param rows  The number of rows of the current page
+	 * @return The number of rows known to exist
+	 */
+	public static int getLowerBound(String query, DatabaseStatement stmt, int rows)
+	{
+		List<Object> parameters = stmt.getParameters();
+
+		if (!LIMIT.matcher(query).find() || parameters.size() < 2 || !(parameters.get(parameters.size() - 2) instanceof Number) || !(parameters.get(parameters.size() - 1) instanceof Number))
+			return rows;
+
+		long start = ((Number) parameters.get(parameters.size() - 2)).longValue();
+		long length = ((Number) parameters.get(parameters.size() - 1)).longValue();
+
+		return (int) Math.min(Integer.MAX_VALUE, start + rows + (rows >= length ? 1 : 0));
+	}
+
+	private static void countInBackground(CountQuery countQuery, Key key, List<Object> parameters)
+	{
+		if (!PENDING.add(key))
+			return;
+
+		long currentGeneration;
+		synchronized (CACHE)
+		{
+			currentGeneration = generation;
+		}
+
+		// Copy the parameters, the statement they came from will be closed
+		List<Object> copy = new ArrayList<>(parameters);
+
+		BACKGROUND.submit(() ->
+		{
+			Database database = null;
+			try
+			{
+				database = Database.connect();
+				put(key, countQuery.count(database.getConnection(), copy, 0), currentGeneration);
+			}
+			catch (Exception e)
+			{
+				Logger.getLogger("").log(Level.WARNING, "Counting rows in the background failed: " + e.getMessage());
+			}
+			finally
+			{
+				if (database != null)
+					database.close();
+				ESTIMATES.remove(key);
+				PENDING.remove(key);
+			}
+		});
+	}
+
+	private static void put(Key key, int count, long fromGeneration)
+	{
+		long ttl = TimeUnit.MINUTES.toMillis(getInteger(ServerProperty.GERMINATE_DATABASE_COUNT_CACHE_MINUTES));
+
+		synchronized (CACHE)
+		{
+			// Don't cache counts that started before the data changed
+			if (ttl > 0 && fromGeneration == generation)
+				CACHE.put(key, new Entry(count, System.currentTimeMillis() + ttl));
+		}
+	}
+
+	/**
+	 * Removes all cached counts. Call this whenever the data changes.
+	 */
+	public static void invalidate()
+	{
+		synchronized (CACHE)
+		{
+			generation++;
+			invalidated = System.currentTimeMillis();
+			CACHE.clear();
+		}
+	}
+
+	private static int getInteger(ServerProperty property)
+	{
+		Integer value = PropertyWatcher.getInteger(property);
+		return value == null ? Integer.parseInt(property.getDefaultValue()) : value;
+	}
+
+	/**
+	 * Stops counting in the background
+	 */
+	public static void shutdown()
+	{
+		BACKGROUND.shutdownNow();
+	}
+
+	/**
+	 * The <code>COUNT(*)</code> version of a query
+	 */
+	private static class CountQuery
+	{
+		/** Counts the rows of the query with only its <code>FROM</code> part, which avoids duplicate column names and unused sub-queries */
+		private final String sql;
+		/** Counts the rows of the whole query, used if the query depends on its selected columns */
+		private final String fallbackSql;
+		/** The query without the selected columns, used for the estimate */
+		private final String explainSql;
+
+		CountQuery(String query)
+		{
+			SqlScanner scanner = new SqlScanner(query);
+
+			int select = scanner.find("SELECT", 0);
+			int from = select == -1 ? -1 : scanner.find("FROM", select);
+			int orderBy = scanner.findLast("ORDER BY");
+
+			// Removing parts with placeholders would shift the parameters
+			if (orderBy != -1 && scanner.hasPlaceholder(orderBy, query.length()))
+				orderBy = -1;
+
+			String withoutOrder = orderBy == -1 ? query : query.substring(0, orderBy);
+			fallbackSql = "SELECT COUNT(*) FROM (" + withoutOrder + ") AS `count_query`";
+
+			// DISTINCT, HAVING and UNION depend on the selected columns
+			boolean needsColumns = select == -1 || from == -1 || scanner.hasPlaceholder(select, from) || scanner.startsWith("DISTINCT", scanner.skipWhitespace(select + 6)) || scanner.find("HAVING", from) != -1 || scanner.find("UNION", 0) != -1;
+
+			if (needsColumns)
+			{
+				sql = fallbackSql;
+				explainSql = withoutOrder;
+			}
+			else
+			{
+				explainSql = query.substring(0, select) + "SELECT 1 " + withoutOrder.substring(from);
+				sql = "SELECT COUNT(*) FROM (" + explainSql + ") AS `count_query`";
+			}
+		}
+
+		int count(Connection connection, List<Object> parameters, int timeout) throws SQLException
+		{
+			try
+			{
+				return count(connection, sql, parameters, timeout);
+			}
+			catch (SQLSyntaxErrorException e)
+			{
+				if (Objects.equals(sql, fallbackSql))
+					throw e;
+
+				// Most likely an alias of the selected columns is used in the GROUP BY
+				return count(connection, fallbackSql, parameters, timeout);
+			}
+		}
+
+		private static int count(Connection connection, String sql, List<Object> parameters, int timeout) throws SQLException
+		{
+			try (PreparedStatement stmt = connection.prepareStatement(sql))
+			{
+				DatabaseStatement.setParameters(stmt, parameters);
+				stmt.setQueryTimeout(timeout);
+
+				QueryStatistics statistics = QueryStatistics.get(sql);
+				long start = System.nanoTime();
+
+				try (ResultSet rs = stmt.executeQuery())
+				{
+					return rs.next() ? rs.getInt(1) : 0;
+				}
+				finally
+				{
+					statistics.record(System.nanoTime() - start, null);
+				}
+			}
+		}
+
+		/**
+		 * Returns the number of rows MySQL expects to read from the first table of the query or <code>null</code> if there is no estimate
+		 */
+		Integer estimate(Connection connection, List<Object> parameters)
+		{
+			try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN " + explainSql))
+			{
+				DatabaseStatement.setParameters(stmt, parameters);
+
+				try (ResultSet rs = stmt.executeQuery())
+				{
+					if (!rs.next())
+						return null;
+
+					double rows = rs.getDouble("rows");
+					double filtered = 100;
+					try
+					{
+						filtered = rs.getDouble("filtered");
+					}
+					catch (SQLException e)
+					{
+						/* Older versions of MySQL don't have this column */
+					}
+
+					return (int) Math.min(Integer.MAX_VALUE, Math.round(rows * filtered / 100d));
+				}
+			}
+			catch (SQLException e)
+			{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Finds SQL keywords outside of brackets, quotes and comments
+	 */
+	private static class SqlScanner
+	{
+		private final String    query;
+		private final boolean[] topLevel;
+		private final boolean[] quoted;
+
+		SqlScanner(String query)
+		{
+			this.query = query;
+			this.topLevel = new boolean[query.length()];
+			this.quoted = new boolean[query.length()];
+
+			int depth = 0;
+			char quote = 0;
+			for (int i = 0; i < query.length(); i++)
+			{
+				char c = query.charAt(i);
+
+				if (quote != 0)
+				{
+					quoted[i] = true;
+					if (c == '\\' && quote != '`' && i + 1 < query.length())
+						quoted[++i] = true;
+					else if (c == quote)
+						quote = 0;
+					continue;
+				}
+
+				if (c == '\'' || c == '"' || c == '`')
+					quote = c;
+				else if (c == '(')
+					depth++;
+				else if (c == ')')
+					depth--;
+				else if (depth == 0)
+					topLevel[i] = true;
+			}
+		}
+
+		int find(String keyword, int from)
+		{
+			for (int i = Math.max(0, from); i < query.length(); i++)
+			{
+				if (startsWith(keyword, i))
+					return i;
+			}
+			return -1;
+		}
+
+		int findLast(String keyword)
+		{
+			for (int i = query.length() - 1; i >= 0; i--)
+			{
+				if (startsWith(keyword, i))
+					return i;
+			}
+			return -1;
+		}
+
+		boolean hasPlaceholder(int from, int to)
+		{
+			for (int i = from; i < to; i++)
+			{
+				if (query.charAt(i) == '?' && !quoted[i])
+					return true;
+			}
+			return false;
+		}
+
+		int skipWhitespace(int at)
+		{
+			while (at < query.length() && Character.isWhitespace(query.charAt(at)))
+				at++;
+			return at;
+		}
+
+		boolean startsWith(String keyword, int at)
+		{
+			int end = at + keyword.length();
+			if (at >= query.length() || end > query.length() || !topLevel[at] || !query.regionMatches(true, at, keyword, 0, keyword.length()))
+				return false;
+
+			// Make sure it's a whole word
+			return (at == 0 || !isWordCharacter(query.charAt(at - 1))) && (end == query.length() || !isWordCharacter(query.charAt(end)));
+		}
+
+		private static boolean isWordCharacter(char c)
+		{
+			return Character.isLetterOrDigit(c) || c == '_';
+		}
+	}
+
+	private static class Key
+	{
+		private final String       sql;
+		private final List<Object> parameters;
+		private final Long         userId;
+
+		Key(String sql, List<Object> parameters, Long userId)
+		{
+			this.sql = sql;
+			this.parameters = new ArrayList<>(parameters);
+			this.userId = userId;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return Objects.equals(sql, key.sql) &&
+					Objects.equals(parameters, key.parameters) &&
+					Objects.equals(userId, key.userId);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(sql, parameters, userId);
+		}
+	}
+
+	/**
+	 * The number of rows of a query and whether it has been counted exactly
+	 */
+	public static class Count
+	{
+		private final int     value;
+		private final boolean exact;
+
+		Count(int value, boolean exact)
+		{
+			this.value = value;
+			this.exact = exact;
+		}
+
+		public int getValue()
+		{
+			return value;
+		}
+
+		/**
+		 * Returns <code>false</code> if the value is the estimate of <code>EXPLAIN</code> because counting took too long
+		 *
+		 * @return <code>false</code> if the value is an estimate
+		 */
+		public boolean isExact()
+		{
+			return exact;
+		}
+	}
+
+	private static class Entry
+	{
+		private final int  count;
+		private final long expires;
+
+		Entry(int count, long expires)
+		{
+			this.count = count;
+			this.expires = expires;
+		}
+
+		boolean isExpired()
+		{
+			return System.currentTimeMillis() > expires;
+		}
+	}
+}
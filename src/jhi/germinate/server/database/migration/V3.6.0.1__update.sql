@@ -0,0 +1,116 @@
+/**************************************************/
+/*              GERMINATE 3                       */
+/*              MIGRATION SCRIPT                  */
+/*              v3.6.0 -> v3.6.0.1                */
+/**************************************************/
+/* One row per individual synonym, so that synonyms can be searched with an index instead of parsing the json arrays of all rows */
+/* Store the full synonyms in lower case with a binary collation, which is how JSON_SEARCH(LOWER(`synonyms`), ...) used to compare them */
+/* Only the index is limited to the first 255 characters, MySQL checks the full value of the rows it finds */
+DROP TABLE IF EXISTS `synonymlookups`;
+CREATE TABLE `synonymlookups`
+(
+    `id`             INT(11)                  NOT NULL AUTO_INCREMENT COMMENT 'Primary id for this table. This uniquely identifies the row.',
+    `synonym_id`     INT(11)                  NOT NULL COMMENT 'Foreign key to synonyms (synonyms.id).',
+    `foreign_id`     INT(11)                  NOT NULL COMMENT 'Foreign key to target table (l[targettable].id).',
+    `synonymtype_id` INT(11)                  NOT NULL COMMENT 'Foreign key to synonymtypes (synonymtypes.id).',
+    `synonym`        TEXT CHARACTER
+        SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT 'A single synonym of the json array in synonyms.synonyms in lower case.',
+    PRIMARY KEY (`id`) USING BTREE,
+    INDEX `synonymlookups_synonym` (`synonym`(255), `synonymtype_id`, `foreign_id`, `synonym_id`) USING BTREE,
+    INDEX `synonymlookups_synonym_id` (`synonym_id`) USING BTREE,
+    CONSTRAINT `synonymlookups_ibfk_synonyms` FOREIGN KEY (`synonym_id`) REFERENCES `synonyms` (`id`) ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE = INNODB
+  AUTO_INCREMENT = 1
+  CHARACTER
+      SET = utf8mb4
+  COLLATE = utf8mb4_bin
+  COMMENT = 'Contains the individual synonyms of the synonyms table in lower case. Kept in sync by the triggers on synonyms.'
+  ROW_FORMAT = Dynamic;
+
+/* Writes the lookup rows of a single row of synonyms */
+DROP PROCEDURE IF EXISTS write_synonymlookups;
+
+DELIMITER //
+
+CREATE PROCEDURE write_synonymlookups(IN synonym_id INT, IN foreign_id INT, IN synonymtype_id INT, IN synonyms JSON)
+
+BEGIN
+
+    DECLARE position INT DEFAULT 0;
+
+    IF JSON_TYPE(synonyms) = 'ARRAY' THEN
+        WHILE position < JSON_LENGTH(synonyms) DO
+            IF JSON_TYPE(JSON_EXTRACT(synonyms, CONCAT('$[', position, ']'))) <> 'NULL' THEN
+                INSERT INTO `synonymlookups` (`synonym_id`, `foreign_id`, `synonymtype_id`, `synonym`)
+                VALUES (synonym_id, foreign_id, synonymtype_id, LOWER(JSON_UNQUOTE(JSON_EXTRACT(synonyms, CONCAT('$[', position, ']')))));
+            END IF;
+
+            SET position = position + 1;
+        END WHILE;
+    END IF;
+
+END;
+//
+
+DELIMITER ;
+
+/* Keep the lookup rows in sync with every change, including those that bypass Germinate. Rows of deleted synonyms are removed by the foreign key. */
+DROP TRIGGER IF EXISTS `synonyms_insert_lookups`;
+DROP TRIGGER IF EXISTS `synonyms_update_lookups`;
+
+DELIMITER //
+
+CREATE TRIGGER `synonyms_insert_lookups` AFTER INSERT ON `synonyms` FOR EACH ROW
+BEGIN
+
+    CALL write_synonymlookups(NEW.`id`, NEW.`foreign_id`, NEW.`synonymtype_id`, NEW.`synonyms`);
+
+END;
+//
+
+CREATE TRIGGER `synonyms_update_lookups` AFTER UPDATE ON `synonyms` FOR EACH ROW
+BEGIN
+
+    DELETE FROM `synonymlookups` WHERE `synonymlookups`.`synonym_id` = OLD.`id`;
+    CALL write_synonymlookups(NEW.`id`, NEW.`foreign_id`, NEW.`synonymtype_id`, NEW.`synonyms`);
+
+END;
+//
+
+DELIMITER ;
+
+/* Fill the new table from the existing arrays */
+DROP PROCEDURE IF EXISTS fill_synonymlookups;
+
+DELIMITER //
+
+CREATE PROCEDURE fill_synonymlookups()
+
+BEGIN
+
+    DECLARE position INT DEFAULT 0;
+    DECLARE max_length INT DEFAULT 0;
+
+    SELECT IFNULL(MAX(JSON_LENGTH(`synonyms`)), 0) INTO max_length
+    FROM `synonyms`
+    WHERE JSON_TYPE(`synonyms`) = 'ARRAY';
+
+    WHILE position < max_length DO
+        INSERT INTO `synonymlookups` (`synonym_id`, `foreign_id`, `synonymtype_id`, `synonym`)
+        SELECT `id`, `foreign_id`, `synonymtype_id`, LOWER(JSON_UNQUOTE(JSON_EXTRACT(`synonyms`, CONCAT('$[', position, ']'))))
+        FROM `synonyms`
+        WHERE JSON_TYPE(`synonyms`) = 'ARRAY'
+          AND JSON_LENGTH(`synonyms`) > position
+          AND JSON_TYPE(JSON_EXTRACT(`synonyms`, CONCAT('$[', position, ']'))) <> 'NULL';
+
+        SET position = position + 1;
+    END WHILE;
+
+END;
+//
+
+DELIMITER ;
+
+call fill_synonymlookups();
+
+DROP PROCEDURE fill_synonymlookups;
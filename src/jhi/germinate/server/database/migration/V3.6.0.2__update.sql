@@ -0,0 +1,35 @@
+/**************************************************/
+/*              GERMINATE 3                       */
+/*              MIGRATION SCRIPT                  */
+/*              v3.6.0.1 -> v3.6.0.2              */
+/**************************************************/
+/* Store the coordinates of each location as a spatial point, so that polygon and distance queries can use a spatial index instead of creating a point for every row */
+/* Spatial indexes require a NOT NULL column, locations without coordinates are stored at (0, 0) and have to be excluded via latitude/longitude IS NOT NULL */
+/* MySQL 8 only uses spatial indexes on columns with an SRID attribute, which MySQL 5.7 doesn't support */
+DROP PROCEDURE IF EXISTS add_locations_point;
+
+DELIMITER //
+
+CREATE PROCEDURE add_locations_point()
+
+BEGIN
+
+    IF NOT EXISTS(SELECT 1 FROM `information_schema`.`COLUMNS` WHERE `TABLE_SCHEMA` = DATABASE() AND `TABLE_NAME` = 'locations' AND `COLUMN_NAME` = 'point') THEN
+        SET @add_point = CONCAT('ALTER TABLE `locations` ADD COLUMN `point` POINT ',
+                                IF(VERSION() LIKE '5.%', '', 'SRID 0 '),
+                                'GENERATED ALWAYS AS (POINT(IFNULL(`longitude`, 0), IFNULL(`latitude`, 0))) STORED NOT NULL COMMENT ''The coordinates of the location as a spatial point (longitude, latitude). Maintained by the database.'' AFTER `longitude`, ',
+                                'ADD SPATIAL INDEX `locations_point` (`point`)');
+
+        PREPARE stmt FROM @add_point;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END IF;
+
+END;
+//
+
+DELIMITER ;
+
+call add_locations_point();
+
+DROP PROCEDURE add_locations_point;
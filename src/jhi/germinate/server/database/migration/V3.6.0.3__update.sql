@@ -0,0 +1,34 @@
+/**************************************************/
+/*              GERMINATE 3                       */
+/*              MIGRATION SCRIPT                  */
+/*              v3.6.0.2 -> v3.6.0.3              */
+/**************************************************/
+/* Searches answered from the search index also check the rows updated since its last refresh, index updated_on of the indexed tables for this */
+DROP PROCEDURE IF EXISTS add_updated_on_index;
+
+DELIMITER //
+
+CREATE PROCEDURE add_updated_on_index(IN table_name VARCHAR(64))
+
+BEGIN
+
+    IF NOT EXISTS(SELECT 1 FROM `information_schema`.`STATISTICS` WHERE `TABLE_SCHEMA` = DATABASE() AND `TABLE_NAME` = table_name AND `INDEX_NAME` = CONCAT(table_name, '_updated_on')) THEN
+        SET @add_index = CONCAT('ALTER TABLE `', table_name, '` ADD INDEX `', table_name, '_updated_on` (`updated_on`) USING BTREE');
+
+        PREPARE stmt FROM @add_index;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END IF;
+
+END;
+//
+
+DELIMITER ;
+
+call add_updated_on_index('germinatebase');
+call add_updated_on_index('synonyms');
+call add_updated_on_index('markers');
+call add_updated_on_index('locations');
+call add_updated_on_index('attributedata');
+
+DROP PROCEDURE add_updated_on_index;
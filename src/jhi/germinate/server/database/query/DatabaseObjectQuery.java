@@ -30,9 +30,8 @@ import jhi.germinate.shared.exception.*;
  */
 public class DatabaseObjectQuery<T extends DatabaseObject> extends GerminateQuery<DatabaseObjectQuery<T>>
 {
-	private static final String CALC_ROWS = "SELECT SQL_CALC_FOUND_ROWS ";
-
-	private Integer previousCount = -1;
+	private Integer          previousCount = -1;
+	private KeysetPagination keyset        = null;
 
 	public DatabaseObjectQuery(String query, UserAuth userAuth)
 	{
@@ -48,7 +47,7 @@ public class DatabaseObjectQuery<T extends DatabaseObject> extends GerminateQuer
 	public ExecutedDatabaseObjectQuery run() throws DatabaseException
 	{
 		init();
-		return new ExecutedDatabaseObjectQuery(database, stmt, previousCount);
+		return new ExecutedDatabaseObjectQuery(database, stmt, previousCount, keyset);
 	}
 
 	public DatabaseObjectStreamer<T> getStreamer(DatabaseObjectParser<T> parser, UserAuth user, boolean foreignKeysFromResult) throws DatabaseException
@@ -57,18 +56,32 @@ public class DatabaseObjectQuery<T extends DatabaseObject> extends GerminateQuer
 		return new DatabaseObjectStreamer<>(database, sqlDebug, stmt, parser, user, foreignKeysFromResult);
 	}
 
+	/**
+	 * Sets the total number of results that the client already knows about. If this is <code>null</code>, the total number of results is
+	 * requested from the {@link RowCountCache}.
+	 *
+	 * @param previousCount The previous total number of results or <code>null</code>
+	 * @return this
+	 * @throws DatabaseException Thrown if the interaction with the database fails
+	 */
 	public DatabaseObjectQuery<T> setFetchesCount(Integer previousCount) throws DatabaseException
 	{
 		init();
 		this.previousCount = previousCount;
 
-		if (previousCount == null && !query.contains(CALC_ROWS))
-		{
-			query = query.replaceFirst("SELECT ", CALC_ROWS);
-
-			this.stmt = database.prepareStatement(query);
-		}
+		return this;
+	}
 
+	/**
+	 * Sets the {@link KeysetPagination} used to build this query. {@link ExecutedDatabaseObjectQuery#getObjectsPaginated(DatabaseObjectParser)} will
+	 * then return the {@link PaginationCursor} for the next page.
+	 *
+	 * @param keyset The {@link KeysetPagination}
+	 * @return this
+	 */
+	public DatabaseObjectQuery<T> setKeyset(KeysetPagination keyset)
+	{
+		this.keyset = keyset;
 		return this;
 	}
 
@@ -78,12 +91,19 @@ public class DatabaseObjectQuery<T extends DatabaseObject> extends GerminateQuer
 		private final DatabaseStatement stmt;
 		private final DatabaseResult    rs;
 		private       Integer           previousCount;
+		private       KeysetPagination  keyset;
 
 		public ExecutedDatabaseObjectQuery(Database database, DatabaseStatement stmt, Integer previousCount) throws DatabaseException
+		{
+			this(database, stmt, previousCount, null);
+		}
+
+		public ExecutedDatabaseObjectQuery(Database database, DatabaseStatement stmt, Integer previousCount, KeysetPagination keyset) throws DatabaseException
 		{
 			this.database = database;
 			this.stmt = stmt;
 			this.previousCount = previousCount;
+			this.keyset = keyset;
 			this.rs = stmt.query();
 		}
 
@@ -126,6 +146,7 @@ public class DatabaseObjectQuery<T extends DatabaseObject> extends GerminateQuer
 			List<T> result = null;
 
 			parser.clearCache();
+			parser.prefetch(rs, userAuth, foreignsFromResultSet);
 
 			while (rs.next())
 			{
@@ -151,6 +172,11 @@ public class DatabaseObjectQuery<T extends DatabaseObject> extends GerminateQuer
 			List<T> result = null;
 
 			parser.clearCache();
+			parser.prefetch(rs, userAuth, foreignsFromResultSet);
+
+			int rows = 0;
+			String lastSortValue = null;
+			Long lastId = null;
 
 			while (rs.next())
 			{
@@ -161,14 +187,41 @@ public class DatabaseObjectQuery<T extends DatabaseObject> extends GerminateQuer
 
 				if (object != null)
 					result.add(object);
+
+				rows++;
+
+				/* Remember where this page ends */
+				if (keyset != null)
+				{
+					lastSortValue = keyset.getSortColumn() == null ? null : rs.getString(keyset.getSortColumn());
+					lastId = rs.getLong(keyset.getIdColumn());
+				}
 			}
 
 			parser.clearCache();
 
-			Integer count = previousCount == null ? stmt.getCount() : previousCount;
+			Integer count = previousCount;
+			boolean exact = true;
+
+			if (count == null)
+			{
+				RowCountCache.Count counted = RowCountCache.getCount(database, query, stmt, userAuth);
+				count = counted == null ? null : counted.getValue();
+				exact = counted != null && counted.isExact();
+			}
+
+			/* The count is still running in the background, report the estimate or at least the rows we know of */
+			if (!exact)
+				count = Math.max(count == null ? 0 : count, RowCountCache.getLowerBound(query, stmt, rows));
 
 			database.close();
-			return new PaginatedServerResult<>(sqlDebug, result, count);
+			PaginatedServerResult<List<T>> paginatedResult = new PaginatedServerResult<>(sqlDebug, result, count);
+			paginatedResult.setResultSizeExact(exact);
+
+			if (keyset != null && lastId != null)
+				paginatedResult.setCursor(keyset.createCursor(rows, lastSortValue, lastId));
+
+			return paginatedResult;
 		}
 
 		/**
@@ -79,7 +79,7 @@ public abstract class GerminateQuery<T extends GerminateQuery<?>>
 
 				case DATA:
 				default:
-					database = Database.connect();
+					database = ReplicaRouter.connect(query, userAuth);
 					break;
 			}
 
@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.database.query;
+
+import jhi.germinate.shared.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * {@link KeysetPagination} pages through a query by continuing after the last row of the previous page (<code>WHERE (sort, id) &gt; (?, ?)</code>)
+ * instead of skipping rows with <code>LIMIT offset, length</code>, which gets slower the deeper the page. It's used whenever the {@link Pagination}
+ * carries a {@link PaginationCursor} for the requested page. Otherwise, e.g. if the user jumps to an arbitrary page, goes back or sorts by a
+ * calculated column, it falls back to the offset.
+ * <p>
+ * The query has to contain the result of {@link #getSortQuery()} directly after its <code>WHERE</code> clause and end with <code>LIMIT ?, ?</code>
+ * using {@link #getStart()} as the offset. Rows are always sorted by the id as well, so pages are stable for rows with the same sort value.
+ *
+ * @author Sebastian Raubach
+ */
+public class KeysetPagination
+{
+	private final Pagination       pagination;
+	private final String           idColumn;
+	private final PaginationCursor cursor;
+
+	/**
+	 * Creates a new {@link KeysetPagination}
+	 *
+	 * @param pagination The {@link Pagination}. Make sure to call {@link Pagination#updateSortColumn(String[], String)} first.
+	 * @param idColumn   The fully qualified id column, e.g. <code>germinatebase.id</code>
+	 */
+	public KeysetPagination(Pagination pagination, String idColumn)
+	{
+		this.pagination = pagination;
+		this.idColumn = idColumn;
+
+		PaginationCursor cursor = pagination.getCursor();
+
+		// The count has to be based on the whole result, so there is no cursor if the count is requested
+		if (cursor == null || cursor.getId() == null || pagination.getResultSize() == null || !cursor.matches(pagination) || !isSeekable(pagination.getSortColumn()))
+			this.cursor = null;
+		else
+			this.cursor = cursor;
+	}
+
+	/**
+	 * Only real columns can be used in the <code>WHERE</code> clause, not aliases of calculated ones
+	 */
+	private static boolean isSeekable(String sortColumn)
+	{
+		return StringUtils.isEmpty(sortColumn) || sortColumn.matches("`?[A-Za-z0-9_]+`?\\.`?[A-Za-z0-9_]+`?");
+	}
+
+	/**
+	 * Returns <code>true</code> if the page continues after the {@link PaginationCursor}
+	 *
+	 * @return <code>true</code> if the page continues after the {@link PaginationCursor}
+	 */
+	public boolean isSeeking()
+	{
+		return cursor != null;
+	}
+
+	/**
+	 * Returns the condition of the cursor (if any) starting with <code>AND</code> followed by the <code>ORDER BY</code> clause
+	 *
+	 * @return The condition of the cursor (if any) followed by the <code>ORDER BY</code> clause
+	 */
+	public String getSortQuery()
+	{
+		String sortColumn = pagination.getSortColumn();
+		String direction = pagination.isAscending() ? " ASC" : " DESC";
+
+		StringBuilder builder = new StringBuilder();
+
+		if (cursor != null)
+		{
+			String comparator = pagination.isAscending() ? " > ?" : " < ?";
+
+			if (StringUtils.isEmpty(sortColumn))
+				builder.append(" AND ").append(idColumn).append(comparator);
+			else if (cursor.getSortValue() == null)
+				// NULLs come first in ascending and last in descending order
+				builder.append(" AND ((").append(sortColumn).append(" IS NULL AND ").append(idColumn).append(comparator).append(")").append(pagination.isAscending() ? " OR " + sortColumn + " IS NOT NULL" : "").append(")");
+			else
+				builder.append(" AND (").append(sortColumn).append(comparator).append(" OR (").append(sortColumn).append(" = ? AND ").append(idColumn).append(comparator).append(")").append(pagination.isAscending() ? "" : " OR " + sortColumn + " IS NULL").append(")");
+		}
+
+		if (StringUtils.isEmpty(sortColumn))
+			builder.append(" ORDER BY ").append(idColumn).append(direction).append(" ");
+		else
+			builder.append(" ORDER BY ").append(sortColumn).append(direction).append(", ").append(idColumn).append(direction).append(" ");
+
+		return builder.toString();
+	}
+
+	/**
+	 * Sets the parameters of the condition returned by {@link #getSortQuery()}. Call this after setting the parameters of the <code>WHERE</code>
+	 * clause and before setting the ones of the <code>LIMIT</code>.
+	 *
+	 * @param query The {@link GerminateQuery}
+	 * @throws DatabaseException Thrown if the interaction with the database fails
+	 */
+	public void setParameters(GerminateQuery<?> query) throws DatabaseException
+	{
+		if (cursor == null)
+			return;
+
+		if (!StringUtils.isEmpty(pagination.getSortColumn()) && cursor.getSortValue() != null)
+		{
+			query.setString(cursor.getSortValue());
+			query.setString(cursor.getSortValue());
+		}
+
+		query.setLong(cursor.getId());
+	}
+
+	/**
+	 * Returns the offset of the page, which is <code>0</code> when continuing after the {@link PaginationCursor}
+	 *
+	 * @return The offset of the page
+	 */
+	public int getStart()
+	{
+		return cursor == null ? pagination.getStart() : 0;
+	}
+
+	public Pagination getPagination()
+	{
+		return pagination;
+	}
+
+	String getSortColumn()
+	{
+		return StringUtils.isEmpty(pagination.getSortColumn()) ? null : pagination.getSortColumn().replace("`", "");
+	}
+
+	String getIdColumn()
+	{
+		return idColumn;
+	}
+
+	/**
+	 * Creates the {@link PaginationCursor} for the page following this one
+	 *
+	 * @param rows      The number of rows on this page
+	 * @param sortValue The value of the sort column of the last row
+	 * @param id        The id of the last row
+	 * @return The {@link PaginationCursor}
+	 */
+	PaginationCursor createCursor(int rows, String sortValue, Long id)
+	{
+		return new PaginationCursor(pagination.getStart() + rows, pagination.getSortColumn(), pagination.isAscending(), sortValue, id);
+	}
+}
@@ -20,6 +20,7 @@ package jhi.germinate.server.database.query;
 import java.util.*;
 
 import jhi.germinate.server.database.*;
+import jhi.germinate.server.database.Database.*;
 import jhi.germinate.shared.datastructure.*;
 import jhi.germinate.shared.exception.*;
 
@@ -88,6 +89,10 @@ public class ValueQuery extends GerminateQuery<ValueQuery>
 		sqlDebug.add(stmt.getStringRepresentation());
 		List<Long> ids = stmt.execute();
 
+		/* Let the user read their own changes */
+		if (queryType == QueryType.DATA)
+			ReplicaRouter.pin(userAuth);
+
 		if (closeConnection)
 			database.close();
 
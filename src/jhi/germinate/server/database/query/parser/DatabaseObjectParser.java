@@ -19,6 +19,7 @@ package jhi.germinate.server.database.query.parser;
 
 import java.util.*;
 import java.util.Map;
+import java.util.function.*;
 
 import jhi.germinate.server.database.*;
 import jhi.germinate.server.manager.*;
@@ -35,7 +36,9 @@ import jhi.germinate.shared.exception.*;
 public abstract class DatabaseObjectParser<T extends DatabaseObject>
 {
 	/** Keeps track of all the {@link DatabaseObjectCache}s that have been created by the subclass */
-	private Map<Class, DatabaseObjectCache<? extends DatabaseObject>> caches = new HashMap<>();
+	private Map<Class, DatabaseObjectCache<? extends DatabaseObject>> caches      = new HashMap<>();
+	/** The foreign key columns that are resolved in bulk by {@link #prefetch(DatabaseResult, UserAuth, boolean)} */
+	private List<ForeignKey>                                          foreignKeys = new ArrayList<>();
 
 	/**
 	 * Clears all caches
@@ -65,6 +68,76 @@ public abstract class DatabaseObjectParser<T extends DatabaseObject>
 		return cache;
 	}
 
+	/**
+	 * Registers a foreign key column that is resolved by the given {@link DatabaseObjectCache}. The ids of this column are collected by {@link
+	 * #prefetch(DatabaseResult, UserAuth, boolean)} and loaded in bulk, instead of one query per id while parsing. The cache is passed as a {@link
+	 * Supplier}, because subclasses may replace the cache instance.
+	 *
+	 * @param cache      The {@link DatabaseObjectCache} used to resolve the column
+	 * @param column     The foreign key column
+	 * @param alwaysById Set to <code>true</code> if the object is always resolved by its id, even if the foreign objects can be extracted from
+	 *                   the same {@link DatabaseResult}
+	 */
+	protected void addForeignKey(Supplier<DatabaseObjectCache<? extends DatabaseObject>> cache, String column, boolean alwaysById)
+	{
+		foreignKeys.add(new ForeignKey(cache, column, alwaysById));
+	}
+
+	/**
+	 * Registers a foreign key column that is resolved by the given {@link DatabaseObjectCache} unless the foreign objects can be extracted from the
+	 * same {@link DatabaseResult}.
+	 *
+	 * @param cache  The {@link DatabaseObjectCache} used to resolve the column
+	 * @param column The foreign key column
+	 * @see #addForeignKey(Supplier, String, boolean)
+	 */
+	protected void addForeignKey(Supplier<DatabaseObjectCache<? extends DatabaseObject>> cache, String column)
+	{
+		addForeignKey(cache, column, false);
+	}
+
+	/**
+	 * Collects the distinct ids of all registered foreign key columns from the {@link DatabaseResult} and loads them into the {@link
+	 * DatabaseObjectCache}s with one query per type. The {@link DatabaseResult} is then moved back to before the first row. Call this before parsing
+	 * the rows. Nothing is done if the {@link DatabaseResult} cannot be read twice (e.g. if it's streamed), in which case the objects are resolved
+	 * one by one while parsing.
+	 *
+	 * @param res                   The {@link DatabaseResult} positioned before the first row
+	 * @param user                  The {@link UserAuth} of the current user
+	 * @param foreignsFromResultSet The same value that is passed to {@link #parse(DatabaseResult, UserAuth, boolean)}
+	 * @throws DatabaseException Thrown if the interaction with the database fails.
+	 */
+	public final void prefetch(DatabaseResult res, UserAuth user, boolean foreignsFromResultSet) throws DatabaseException
+	{
+		List<ForeignKey> keys = new ArrayList<>();
+		for (ForeignKey key : foreignKeys)
+		{
+			if ((key.alwaysById || !foreignsFromResultSet) && res.hasColumn(key.column))
+				keys.add(key);
+		}
+
+		if (keys.isEmpty() || !res.beforeFirst())
+			return;
+
+		Map<DatabaseObjectCache<? extends DatabaseObject>, Set<Long>> ids = new LinkedHashMap<>();
+		while (res.next())
+		{
+			for (ForeignKey key : keys)
+			{
+				Long id = res.getLong(key.column);
+
+				if (id != null)
+					ids.computeIfAbsent(key.cache.get(), k -> new HashSet<>()).add(id);
+			}
+		}
+
+		if (!res.beforeFirst())
+			throw new DatabaseException("The result cannot be read again after collecting the foreign keys");
+
+		for (Map.Entry<DatabaseObjectCache<? extends DatabaseObject>, Set<Long>> entry : ids.entrySet())
+			entry.getKey().prefetch(user, entry.getValue());
+	}
+
 	/**
 	 * Returns the {@link DatabaseObject} that was parsed from the {@link DatabaseResult}.
 	 *
@@ -77,4 +150,18 @@ public abstract class DatabaseObjectParser<T extends DatabaseObject>
 	 * @throws DatabaseException Thrown if the interaction with the database fails.
 	 */
 	public abstract T parse(DatabaseResult databaseRow, UserAuth user, boolean foreignsFromResultSet) throws DatabaseException;
+
+	private static class ForeignKey
+	{
+		private final Supplier<DatabaseObjectCache<? extends DatabaseObject>> cache;
+		private final String                                                  column;
+		private final boolean                                                 alwaysById;
+
+		private ForeignKey(Supplier<DatabaseObjectCache<? extends DatabaseObject>> cache, String column, boolean alwaysById)
+		{
+			this.cache = cache;
+			this.column = column;
+			this.alwaysById = alwaysById;
+		}
+	}
 }
@@ -19,11 +19,13 @@ package jhi.germinate.server.manager;
 
 import java.sql.*;
 import java.util.*;
+import java.util.Map;
 
 import jhi.germinate.server.database.*;
 import jhi.germinate.server.database.query.*;
 import jhi.germinate.server.database.query.parser.*;
 import jhi.germinate.server.util.*;
+import jhi.germinate.shared.*;
 import jhi.germinate.shared.datastructure.*;
 import jhi.germinate.shared.datastructure.database.*;
 import jhi.germinate.shared.enums.*;
@@ -41,6 +43,10 @@ public abstract class AbstractManager<T extends DatabaseObject>
 
 	private static final String SELECT_TRUSTED_CELL   = "SELECT `%s` FROM `%s` WHERE `id` = ?";
 	private static final String UPDATE_AUTO_INCREMENT = "call " + StoredProcedureInitializer.UPDATE_AUTO_INCREMENT + "(?)";
+	private static final String SELECT_BY_IDS         = "SELECT * FROM `%s` WHERE `id` IN (%s)";
+
+	/** The maximal number of ids per query of {@link #getAllByIds(UserAuth, Collection)} */
+	private static final int MAX_IDS_PER_QUERY = 1000;
 
 	/**
 	 * Returns the cell value in the row and column for the given id <p> <b>ONLY USE IF YOU KNOW THAT 'table' AND 'column' ARE NOT (!!!) SPECIFIED BY
@@ -107,6 +113,40 @@ public abstract class AbstractManager<T extends DatabaseObject>
 				.getObject(getParser());
 	}
 
+	/**
+	 * Returns the {@link DatabaseObject}s with the given ids. Ids that don't exist are ignored, the order of the result is undefined. Managers that
+	 * check permissions in {@link #getById(UserAuth, Long)} have to override this method as well.
+	 *
+	 * @param user The user requesting the data
+	 * @param ids  The ids of the objects
+	 * @return The {@link DatabaseObject}s with the given ids
+	 * @throws DatabaseException                Thrown if the interaction with the database fails
+	 * @throws InsufficientPermissionsException Thrown if the user doesn't have sufficient permissions to access the data
+	 */
+	public ServerResult<List<T>> getAllByIds(UserAuth user, Collection<Long> ids) throws DatabaseException, InsufficientPermissionsException
+	{
+		List<Long> list = new ArrayList<>(ids);
+		List<T> result = new ArrayList<>();
+		DebugInfo debugInfo = DebugInfo.create(user);
+
+		for (int i = 0; i < list.size(); i += MAX_IDS_PER_QUERY)
+		{
+			List<Long> batch = list.subList(i, Math.min(list.size(), i + MAX_IDS_PER_QUERY));
+			String formatted = String.format(SELECT_BY_IDS, getTable(), StringUtils.generateSqlPlaceholderString(batch.size()));
+
+			ServerResult<List<T>> part = new DatabaseObjectQuery<T>(formatted, user)
+					.setLongs(batch)
+					.run()
+					.getObjects(getParser());
+
+			debugInfo.addAll(part.getDebugInfo());
+			if (part.getServerResult() != null)
+				result.addAll(part.getServerResult());
+		}
+
+		return new ServerResult<>(debugInfo, result);
+	}
+
 	/**
 	 * Extracts and returns the {@link DatabaseObject} from the {@link DatabaseResult} without running additional queries. This means that all the
 	 * information for the {@link DatabaseObject}s that are fields of this item needs to be contained in the {@link DatabaseResult} as well.
@@ -179,18 +219,44 @@ public abstract class AbstractManager<T extends DatabaseObject>
 	 */
 	public static <T extends DatabaseObject> DatabaseObjectQuery<T> getFilteredDatabaseObjectQuery(UserAuth userAuth, PartialSearchQuery filter, String input, String[] allowedColumns, Integer previousCount, Database.QueryType type) throws InvalidArgumentException, InvalidSearchQueryException, InvalidColumnException, DatabaseException
 	{
-		String formatted = getFormattedString(filter, input, allowedColumns);
+		Map<SearchCondition, SearchIndex.Match> indexed = SearchIndex.find(filter);
+		String formatted = getFormattedString(filter, input, allowedColumns, indexed);
 
 		DatabaseObjectQuery<T> query = new DatabaseObjectQuery<>(formatted, userAuth);
 		query.setQueryType(type);
 		query.setFetchesCount(previousCount);
 
 		if (filter != null)
-			setParameters(query, filter);
+			setParameters(query, filter, indexed);
 
 		return query;
 	}
 
+	/**
+	 * Same as {@link #getFilteredDatabaseObjectQuery(UserAuth, PartialSearchQuery, String, String[], Integer)}, but pages using the given {@link
+	 * KeysetPagination}. The given SQL string has to contain {@link KeysetPagination#getSortQuery()} directly after the filter placeholder and
+	 * end with <code>LIMIT ?, ?</code>. Set {@link KeysetPagination#getStart()} as the offset.
+	 *
+	 * @param userAuth       The current user
+	 * @param filter         The {@link PartialSearchQuery}
+	 * @param input          The given SQL string with the filter placeholder
+	 * @param allowedColumns The allowed columns to filter on
+	 * @param keyset         The {@link KeysetPagination}
+	 * @return Returns the given SQL string with the filter placeholder replaced with the SQL representation of the {@link PartialSearchQuery}
+	 * @throws DatabaseException           Thrown if the interaction with the database fails
+	 * @throws InvalidSearchQueryException Thrown if any part of the {@link PartialSearchQuery} contains a missing comparison operator
+	 * @throws InvalidColumnException      Thrown if the filter is trying to filter a column that hasn't been specified in the allowedColumns
+	 *                                     parameter
+	 * @throws InvalidArgumentException    Thrown if any part of the {@link PartialSearchQuery} is invalid
+	 */
+	public static <T extends DatabaseObject> DatabaseObjectQuery<T> getFilteredDatabaseObjectQuery(UserAuth userAuth, PartialSearchQuery filter, String input, String[] allowedColumns, KeysetPagination keyset) throws InvalidArgumentException, InvalidSearchQueryException, InvalidColumnException, DatabaseException
+	{
+		DatabaseObjectQuery<T> query = getFilteredDatabaseObjectQuery(userAuth, filter, input, allowedColumns, keyset.getPagination().getResultSize());
+		keyset.setParameters(query);
+
+		return query.setKeyset(keyset);
+	}
+
 	/**
 	 * This method is a utility method that will replace a placeholder (<code>{{FILTER}}</code>) with the SQL version of the given {@link
 	 * PartialSearchQuery}. <p> <b>IMPORTANT:</b> Make sure that the given SQL string contains this placeholder and also make sure that it is placed
@@ -210,12 +276,13 @@ public abstract class AbstractManager<T extends DatabaseObject>
 	 */
 	public static ValueQuery getFilteredValueQuery(PartialSearchQuery filter, UserAuth userAuth, String input, String[] allowedColumns) throws InvalidArgumentException, InvalidSearchQueryException, InvalidColumnException, DatabaseException
 	{
-		String formatted = getFormattedString(filter, input, allowedColumns);
+		Map<SearchCondition, SearchIndex.Match> indexed = SearchIndex.find(filter);
+		String formatted = getFormattedString(filter, input, allowedColumns, indexed);
 
 		ValueQuery query = new ValueQuery(formatted, userAuth);
 
 		if (filter != null)
-			setParameters(query, filter);
+			setParameters(query, filter, indexed);
 
 		return query;
 	}
@@ -239,17 +306,18 @@ public abstract class AbstractManager<T extends DatabaseObject>
 	 */
 	public static DefaultQuery getFilteredDefaultQuery(UserAuth userAuth, PartialSearchQuery filter, String input, String[] allowedColumns) throws InvalidArgumentException, InvalidSearchQueryException, InvalidColumnException, DatabaseException
 	{
-		String formatted = getFormattedString(filter, input, allowedColumns);
+		Map<SearchCondition, SearchIndex.Match> indexed = SearchIndex.find(filter);
+		String formatted = getFormattedString(filter, input, allowedColumns, indexed);
 
 		DefaultQuery query = new DefaultQuery(formatted, userAuth);
 
 		if (filter != null)
-			setParameters(query, filter);
+			setParameters(query, filter, indexed);
 
 		return query;
 	}
 
-	private static void setParameters(GerminateQuery<?> query, PartialSearchQuery filter) throws InvalidSearchQueryException, InvalidArgumentException, DatabaseException
+	private static void setParameters(GerminateQuery<?> query, PartialSearchQuery filter, Map<SearchCondition, SearchIndex.Match> indexed) throws InvalidSearchQueryException, InvalidArgumentException, DatabaseException
 	{
 		List<SearchCondition> queries = filter.getAll();
 
@@ -257,7 +325,13 @@ public abstract class AbstractManager<T extends DatabaseObject>
 		{
 			for (SearchCondition part : queries)
 			{
-				if (part.getComp() instanceof PotentialNumeric)
+				SearchIndex.Match match = indexed.get(part);
+
+				if (match != null)
+				{
+					match.setParameters(query, part);
+				}
+				else if (part.getComp() instanceof PotentialNumeric)
 				{
 					if (((PotentialNumeric) part.getComp()).isNumeric(part.getValues()))
 					{
@@ -286,7 +360,7 @@ public abstract class AbstractManager<T extends DatabaseObject>
 		}
 	}
 
-	private static String getFormattedString(PartialSearchQuery filter, String input, String[] allowedColumns) throws InvalidColumnException, InvalidSearchQueryException, InvalidArgumentException
+	private static String getFormattedString(PartialSearchQuery filter, String input, String[] allowedColumns, Map<SearchCondition, SearchIndex.Match> indexed) throws InvalidColumnException, InvalidSearchQueryException, InvalidArgumentException
 	{
 		if (filter != null)
 		{
@@ -313,7 +387,12 @@ public abstract class AbstractManager<T extends DatabaseObject>
 				if (Objects.equals(Double.class.getSimpleName(), query.getType()) || Objects.equals(Float.class.getSimpleName(), query.getType()))
 					query.setColumnName("CAST(" + oldColumnName + " AS DECIMAL(30,2))");
 
-				builder.append(query.toPreparedStatementString());
+				/* Conditions answered by the search index only have to be checked for the matching rows */
+				SearchIndex.Match match = indexed.get(query);
+				if (match != null)
+					builder.append(match.toPreparedStatementString(query));
+				else
+					builder.append(query.toPreparedStatementString());
 
 				query.setColumnName(oldColumnName);
 			}
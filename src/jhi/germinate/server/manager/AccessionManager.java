@@ -41,6 +41,7 @@ public class AccessionManager extends AbstractManager<Accession>
 	private static final String SELECT_SYNONYMS = "`germinatebase`.*, `entitytypes`.*, `taxonomies`.*, `locations`.*, `countries`.*, `biologicalstatus`.*, `institutions`.*, `collectingsources`.*, `synonyms`.*, (SELECT COUNT(1) FROM `images` LEFT JOIN `imagetypes` ON `imagetypes`.`id` = `images`.`imagetype_id` WHERE `imagetypes`.`reference_table` = 'germinatebase' AND `images`.`foreign_id` = `germinatebase`.`id`) AS imageCount, (SELECT `images`.`path` FROM `images` LEFT JOIN `imagetypes` ON `imagetypes`.`id` = `images`.`imagetype_id` WHERE `imagetypes`.`reference_table` = 'germinatebase' AND `images`.`foreign_id` = `germinatebase`.`id` LIMIT 1) AS firstImagePath";
 
 	private static final String SELECT_BY_UNKNOWN_IDENTIFIER = "SELECT DISTINCT `id` FROM `germinatebase` WHERE `name` IN (%s)";
+	private static final String SELECT_BY_SYNONYM            = "SELECT DISTINCT `foreign_id` FROM `synonymlookups` WHERE `synonymtype_id` = " + SynonymType.germinatebase.getId() + " AND `synonym` IN (%s)";
 
 	private static final String SELECT_IDS_FOR_FILTER = "SELECT DISTINCT `germinatebase`.`id` FROM " + COMMON_TABLES + " " + COMMOM_SYNONYMS + " {{FILTER}}";
 
@@ -58,9 +59,10 @@ public class AccessionManager extends AbstractManager<Accession>
 	private static final String SELECT_FOR_GROUP              = "SELECT " + SELECT_SYNONYMS + " FROM " + COMMON_TABLES + " " + COMMOM_SYNONYMS + " LEFT JOIN `groupmembers` ON `germinatebase`.`id` = `groupmembers`.`foreign_id` LEFT JOIN `groups` ON `groups`.`id` = `groupmembers`.`group_id` WHERE `groups`.`id` = ? %s LIMIT ?, ?";
 	private static final String SELECT_NAMES_FOR_GROUPS       = "SELECT DISTINCT `name` FROM `germinatebase` LEFT JOIN `groupmembers` ON `groupmembers`.`foreign_id` = `germinatebase`.`id` WHERE `groupmembers`.`group_id` IN (%s)";
 	private static final String SELECT_NAMES_FOR_IDS          = "SELECT DISTINCT `name` FROM `germinatebase` WHERE `germinatebase`.`id` IN (%s)";
-	private static final String SELECT_ALL_SORTED_BY_DISTANCE = "SELECT " + SELECT_SYNONYMS + " , CAST(REPLACE(FORMAT(6378.7 * ACOS(SIN(RADIANS(`latitude`)) * SIN(RADIANS(?)) + COS(RADIANS(`latitude`)) * COS(RADIANS(?)) * COS(RADIANS(?) - RADIANS(`longitude`))),   2), ',','') AS DECIMAL(10,4)) AS distance FROM " + COMMON_TABLES + " " + COMMOM_SYNONYMS + " LEFT JOIN `locationtypes` ON `locations`.`locationtype_id` = `locationtypes`.`id` WHERE `locationtypes`.`name` = 'collectingsites' AND `locations`.`latitude` IS NOT NULL AND `locations`.`longitude` IS NOT NULL %s LIMIT ?, ?";
-	private static final String SELECT_IDS_IN_POLYGON         = "SELECT DISTINCT(`germinatebase`.`id`) FROM " + COMMON_TABLES + " LEFT JOIN `locationtypes` ON `locations`.`locationtype_id` = `locationtypes`.`id` WHERE `locationtypes`.`name` = ? AND !ISNULL(`locations`.`latitude`) AND !ISNULL(`locations`.`longitude`) AND ST_CONTAINS (ST_GeomFromText(?), ST_GeomFromText (CONCAT( 'POINT(', `locations`.`longitude`, ' ', `locations`.`latitude`, ')')))";
-	private static final String SELECT_ALL_IN_POLYGON         = "SELECT " + SELECT_SYNONYMS + " FROM " + COMMON_TABLES + " " + COMMOM_SYNONYMS + " LEFT JOIN `locationtypes` ON `locations`.`locationtype_id` = `locationtypes`.`id` WHERE `locationtypes`.`name` = ? AND !ISNULL(`locations`.`latitude`) AND !ISNULL(`locations`.`longitude`) AND ST_CONTAINS (ST_GeomFromText(?), ST_GeomFromText (CONCAT( 'POINT(', `locations`.`longitude`, ' ', `locations`.`latitude`, ')'))) %s LIMIT ?, ?";
+	private static final String SELECT_ALL_SORTED_BY_DISTANCE = "SELECT " + SELECT_SYNONYMS + " , CAST(REPLACE(FORMAT(6378.7 * ACOS(SIN(RADIANS(`latitude`)) * SIN(RADIANS(?)) + COS(RADIANS(`latitude`)) * COS(RADIANS(?)) * COS(RADIANS(?) - RADIANS(`longitude`))),   2), ',','') AS DECIMAL(10,4)) AS distance FROM " + COMMON_TABLES + " " + COMMOM_SYNONYMS + " LEFT JOIN `locationtypes` ON `locations`.`locationtype_id` = `locationtypes`.`id` WHERE `locationtypes`.`name` = 'collectingsites' AND `locations`.`latitude` IS NOT NULL AND `locations`.`longitude` IS NOT NULL %s %s LIMIT ?, ?";
+	private static final String SELECT_COUNT_WITH_DISTANCE    = "SELECT COUNT(1) AS count FROM " + COMMON_TABLES + " LEFT JOIN `locationtypes` ON `locations`.`locationtype_id` = `locationtypes`.`id` WHERE `locationtypes`.`name` = 'collectingsites' AND `locations`.`latitude` IS NOT NULL AND `locations`.`longitude` IS NOT NULL";
+	private static final String SELECT_IDS_IN_POLYGON         = "SELECT DISTINCT(`germinatebase`.`id`) FROM " + COMMON_TABLES + " LEFT JOIN `locationtypes` ON `locations`.`locationtype_id` = `locationtypes`.`id` WHERE `locationtypes`.`name` = ? AND !ISNULL(`locations`.`latitude`) AND !ISNULL(`locations`.`longitude`) AND ST_CONTAINS (ST_GeomFromText(?), `locations`.`point`)";
+	private static final String SELECT_ALL_IN_POLYGON         = "SELECT " + SELECT_SYNONYMS + " FROM " + COMMON_TABLES + " " + COMMOM_SYNONYMS + " LEFT JOIN `locationtypes` ON `locations`.`locationtype_id` = `locationtypes`.`id` WHERE `locationtypes`.`name` = ? AND !ISNULL(`locations`.`latitude`) AND !ISNULL(`locations`.`longitude`) AND ST_CONTAINS (ST_GeomFromText(?), `locations`.`point`) %s LIMIT ?, ?";
 	private static final String SELECT_IDS_DOWNLOAD           = "SELECT `germinatebase`.*, `taxonomies`.`genus` AS taxonomies_genus, `taxonomies`.`species` AS taxonomies_species, `taxonomies`.`subtaxa` AS taxonomies_subtaxa, `taxonomies`.`species_author` AS taxonomies_species_author, `taxonomies`.`subtaxa_author` AS taxonomies_subtaxa_author, `taxonomies`.`cropname` AS taxonomies_crop_name, `taxonomies`.`ploidy` AS taxonomies_ploidy, `locations`.`state` AS locations_state, `locations`.`region` AS locations_region, `locations`.`site_name` AS locations_site_name, `locations`.`elevation` AS locations_elevation, `locations`.`latitude` AS locations_latitude, `locations`.`longitude` AS locations_longitude, `countries`.`country_name` AS countries_country_name, `institutions`.`code` AS institutions_code, `institutions`.`name` AS institutions_name, `institutions`.`acronym` AS institutions_acronym, `institutions`.`phone` AS institutions_phone, `institutions`.`email` AS institutions_email, `institutions`.`address` AS institutions_address, `synonyms`.`synonyms` AS synonyms FROM " + COMMON_TABLES + " " + COMMOM_SYNONYMS + " WHERE `germinatebase`.`id` IN (%s)";
 	private static final String SELECT_ENTITY_PAIRS           = "SELECT child.id, parent.id FROM `germinatebase` child LEFT JOIN `germinatebase` parent ON child.entityparent_id = parent.id WHERE ( child.id = ? OR parent.id = ? ) AND child.entitytype_id > 1 %s LIMIT ?, ?";
 
@@ -142,11 +144,11 @@ public class AccessionManager extends AbstractManager<Accession>
 	}
 
 	/**
-	 * Returns the {@link Accession} with the given {@link Accession#GENERAL_IDENTIFIER}
+	 * Returns the ids of the {@link Accession}s whose {@link Accession#NAME} or one of whose synonyms is one of the given identifiers
 	 *
 	 * @param userAuth    The user requesting the data
 	 * @param identifiers The list of possible identifiers
-	 * @return The {@link Accession} with the given {@link Accession#GENERAL_IDENTIFIER}
+	 * @return The ids of the {@link Accession}s whose {@link Accession#NAME} or one of whose synonyms is one of the given identifiers
 	 * @throws DatabaseException Thrown if the interaction with the database failed
 	 */
 	public static ServerResult<List<String>> getByUnknownIdentifier(UserAuth userAuth, List<String> identifiers) throws DatabaseException
@@ -154,12 +156,30 @@ public class AccessionManager extends AbstractManager<Accession>
 		if (CollectionUtils.isEmpty(identifiers))
 			return new ServerResult<>(null, null);
 
-		String formatted = String.format(SELECT_BY_UNKNOWN_IDENTIFIER, StringUtils.generateSqlPlaceholderString(identifiers.size()));
+		String placeholders = StringUtils.generateSqlPlaceholderString(identifiers.size());
 
-		return new ValueQuery(formatted, userAuth)
+		ServerResult<List<String>> byName = new ValueQuery(String.format(SELECT_BY_UNKNOWN_IDENTIFIER, placeholders), userAuth)
 				.setStrings(identifiers)
 				.run(Accession.ID)
 				.getStrings();
+
+		/* Both queries are index lookups, which is a lot faster than a single query with a condition on either table. Synonyms are stored in lower case. */
+		ServerResult<List<String>> bySynonym = new ValueQuery(String.format(SELECT_BY_SYNONYM, placeholders.replace("?", "LOWER(?)")), userAuth)
+				.setStrings(identifiers)
+				.run("foreign_id")
+				.getStrings();
+
+		Set<String> result = new LinkedHashSet<>();
+		if (byName.getServerResult() != null)
+			result.addAll(byName.getServerResult());
+		if (bySynonym.getServerResult() != null)
+			result.addAll(bySynonym.getServerResult());
+
+		DebugInfo debugInfo = byName.getDebugInfo();
+		if (debugInfo != null)
+			debugInfo.addAll(bySynonym.getDebugInfo());
+
+		return new ServerResult<>(debugInfo, new ArrayList<>(result));
 	}
 
 	/**
@@ -229,10 +249,11 @@ public class AccessionManager extends AbstractManager<Accession>
 	public static PaginatedServerResult<List<Accession>> getAllForFilter(UserAuth user, PartialSearchQuery filter, Pagination pagination) throws DatabaseException, InvalidSearchQueryException, InvalidArgumentException, InvalidColumnException
 	{
 		pagination.updateSortColumn(AccessionService.COLUMNS_SORTABLE, null);
-		String formatted = String.format(SELECT_ALL_FOR_FILTER, pagination.getSortQuery());
+		KeysetPagination keyset = new KeysetPagination(pagination, Accession.ID);
+		String formatted = String.format(SELECT_ALL_FOR_FILTER, keyset.getSortQuery());
 
-		return AbstractManager.<Accession>getFilteredDatabaseObjectQuery(user, filter, formatted, AccessionService.COLUMNS_SORTABLE, pagination.getResultSize())
-				.setInt(pagination.getStart())
+		return AbstractManager.<Accession>getFilteredDatabaseObjectQuery(user, filter, formatted, AccessionService.COLUMNS_SORTABLE, keyset)
+				.setInt(keyset.getStart())
 				.setInt(pagination.getLength())
 				.run()
 				.getObjectsPaginated(Accession.Parser.Inst.get(), true);
@@ -396,13 +417,19 @@ public class AccessionManager extends AbstractManager<Accession>
 	{
 		pagination.updateSortColumn(COLUMNS_TABLE, LocationService.DISTANCE);
 
-		String formatted = String.format(SELECT_ALL_SORTED_BY_DISTANCE, pagination.getSortQuery());
-		return new DatabaseObjectQuery<Accession>(formatted, userAuth)
-				.setFetchesCount(pagination.getResultSize())
+		DistanceBounds bounds = DistanceBounds.get(userAuth, SELECT_COUNT_WITH_DISTANCE, latitude, longitude, pagination);
+
+		String formatted = String.format(SELECT_ALL_SORTED_BY_DISTANCE, DistanceBounds.getCondition(bounds), pagination.getSortQuery());
+		DatabaseObjectQuery<Accession> query = new DatabaseObjectQuery<Accession>(formatted, userAuth)
+				.setFetchesCount(bounds == null ? pagination.getResultSize() : bounds.getTotal())
 				.setDouble(latitude)
 				.setDouble(latitude)
-				.setDouble(longitude)
-				.setInt(pagination.getStart())
+				.setDouble(longitude);
+
+		if (bounds != null)
+			bounds.setParameters(query);
+
+		return query.setInt(pagination.getStart())
 				.setInt(pagination.getLength())
 				.run()
 				.getObjectsPaginated(Accession.DistanceParser.Inst.get(), true);
@@ -68,7 +68,7 @@ public class CompoundDataManager extends AbstractManager<CompoundData>
 	 */
 	public static PaginatedServerResult<List<CompoundData>> getAllForFilter(UserAuth userAuth, Pagination pagination, PartialSearchQuery filter) throws InvalidColumnException, DatabaseException, InvalidSearchQueryException, InvalidArgumentException
 	{
-		List<Long> datasetIds = DatabaseObject.getIds(DatasetManager.getForUser(userAuth, true).getServerResult());
+		List<Long> datasetIds = new ArrayList<>(DatasetManager.getIdsForUser(userAuth, true).getServerResult());
 
 		if (CollectionUtils.isEmpty(datasetIds))
 			return new PaginatedServerResult<>(DebugInfo.create(userAuth), new ArrayList<>(), 0);
@@ -86,7 +86,7 @@ public class CompoundDataManager extends AbstractManager<CompoundData>
 
 	public static ServerResult<List<String>> getIdsForFilter(UserAuth userAuth, PartialSearchQuery filter) throws InvalidColumnException, DatabaseException, InvalidSearchQueryException, InvalidArgumentException
 	{
-		List<Long> datasetIds = DatabaseObject.getIds(DatasetManager.getForUser(userAuth, true).getServerResult());
+		List<Long> datasetIds = new ArrayList<>(DatasetManager.getIdsForUser(userAuth, true).getServerResult());
 
 		if (CollectionUtils.isEmpty(datasetIds))
 			return new PaginatedServerResult<>(DebugInfo.create(userAuth), new ArrayList<>(), 0);
@@ -102,7 +102,7 @@ public class CompoundDataManager extends AbstractManager<CompoundData>
 	public static DefaultStreamer getStreamerForFilter(UserAuth userAuth, PartialSearchQuery filter, Pagination pagination) throws InvalidColumnException, DatabaseException, InvalidSearchQueryException, InvalidArgumentException
 	{
 		pagination.updateSortColumn(COLUMNS_DATA_SORTABLE, Accession.ID);
-		List<Long> datasetIds = DatabaseObject.getIds(DatasetManager.getForUser(userAuth, true).getServerResult());
+		List<Long> datasetIds = new ArrayList<>(DatasetManager.getIdsForUser(userAuth, true).getServerResult());
 
 		String formatted = String.format(SELECT_ALL_FOR_FILTER_EXPORT, StringUtils.generateSqlPlaceholderString(datasetIds.size()), pagination.getSortQuery());
 
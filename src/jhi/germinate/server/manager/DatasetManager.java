@@ -89,6 +89,12 @@ public class DatasetManager extends AbstractManager<Dataset>
 		}
 	}
 
+	@Override
+	public ServerResult<List<Dataset>> getAllByIds(UserAuth user, Collection<Long> ids) throws DatabaseException, InsufficientPermissionsException
+	{
+		return getByIds(user, new ArrayList<>(ids));
+	}
+
 	/**
 	 * Returns the list of {@link Dataset}s that correspond to the list of ids
 	 *
@@ -437,23 +443,24 @@ public class DatasetManager extends AbstractManager<Dataset>
 		if (CollectionUtils.isEmpty(datasetIds))
 			return DebugInfo.create(userAuth);
 
-		ServerResult<List<Dataset>> availableDatasets = getForUser(userAuth, PropertyWatcher.getBoolean(ServerProperty.GERMINATE_USE_AUTHENTICATION));
+		ServerResult<Set<Long>> availableIds = getIdsForUser(userAuth, PropertyWatcher.getBoolean(ServerProperty.GERMINATE_USE_AUTHENTICATION));
 
-		if (CollectionUtils.isEmpty(availableDatasets.getServerResult()))
-		{
-			datasetIds.clear();
-		}
-		else
-		{
-			List<Long> availableIds = availableDatasets.getServerResult()
-													   .stream()
-													   .map(Dataset::getId)
-													   .collect(Collectors.toList());
+		datasetIds.retainAll(availableIds.getServerResult());
 
-			datasetIds.retainAll(availableIds);
-		}
+		return availableIds.getDebugInfo();
+	}
 
-		return availableDatasets.getDebugInfo();
+	/**
+	 * Returns the ids of the {@link Dataset}s the given user has access to. They're kept in the {@link DatasetPermissionCache}.
+	 *
+	 * @param userAuth     The user requesting the data
+	 * @param checkLicense Only include datasets without a license or whose license the user has accepted?
+	 * @return The ids of the {@link Dataset}s the given user has access to. The {@link Set} can't be modified.
+	 * @throws DatabaseException Thrown if the communication with the database fails
+	 */
+	public static ServerResult<Set<Long>> getIdsForUser(UserAuth userAuth, boolean checkLicense) throws DatabaseException
+	{
+		return DatasetPermissionCache.get(userAuth, checkLicense);
 	}
 
 	/**
@@ -595,6 +602,8 @@ public class DatasetManager extends AbstractManager<Dataset>
 			sqlDebug.addAll(temp.getDebugInfo());
 		}
 
+		DatasetPermissionCache.invalidate();
+
 		return new ServerResult<>(sqlDebug, newIds);
 	}
 
@@ -618,6 +627,8 @@ public class DatasetManager extends AbstractManager<Dataset>
 				.setLongs(ids)
 				.execute();
 
+		DatasetPermissionCache.invalidate();
+
 		resetAutoIncrement(GerminateDatabaseTable.datasetpermissions);
 	}
 }
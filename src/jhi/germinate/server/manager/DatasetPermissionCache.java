@@ -0,0 +1,203 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.manager;
+
+import java.util.*;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import jhi.germinate.server.database.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.datastructure.database.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * {@link DatasetPermissionCache} keeps the ids of the datasets each user has access to, so {@link DatasetManager#restrictToAvailableDatasets(UserAuth,
+ * List)} doesn't have to query the permissions (and Gatekeeper) for every request.
+ * <p>
+ * Entries expire after {@link ServerProperty#GERMINATE_DATABASE_DATASET_PERMISSION_CACHE_SECONDS}. Call {@link #invalidate()} whenever dataset
+ * permissions or group memberships change and {@link #invalidate(Long)} when a user logs in or out or accepts a license. Permissions are reloaded
+ * from the primary for a while after an invalidation, so the replicas can catch up with the change.
+ * <p>
+ * Invalidating only affects the cache of the current process. Changes made by other processes, e.g. datasets added by the data importers, become
+ * visible once the entries expire, i.e. after up to {@link ServerProperty#GERMINATE_DATABASE_DATASET_PERMISSION_CACHE_SECONDS}.
+ *
+ * @author Sebastian Raubach
+ */
+public class DatasetPermissionCache
+{
+	/** Without authentication all users see the same datasets, so they share this key */
+	private static final Long PUBLIC = -1L;
+
+	private static final Map<Key, Entry> CACHE = new ConcurrentHashMap<>();
+
+	private static final AtomicLong HITS   = new AtomicLong();
+	private static final AtomicLong MISSES = new AtomicLong();
+
+	/** Incremented on every invalidation so that permissions loaded before it aren't cached */
+	private static final AtomicLong GENERATION  = new AtomicLong();
+	/** The time of the last invalidation in milliseconds */
+	private static final AtomicLong INVALIDATED = new AtomicLong();
+
+	/**
+	 * Returns the ids of the datasets the given user has access to
+	 *
+	 * @param userAuth     The {@link UserAuth}
+	 * @param checkLicense Only include datasets without a license or whose license the user has accepted?
+	 * @return The ids of the datasets the given user has access to. The {@link Set} can't be modified.
+	 * @throws DatabaseException Thrown if the communication with the database fails
+	 */
+	public static ServerResult<Set<Long>> get(UserAuth userAuth, boolean checkLicense) throws DatabaseException
+	{
+		Key key = new Key(getUserKey(userAuth), checkLicense);
+		Entry entry = CACHE.get(key);
+
+		if (entry != null && entry.expires >= System.currentTimeMillis())
+		{
+			HITS.incrementAndGet();
+			return new ServerResult<>(DebugInfo.create(userAuth), entry.ids);
+		}
+
+		MISSES.incrementAndGet();
+
+		long generation = GENERATION.get();
+		ServerResult<List<Dataset>> datasets;
+		try (ReplicaRouter.PrimaryScope scope = ReplicaRouter.usePrimaryAfterChange(INVALIDATED.get()))
+		{
+			datasets = DatasetManager.getForUser(userAuth, checkLicense);
+		}
+
+		Set<Long> ids = new LinkedHashSet<>(DatabaseObject.getIds(datasets.getServerResult()));
+		ids = Collections.unmodifiableSet(ids);
+
+		long ttl = TimeUnit.SECONDS.toMillis(getInteger(ServerProperty.GERMINATE_DATABASE_DATASET_PERMISSION_CACHE_SECONDS));
+
+		// Don't cache permissions that have been loaded before they changed
+		if (ttl > 0)
+		{
+			synchronized (CACHE)
+			{
+				if (generation == GENERATION.get())
+					CACHE.put(key, new Entry(ids, System.currentTimeMillis() + ttl));
+			}
+		}
+
+		return new ServerResult<>(datasets.getDebugInfo(), ids);
+	}
+
+	private static Long getUserKey(UserAuth userAuth)
+	{
+		if (!PropertyWatcher.getBoolean(ServerProperty.GERMINATE_USE_AUTHENTICATION) || userAuth == null || userAuth.getId() == null)
+			return PUBLIC;
+		else
+			return userAuth.getId();
+	}
+
+	/**
+	 * Removes the cached datasets of all users. Call this whenever dataset states, dataset permissions or group memberships change.
+	 */
+	public static void invalidate()
+	{
+		synchronized (CACHE)
+		{
+			GENERATION.incrementAndGet();
+			INVALIDATED.set(System.currentTimeMillis());
+			CACHE.clear();
+		}
+	}
+
+	/**
+	 * Removes the cached datasets of the given user. Call this when the user logs in or out or accepts a license.
+	 *
+	 * @param userId The id of the user
+	 */
+	public static void invalidate(Long userId)
+	{
+		if (userId == null)
+			return;
+
+		synchronized (CACHE)
+		{
+			GENERATION.incrementAndGet();
+			INVALIDATED.set(System.currentTimeMillis());
+			CACHE.keySet().removeIf(key -> Objects.equals(key.userId, userId));
+		}
+	}
+
+	/**
+	 * Returns a human readable summary of the cache for monitoring
+	 *
+	 * @return A human readable summary of the cache
+	 */
+	public static String getSummary()
+	{
+		return "DatasetPermissionCache{" +
+				"size=" + CACHE.size() +
+				", hits=" + HITS.get() +
+				", misses=" + MISSES.get() +
+				'}';
+	}
+
+	private static int getInteger(ServerProperty property)
+	{
+		Integer value = PropertyWatcher.getInteger(property);
+		return value == null ? Integer.parseInt(property.getDefaultValue()) : value;
+	}
+
+	private static class Key
+	{
+		private final Long    userId;
+		private final boolean checkLicense;
+
+		private Key(Long userId, boolean checkLicense)
+		{
+			this.userId = userId;
+			this.checkLicense = checkLicense;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return checkLicense == key.checkLicense && Objects.equals(userId, key.userId);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(userId, checkLicense);
+		}
+	}
+
+	private static class Entry
+	{
+		private final Set<Long> ids;
+		private final long      expires;
+
+		private Entry(Set<Long> ids, long expires)
+		{
+			this.ids = ids;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,288 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.manager;
+
+import java.util.*;
+
+import jhi.germinate.client.service.*;
+import jhi.germinate.server.database.query.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * {@link DistanceBounds} restricts queries that are sorted by the distance to a point to the rows within a radius around it. The radius is grown
+ * until it contains all rows of the requested page, so only the rows within its bounding box are read via the spatial index on
+ * <code>locations.point</code> instead of calculating the distance of every location.
+ * <p>
+ * The radius found for a page is remembered per query and point, so that the following pages (and other users) start from it instead of growing
+ * it from {@link #INITIAL_RADIUS_KM} with a <code>COUNT</code> for each step. A remembered radius is only a starting point, it's checked with a
+ * single <code>COUNT</code> and grown further if the data has changed since.
+ * <p>
+ * Queries using it have to contain {@link #WHERE} (via {@link #getCondition(DistanceBounds)}) and set its parameters via {@link
+ * #setParameters(GerminateQuery)}.
+ *
+ * @author Sebastian Raubach
+ */
+public class DistanceBounds
+{
+	/** The mean earth radius used by the distance queries */
+	private static final double EARTH_RADIUS_KM   = 6378.7;
+	private static final double INITIAL_RADIUS_KM = 25;
+	private static final int    RADIUS_FACTOR     = 4;
+	/** Points on the edge of the bounding box would otherwise not be contained */
+	private static final double EPSILON_DEGREES   = 0.000001;
+	private static final int    MAX_ENTRIES       = 1000;
+
+	private static final String DISTANCE = "6378.7 * ACOS(LEAST(1, SIN(RADIANS(`locations`.`latitude`)) * SIN(RADIANS(?)) + COS(RADIANS(`locations`.`latitude`)) * COS(RADIANS(?)) * COS(RADIANS(?) - RADIANS(`locations`.`longitude`))))";
+
+	public static final String WHERE = " AND MBRContains(ST_GeomFromText(?), `locations`.`point`) AND " + DISTANCE + " <= ?";
+
+	/** The radius that contains the given number of rows, keyed on the count query and the point */
+	private static final Map<Key, NavigableMap<Integer, Double>> RADII = new LinkedHashMap<Key, NavigableMap<Integer, Double>>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, NavigableMap<Integer, Double>> eldest)
+		{
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private final double latitude;
+	private final double longitude;
+	private final String box;
+	private final double radius;
+	private final int    total;
+
+	private DistanceBounds(double latitude, double longitude, String box, double radius, int total)
+	{
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.box = box;
+		this.radius = radius;
+		this.total = total;
+	}
+
+	/**
+	 * Returns the {@link DistanceBounds} that contain the rows of the given page
+	 *
+	 * @param userAuth   The {@link UserAuth}
+	 * @param countQuery The query counting all rows with a location. It has to end with a <code>WHERE</code> clause, so that {@link #WHERE} can be
+	 *                   appended.
+	 * @param latitude   The latitude of the point
+	 * @param longitude  The longitude of the point
+	 * @param pagination The {@link Pagination} with the sort column already updated
+	 * @return The {@link DistanceBounds} or <code>null</code> if the page isn't sorted by ascending distance or the radius would have to span the
+	 * poles or the antimeridian. All rows have to be sorted in this case.
+	 * @throws DatabaseException Thrown if the interaction with the database fails
+	 */
+	public static DistanceBounds get(UserAuth userAuth, String countQuery, double latitude, double longitude, Pagination pagination) throws DatabaseException
+	{
+		if (!Objects.equals(pagination.getSortColumn(), LocationService.DISTANCE) || !pagination.isAscending())
+			return null;
+
+		int rows = pagination.getStart() + pagination.getLength();
+
+		Integer total = pagination.getResultSize();
+
+		if (total == null)
+		{
+			total = new ValueQuery(countQuery, userAuth)
+					.run(AbstractManager.COUNT)
+					.getInt(0)
+					.getServerResult();
+		}
+
+		if (total <= rows)
+			return null;
+
+		Key key = new Key(countQuery, latitude, longitude);
+
+		for (double radius = getStartRadius(key, rows); ; radius *= RADIUS_FACTOR)
+		{
+			String box = getBox(latitude, longitude, radius);
+
+			if (box == null)
+				return null;
+
+			DistanceBounds bounds = new DistanceBounds(latitude, longitude, box, radius, total);
+
+			int count = bounds.setParameters(new ValueQuery(countQuery + WHERE, userAuth))
+							  .run(AbstractManager.COUNT)
+							  .getInt(0)
+							  .getServerResult();
+
+			if (count >= rows)
+			{
+				rememberRadius(key, rows, radius);
+				return bounds;
+			}
+		}
+	}
+
+	/**
+	 * Returns the radius to start with for the given number of rows. That's the radius of the largest remembered number of rows that doesn't
+	 * exceed it, because fewer rows never need a larger radius.
+	 *
+	 * @param key  The {@link Key} of the count query and point
+	 * @param rows The number of rows
+	 * @return The radius to start with
+	 */
+	private static double getStartRadius(Key key, int rows)
+	{
+		synchronized (RADII)
+		{
+			NavigableMap<Integer, Double> radii = RADII.get(key);
+
+			if (radii == null)
+				return INITIAL_RADIUS_KM;
+
+			Map.Entry<Integer, Double> entry = radii.floorEntry(rows);
+
+			return entry == null ? INITIAL_RADIUS_KM : entry.getValue();
+		}
+	}
+
+	private static void rememberRadius(Key key, int rows, double radius)
+	{
+		synchronized (RADII)
+		{
+			RADII.computeIfAbsent(key, k -> new TreeMap<>())
+				 .put(rows, radius);
+		}
+	}
+
+	/**
+	 * Returns the condition restricting a query to the given {@link DistanceBounds}
+	 *
+	 * @param bounds The {@link DistanceBounds}, may be <code>null</code>
+	 * @return {@link #WHERE} or an empty {@link String} if <code>bounds</code> is <code>null</code>
+	 */
+	public static String getCondition(DistanceBounds bounds)
+	{
+		return bounds == null ? "" : WHERE;
+	}
+
+	/**
+	 * Returns the bounding box of the circle with the given radius around the given point as WKT. The box is calculated on the sphere as
+	 * described at http://janmatuschek.de/LatitudeLongitudeBoundingCoordinates.
+	 *
+	 * @param latitude  The latitude of the center
+	 * @param longitude The longitude of the center
+	 * @param radius    The radius in kilometers
+	 * @return The bounding box as WKT or <code>null</code> if it would span the poles or the antimeridian
+	 */
+	static String getBox(double latitude, double longitude, double radius)
+	{
+		double distance = radius / EARTH_RADIUS_KM;
+		double lat = Math.toRadians(latitude);
+		double lng = Math.toRadians(longitude);
+
+		double minLat = lat - distance;
+		double maxLat = lat + distance;
+
+		if (minLat <= -Math.PI / 2 || maxLat >= Math.PI / 2)
+			return null;
+
+		double deltaLng = Math.asin(Math.sin(distance) / Math.cos(lat));
+		double minLng = lng - deltaLng;
+		double maxLng = lng + deltaLng;
+
+		if (minLng < -Math.PI || maxLng > Math.PI)
+			return null;
+
+		String left = format(Math.toDegrees(minLng) - EPSILON_DEGREES);
+		String right = format(Math.toDegrees(maxLng) + EPSILON_DEGREES);
+		String bottom = format(Math.toDegrees(minLat) - EPSILON_DEGREES);
+		String top = format(Math.toDegrees(maxLat) + EPSILON_DEGREES);
+
+		return "POLYGON((" + left + " " + bottom + ", " + right + " " + bottom + ", " + right + " " + top + ", " + left + " " + top + ", " + left + " " + bottom + "))";
+	}
+
+	private static String format(double value)
+	{
+		/* WKT doesn't support the scientific notation of Double.toString() */
+		return String.format(Locale.ENGLISH, "%.8f", value);
+	}
+
+	/**
+	 * Sets the parameters of {@link #WHERE} on the given query
+	 *
+	 * @param query The query
+	 * @return The query
+	 * @throws DatabaseException Thrown if the interaction with the database fails
+	 */
+	public <Q extends GerminateQuery<Q>> Q setParameters(Q query) throws DatabaseException
+	{
+		return query.setString(box)
+					.setDouble(latitude)
+					.setDouble(latitude)
+					.setDouble(longitude)
+					.setDouble(radius);
+	}
+
+	/**
+	 * Returns the total number of rows with a location, which is the result size of the paginated query
+	 *
+	 * @return The total number of rows with a location
+	 */
+	public int getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * Returns the radius in kilometers
+	 *
+	 * @return The radius in kilometers
+	 */
+	public double getRadius()
+	{
+		return radius;
+	}
+
+	private static class Key
+	{
+		private final String countQuery;
+		private final double latitude;
+		private final double longitude;
+
+		Key(String countQuery, double latitude, double longitude)
+		{
+			this.countQuery = countQuery;
+			this.latitude = latitude;
+			this.longitude = longitude;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return Double.compare(key.latitude, latitude) == 0 &&
+					Double.compare(key.longitude, longitude) == 0 &&
+					Objects.equals(countQuery, key.countQuery);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(countQuery, latitude, longitude);
+		}
+	}
+}
@@ -215,4 +215,23 @@ public class GatekeeperUserManager extends AbstractManager<GatekeeperUser>
 				.run()
 				.getObject(GatekeeperUser.Parser.Inst.get());
 	}
+
+	@Override
+	public ServerResult<List<GatekeeperUser>> getAllByIds(UserAuth user, Collection<Long> ids) throws DatabaseException
+	{
+		/* The users are stored in the Gatekeeper database, so get them one by one */
+		List<GatekeeperUser> result = new ArrayList<>();
+		DebugInfo debugInfo = DebugInfo.create(user);
+
+		for (Long id : ids)
+		{
+			ServerResult<GatekeeperUser> gatekeeperUser = getById(user, id);
+
+			debugInfo.addAll(gatekeeperUser.getDebugInfo());
+			if (gatekeeperUser.getServerResult() != null)
+				result.add(gatekeeperUser.getServerResult());
+		}
+
+		return new ServerResult<>(debugInfo, result);
+	}
 }
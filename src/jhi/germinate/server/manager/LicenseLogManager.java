@@ -79,6 +79,8 @@ public class LicenseLogManager extends AbstractManager<LicenseLog>
 
 					result.getDebugInfo().addAll(ids.getDebugInfo());
 					result.setServerResult(result.getServerResult() || ids.getServerResult().size() > 0);
+
+					DatasetPermissionCache.invalidate(log.getUser());
 				}
 			}
 		}
@@ -98,7 +98,7 @@ public class PhenotypeManager extends AbstractManager<Phenotype>
 	{
 		pagination.updateSortColumn(PhenotypeService.COLUMNS_DATA_SORTABLE, null);
 
-		List<Long> datasetIds = DatabaseObject.getIds(DatasetManager.getForUser(user, true).getServerResult());
+		List<Long> datasetIds = new ArrayList<>(DatasetManager.getIdsForUser(user, true).getServerResult());
 
 		if (CollectionUtils.isEmpty(datasetIds))
 			return new PaginatedServerResult<>(DebugInfo.create(user), new ArrayList<>(), 0);
@@ -116,7 +116,7 @@ public class PhenotypeManager extends AbstractManager<Phenotype>
 	public static DefaultStreamer getStreamerForFilter(UserAuth userAuth, PartialSearchQuery filter, Pagination pagination) throws InvalidColumnException, DatabaseException, InvalidSearchQueryException, InvalidArgumentException
 	{
 		pagination.updateSortColumn(PhenotypeService.COLUMNS_DATA_SORTABLE, Accession.ID);
-		List<Long> datasetIds = DatabaseObject.getIds(DatasetManager.getForUser(userAuth, true).getServerResult());
+		List<Long> datasetIds = new ArrayList<>(DatasetManager.getIdsForUser(userAuth, true).getServerResult());
 
 		String formatted = String.format(SELECT_DATA_FOR_FILTER_EXPORT, StringUtils.generateSqlPlaceholderString(datasetIds.size()), pagination.getSortQuery());
 
@@ -129,7 +129,7 @@ public class PhenotypeManager extends AbstractManager<Phenotype>
 
 	public static ServerResult<List<String>> getIdsForFilter(UserAuth user, PartialSearchQuery filter) throws DatabaseException, InvalidSearchQueryException, InvalidArgumentException, InvalidColumnException
 	{
-		List<Long> datasetIds = DatabaseObject.getIds(DatasetManager.getForUser(user, true).getServerResult());
+		List<Long> datasetIds = new ArrayList<>(DatasetManager.getIdsForUser(user, true).getServerResult());
 
 		if (CollectionUtils.isEmpty(datasetIds))
 			return new PaginatedServerResult<>(DebugInfo.create(user), new ArrayList<>(), 0);
@@ -135,6 +135,8 @@ public class UserGroupManager extends AbstractManager<UserGroup>
 					.getDebugInfo());
 		}
 
+		DatasetPermissionCache.invalidate();
+
 		resetAutoIncrement(GerminateDatabaseTable.usergroupmembers);
 		resetAutoIncrement(GerminateDatabaseTable.usergroups);
 
@@ -165,6 +167,8 @@ public class UserGroupManager extends AbstractManager<UserGroup>
 				.setLongs(ids)
 				.execute();
 
+		DatasetPermissionCache.invalidate();
+
 		resetAutoIncrement(GerminateDatabaseTable.usergroupmembers);
 	}
 
@@ -193,6 +197,8 @@ public class UserGroupManager extends AbstractManager<UserGroup>
 			sqlDebug.addAll(temp.getDebugInfo());
 		}
 
+		DatasetPermissionCache.invalidate();
+
 		return new ServerResult<>(sqlDebug, newIds);
 	}
 
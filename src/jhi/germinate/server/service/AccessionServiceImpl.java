@@ -59,21 +59,7 @@ public class AccessionServiceImpl extends BaseRemoteServiceServlet implements Ac
 		Session.checkSession(properties, this);
 		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
-		try (DefaultStreamer streamer = AccessionManager.getStreamerForFilter(userAuth, filter, new Pagination(0, Integer.MAX_VALUE)))
-		{
-			File result = createTemporaryFile("download-accessions", FileType.txt.name());
-
-			try
-			{
-				Util.writeDefaultToFile(Util.getOperatingSystem(getThreadLocalRequest()), null, streamer, result);
-			}
-			catch (java.io.IOException e)
-			{
-				throw new IOException(e);
-			}
-
-			return new ServerResult<>(streamer.getDebugInfo(), result.getName());
-		}
+		return createStreamingExport("download-accessions", pagination -> AccessionManager.getStreamerForFilter(userAuth, filter, pagination));
 	}
 
 	@Override
@@ -110,10 +110,11 @@ public class AlleleFrequencyServiceImpl extends DataExportServlet implements All
 	}
 
 	@Override
-	public Pair<String, FlapjackProjectCreationResult> createProject(RequestProperties properties, HistogramParams params) throws InvalidSessionException, FlapjackException
+	public ServerResult<String> createProject(RequestProperties properties, HistogramParams params) throws InvalidSessionException, FlapjackException
 	{
 		HttpServletRequest req = getThreadLocalRequest();
 		Session.checkSession(properties, req);
+		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
 		File mapFile = new File((String) getFromSession(SESSION_PARAM_MAP));
 		File subsetForFlapjack = new File((String) getFromSession(SESSION_PARAM_ALLELE_DATA_FILE));
@@ -124,8 +125,6 @@ public class AlleleFrequencyServiceImpl extends DataExportServlet implements All
 		if (mapFile.exists())
 			FileUtils.setLastModifyDateNow(mapFile);
 
-		String debugOutput = FlapjackUtils.createBinnedFile(params, subsetForFlapjack.getAbsolutePath(), binnedFile.getAbsolutePath(), histogramFile.getAbsolutePath());
-
 		/* Now we call Flapjack to create the project file for us */
 		File flapjackResultFile = createTemporaryFile("genotype", params.datasetIds, "flapjack");
 
@@ -133,77 +132,171 @@ public class AlleleFrequencyServiceImpl extends DataExportServlet implements All
 				.add(Param.map, mapFile)
 				.add(Param.genotypes, binnedFile)
 				.add(Param.project, flapjackResultFile);
-		debugOutput += "     " + FlapjackUtils.createProject(flapjackParams);
 
-		FlapjackProjectCreationResult fjExportResult = new FlapjackProjectCreationResult()
-				.setMapFile(new CreatedFile(mapFile))
-				.setRawDataFile(new CreatedFile(subsetForFlapjack))
-				.setTabDelimitedFile(new CreatedFile(binnedFile))
-				.setProjectFile(new CreatedFile(flapjackResultFile));
+		/* This continues an export the user is waiting for, so give it a high priority */
+		ExportJob<Pair<String, FlapjackProjectCreationResult>> job = ExportJobManager.submit("Allele frequency Flapjack project", userAuth, req.getSession().getId(), ExportJobManager.PRIORITY_HIGH, j ->
+		{
+			j.addFile(binnedFile);
+			j.addFile(flapjackResultFile);
+
+			String output = FlapjackUtils.createBinnedFile(params, subsetForFlapjack.getAbsolutePath(), binnedFile.getAbsolutePath(), histogramFile.getAbsolutePath());
+			j.setProgress(0.5f);
+
+			String debugOutput = output + "     " + FlapjackUtils.createProject(flapjackParams);
 
-		return new Pair<>(debugOutput, fjExportResult);
+			FlapjackProjectCreationResult fjExportResult = new FlapjackProjectCreationResult()
+					.setMapFile(new CreatedFile(mapFile))
+					.setRawDataFile(new CreatedFile(subsetForFlapjack))
+					.setTabDelimitedFile(new CreatedFile(binnedFile))
+					.setProjectFile(new CreatedFile(flapjackResultFile));
+
+			return new Pair<>(debugOutput, fjExportResult);
+		});
+
+		return new ServerResult<>(job.getId());
 	}
 
 	@Override
-	public ServerResult<FlapjackAllelefreqBinningResult> createHistogram(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datasetId, boolean missingOn, Long mapId, int nrOfBins) throws InvalidSessionException, DatabaseException, InvalidArgumentException, IOException, FlapjackException
+	public Pair<String, FlapjackProjectCreationResult> getProject(RequestProperties properties, String jobId) throws InvalidSessionException, FlapjackException
 	{
 		Session.checkSession(properties, this);
-		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
-		FlapjackAllelefreqBinningResult result = new FlapjackAllelefreqBinningResult();
+		try
+		{
+			return getJobResult(jobId, Pair.class);
+		}
+		catch (FlapjackException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new FlapjackException(e);
+		}
+	}
+
+	@Override
+	public ServerResult<String> createHistogram(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datasetId, boolean missingOn, Long mapId, int nrOfBins) throws InvalidSessionException, DatabaseException, InvalidArgumentException, IOException, FlapjackException
+	{
+		Session.checkSession(properties, this);
+		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
 		DebugInfo sqlDebug = DebugInfo.create(userAuth);
 		DataExporter.DataExporterParameters settings = getDataExporterParameters(sqlDebug, userAuth, ExperimentType.allelefreq, accessionGroups, markedAccessionIds, markerGroups, markedMarkerIds, datasetId, mapId, false, missingOn);
 		CommonServiceImpl.ExportResult exportResult = getExportResult(datasetId, ExperimentType.allelefreq, this);
 
-		// Kick off the extraction process, because we need the exported data before we can start with the histogram
-		try
+		/* The job runs outside of the request, so create the files and get the session here */
+		File histogramFile = createTemporaryFile("histogram", datasetId, FileType.txt.name());
+		File mapFile = createTemporaryFile("map", datasetId, "map");
+		HttpSession session = getRequest().getSession();
+
+		/* The resolved lines and markers are part of the key, so the key already reflects the permissions of the user */
+		ExportCache cache = ExportCache.getInstance(this);
+		String cacheKey = ExportCache.createKey(ExperimentType.allelefreq, settings.inputFile, mapId, settings.rowNames, settings.colNames, settings.qualityMissingValue, nrOfBins, exportResult.flapjackLinks);
+		ExportCache.Entry cached = cache.get(cacheKey, ExportCache.ARTIFACT_DATA, ExportCache.ARTIFACT_HISTOGRAM, ExportCache.ARTIFACT_MAP);
+
+		if (cached != null)
 		{
+			try
+			{
+				cache.copyTo(cached, ExportCache.ARTIFACT_HISTOGRAM, histogramFile);
+				cache.copyTo(cached, ExportCache.ARTIFACT_MAP, mapFile);
+				cache.copyTo(cached, ExportCache.ARTIFACT_DATA, exportResult.subsetWithFlapjackLinks);
+
+				rememberExport(session, histogramFile, exportResult.subsetWithFlapjackLinks, mapFile, cached.getDeletedMarkers());
+
+				FlapjackAllelefreqBinningResult result = new FlapjackAllelefreqBinningResult();
+				result.setDebugOutput(cached.getProperty(ExportCache.ARTIFACT_HISTOGRAM));
+				result.setHistogramFile(histogramFile.getName());
+
+				String jobId = ExportJobManager.complete("Allele frequency histogram", userAuth, session.getId(), result, histogramFile, mapFile, exportResult.subsetWithFlapjackLinks).getId();
+				return new ServerResult<>(sqlDebug, jobId);
+			}
+			catch (java.io.IOException e)
+			{
+				/* The entry has been evicted in the meantime, export the data instead */
+			}
+		}
+
+		// Kick off the extraction process, because we need the exported data before we can start with the histogram. The client follows the job and then asks for its result.
+		ExportJob<FlapjackAllelefreqBinningResult> job = ExportJobManager.submit("Allele frequency histogram", userAuth, session.getId(), ExportJobManager.PRIORITY_NORMAL, j ->
+		{
+			j.addFile(exportResult.subsetWithFlapjackLinks);
+			j.addFile(histogramFile);
+			j.addFile(mapFile);
+
 			AlleleFrequencyDataExporter exporter = new AlleleFrequencyDataExporter(settings);
 			exporter.readInput();
+			j.setProgress(0.3f);
 			int size = exporter.exportResult(exportResult.subsetWithFlapjackLinks.getAbsolutePath(), "# fjFile = ALLELE_FREQUENCY\n" + exportResult.flapjackLinks);
+			j.setProgress(0.6f);
 
 			/* Now we call Flapjack to create histogram file for us */
-			File histogramFile = createTemporaryFile("histogram", datasetId, FileType.txt.name());
 			String debugOutput = FlapjackUtils.makeHistogram(exportResult.subsetWithFlapjackLinks.getAbsolutePath(), histogramFile.getAbsolutePath(), nrOfBins);
-
-			storeInSession(SESSION_PARAM_HISTOGRAM, histogramFile.getAbsolutePath());
-			storeInSession(SESSION_PARAM_ALLELE_DATA_FILE, exportResult.subsetWithFlapjackLinks.getAbsolutePath());
+			j.setProgress(0.9f);
 
 			/* Get the map */
-			DefaultStreamer mapData = GenotypeServiceImpl.getMap(userAuth, sqlDebug, mapId);
+			DefaultStreamer mapData = GenotypeServiceImpl.getMap(userAuth, DebugInfo.create(userAuth), mapId);
 
 			if (!mapData.hasData())
 				throw new InvalidArgumentException("There is no data to export for the current selection.");
 
-			try
-			{
-				Set<String> keptMarkers = exporter.getUsedColumnNames();
-				Set<String> deletedMarkers = exporter.getDeletedMarkers();
-				File filename = createTemporaryFile("map", datasetId, "map");
-				FlapjackUtils.writeTemporaryMapFile(filename, mapData, keptMarkers, null);
-
-				/* Remember the map file location in the session */
-				storeInSession(SESSION_PARAM_MAP, filename.getAbsolutePath());
-				storeInSession(SESSION_PARAM_DELETED_MARKERS, deletedMarkers);
-			}
-			catch (java.io.IOException e1)
-			{
-				throw new IOException(e1);
-			}
+			Set<String> deletedMarkers = exporter.getDeletedMarkers();
+			FlapjackUtils.writeTemporaryMapFile(mapFile, mapData, exporter.getUsedColumnNames(), null);
+
+			/* Remember the file locations in the session */
+			rememberExport(session, histogramFile, exportResult.subsetWithFlapjackLinks, mapFile, deletedMarkers);
 
 			if (size < 1)
 				throw new InvalidArgumentException("There is no data to export for the current selection.");
 
+			ExportCache.Entry entry = cache.put(cacheKey, ExportCache.ARTIFACT_DATA, exportResult.subsetWithFlapjackLinks);
+			if (entry != null)
+			{
+				entry.setDeletedMarkers(deletedMarkers);
+				entry.setProperty(ExportCache.ARTIFACT_HISTOGRAM, debugOutput);
+				cache.put(cacheKey, ExportCache.ARTIFACT_MAP, mapFile);
+				cache.put(cacheKey, ExportCache.ARTIFACT_HISTOGRAM, histogramFile);
+			}
+
+			FlapjackAllelefreqBinningResult result = new FlapjackAllelefreqBinningResult();
 			result.setDebugOutput(debugOutput);
 			result.setHistogramFile(histogramFile.getName());
+
+			return result;
+		});
+
+		return new ServerResult<>(sqlDebug, job.getId());
+	}
+
+	/**
+	 * Remembers the files of the last export in the session, they're used to draw the histogram and to create the Flapjack project
+	 */
+	private static void rememberExport(HttpSession session, File histogramFile, File dataFile, File mapFile, Set<String> deletedMarkers)
+	{
+		session.setAttribute(SESSION_PARAM_HISTOGRAM, histogramFile.getAbsolutePath());
+		session.setAttribute(SESSION_PARAM_ALLELE_DATA_FILE, dataFile.getAbsolutePath());
+		session.setAttribute(SESSION_PARAM_MAP, mapFile.getAbsolutePath());
+		session.setAttribute(SESSION_PARAM_DELETED_MARKERS, deletedMarkers);
+	}
+
+	@Override
+	public ServerResult<FlapjackAllelefreqBinningResult> getHistogram(RequestProperties properties, String jobId) throws InvalidSessionException, DatabaseException, InvalidArgumentException, IOException, FlapjackException
+	{
+		Session.checkSession(properties, this);
+
+		try
+		{
+			return new ServerResult<>(getJobResult(jobId, FlapjackAllelefreqBinningResult.class));
 		}
-		catch (java.io.IOException e)
+		catch (DatabaseException | InvalidArgumentException | IOException | FlapjackException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
 		{
 			e.printStackTrace();
 			throw new IOException(e);
 		}
-
-		return new ServerResult<>(sqlDebug, result);
 	}
 }
@@ -90,37 +90,14 @@ public class AttributeServiceImpl extends BaseRemoteServiceServlet implements At
 		Session.checkSession(properties, this);
 		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
-		DefaultStreamer streamer = null;
-
 		switch (target)
 		{
 			case germinatebase:
-				streamer = AttributeDataManager.getStreamerForAccessionFilter(userAuth, filter, Pagination.getDefault());
-				break;
+				return createStreamingExport("download-attributes", pagination -> AttributeDataManager.getStreamerForAccessionFilter(userAuth, filter, pagination));
 			case datasets:
-				streamer = AttributeDataManager.getStreamerForDatasetFilter(userAuth, filter, Pagination.getDefault());
-				break;
+				return createStreamingExport("download-attributes", pagination -> AttributeDataManager.getStreamerForDatasetFilter(userAuth, filter, pagination));
 			default:
+				return new ServerResult<>(null, null);
 		}
-
-		if (streamer != null)
-		{
-			File result = createTemporaryFile("download-attributes", FileType.txt.name());
-
-			try
-			{
-				Util.writeDefaultToFile(Util.getOperatingSystem(getThreadLocalRequest()), null, streamer, result);
-			}
-			catch (java.io.IOException e)
-			{
-				throw new IOException(e);
-			}
-
-			streamer.close();
-
-			return new ServerResult<>(streamer.getDebugInfo(), result.getName());
-		}
-		else
-			return new ServerResult<>(null, null);
 	}
 }
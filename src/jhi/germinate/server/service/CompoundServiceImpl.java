@@ -205,20 +205,7 @@ public class CompoundServiceImpl extends BaseRemoteServiceServlet implements Com
 		Session.checkSession(properties, this);
 		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
-		DefaultStreamer streamer = CompoundDataManager.getStreamerForFilter(userAuth, filter, new Pagination(0, Integer.MAX_VALUE));
-
-		File result = createTemporaryFile("download-compounds", FileType.txt.name());
-
-		try
-		{
-			Util.writeDefaultToFile(Util.getOperatingSystem(getThreadLocalRequest()), null, streamer, result);
-		}
-		catch (java.io.IOException e)
-		{
-			throw new IOException(e);
-		}
-
-		return new ServerResult<>(streamer.getDebugInfo(), result.getName());
+		return createStreamingExport("download-compounds", pagination -> CompoundDataManager.getStreamerForFilter(userAuth, filter, pagination));
 	}
 
 	@Override
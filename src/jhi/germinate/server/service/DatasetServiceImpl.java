@@ -61,20 +61,7 @@ public class DatasetServiceImpl extends BaseRemoteServiceServlet implements Data
 		Session.checkSession(properties, this);
 		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
-		DefaultStreamer streamer = DatasetManager.getStreamerForFilter(userAuth, filter, new Pagination(0, Integer.MAX_VALUE));
-
-		File result = createTemporaryFile("download-datasets", FileType.txt.name());
-
-		try
-		{
-			Util.writeDefaultToFile(Util.getOperatingSystem(getThreadLocalRequest()), null, streamer, result);
-		}
-		catch (java.io.IOException e)
-		{
-			throw new IOException(e);
-		}
-
-		return new ServerResult<>(streamer.getDebugInfo(), result.getName());
+		return createStreamingExport("download-datasets", pagination -> DatasetManager.getStreamerForFilter(userAuth, filter, pagination));
 	}
 
 	@Override
@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.service;
+
+import java.util.*;
+
+import javax.servlet.annotation.*;
+
+import jhi.germinate.client.service.*;
+import jhi.germinate.server.util.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * {@link ExportJobServiceImpl} is the implementation of {@link ExportJobService}.
+ *
+ * @author Sebastian Raubach
+ */
+@WebServlet(urlPatterns = {"/germinate/export-job"})
+public class ExportJobServiceImpl extends BaseRemoteServiceServlet implements ExportJobService
+{
+	private static final long serialVersionUID = -2480815468542741935L;
+
+	@Override
+	public ExportJobStatus getProgress(RequestProperties properties) throws InvalidSessionException
+	{
+		Session.checkSession(properties, this);
+
+		List<ExportJob<?>> jobs = ExportJobManager.getJobs(getRequest().getSession().getId());
+
+		// Find the most recent job that is still queued or running
+		for (int i = jobs.size() - 1; i >= 0; i--)
+		{
+			if (!jobs.get(i).isDone())
+				return ExportJobManager.getStatus(jobs.get(i));
+		}
+
+		return null;
+	}
+
+	@Override
+	public ExportJobStatus getStatus(RequestProperties properties, String jobId) throws InvalidSessionException
+	{
+		Session.checkSession(properties, this);
+
+		ExportJob<?> job = ExportJobManager.get(jobId, getRequest().getSession().getId());
+
+		if (job == null)
+			return null;
+		else
+			return ExportJobManager.getStatus(job);
+	}
+
+	@Override
+	public List<ExportJobStatus> getJobs(RequestProperties properties) throws InvalidSessionException
+	{
+		Session.checkSession(properties, this);
+
+		List<ExportJobStatus> result = new ArrayList<>();
+		for (ExportJob<?> job : ExportJobManager.getJobs(getRequest().getSession().getId()))
+			result.add(ExportJobManager.getStatus(job));
+
+		return result;
+	}
+
+	@Override
+	public Boolean cancel(RequestProperties properties, String jobId) throws InvalidSessionException
+	{
+		Session.checkSession(properties, this);
+
+		ExportJob<?> job = ExportJobManager.get(jobId, getRequest().getSession().getId());
+
+		if (job == null || job.isDone())
+			return false;
+
+		job.cancel();
+		return true;
+	}
+}
@@ -22,6 +22,8 @@ import org.apache.http.*;
 import java.io.*;
 import java.io.IOException;
 import java.util.*;
+import java.util.logging.*;
+import java.util.zip.*;
 
 import javax.servlet.annotation.*;
 import javax.servlet.http.*;
@@ -44,6 +46,10 @@ public class FileServlet extends BaseHttpServlet
 
 	public static final Map<String, Long> PUBLICLY_AVAILABLE_FILES = Collections.synchronizedMap(new HashMap<>());
 
+	private static final int         BUFFER_SIZE  = 64 * 1024;
+	/** File types that are worth compressing on the fly */
+	private static final Set<String> COMPRESSIBLE = new HashSet<>(Arrays.asList(FileType.txt.name(), FileType.tsv.name(), FileType.json.name(), FileType.mct.name(), FileType.map.name(), FileType.helium.name(), FileType.strudel.name()));
+
 	@Override
 	public void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
 	{
@@ -117,6 +123,18 @@ public class FileServlet extends BaseHttpServlet
 			location = FileLocation.temporary;
 		}
 
+		/* Exports that are written straight into the response instead of a temporary file */
+		if (location == FileLocation.temporary && req.getSession(false) != null)
+		{
+			StreamingExport export = StreamingExport.get(filePath, req.getSession(false).getId());
+
+			if (export != null)
+			{
+				stream(req, resp, filePath, export);
+				return;
+			}
+		}
+
 		/* Get the absolute file path */
 		File file = getFile(req, location, fileLocale, filePath);
 
@@ -139,25 +157,98 @@ public class FileServlet extends BaseHttpServlet
 
 		FileUtils.setLastModifyDateNow(file);
 
-		resp.setContentLength((int) file.length());
+		boolean compress = COMPRESSIBLE.contains(extension) && acceptsGzip(req);
 
-		/* Open the file and output streams */
-		FileInputStream in = new FileInputStream(file);
-		OutputStream out = resp.getOutputStream();
+		if (compress)
+			resp.setHeader("Content-Encoding", "gzip");
+		else
+			resp.setHeader("Content-Length", Long.toString(file.length()));
 
 		/* Copy the contents of the file to the output stream */
-		byte[] buf = new byte[1024];
-		int count;
-		while ((count = in.read(buf)) >= 0)
+		try (InputStream in = new FileInputStream(file);
+			 OutputStream out = compress ? new GZIPOutputStream(resp.getOutputStream(), BUFFER_SIZE) : resp.getOutputStream())
 		{
-			out.write(buf, 0, count);
+			byte[] buf = new byte[BUFFER_SIZE];
+			int count;
+			while ((count = in.read(buf)) >= 0)
+			{
+				out.write(buf, 0, count);
+			}
 		}
 
-		in.close();
-		out.close();
-
 		// Delete the file if required
 		if (deleteAfterSend)
 			file.delete();
 	}
+
+	/**
+	 * Writes the {@link StreamingExport} into the response. The length isn't known in advance, so the response is sent in chunks and compressed
+	 * if the client supports it.
+	 */
+	private void stream(HttpServletRequest req, HttpServletResponse resp, String filename, StreamingExport export) throws IOException
+	{
+		resp.setHeader("Content-Disposition", "attachment;filename=\"" + filename + "\"");
+
+		boolean compress = acceptsGzip(req);
+		if (compress)
+			resp.setHeader("Content-Encoding", "gzip");
+
+		long start = System.currentTimeMillis();
+		CountingOutputStream counter = null;
+
+		try
+		{
+			OutputStream out = resp.getOutputStream();
+			if (compress)
+				out = new GZIPOutputStream(out, BUFFER_SIZE);
+			counter = new CountingOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+
+			export.write(counter);
+
+			counter.close();
+
+			Logger.getLogger("").log(Level.INFO, "Streamed " + filename + ": " + counter.count + " bytes in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		catch (Exception e)
+		{
+			Logger.getLogger("").log(Level.WARNING, "Streaming " + filename + " failed after " + (counter == null ? 0 : counter.count) + " bytes", e);
+
+			/* Once the first chunk has been sent, all we can do is cut the download short */
+			if (!resp.isCommitted())
+			{
+				resp.reset();
+				error(resp, HttpStatus.SC_INTERNAL_SERVER_ERROR, "Export failed.");
+			}
+		}
+	}
+
+	private static boolean acceptsGzip(HttpServletRequest req)
+	{
+		String encoding = req.getHeader("Accept-Encoding");
+		return encoding != null && encoding.toLowerCase(Locale.ENGLISH).contains("gzip");
+	}
+
+	private static class CountingOutputStream extends FilterOutputStream
+	{
+		private long count = 0;
+
+		CountingOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+			count += len;
+		}
+	}
 }
\ No newline at end of file
@@ -21,6 +21,7 @@ import java.io.*;
 import java.util.*;
 
 import javax.servlet.annotation.*;
+import javax.servlet.http.*;
 
 import jhi.germinate.client.service.*;
 import jhi.germinate.server.database.query.*;
@@ -65,35 +66,92 @@ public class GenotypeServiceImpl extends DataExportServlet implements GenotypeSe
 	}
 
 	@Override
-	public ServerResult<FlapjackProjectCreationResult> convertToFlapjack(RequestProperties properties, String map, String genotype) throws InvalidSessionException, FlapjackException
+	public ServerResult<String> convertToFlapjack(RequestProperties properties, String map, String genotype) throws InvalidSessionException, FlapjackException
 	{
 		Session.checkSession(properties, this);
+		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
 		File mapFile = getFile(FileLocation.temporary, map);
 		File genotypeFile = getFile(FileLocation.temporary, genotype);
 
 		/* Now we call Flapjack to create the project file for us */
 		File flapjackResultFile = createTemporaryFile("genotype", "flapjack");
-		String debugOutput;
+		String sessionId = getRequest().getSession().getId();
 
-		FlapjackParams params = new FlapjackParams()
-				.add(Param.map, mapFile)
-				.add(Param.genotypes, genotypeFile)
-				.add(Param.project, flapjackResultFile);
+		/* Get the markers that have been removed by the quality filters during the export */
+		@SuppressWarnings("unchecked")
+		Set<String> deletedMarkers = (Set<String>) getFromSession(SESSION_PARAM_DELETED_MARKERS);
+		if (deletedMarkers == null)
+			deletedMarkers = new HashSet<>();
 
-		/* Get the debug output from flapjack */
-		debugOutput = FlapjackUtils.createProject(params);
-
-		Set<String> deletedMarkers = new HashSet<>(); // TODO: Once the HDF5 export supports the CDF (Crap Data Filter), we need to fill this...
 		/* Create a list of newly created files */
 		FlapjackProjectCreationResult fjExport = new FlapjackProjectCreationResult()
-				.setDebugOutput(debugOutput)
 				.setProjectFile(new CreatedFile(flapjackResultFile))
 				.setTabDelimitedFile(new CreatedFile(genotypeFile))
 				.setMapFile(new CreatedFile(mapFile))
 				.setDeletedMarkers(deletedMarkers);
 
-		return new ServerResult<>(fjExport);
+		/* Only use the cache if the files are the ones of the last export, otherwise the cache key doesn't match them */
+		ExportCache cache = ExportCache.getInstance(this);
+		String cacheKey = Objects.equals(genotype, getFromSession(Session.GENOTYPE_DATA)) ? (String) getFromSession(SESSION_PARAM_EXPORT_CACHE_KEY) : null;
+		ExportCache.Entry cached = cacheKey == null ? null : cache.get(cacheKey, ExportCache.ARTIFACT_FLAPJACK);
+
+		if (cached != null)
+		{
+			try
+			{
+				cache.copyTo(cached, ExportCache.ARTIFACT_FLAPJACK, flapjackResultFile);
+				fjExport.setDebugOutput(cached.getProperty(ExportCache.ARTIFACT_FLAPJACK));
+
+				return new ServerResult<>(ExportJobManager.complete("Flapjack project", userAuth, sessionId, fjExport, flapjackResultFile).getId());
+			}
+			catch (java.io.IOException e)
+			{
+				/* The entry has been evicted in the meantime, create the project instead */
+			}
+		}
+
+		FlapjackParams params = new FlapjackParams()
+				.add(Param.map, mapFile)
+				.add(Param.genotypes, genotypeFile)
+				.add(Param.project, flapjackResultFile);
+
+		/* Get the debug output from flapjack. This continues an export the user is waiting for, so give it a high priority */
+		ExportJob<FlapjackProjectCreationResult> job = ExportJobManager.submit("Flapjack project", userAuth, sessionId, ExportJobManager.PRIORITY_HIGH, j ->
+		{
+			j.addFile(flapjackResultFile);
+			String debugOutput = FlapjackUtils.createProject(params);
+
+			if (cacheKey != null)
+			{
+				ExportCache.Entry entry = cache.put(cacheKey, ExportCache.ARTIFACT_FLAPJACK, flapjackResultFile);
+				if (entry != null)
+					entry.setProperty(ExportCache.ARTIFACT_FLAPJACK, debugOutput);
+			}
+
+			return fjExport.setDebugOutput(debugOutput);
+		});
+
+		return new ServerResult<>(job.getId());
+	}
+
+	@Override
+	public ServerResult<FlapjackProjectCreationResult> getFlapjackProject(RequestProperties properties, String jobId) throws InvalidSessionException, FlapjackException
+	{
+		Session.checkSession(properties, this);
+
+		try
+		{
+			return new ServerResult<>(getJobResult(jobId, FlapjackProjectCreationResult.class));
+		}
+		catch (FlapjackException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new FlapjackException(e);
+		}
 	}
 
 	@Override
@@ -106,17 +164,65 @@ public class GenotypeServiceImpl extends DataExportServlet implements GenotypeSe
 		DataExporter.DataExporterParameters settings = getDataExporterParameters(sqlDebug, userAuth, ExperimentType.genotype, null, null, null, null, datasetId, null, false, false);
 		CommonServiceImpl.ExportResult result = getExportResult(datasetId, ExperimentType.genotype, this);
 
-		/* Kick off the extraction process */
-		DataExporter exporter = new DataExporter(settings, result.subsetWithFlapjackLinks.getAbsolutePath());
-		exporter.readInput();
-		/* Export the data with the links */
-		exporter.exportResult(result.flapjackLinks);
+		ExportCache cache = ExportCache.getInstance(this);
+		String cacheKey = ExportCache.createKey(ExperimentType.genotype, "text", settings.inputFile, settings.rowNames, result.flapjackLinks);
+		String sessionId = getRequest().getSession().getId();
+		File folder = result.subsetWithFlapjackLinks.getParentFile();
+
+		/* The whole dataset can be several GB, so it's written straight into the response while the client downloads it */
+		String filename = createStreamingExport(ExperimentType.genotype.name() + "_links_dataset-" + datasetId, FileType.txt.name(), out ->
+		{
+			ExportCache.Entry cached = cache.get(cacheKey, ExportCache.ARTIFACT_DATA);
+
+			if (cached != null)
+			{
+				try
+				{
+					cache.copyTo(cached, ExportCache.ARTIFACT_DATA, out);
+					return;
+				}
+				catch (FileNotFoundException e)
+				{
+					/* The entry has been evicted in the meantime, export the data instead */
+				}
+			}
+
+			/* Convert the data into a file for the cache and copy it to the client while it's being written. The job doesn't wait for the client,
+			 * so it only occupies its slot for as long as the conversion takes. This exports the whole dataset, so give it a low priority */
+			File cacheFile = new File(folder, "genotype_" + UUID.randomUUID() + ".txt");
+			cacheFile.createNewFile();
+
+			try (InputStream in = new FileInputStream(cacheFile))
+			{
+				ExportJobManager.submit("Genotype dataset export", userAuth, sessionId, ExportJobManager.PRIORITY_LOW, job ->
+				{
+					job.addFile(cacheFile);
+
+					try
+					{
+						try (OutputStream file = new BufferedOutputStream(new FileOutputStream(cacheFile)))
+						{
+							DataExporter exporter = new DataExporter(settings, cacheFile.getAbsolutePath());
+							exporter.setProgressListener(job::setProgress);
+							exporter.exportResult(result.flapjackLinks, file);
+						}
+
+						cache.put(cacheKey, ExportCache.ARTIFACT_DATA, cacheFile);
+					}
+					finally
+					{
+						cacheFile.delete();
+					}
+					return null;
+				}).tail(in, out);
+			}
+		});
 
-		return new ServerResult<>(sqlDebug, result.subsetWithFlapjackLinks.getName());
+		return new ServerResult<>(sqlDebug, filename);
 	}
 
 	@Override
-	public ServerResult<List<CreatedFile>> computeExportDataset(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datasetId, boolean heterozygousFilter, boolean misingDataFilter, Long mapId) throws InvalidSessionException, DatabaseException, IOException, InvalidArgumentException
+	public ServerResult<String> computeExportDataset(RequestProperties properties, List<Long> accessionGroups, Set<String> markedAccessionIds, List<Long> markerGroups, Set<String> markedMarkerIds, Long datasetId, boolean heterozygousFilter, boolean misingDataFilter, Long mapId) throws InvalidSessionException, DatabaseException, IOException, InvalidArgumentException
 	{
 		Session.checkSession(properties, this);
 		UserAuth userAuth = UserAuth.getFromSession(this, properties);
@@ -125,40 +231,98 @@ public class GenotypeServiceImpl extends DataExportServlet implements GenotypeSe
 		DataExporter.DataExporterParameters settings = getDataExporterParameters(sqlDebug, userAuth, ExperimentType.genotype, accessionGroups, markedAccessionIds, markerGroups, markedMarkerIds, datasetId, mapId, heterozygousFilter, misingDataFilter);
 		CommonServiceImpl.ExportResult result = getExportResult(datasetId, ExperimentType.genotype, this);
 
-		File mapFile;
+		/* The job runs outside of the request, so create the files and get the session here */
+		File mapFile = createTemporaryFile("map", datasetId, "map");
+		HttpSession session = getRequest().getSession();
 
-		/* Kick off the extraction process */
-		try
+		List<CreatedFile> files = new ArrayList<>();
+		files.add(new CreatedFile(mapFile));
+		files.add(new CreatedFile(result.subsetWithFlapjackLinks));
+
+		/* The resolved lines and markers are part of the key, so the key already reflects the permissions of the user */
+		ExportCache cache = ExportCache.getInstance(this);
+		String cacheKey = ExportCache.createKey(ExperimentType.genotype, settings.inputFile, mapId, settings.rowNames, settings.colNames, settings.qualityMissingValue, settings.qualityHeteroValue, result.flapjackLinks);
+		ExportCache.Entry cached = cache.get(cacheKey, ExportCache.ARTIFACT_DATA, ExportCache.ARTIFACT_MAP);
+
+		if (cached != null)
+		{
+			try
+			{
+				cache.copyTo(cached, ExportCache.ARTIFACT_DATA, result.subsetWithFlapjackLinks);
+				cache.copyTo(cached, ExportCache.ARTIFACT_MAP, mapFile);
+				rememberExport(session, cacheKey, cached.getDeletedMarkers(), mapFile, result.subsetWithFlapjackLinks);
+
+				String jobId = ExportJobManager.complete("Genotype export", userAuth, session.getId(), files, mapFile, result.subsetWithFlapjackLinks).getId();
+				return new ServerResult<>(sqlDebug, jobId);
+			}
+			catch (java.io.IOException e)
+			{
+				/* The entry has been evicted in the meantime, export the data instead */
+			}
+		}
+
+		/* Kick off the extraction process, the client follows the job and then asks for its result */
+		ExportJob<List<CreatedFile>> job = ExportJobManager.submit("Genotype export", userAuth, session.getId(), ExportJobManager.PRIORITY_NORMAL, j ->
 		{
+			j.addFile(mapFile);
+			j.addFile(result.subsetWithFlapjackLinks);
+
 			DataExporter exporter = new DataExporter(settings, result.subsetWithFlapjackLinks.getAbsolutePath());
+			exporter.setProgressListener(progress -> j.setProgress(progress * 0.95f));
 			exporter.readInput();
 			/* Export the data with the links */
 			exporter.exportResult(result.flapjackLinks);
 
-			/* Store the deleted markers */
-			//			List<String> keptMarkers = exporter.getKeptMarkers();
+			Set<String> deletedMarkers = new HashSet<>(exporter.getDeletedMarkers());
 
 			/* Get the map */
-			File filename = createTemporaryFile("map", datasetId, "map");
-			DefaultStreamer mapData = getMap(userAuth, sqlDebug, mapId);
+			DefaultStreamer mapData = getMap(userAuth, DebugInfo.create(userAuth), mapId);
+
+			/* Write the map file. If the filters removed markers, only write the remaining ones */
+			FlapjackUtils.writeTemporaryMapFile(mapFile, mapData, deletedMarkers.isEmpty() ? settings.colNames : exporter.getKeptMarkers(), null);
 
-			/* Write the map file */
-			// TODO: Once filtering is supported, add the lists
-			mapFile = FlapjackUtils.writeTemporaryMapFile(filename, mapData, settings.colNames, null);
+			ExportCache.Entry entry = cache.put(cacheKey, ExportCache.ARTIFACT_DATA, result.subsetWithFlapjackLinks);
+			if (entry != null)
+			{
+				entry.setDeletedMarkers(deletedMarkers);
+				cache.put(cacheKey, ExportCache.ARTIFACT_MAP, mapFile);
+			}
+
+			rememberExport(session, cacheKey, deletedMarkers, mapFile, result.subsetWithFlapjackLinks);
+
+			return files;
+		});
+
+		return new ServerResult<>(sqlDebug, job.getId());
+	}
+
+	/**
+	 * Remembers the files of the last export in the session, they're used to create the Flapjack project
+	 */
+	private static void rememberExport(HttpSession session, String cacheKey, Set<String> deletedMarkers, File mapFile, File dataFile)
+	{
+		session.setAttribute(SESSION_PARAM_DELETED_MARKERS, deletedMarkers);
+		session.setAttribute(SESSION_PARAM_EXPORT_CACHE_KEY, cacheKey);
+		session.setAttribute(Session.GENOTYPE_MAP, mapFile.getName());
+		session.setAttribute(Session.GENOTYPE_DATA, dataFile.getName());
+	}
+
+	@Override
+	public ServerResult<List<CreatedFile>> getExportDataset(RequestProperties properties, String jobId) throws InvalidSessionException, DatabaseException, IOException, InvalidArgumentException
+	{
+		Session.checkSession(properties, this);
+
+		try
+		{
+			return new ServerResult<>(getJobResult(jobId, List.class));
+		}
+		catch (DatabaseException | IOException | InvalidArgumentException e)
+		{
+			throw e;
 		}
-		catch (java.io.IOException e)
+		catch (Exception e)
 		{
 			throw new IOException(e);
 		}
-
-		List<CreatedFile> list = new ArrayList<>();
-		list.add(new CreatedFile(mapFile));
-		list.add(new CreatedFile(result.subsetWithFlapjackLinks));
-
-		/* Remember the files */
-		getRequest().getSession().setAttribute(Session.GENOTYPE_MAP, mapFile.getName());
-		getRequest().getSession().setAttribute(Session.GENOTYPE_DATA, result.subsetWithFlapjackLinks.getName());
-
-		return new ServerResult<>(sqlDebug, list);
 	}
 }
@@ -83,6 +83,14 @@ public class LocationServiceImpl extends BaseRemoteServiceServlet implements Loc
 		return LocationManager.getIdsInPolygon(userAuth, polygon);
 	}
 
+	@Override
+	public ServerResult<List<MapCluster>> getClusters(RequestProperties properties, LocationType type, LatLngPoint southWest, LatLngPoint northEast, int zoom, boolean locations) throws InvalidSessionException, DatabaseException, InvalidColumnException
+	{
+		Session.checkSession(properties, this);
+		UserAuth userAuth = UserAuth.getFromSession(this, properties);
+		return LocationGrid.getClusters(userAuth, type, southWest, northEast, zoom, locations);
+	}
+
 	@Override
 	public ServerResult<List<String>> getIdsForFilter(RequestProperties properties, PartialSearchQuery filter) throws InvalidSessionException, DatabaseException, InvalidColumnException, InvalidSearchQueryException, InvalidArgumentException
 	{
@@ -187,20 +195,7 @@ public class LocationServiceImpl extends BaseRemoteServiceServlet implements Loc
 		Session.checkSession(properties, this);
 		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
-		DefaultStreamer streamer = LocationManager.getStreamerForFilter(userAuth, filter, new Pagination(0, Integer.MAX_VALUE));
-
-		File result = createTemporaryFile("download-locations", FileType.txt.name());
-
-		try
-		{
-			Util.writeDefaultToFile(Util.getOperatingSystem(getThreadLocalRequest()), null, streamer, result);
-		}
-		catch (java.io.IOException e)
-		{
-			throw new IOException(e);
-		}
-
-		return new ServerResult<>(streamer.getDebugInfo(), result.getName());
+		return createStreamingExport("download-locations", pagination -> LocationManager.getStreamerForFilter(userAuth, filter, pagination));
 	}
 
 	@Override
@@ -52,20 +52,7 @@ public class MarkerServiceImpl extends BaseRemoteServiceServlet implements Marke
 		Session.checkSession(properties, this);
 		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
-		DefaultStreamer streamer = MapDefinitionManager.getStreamerForFilter(userAuth, filter, new Pagination(0, Integer.MAX_VALUE));
-
-		File result = createTemporaryFile("download-markers", FileType.txt.name());
-
-		try
-		{
-			Util.writeDefaultToFile(Util.getOperatingSystem(getThreadLocalRequest()), null, streamer, result);
-		}
-		catch (java.io.IOException e)
-		{
-			throw new IOException(e);
-		}
-
-		return new ServerResult<>(streamer.getDebugInfo(), result.getName());
+		return createStreamingExport("download-markers", pagination -> MapDefinitionManager.getStreamerForFilter(userAuth, filter, pagination));
 	}
 
 	@Override
@@ -208,20 +208,7 @@ public class PedigreeServiceImpl extends BaseRemoteServiceServlet implements Ped
 		Session.checkSession(properties, this);
 		UserAuth userAuth = UserAuth.getFromSession(this, properties);
 
-		DefaultStreamer streamer = PedigreeManager.getStreamerForFilter(userAuth, filter, new Pagination(0, Integer.MAX_VALUE));
-
-		File result = createTemporaryFile("download-pedigree", FileType.txt.name());
-
-		try
-		{
-			Util.writeDefaultToFile(Util.getOperatingSystem(getThreadLocalRequest()), null, streamer, result);
-		}
-		catch (java.io.IOException e)
-		{
-			throw new IOException(e);
-		}
-
-		return new ServerResult<>(streamer.getDebugInfo(), result.getName());
+		return createStreamingExport("download-pedigree", pagination -> PedigreeManager.getStreamerForFilter(userAuth, filter, pagination));
 	}
 
 	@Override
@@ -0,0 +1,138 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.service;
+
+import java.io.*;
+import java.io.IOException;
+import java.nio.charset.*;
+import java.security.*;
+import java.util.*;
+
+import javax.servlet.annotation.*;
+import javax.servlet.http.*;
+
+import jhi.germinate.server.database.*;
+import jhi.germinate.server.manager.*;
+import jhi.germinate.server.util.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.*;
+import jhi.germinate.shared.enums.*;
+
+/**
+ * This servlet reports the SQL statements with the highest total execution time as a tab-delimited table, followed by the state of the database
+ * caches. Access requires either the username and password of an administrator, if this instance of Germinate uses authentication, or the
+ * {@link ServerProperty#GERMINATE_DATABASE_STATISTICS_TOKEN}. Without authentication and without a configured token, access is denied.
+ * Parameters: <b>username</b> and <b>password</b> or <b>token</b>, <b>limit</b> (optional, the number of statements, at least 1, defaults to
+ * {@link #DEFAULT_LIMIT}) and <b>reset</b> (optional, clears the statistics after reporting them).
+ *
+ * @author Sebastian Raubach
+ */
+@WebServlet(urlPatterns = {"/germinate/query-statistics"})
+public class QueryStatisticsServlet extends HttpServlet
+{
+	private static final long serialVersionUID = 3250814364227731659L;
+
+	private static final int DEFAULT_LIMIT = 20;
+
+	@Override
+	public void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException
+	{
+		if (!checkAccess(req, resp))
+			return;
+
+		int limit = DEFAULT_LIMIT;
+		try
+		{
+			String limitString = req.getParameter(ServletConstants.PARAM_LIMIT);
+
+			if (!StringUtils.isEmpty(limitString))
+				limit = Math.max(1, Integer.parseInt(limitString.trim()));
+		}
+		catch (NumberFormatException e)
+		{
+			/* Use the default for anything that isn't a number */
+			limit = DEFAULT_LIMIT;
+		}
+
+		resp.setContentType("text/plain");
+		resp.setCharacterEncoding("UTF-8");
+
+		try (PrintWriter writer = resp.getWriter())
+		{
+			writer.println("callers\tsql\texecutions\ttotal_ms\tmean_ms\tp50_ms\tp95_ms\tp99_ms\tmax_ms\trows");
+
+			for (QueryStatistics statistics : QueryStatistics.getTop(limit))
+			{
+				QueryStatistics.Histogram histogram = statistics.getHistogram();
+
+				writer.println(statistics.getCaller()
+						+ "\t" + statistics.getSql()
+						+ "\t" + histogram.getCount()
+						+ "\t" + toMillis(histogram.getTotal())
+						+ "\t" + toMillis(histogram.getMean())
+						+ "\t" + toMillis(histogram.getPercentile(50))
+						+ "\t" + toMillis(histogram.getPercentile(95))
+						+ "\t" + toMillis(histogram.getPercentile(99))
+						+ "\t" + toMillis(histogram.getMax())
+						+ "\t" + statistics.getRows());
+			}
+
+			writer.println();
+			writer.print(ConnectionPool.getSummary());
+			writer.print(ReplicaRouter.getSummary());
+			writer.println(ReferenceDataCache.getSummary());
+			writer.println(DatasetPermissionCache.getSummary());
+			writer.println(SearchIndex.getSummary());
+			writer.println(ParallelSearch.getSummary());
+			writer.println(LocationGrid.getSummary());
+		}
+
+		if (Boolean.parseBoolean(req.getParameter(ServletConstants.PARAM_RESET)))
+			QueryStatistics.reset();
+	}
+
+	/**
+	 * Checks if the request contains the configured token or, if this instance of Germinate uses authentication, the credentials of an
+	 * administrator. Sets the status of the response to {@link HttpServletResponse#SC_UNAUTHORIZED} otherwise.
+	 *
+	 * @param req  The {@link HttpServletRequest}
+	 * @param resp The {@link HttpServletResponse}
+	 * @return <code>true</code> if the request may access the statistics
+	 */
+	private static boolean checkAccess(HttpServletRequest req, HttpServletResponse resp)
+	{
+		String token = PropertyWatcher.get(ServerProperty.GERMINATE_DATABASE_STATISTICS_TOKEN);
+		String given = req.getParameter(ServletConstants.PARAM_TOKEN);
+
+		/* Compare in constant time, so the token can't be guessed from the response times */
+		if (!StringUtils.isEmpty(token) && !StringUtils.isEmpty(given) && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), given.getBytes(StandardCharsets.UTF_8)))
+			return true;
+
+		/* The statements and caches are internals, don't report them to anyone if there are no administrators to check against */
+		if (PropertyWatcher.getBoolean(ServerProperty.GERMINATE_USE_AUTHENTICATION))
+			return StatisticsServlet.checkAdmin(req, resp);
+
+		resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+		return false;
+	}
+
+	private static String toMillis(double micros)
+	{
+		return String.format(Locale.ENGLISH, "%.3f", micros / 1000d);
+	}
+}
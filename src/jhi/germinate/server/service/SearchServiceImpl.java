@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.service;
+
+import java.util.*;
+
+import javax.servlet.annotation.*;
+
+import jhi.germinate.client.service.*;
+import jhi.germinate.server.util.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+import jhi.germinate.shared.search.*;
+
+/**
+ * {@link SearchServiceImpl} is the implementation of {@link SearchService}.
+ *
+ * @author Sebastian Raubach
+ */
+@WebServlet(urlPatterns = {"/germinate/search"})
+public class SearchServiceImpl extends BaseRemoteServiceServlet implements SearchService
+{
+	private static final long serialVersionUID = -4610374252397311874L;
+
+	@Override
+	public ServerResult<SearchAllResult> searchAll(RequestProperties properties, Map<SearchCategory, PartialSearchQuery> queries, Pagination pagination) throws InvalidSessionException, DatabaseException
+	{
+		Session.checkSession(properties, this);
+		UserAuth userAuth = UserAuth.getFromSession(this, properties);
+
+		return ParallelSearch.search(userAuth, queries, pagination);
+	}
+
+	@Override
+	public ServerResult<SearchAllResult> getResults(RequestProperties properties, String searchId) throws InvalidSessionException
+	{
+		Session.checkSession(properties, this);
+		UserAuth userAuth = UserAuth.getFromSession(this, properties);
+
+		return ParallelSearch.getResults(userAuth, searchId);
+	}
+}
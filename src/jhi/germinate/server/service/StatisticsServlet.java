@@ -46,31 +46,10 @@ public class StatisticsServlet extends HttpServlet
 	@Override
 	public void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException
 	{
-		String username = req.getParameter(ServletConstants.PARAM_USERNAME);
-		String password = req.getParameter(ServletConstants.PARAM_PASSWORD);
 		String viewString = req.getParameter(ServletConstants.PARAM_STATISTICS_VIEW);
 
-		boolean isPrivate = PropertyWatcher.getBoolean(ServerProperty.GERMINATE_USE_AUTHENTICATION);
-
-		if (isPrivate)
-		{
-			try
-			{
-				GatekeeperUserWithPassword userDetails = GatekeeperUserManager.getForUsernameAndSystem(username);
-
-				/* Check if the user exists and has permissions */
-				if (userDetails == null || userDetails.getId() == null || userDetails.isSuspended() || !userDetails.isAdmin() || userDetails.getPassword() == null || !BCrypt.checkpw(password, userDetails.getPassword()))
-				{
-					throw new DatabaseException("The given user doesn't have sufficient permissions to access statistics of this instance of Germinate.");
-				}
-			}
-			catch (DatabaseException e)
-			{
-				e.printStackTrace();
-				resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-				return;
-			}
-		}
+		if (!checkAdmin(req, resp))
+			return;
 
 		ViewInitializer.View view;
 
@@ -89,14 +68,14 @@ public class StatisticsServlet extends HttpServlet
 		{
 			File file = getStatistics(req, view);
 
-			resp.setContentLength((int) file.length());
+			resp.setHeader("Content-Length", Long.toString(file.length()));
 
 			/* Open the file and output streams */
 			try (FileInputStream in = new FileInputStream(file);
 				 OutputStream out = resp.getOutputStream())
 			{
 				/* Copy the contents of the file to the output stream */
-				byte[] buf = new byte[1024];
+				byte[] buf = new byte[64 * 1024];
 				int count;
 				while ((count = in.read(buf)) >= 0)
 				{
@@ -113,6 +92,44 @@ public class StatisticsServlet extends HttpServlet
 		}
 	}
 
+	/**
+	 * Checks if the username and password of the request belong to an administrator if this instance of Germinate uses authentication. Sets the
+	 * status of the response to {@link HttpServletResponse#SC_UNAUTHORIZED} otherwise.
+	 *
+	 * @param req  The {@link HttpServletRequest}
+	 * @param resp The {@link HttpServletResponse}
+	 * @return <code>true</code> if the request may access the statistics
+	 */
+	static boolean checkAdmin(HttpServletRequest req, HttpServletResponse resp)
+	{
+		String username = req.getParameter(ServletConstants.PARAM_USERNAME);
+		String password = req.getParameter(ServletConstants.PARAM_PASSWORD);
+
+		boolean isPrivate = PropertyWatcher.getBoolean(ServerProperty.GERMINATE_USE_AUTHENTICATION);
+
+		if (isPrivate)
+		{
+			try
+			{
+				GatekeeperUserWithPassword userDetails = GatekeeperUserManager.getForUsernameAndSystem(username);
+
+				/* Check if the user exists and has permissions */
+				if (userDetails == null || userDetails.getId() == null || userDetails.isSuspended() || !userDetails.isAdmin() || userDetails.getPassword() == null || !BCrypt.checkpw(password, userDetails.getPassword()))
+				{
+					throw new DatabaseException("The given user doesn't have sufficient permissions to access statistics of this instance of Germinate.");
+				}
+			}
+			catch (DatabaseException e)
+			{
+				e.printStackTrace();
+				resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	public static File getStatistics(HttpServletRequest req, ViewInitializer.View view) throws DatabaseException, IOException
 	{
 		DefaultStreamer table = new DefaultQuery("SELECT * FROM " + view.getViewName(), null)
@@ -84,6 +84,8 @@ public class UserServiceImpl extends BaseRemoteServiceServlet implements UserSer
 	{
 		Session.checkSession(properties, this);
 
+		DatasetPermissionCache.invalidate(UserAuth.getFromSession(this, properties).getId());
+
 		HttpSession session = getThreadLocalRequest().getSession();
 		session.removeAttribute(Session.USER);
 		session.invalidate();
@@ -213,6 +215,9 @@ public class UserServiceImpl extends BaseRemoteServiceServlet implements UserSer
 
 		SESSIONS.put(oldUserAuth.getId(), getThreadLocalRequest().getSession());
 
+		/* The user may have been granted access to further datasets since they last logged in */
+		DatasetPermissionCache.invalidate(oldUserAuth.getId());
+
 		/* Set a cookie */
 		setCookie(getThreadLocalResponse(), Session.SID, properties.getSessionId(), oldUserAuth);
 
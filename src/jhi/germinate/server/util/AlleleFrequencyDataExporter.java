@@ -20,14 +20,32 @@ package jhi.germinate.server.util;
 import java.io.*;
 import java.nio.charset.*;
 import java.util.*;
+import java.util.concurrent.*;
 
+import ch.systemsx.cisd.hdf5.*;
 import jhi.germinate.shared.*;
 
 /**
+ * {@link AlleleFrequencyDataExporter} exports a subset of an allele frequency dataset as the input of the Flapjack binning. The tab-delimited
+ * data file is converted into an HDF5 file in the cache folder on first use (see {@link FJTabbedAlleleFrequencyToHdf5Converter}). The export then
+ * reads only the selected lines from the HDF5 file in blocks and uses the precomputed missing value counts for the quality filter. If the stored
+ * values can't be formatted back into the exact text of the file, the values are copied from the tab-delimited file instead, so the output never
+ * changes. If the HDF5 file can't be created, the tab-delimited file is used directly until it changes.
+ *
  * @author Sebastian Raubach
  */
 public class AlleleFrequencyDataExporter
 {
+	/** The maximal number of float values that are read at once */
+	private static final long MAX_WINDOW_VALUES  = 8L * 1024L * 1024L;
+	private static final int  OUTPUT_BUFFER_SIZE = 1024 * 1024;
+
+	private static final ConcurrentHashMap<String, Object> CONVERSION_LOCKS   = new ConcurrentHashMap<>();
+	/** The last modified date of the allele frequency files that couldn't be converted */
+	private static final ConcurrentHashMap<String, Long>   FAILED_CONVERSIONS = new ConcurrentHashMap<>();
+
+	private static volatile File cacheFolder = new File(System.getProperty("java.io.tmpdir"), "allelefreq-hdf5");
+
 	/** Keep track of missing values per column */
 	private int[] qualityMissing;
 
@@ -43,6 +61,21 @@ public class AlleleFrequencyDataExporter
 	private boolean                             allLines;
 	private boolean                             allMarkers;
 
+	private File                 hdf5File;
+	/** Can the values be formatted from the HDF5 file or do they have to be copied from the text file? */
+	private boolean              exactText;
+	private String               missingText;
+	private Hdf5IndexCache.Index index;
+	/** The selected lines in the order of the file */
+	private int[]                lineIndices;
+	/** The selected markers that passed the quality filter in the order of the file */
+	private int[]                markerIndices;
+
+	private interface RowConsumer
+	{
+		void accept(int lineIndex, float[] values) throws IOException;
+	}
+
 	/**
 	 * Creates a new instance of the AlleleFrequencyDataExporter
 	 *
@@ -57,11 +90,311 @@ public class AlleleFrequencyDataExporter
 	}
 
 	/**
-	 * Reads the input first to figure out which markers need to be removed (if any)
+	 * Sets the folder the HDF5 files are written to. Defaults to a folder in the temporary folder of the JVM.
+	 *
+	 * @param folder The folder
+	 */
+	public static void setCacheFolder(File folder)
+	{
+		cacheFolder = folder;
+	}
+
+	/**
+	 * Returns the HDF5 file that belongs to the given allele frequency file. It's named after the file and a hash of its path, so files with the
+	 * same name in different folders don't collide.
+	 *
+	 * @param inputFile The tab-delimited allele frequency file
+	 * @return The HDF5 file that belongs to the given allele frequency file
+	 */
+	public static File getHdf5File(File inputFile)
+	{
+		String hash = Integer.toHexString(inputFile.getAbsolutePath().hashCode());
+		return new File(cacheFolder, inputFile.getName() + "-" + hash + ".hdf5");
+	}
+
+	/**
+	 * Formats a value the way it's written to the export. Whole numbers are written without decimal places.
+	 *
+	 * @param value The value
+	 * @return The formatted value
+	 */
+	static String formatValue(float value)
+	{
+		String text = Float.toString(value);
+		return text.endsWith(".0") ? text.substring(0, text.length() - 2) : text;
+	}
+
+	/**
+	 * Makes sure that the HDF5 file of the given allele frequency file exists and is at least as recent as the allele frequency file
+	 *
+	 * @param inputFile The tab-delimited allele frequency file
+	 * @return The HDF5 file or <code>null</code> if it can't be created. Failed conversions aren't retried until the allele frequency file changes.
+	 */
+	private static File prepareHdf5File(File inputFile)
+	{
+		File hdf5File = getHdf5File(inputFile);
+		String key = inputFile.getAbsolutePath();
+
+		// Don't let concurrent exports convert the same file
+		synchronized (CONVERSION_LOCKS.computeIfAbsent(key, k -> new Object()))
+		{
+			if (hdf5File.isFile() && hdf5File.lastModified() >= inputFile.lastModified())
+				return hdf5File;
+
+			Long failed = FAILED_CONVERSIONS.get(key);
+			if (failed != null && failed == inputFile.lastModified())
+				return null;
+
+			try
+			{
+				hdf5File.getParentFile().mkdirs();
+				new FJTabbedAlleleFrequencyToHdf5Converter(inputFile, hdf5File).convertToHdf5();
+				FAILED_CONVERSIONS.remove(key);
+				return hdf5File;
+			}
+			catch (IOException | RuntimeException e)
+			{
+				e.printStackTrace();
+				FAILED_CONVERSIONS.put(key, inputFile.lastModified());
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Resolves the selected lines and markers and determines which markers need to be removed (if any)
 	 *
 	 * @throws IOException Thrown if any file I/O goes wrong
 	 */
 	public void readInput() throws IOException
+	{
+		hdf5File = prepareHdf5File(parameters.inputFile);
+
+		if (hdf5File == null)
+		{
+			readTextInput();
+			return;
+		}
+
+		index = Hdf5IndexCache.get(hdf5File);
+
+		IHDF5Reader reader = HDF5Factory.openForReading(hdf5File);
+		try
+		{
+			String data = FJTabbedAlleleFrequencyToHdf5Converter.DATA;
+			exactText = reader.object().hasAttribute(data, FJTabbedAlleleFrequencyToHdf5Converter.EXACT_TEXT) && reader.bool().getAttr(data, FJTabbedAlleleFrequencyToHdf5Converter.EXACT_TEXT);
+			missingText = exactText ? reader.string().getAttr(data, FJTabbedAlleleFrequencyToHdf5Converter.MISSING_TEXT) : null;
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		// Keep the order of the file
+		lineIndices = index.findLines(allLines ? null : parameters.rowNames);
+		Arrays.sort(lineIndices);
+		linesToExport = lineIndices.length;
+
+		boolean[] selected = new boolean[index.getMarkerCount()];
+		for (int markerIndex : index.findMarkers(allMarkers ? null : parameters.colNames))
+			selected[markerIndex] = true;
+
+		/* Get the number of missing values per marker across the selected lines */
+		int[] missing = null;
+		if (parameters.qualityMissingValue < 100)
+		{
+			if (lineIndices.length == index.getLineCount() && index.hasMarkerStats())
+			{
+				// The precomputed counts cover exactly the selected lines
+				missing = new int[selected.length];
+				for (int i = 0; i < missing.length; i++)
+					missing[i] = index.getMarkerMissing(i);
+			}
+			else
+			{
+				missing = countMissing(selected);
+			}
+		}
+
+		/* Get the actual number of allowed items */
+		double localMissingValue = parameters.qualityMissingValue * (linesToExport / 100.0);
+
+		int[] kept = new int[selected.length];
+		int count = 0;
+		for (int i = 0; i < selected.length; i++)
+		{
+			String marker = index.getMarker(i);
+
+			if (!selected[i] || (missing != null && missing[i] > localMissingValue))
+			{
+				deletedMarkers.add(marker);
+			}
+			else
+			{
+				usedMarkers.add(marker);
+				kept[count++] = i;
+			}
+		}
+
+		markerIndices = Arrays.copyOf(kept, count);
+	}
+
+	private int[] countMissing(boolean[] selected) throws IOException
+	{
+		int[] missing = new int[selected.length];
+
+		readRows((lineIndex, values) ->
+		{
+			for (int i = 0; i < values.length; i++)
+			{
+				if (selected[i] && Float.isNaN(values[i]))
+					missing[i]++;
+			}
+		});
+
+		return missing;
+	}
+
+	/**
+	 * Applies the quality measures and writes the data to the output file
+	 *
+	 * @param outputFile The path to the file to generate
+	 * @param prefix     Any prefix to add as the first line(s) of the file
+	 * @return The number of actual lines that were exported
+	 * @throws IOException Thrown if any file I/O goes wrong
+	 */
+	public int exportResult(String outputFile, String prefix) throws IOException
+	{
+		if (hdf5File == null)
+			return exportTextResult(outputFile, prefix);
+
+		long s = System.currentTimeMillis();
+
+		try (Writer bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE))
+		{
+			if (!StringUtils.isEmpty(prefix))
+				bw.write(prefix);
+
+			/* Top left header */
+			StringBuilder builder = new StringBuilder("Line/marker");
+
+			/* Column headers */
+			for (int markerIndex : markerIndices)
+				builder.append(parameters.delimiter).append(index.getMarker(markerIndex));
+			builder.append('\n');
+			bw.write(builder.toString());
+
+			if (exactText)
+			{
+				/* One pass over the selected lines */
+				readRows((lineIndex, values) ->
+				{
+					builder.setLength(0);
+					builder.append(index.getLine(lineIndex));
+
+					for (int markerIndex : markerIndices)
+					{
+						builder.append(parameters.delimiter);
+
+						float value = values[markerIndex];
+						builder.append(Float.isNaN(value) ? missingText : formatValue(value));
+					}
+
+					builder.append('\n');
+					bw.write(builder.toString());
+				});
+			}
+			else
+			{
+				/* The values can't be formatted back into their original text, so copy them from the text file in one pass */
+				copyTextRows(bw, builder);
+			}
+		}
+
+		System.out.println("Exported allele frequency data: " + linesToExport + " lines, " + markerIndices.length + " markers, " + (System.currentTimeMillis() - s) + " (ms)");
+
+		return linesToExport;
+	}
+
+	/**
+	 * Copies the selected lines and markers from the tab-delimited file. The lines and markers have already been resolved via the HDF5 file, which
+	 * has the same rows and columns.
+	 */
+	private void copyTextRows(Writer bw, StringBuilder builder) throws IOException
+	{
+		Set<String> lines = new HashSet<>();
+		for (int lineIndex : lineIndices)
+			lines.add(index.getLine(lineIndex));
+
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(parameters.inputFile), StandardCharsets.UTF_8)))
+		{
+			// Skip comments and the header, the same way the converter does
+			String line = br.readLine();
+			while (line != null && (line.length() == 0 || line.startsWith("#")))
+				line = br.readLine();
+
+			while ((line = br.readLine()) != null)
+			{
+				int tab = line.indexOf('\t');
+				if (tab == -1 || !lines.contains(line.substring(0, tab)))
+					continue;
+
+				String[] parts = line.split("\t", -1);
+				if (parts.length != index.getMarkerCount() + 1)
+					continue;
+
+				builder.setLength(0);
+				builder.append(parts[0]);
+
+				for (int markerIndex : markerIndices)
+					builder.append(parameters.delimiter).append(parts[markerIndex + 1]);
+
+				builder.append('\n');
+				bw.write(builder.toString());
+			}
+		}
+	}
+
+	/**
+	 * Reads the selected lines in the order of the file. Consecutive lines are read as one block.
+	 */
+	private void readRows(RowConsumer consumer) throws IOException
+	{
+		int width = index.getMarkerCount();
+		int maxRun = (int) Math.max(1, MAX_WINDOW_VALUES / Math.max(1, width));
+
+		IHDF5Reader reader = HDF5Factory.openForReading(hdf5File);
+		try
+		{
+			int i = 0;
+			while (i < lineIndices.length)
+			{
+				// Find the end of the run of consecutive line indices
+				int first = lineIndices[i];
+				int j = i + 1;
+				while (j < lineIndices.length && j - i < maxRun && lineIndices[j] == first + (j - i))
+					j++;
+
+				float[][] block = reader.float32().readMatrixBlockWithOffset(FJTabbedAlleleFrequencyToHdf5Converter.DATA, j - i, width, first, 0);
+
+				for (int k = i; k < j; k++)
+					consumer.accept(lineIndices[k], block[k - i]);
+
+				i = j;
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads the tab-delimited input first to figure out which markers need to be removed (if any)
+	 *
+	 * @throws IOException Thrown if any file I/O goes wrong
+	 */
+	private void readTextInput() throws IOException
 	{
 		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(parameters.inputFile), StandardCharsets.UTF_8)))
 		{
@@ -78,9 +411,9 @@ public class AlleleFrequencyDataExporter
 				if (allLines || parameters.rowNames.contains(parts[0]))
 				{
 					linesToExport++;
-					for (int i = 1; i < parts.length; i++)
+					for (int i = 1; i < parts.length && i < markers.length; i++)
 					{
-						if (allMarkers || parameters.colNames.contains(parts[i]) && isMissing(parts[i]))
+						if ((allMarkers || parameters.colNames.contains(markers[i])) && isMissing(parts[i]))
 						{
 							qualityMissing[i - 1]++;
 						}
@@ -91,14 +424,14 @@ public class AlleleFrequencyDataExporter
 	}
 
 	/**
-	 * Applies the quality measures and writes the data to the output file
+	 * Applies the quality measures and writes the data from the tab-delimited input to the output file
 	 *
 	 * @param outputFile The path to the file to generate
 	 * @param prefix     Any prefix to add as the first line(s) of the file
 	 * @return The number of actual lines that were exported
 	 * @throws IOException Thrown if any file I/O goes wrong
 	 */
-	public int exportResult(String outputFile, String prefix) throws IOException
+	private int exportTextResult(String outputFile, String prefix) throws IOException
 	{
 		/* Get the actual number of allowed items */
 		double localMissingValue = parameters.qualityMissingValue * (linesToExport / 100.0);
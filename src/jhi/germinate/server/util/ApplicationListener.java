@@ -75,9 +75,22 @@ public class ApplicationListener implements ServletContextListener
 
 		Database.initialize();
 
+		// Keep the index of the free text search in the temporary folder of this instance
+		File temporaryFolder = new File(System.getProperty("java.io.tmpdir"), sce.getServletContext().getContextPath());
+		SearchIndex.initialize(new File(temporaryFolder, "search-index"));
+		// Keep the HDF5 copies of the allele frequency files out of the data folder
+		AlleleFrequencyDataExporter.setCacheFolder(new File(temporaryFolder, "allelefreq-hdf5"));
+		// Aggregate the locations for the maps
+		LocationGrid.initialize();
+		// Pick up changes of the reference data made by other processes like the data importers
+		ReferenceDataCache.initialize();
+
 		scheduler = Executors.newSingleThreadScheduledExecutor();
 		// Every hour, update the dataset sizes
 		scheduler.scheduleAtFixedRate(new DatasetMetaJob(), 0, 1, TimeUnit.HOURS);
+		// Every minute, cancel abandoned export jobs and forget old ones
+		scheduler.scheduleAtFixedRate(ExportJobManager::cleanup, 1, 1, TimeUnit.MINUTES);
+		scheduler.scheduleAtFixedRate(StreamingExport::cleanup, 1, 1, TimeUnit.MINUTES);
 
 		if (PropertyWatcher.getBoolean(ServerProperty.GERMINATE_PDCI_ENABLED))
 		{
@@ -105,6 +118,20 @@ public class ApplicationListener implements ServletContextListener
 			e.printStackTrace();
 		}
 
+		// Stop the threads used for exports
+		ExportJobManager.shutdown();
+		Hdf5ToFJTabbedConverter.shutdown();
+		FlapjackWorkerPool.shutdown();
+		ParallelSearch.shutdown();
+
+		// Close the pooled database connections before the drivers are deregistered
+		RowCountCache.shutdown();
+		SearchIndex.shutdown();
+		LocationGrid.shutdown();
+		ReferenceDataCache.shutdown();
+		ReplicaRouter.shutdown();
+		ConnectionPool.shutdown();
+
 		// Remove temporary log files
 		File file = new File(System.getProperty("java.io.tmpdir"), "logs");
 		String context = sce.getServletContext().getContextPath().replace("/", "");
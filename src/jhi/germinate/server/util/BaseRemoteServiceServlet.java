@@ -25,8 +25,10 @@ import java.util.*;
 
 import javax.servlet.http.*;
 
+import jhi.germinate.server.database.query.*;
 import jhi.germinate.server.watcher.*;
 import jhi.germinate.shared.*;
+import jhi.germinate.shared.datastructure.*;
 import jhi.germinate.shared.datastructure.database.*;
 import jhi.germinate.shared.enums.*;
 import jhi.germinate.shared.exception.*;
@@ -225,6 +227,59 @@ public class BaseRemoteServiceServlet extends RemoteServiceServlet
 		return file;
 	}
 
+	/**
+	 * Registers a {@link StreamingExport} that is written straight into the response when the client downloads the returned file name from the
+	 * temporary folder. Nothing is written to disk.
+	 *
+	 * @param prefix    An optional prefix to simplify identification
+	 * @param extension The file extension to use
+	 * @param writer    The {@link StreamingExport.Writer} that writes the export
+	 * @return The file name the client uses to download the export
+	 */
+	public String createStreamingExport(String prefix, String extension, StreamingExport.Writer writer)
+	{
+		return StreamingExport.register(getRequest().getSession().getId(), prefix, extension, writer);
+	}
+
+	/**
+	 * Provides the {@link DefaultStreamer} of a table export for the given {@link Pagination}
+	 *
+	 * @param <E> An additional exception type thrown by the query
+	 */
+	public interface ExportStreamerProvider<E extends Exception>
+	{
+		DefaultStreamer get(Pagination pagination) throws DatabaseException, InvalidColumnException, InvalidSearchQueryException, InvalidArgumentException, E;
+	}
+
+	/**
+	 * Registers a {@link StreamingExport} of the table export provided by the given {@link ExportStreamerProvider}. The query is run for an empty
+	 * page first, so that invalid filters and missing permissions are reported by the calling RPC instead of failing the download.
+	 *
+	 * @param prefix   An optional prefix to simplify identification
+	 * @param provider The {@link ExportStreamerProvider} that runs the query
+	 * @return The {@link ServerResult} containing the file name the client uses to download the export
+	 * @throws DatabaseException           Thrown if the interaction with the database fails
+	 * @throws InvalidColumnException      Thrown if the filter contains an invalid column
+	 * @throws InvalidSearchQueryException Thrown if the filter is invalid
+	 * @throws InvalidArgumentException    Thrown if one of the filter values is invalid
+	 */
+	public <E extends Exception> ServerResult<String> createStreamingExport(String prefix, ExportStreamerProvider<E> provider) throws DatabaseException, InvalidColumnException, InvalidSearchQueryException, InvalidArgumentException, E
+	{
+		DebugInfo debugInfo;
+
+		try (DefaultStreamer streamer = provider.get(new Pagination(0, 0)))
+		{
+			debugInfo = streamer.getDebugInfo();
+		}
+
+		Util.OperatingSystem os = Util.getOperatingSystem(getRequest());
+
+		/* The data is queried when the client downloads the file and written straight into the response */
+		String result = createStreamingExport(prefix, FileType.txt.name(), out -> Util.writeDefault(os, null, provider.get(new Pagination(0, Integer.MAX_VALUE)), out));
+
+		return new ServerResult<>(debugInfo, result);
+	}
+
 	/**
 	 * Makes sure that the temporary folder of this instance exists
 	 */
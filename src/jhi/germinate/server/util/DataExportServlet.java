@@ -41,6 +41,7 @@ public class DataExportServlet extends BaseRemoteServiceServlet
 	protected static final String SESSION_PARAM_HISTOGRAM        = "SESSION_PARAM_HISTOGRAM";
 	protected static final String SESSION_PARAM_DELETED_MARKERS  = "SESSION_PARAM_DELETED_MARKERS";
 	protected static final String SESSION_PARAM_ALLELE_DATA_FILE = "SESSION_PARAM_ALLELE_DATA_FILE";
+	protected static final String SESSION_PARAM_EXPORT_CACHE_KEY = "SESSION_PARAM_EXPORT_CACHE_KEY";
 
 	private static final int QUALITY_HETERO  = 25;
 	private static final int QUALITY_MISSING = 50;
@@ -166,6 +167,31 @@ public class DataExportServlet extends BaseRemoteServiceServlet
 		return result;
 	}
 
+	/**
+	 * Returns the result of the finished {@link ExportJob} with the given id. The job has to belong to the current session.
+	 *
+	 * @param jobId The id of the {@link ExportJob}
+	 * @param type  The expected type of the result
+	 * @return The result of the {@link ExportJob}
+	 * @throws InvalidArgumentException Thrown if there is no such job or its result isn't of the expected type
+	 * @throws Exception                The exception the {@link ExportJob} failed with
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> T getJobResult(String jobId, Class<?> type) throws Exception
+	{
+		ExportJob<?> job = ExportJobManager.get(jobId, getRequest().getSession().getId());
+
+		if (job == null)
+			throw new InvalidArgumentException("Unknown export job: " + jobId);
+
+		Object result = job.getResult();
+
+		if (result != null && !type.isInstance(result))
+			throw new InvalidArgumentException("Export job " + jobId + " doesn't have a result of type " + type.getSimpleName());
+
+		return (T) result;
+	}
+
 	public CommonServiceImpl.ExportResult getExportResult(Long datasetId, ExperimentType type, BaseRemoteServiceServlet servlet)
 	{
 		CommonServiceImpl.ExportResult exportResult = new CommonServiceImpl.ExportResult();
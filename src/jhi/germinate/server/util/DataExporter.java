@@ -59,7 +59,8 @@ public class DataExporter
 		}
 	}
 
-	private Hdf5ToFJTabbedConverter converter;
+	private Hdf5ToFJTabbedConverter             converter;
+	private DataExporter.DataExporterParameters parameters;
 
 	/**
 	 * Creates a new instance of the DataExporter
@@ -75,9 +76,20 @@ public class DataExporter
 		if (parameters.colNames != null)
 			markers = new LinkedHashSet<>(parameters.colNames);
 
+		this.parameters = parameters;
 		converter = new Hdf5ToFJTabbedConverter(parameters.inputFile, lines, markers, outputFile, false);
 	}
 
+	/**
+	 * Sets the {@link Hdf5ToFJTabbedConverter.ProgressListener} that is informed about the progress of {@link #exportResult(String)}
+	 *
+	 * @param progressListener The {@link Hdf5ToFJTabbedConverter.ProgressListener}
+	 */
+	public void setProgressListener(Hdf5ToFJTabbedConverter.ProgressListener progressListener)
+	{
+		converter.setProgressListener(progressListener);
+	}
+
 	/**
 	 * Extracts the requested subset into a temporary file
 	 */
@@ -94,18 +106,43 @@ public class DataExporter
 	public int exportResult(String prefix)
 	{
 		converter.readInput();
+		converter.applyQualityFilters(parameters.qualityMissingValue, parameters.qualityHeteroValue);
 		converter.extractData(prefix);
 
 		return 1;
 	}
 
 	/**
-	 * Returns the {@link Set} of deleted markers
+	 * Applies the quality measures and writes the data to the given {@link OutputStream} instead of the output file
+	 *
+	 * @param prefix Any prefix to add as the first line(s) of the file
+	 * @param out    The {@link OutputStream} to write to
+	 * @throws IOException Thrown if writing fails
+	 */
+	public void exportResult(String prefix, OutputStream out) throws IOException
+	{
+		converter.readInput();
+		converter.applyQualityFilters(parameters.qualityMissingValue, parameters.qualityHeteroValue);
+		converter.extractData(prefix, out);
+	}
+
+	/**
+	 * Returns the {@link Set} of kept markers
+	 *
+	 * @return The {@link Set} of kept markers
+	 */
+	public Set<String> getKeptMarkers()
+	{
+		return converter.getKeptMarkers();
+	}
+
+	/**
+	 * Returns the {@link Set} of markers that have been removed by the quality filters
 	 *
-	 * @return The {@link Set} of deleted markers
+	 * @return The {@link Set} of markers that have been removed by the quality filters
 	 */
-	public List<String> getKeptMarkers()
+	public Set<String> getDeletedMarkers()
 	{
-		return new ArrayList<>(converter.getKeptMarkers());
+		return converter.getDeletedMarkers();
 	}
 }
@@ -17,6 +17,7 @@
 
 package jhi.germinate.server.util;
 
+import java.util.*;
 import java.util.Map;
 import java.util.concurrent.*;
 
@@ -29,7 +30,8 @@ import jhi.germinate.shared.exception.*;
 /**
  * DatabaseObjectCache is a utility class that can be used to retrieve and cache database entries. In more detail, this class will do: <ul> <li>When
  * {@link #get(UserAuth, Long, DatabaseResult, boolean)} is called, check if the DatabaseObject exists in the cache</li> <li>Use the appropriate
- * {@link AbstractManager} to get the DatabaseObject from the database if it doesn't exist in the cache and then cache it</li> <li>If asked to extract
+ * {@link AbstractManager} to get the DatabaseObject from the database if it doesn't exist in the cache and then cache it. Reference data is taken
+ * from the application-wide {@link ReferenceDataCache} first.</li> <li>If asked to extract
  * from the DatabaseResult, it will extract all the necessary information from this object rather than starting a new query against the database.</li>
  * </ul> Calling {@link #clear()} will clear the cache. This is particularly advisable if one wants to prevent long term caching and returning
  * potentially outdated data.
@@ -41,13 +43,16 @@ public class DatabaseObjectCache<T extends DatabaseObject>
 	private final Map<Long, T>                CACHE   = new ConcurrentHashMap<>();
 	private final Map<Class, AbstractManager> MAPPING = new ConcurrentHashMap<>();
 
-	private final Class clazz;
-	private final Class managerClazz;
+	private final Class   clazz;
+	private final Class   managerClazz;
+	/** Is this a type that is kept in the {@link ReferenceDataCache}? */
+	private final boolean reference;
 
 	public DatabaseObjectCache(Class<T> clazz, Class<? extends AbstractManager<T>> managerClazz)
 	{
 		this.clazz = clazz;
 		this.managerClazz = managerClazz;
+		this.reference = ReferenceDataCache.isReferenceType(clazz);
 	}
 
 	/**
@@ -76,7 +81,9 @@ public class DatabaseObjectCache<T extends DatabaseObject>
 			/* Either get it from the DatabaseResult */
 			if (fromResult)
 				result = getFromManager(user, res);
-				/* Or get it from the database based on the id */
+				/* Or get it from the reference data cache or the database based on the id */
+			else if (reference)
+				result = getFromReferenceDataCache(user, id);
 			else
 				result = getFromManager(user, id);
 
@@ -96,6 +103,60 @@ public class DatabaseObjectCache<T extends DatabaseObject>
 		return result;
 	}
 
+	/**
+	 * Loads all the DatabaseObjects with the given ids that aren't cached yet with as few queries as possible and adds them to the cache. Objects
+	 * that cannot be loaded this way are still resolved one by one by {@link #get(UserAuth, Long, DatabaseResult, boolean)}.
+	 *
+	 * @param user The UserAuth of the current user. Can be used for authentication and permission checking
+	 * @param ids  The ids of the DatabaseObjects
+	 * @throws DatabaseException Thrown if the communication with the database fails
+	 */
+	public void prefetch(UserAuth user, Collection<Long> ids) throws DatabaseException
+	{
+		List<Long> missing = new ArrayList<>();
+		for (Long id : ids)
+		{
+			if (id != null && !CACHE.containsKey(id))
+				missing.add(id);
+		}
+
+		if (reference)
+		{
+			for (Iterator<Long> it = missing.iterator(); it.hasNext(); )
+			{
+				T object = ReferenceDataCache.get(clazz, it.next());
+
+				if (object != null)
+				{
+					CACHE.put(object.getId(), object);
+					it.remove();
+				}
+			}
+		}
+
+		AbstractManager<T> manager = getManager();
+		if (missing.isEmpty() || manager == null)
+			return;
+
+		try
+		{
+			long generation = ReferenceDataCache.getGeneration();
+			List<T> result = manager.getAllByIds(user, missing).getServerResult();
+
+			if (result != null)
+			{
+				result.forEach(object -> CACHE.put(object.getId(), object));
+
+				if (reference)
+					ReferenceDataCache.put(clazz, result, generation);
+			}
+		}
+		catch (InsufficientPermissionsException e)
+		{
+			/* Do nothing here, the objects will be requested (and rejected) individually */
+		}
+	}
+
 	/**
 	 * Clears the cache
 	 */
@@ -133,6 +194,32 @@ public class DatabaseObjectCache<T extends DatabaseObject>
 			return null;
 	}
 
+	/**
+	 * Returns the {@link DatabaseObject} with the given id from the {@link ReferenceDataCache} or loads it and adds it to the {@link
+	 * ReferenceDataCache}.
+	 *
+	 * @param user The {@link UserAuth}
+	 * @param id   The id of the {@link DatabaseObject}
+	 * @return The {@link DatabaseObject} with the given id
+	 * @throws DatabaseException                Thrown if the interaction with the database fails
+	 * @throws InsufficientPermissionsException Thrown if the user doesn't have sufficient permissions to access the database object
+	 */
+	private T getFromReferenceDataCache(UserAuth user, Long id) throws DatabaseException, InsufficientPermissionsException
+	{
+		T result = ReferenceDataCache.get(clazz, id);
+
+		if (result == null)
+		{
+			long generation = ReferenceDataCache.getGeneration();
+			result = getFromManager(user, id);
+
+			if (result != null)
+				ReferenceDataCache.put(clazz, Collections.singletonList(result), generation);
+		}
+
+		return result;
+	}
+
 	/**
 	 * Returns the {@link DatabaseObject} by parsing it straight from the {@link DatabaseResult} without running another database query. <p>This
 	 * obviously means that all the information required to parse the object needs to be part of this {@link DatabaseResult}.
@@ -0,0 +1,467 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.enums.*;
+
+/**
+ * {@link ExportCache} is a size-bounded, least recently used cache of finished export files. Entries are addressed by a hash over everything
+ * that determines the content of the export (see {@link #createKey(Object...)}), so entries never have to be invalidated explicitly: a
+ * re-imported data file or a changed group simply results in a different key and the old entry ages out.
+ * <p>
+ * Cached files live in a sub-folder of the temporary folder. They are handed out as hard links (or copies if the file system doesn't support
+ * links) with a new temporary name, so evicting an entry never breaks a download that is in progress.
+ *
+ * @author Sebastian Raubach
+ */
+public class ExportCache
+{
+	public static final String ARTIFACT_DATA      = "data";
+	public static final String ARTIFACT_MAP       = "map";
+	public static final String ARTIFACT_FLAPJACK  = "flapjack";
+	public static final String ARTIFACT_HISTOGRAM = "histogram";
+
+	private static final String FOLDER = "export-cache";
+
+	private static ExportCache INSTANCE;
+
+	private final File                         folder;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private       long                         size    = 0;
+
+	private final AtomicLong hits      = new AtomicLong();
+	private final AtomicLong misses    = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	/** Numbers the folders of the entries */
+	private final AtomicLong folders   = new AtomicLong();
+
+	/**
+	 * Returns the {@link ExportCache} of this application. The cache is created in the temporary folder of the given servlet on first use.
+	 *
+	 * @param servlet The {@link BaseRemoteServiceServlet} used to determine the temporary folder
+	 * @return The {@link ExportCache} of this application
+	 */
+	public static synchronized ExportCache getInstance(BaseRemoteServiceServlet servlet)
+	{
+		if (INSTANCE == null)
+			INSTANCE = new ExportCache(new File(servlet.getTemporaryFileFolder(), FOLDER));
+
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the {@link ExportCache} of this application or <code>null</code> if it hasn't been used yet
+	 *
+	 * @return The {@link ExportCache} of this application or <code>null</code> if it hasn't been used yet
+	 */
+	public static synchronized ExportCache getInstance()
+	{
+		return INSTANCE;
+	}
+
+	private ExportCache(File folder)
+	{
+		this.folder = folder;
+
+		// The entries are only kept in memory, so anything left over from the last run is unreachable
+		deleteRecursively(folder);
+		folder.mkdirs();
+	}
+
+	/**
+	 * Creates the cache key from the given parts. {@link File}s contribute their path, size and last modified date, {@link Collection}s
+	 * contribute all their items in iteration order and <code>null</code> stands for "everything".
+	 *
+	 * @param parts The parts that determine the content of the export
+	 * @return The hex encoded SHA-256 hash of the parts
+	 */
+	public static String createKey(Object... parts)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+			for (Object part : parts)
+			{
+				if (part == null)
+				{
+					update(digest, "null");
+				}
+				else if (part instanceof File)
+				{
+					File file = (File) part;
+					update(digest, file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified());
+				}
+				else if (part instanceof Collection)
+				{
+					Collection<?> items = (Collection<?>) part;
+					update(digest, "collection|" + items.size());
+					for (Object item : items)
+						update(digest, Objects.toString(item));
+				}
+				else
+				{
+					update(digest, part.toString());
+				}
+			}
+
+			StringBuilder builder = new StringBuilder();
+			for (byte b : digest.digest())
+				builder.append(String.format("%02x", b));
+
+			return builder.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void update(MessageDigest digest, String value)
+	{
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		// Separate the parts, so that ("ab", "c") and ("a", "bc") don't collide
+		digest.update((byte) 0);
+	}
+
+	/**
+	 * Returns the {@link Entry} with the given key if it contains all the given artifacts and counts the lookup as a hit. Otherwise returns
+	 * <code>null</code> and counts the lookup as a miss.
+	 *
+	 * @param key       The cache key
+	 * @param artifacts The artifacts that are required
+	 * @return The {@link Entry} or <code>null</code>
+	 */
+	public Entry get(String key, String... artifacts)
+	{
+		Entry entry = null;
+
+		if (isEnabled())
+		{
+			synchronized (this)
+			{
+				entry = entries.get(key);
+			}
+
+			if (entry != null && !entry.contains(artifacts))
+				entry = null;
+		}
+
+		if (entry == null)
+			misses.incrementAndGet();
+		else
+			hits.incrementAndGet();
+
+		return entry;
+	}
+
+	/**
+	 * Adds the given file to the entry with the given key. The entry is created if it doesn't exist yet. Artifacts that are already cached are
+	 * left untouched.
+	 *
+	 * @param key      The cache key
+	 * @param artifact The name of the artifact
+	 * @param file     The file containing the artifact
+	 * @return The {@link Entry} or <code>null</code> if the cache is disabled or the entry has been evicted in the meantime
+	 */
+	public Entry put(String key, String artifact, File file)
+	{
+		if (!isEnabled() || file == null || !file.exists())
+			return null;
+
+		Entry entry;
+		synchronized (this)
+		{
+			// Each entry gets its own folder. The folder of an evicted entry is deleted after the lock has been released, so a new entry with
+			// the same key must not use it.
+			entry = entries.computeIfAbsent(key, k -> new Entry(new File(folder, k + "-" + folders.incrementAndGet())));
+		}
+
+		synchronized (entry)
+		{
+			if (entry.files.containsKey(artifact))
+				return entry;
+
+			try
+			{
+				entry.folder.mkdirs();
+				File target = new File(entry.folder, artifact + "-" + file.getName());
+				link(file, target);
+
+				boolean evicted;
+				synchronized (this)
+				{
+					// The entry may have been evicted since it was looked up, its size must not be counted in this case
+					evicted = entry.evicted;
+
+					if (!evicted)
+					{
+						entry.size += target.length();
+						size += target.length();
+					}
+				}
+
+				if (evicted)
+				{
+					target.delete();
+					return null;
+				}
+
+				entry.files.put(artifact, target);
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				return entry;
+			}
+		}
+
+		evict();
+
+		Logger.getLogger("").log(Level.FINE, "Export cache: " + this);
+
+		return entry;
+	}
+
+	/**
+	 * Hands out the cached artifact by linking it to the given target file
+	 *
+	 * @param entry    The {@link Entry}
+	 * @param artifact The name of the artifact
+	 * @param target   The file to create
+	 * @return The target file
+	 * @throws IOException Thrown if the file interaction fails
+	 */
+	public File copyTo(Entry entry, String artifact, File target) throws IOException
+	{
+		File source;
+		synchronized (entry)
+		{
+			source = entry.files.get(artifact);
+		}
+
+		if (source == null)
+			throw new FileNotFoundException(artifact);
+
+		link(source, target);
+		FileUtils.setLastModifyDateNow(target);
+
+		return target;
+	}
+
+	/**
+	 * Writes the cached artifact to the given {@link OutputStream}
+	 *
+	 * @param entry    The {@link Entry}
+	 * @param artifact The name of the artifact
+	 * @param out      The {@link OutputStream}
+	 * @throws IOException Thrown if the file interaction fails
+	 */
+	public void copyTo(Entry entry, String artifact, OutputStream out) throws IOException
+	{
+		File source;
+		synchronized (entry)
+		{
+			source = entry.files.get(artifact);
+		}
+
+		if (source == null)
+			throw new FileNotFoundException(artifact);
+
+		// Once opened, the file stays readable even if the entry is evicted in the meantime
+		try (InputStream in = new FileInputStream(source))
+		{
+			byte[] buffer = new byte[64 * 1024];
+			int count;
+			while ((count = in.read(buffer)) >= 0)
+				out.write(buffer, 0, count);
+		}
+	}
+
+	private void evict()
+	{
+		long maxSize = getMaxSize();
+
+		List<Entry> evicted = new ArrayList<>();
+		synchronized (this)
+		{
+			Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+			// Always keep the most recently used entry, even if it exceeds the limit on its own
+			while (size > maxSize && entries.size() > 1 && it.hasNext())
+			{
+				Entry entry = it.next().getValue();
+				it.remove();
+				entry.evicted = true;
+				size -= entry.size;
+				evicted.add(entry);
+			}
+		}
+
+		for (Entry entry : evicted)
+		{
+			evictions.incrementAndGet();
+			synchronized (entry)
+			{
+				deleteRecursively(entry.folder);
+			}
+		}
+
+		if (evicted.size() > 0)
+			Logger.getLogger("").log(Level.INFO, "Export cache evicted " + evicted.size() + " entries: " + this);
+	}
+
+	private static void link(File source, File target) throws IOException
+	{
+		try
+		{
+			Files.createLink(target.toPath(), source.toPath());
+		}
+		catch (UnsupportedOperationException | IOException e)
+		{
+			// Fall back to copying if hard links aren't supported
+			Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void deleteRecursively(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+				deleteRecursively(child);
+		}
+
+		file.delete();
+	}
+
+	private static boolean isEnabled()
+	{
+		return getMaxSize() > 0;
+	}
+
+	private static long getMaxSize()
+	{
+		Long sizeMb = PropertyWatcher.getLong(ServerProperty.GERMINATE_EXPORT_CACHE_SIZE_MB);
+		return sizeMb == null ? 0 : sizeMb * 1024L * 1024L;
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	public synchronized int getEntryCount()
+	{
+		return entries.size();
+	}
+
+	@Override
+	public String toString()
+	{
+		long h = getHits();
+		long m = getMisses();
+
+		return "ExportCache{" +
+				"entries=" + getEntryCount() +
+				", size=" + getSize() +
+				", hits=" + h +
+				", misses=" + m +
+				", hitRate=" + (h + m == 0 ? 0 : (h * 100 / (h + m))) + "%" +
+				", evictions=" + getEvictions() +
+				'}';
+	}
+
+	/**
+	 * An {@link Entry} holds the cached artifacts of one export along with the information that isn't part of the files themselves.
+	 */
+	public static class Entry
+	{
+		private final File              folder;
+		private final Map<String, File> files   = new HashMap<>();
+		private       long              size    = 0;
+		/** Set once the entry has been removed from the cache, guarded by the {@link ExportCache} */
+		private       boolean           evicted = false;
+
+		private volatile Set<String>         deletedMarkers = new HashSet<>();
+		private final    Map<String, String> properties     = new HashMap<>();
+
+		private Entry(File folder)
+		{
+			this.folder = folder;
+		}
+
+		private synchronized boolean contains(String... artifacts)
+		{
+			for (String artifact : artifacts)
+			{
+				File file = files.get(artifact);
+				if (file == null || !file.exists())
+					return false;
+			}
+
+			return true;
+		}
+
+		public Set<String> getDeletedMarkers()
+		{
+			return new HashSet<>(deletedMarkers);
+		}
+
+		public Entry setDeletedMarkers(Set<String> deletedMarkers)
+		{
+			this.deletedMarkers = new HashSet<>(deletedMarkers);
+			return this;
+		}
+
+		public synchronized String getProperty(String key)
+		{
+			return properties.get(key);
+		}
+
+		public synchronized Entry setProperty(String key, String value)
+		{
+			properties.put(key, value);
+			return this;
+		}
+	}
+}
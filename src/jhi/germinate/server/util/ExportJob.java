@@ -0,0 +1,361 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.datastructure.ExportJobStatus.*;
+
+/**
+ * An {@link ExportJob} is a unit of export work that is queued and run by the {@link ExportJobManager}. The {@link Task} reports its progress
+ * via {@link #setProgress(float)}, which is also the point where a cancelled job stops, and registers the files it creates via {@link
+ * #addFile(File)}. Files of failed or cancelled jobs are deleted.
+ *
+ * @author Sebastian Raubach
+ */
+public class ExportJob<T>
+{
+	/**
+	 * The work of an {@link ExportJob}. It runs on a worker thread, so it must not access the servlet request or session.
+	 */
+	public interface Task<T>
+	{
+		T run(ExportJob<T> job) throws Exception;
+	}
+
+	private static final int  TAIL_BUFFER_SIZE     = 64 * 1024;
+	private static final long TAIL_INTERVAL_MILLIS = 200;
+
+	private final String  id = UUID.randomUUID().toString();
+	private final String  name;
+	private final String  owner;
+	private final String  sessionId;
+	private final int     priority;
+	private final long    sequence;
+	private final Task<T> task;
+
+	private volatile Status  status   = Status.QUEUED;
+	private volatile float   progress = 0;
+	private volatile boolean cancelled;
+	private volatile boolean awaited;
+	private volatile long    lastAccess;
+	private volatile long    finished;
+	private volatile Thread  thread;
+
+	private final List<File>     files = new CopyOnWriteArrayList<>();
+	private final CountDownLatch done  = new CountDownLatch(1);
+	private       T              result;
+	private       Exception      error;
+
+	ExportJob(String name, String owner, String sessionId, int priority, long sequence, Task<T> task)
+	{
+		this.name = name;
+		this.owner = owner;
+		this.sessionId = sessionId;
+		this.priority = priority;
+		this.sequence = sequence;
+		this.task = task;
+		this.lastAccess = System.currentTimeMillis();
+	}
+
+	/**
+	 * Runs the task on the current thread. Called by the {@link ExportJobManager}.
+	 */
+	void execute()
+	{
+		thread = Thread.currentThread();
+		try
+		{
+			if (cancelled)
+				throw new CancellationException();
+
+			status = Status.RUNNING;
+			result = task.run(this);
+			progress = 1;
+			status = Status.FINISHED;
+		}
+		catch (Exception e)
+		{
+			error = e;
+			status = cancelled ? Status.CANCELLED : Status.FAILED;
+
+			// Don't leave partial results behind
+			for (File file : files)
+				file.delete();
+		}
+		finally
+		{
+			thread = null;
+			// Clear the interrupt of a cancellation, so it doesn't leak into the next job on this thread
+			Thread.interrupted();
+			finish();
+		}
+	}
+
+	/**
+	 * Marks the job as finished with the given result without running its task. Used for exports that are answered from the {@link ExportCache}.
+	 *
+	 * @param result The result
+	 */
+	void complete(T result)
+	{
+		this.result = result;
+		progress = 1;
+		status = Status.FINISHED;
+		finish();
+	}
+
+	/**
+	 * Marks a job that has been taken from the queue, but can't be run, as cancelled
+	 */
+	void abort()
+	{
+		cancelled = true;
+		status = Status.CANCELLED;
+		finish();
+	}
+
+	private void finish()
+	{
+		finished = System.currentTimeMillis();
+		done.countDown();
+	}
+
+	/**
+	 * Waits for the job to finish and returns its result. If the waiting thread is interrupted, the job is cancelled.
+	 *
+	 * @return The result of the {@link Task}
+	 * @throws Exception The exception thrown by the {@link Task} or a {@link CancellationException} if the job has been cancelled
+	 */
+	public T await() throws Exception
+	{
+		awaited = true;
+		try
+		{
+			done.await();
+		}
+		catch (InterruptedException e)
+		{
+			cancel();
+			throw new CancellationException("Export job has been interrupted");
+		}
+		finally
+		{
+			awaited = false;
+			touch();
+		}
+
+		return getResult();
+	}
+
+	/**
+	 * Copies the output of the job to the given {@link OutputStream} while the job writes it and returns its result once it has finished. The job
+	 * doesn't wait for the reader, so a slow client doesn't keep it from finishing.
+	 *
+	 * @param in  The {@link InputStream} of the file the job writes. It has to be opened before the job is submitted, as the job may delete the file
+	 *            when it's done.
+	 * @param out The {@link OutputStream}
+	 * @return The result of the {@link Task}
+	 * @throws Exception The exception thrown by the {@link Task}, a {@link CancellationException} if the job has been cancelled or a {@link
+	 *                   java.io.IOException} if the output can't be copied
+	 */
+	public T tail(InputStream in, OutputStream out) throws Exception
+	{
+		awaited = true;
+		try
+		{
+			byte[] buffer = new byte[TAIL_BUFFER_SIZE];
+
+			while (true)
+			{
+				/* Check before copying, so that the last pass copies everything the job has written */
+				boolean finished = isDone();
+
+				int read;
+				while ((read = in.read(buffer)) != -1)
+					out.write(buffer, 0, read);
+
+				if (finished)
+					break;
+
+				done.await(TAIL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			}
+		}
+		finally
+		{
+			awaited = false;
+			touch();
+		}
+
+		return getResult();
+	}
+
+	/**
+	 * Returns the result of the finished job without waiting for it
+	 *
+	 * @return The result of the {@link Task}
+	 * @throws Exception The exception thrown by the {@link Task}, a {@link CancellationException} if the job has been cancelled or an {@link
+	 *                   IllegalStateException} if the job hasn't finished yet
+	 */
+	public T getResult() throws Exception
+	{
+		if (!isDone())
+			throw new IllegalStateException("Export job hasn't finished yet");
+		else if (status == Status.FINISHED)
+			return result;
+		else if (status == Status.CANCELLED)
+			throw new CancellationException("Export job has been cancelled");
+		else
+			throw error;
+	}
+
+	/**
+	 * Cancels the job. Queued jobs are removed from the queue, running jobs are interrupted and stop at the next call to {@link
+	 * #setProgress(float)}.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+
+		if (ExportJobManager.dequeue(this))
+		{
+			status = Status.CANCELLED;
+			finish();
+		}
+		else
+		{
+			Thread t = thread;
+			if (t != null)
+				t.interrupt();
+		}
+	}
+
+	/**
+	 * Sets the progress of the job
+	 *
+	 * @param progress The progress between 0 and 1
+	 * @throws CancellationException Thrown if the job has been cancelled
+	 */
+	public void setProgress(float progress)
+	{
+		if (cancelled)
+			throw new CancellationException("Export job has been cancelled");
+
+		this.progress = Math.max(0, Math.min(1, progress));
+	}
+
+	/**
+	 * Registers a file created by this job. It will be deleted if the job fails or is cancelled.
+	 *
+	 * @param file The {@link File}
+	 * @return The {@link File}
+	 */
+	public File addFile(File file)
+	{
+		files.add(file);
+		return file;
+	}
+
+	void touch()
+	{
+		lastAccess = System.currentTimeMillis();
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	String getOwner()
+	{
+		return owner;
+	}
+
+	String getSessionId()
+	{
+		return sessionId;
+	}
+
+	int getPriority()
+	{
+		return priority;
+	}
+
+	long getSequence()
+	{
+		return sequence;
+	}
+
+	boolean isAwaited()
+	{
+		return awaited;
+	}
+
+	long getLastAccess()
+	{
+		return lastAccess;
+	}
+
+	long getFinished()
+	{
+		return finished;
+	}
+
+	public Status getStatus()
+	{
+		return status;
+	}
+
+	public boolean isDone()
+	{
+		return done.getCount() == 0;
+	}
+
+	/**
+	 * Creates a snapshot of the state of this job for the client
+	 *
+	 * @param queuePosition The position in the queue or <code>null</code> if the job isn't queued
+	 * @return The {@link ExportJobStatus}
+	 */
+	ExportJobStatus toStatus(Integer queuePosition)
+	{
+		List<CreatedFile> createdFiles = new ArrayList<>();
+		if (status == Status.FINISHED)
+		{
+			for (File file : files)
+				createdFiles.add(new CreatedFile(file));
+		}
+
+		return new ExportJobStatus()
+				.setId(id)
+				.setName(name)
+				.setStatus(status)
+				.setProgress(progress)
+				.setQueuePosition(queuePosition)
+				.setError(status == Status.FAILED && error != null ? error.getMessage() : null)
+				.setFiles(createdFiles);
+	}
+}
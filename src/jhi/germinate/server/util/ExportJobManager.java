@@ -0,0 +1,339 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.enums.*;
+
+/**
+ * {@link ExportJobManager} runs the expensive parts of data exports as {@link ExportJob}s. At most {@link
+ * ServerProperty#GERMINATE_EXPORT_JOBS_MAX_CONCURRENT} jobs run at the same time and at most {@link ServerProperty#GERMINATE_EXPORT_JOBS_MAX_PER_USER}
+ * of them belong to the same user. Further jobs are queued by priority and then in order of submission.
+ * <p>
+ * Finished jobs are kept for {@link #KEEP_FINISHED_MINUTES} so that their status can be retrieved. Jobs that nobody waits for and whose status
+ * hasn't been requested for {@link #ABANDONED_AFTER_MINUTES} are cancelled by {@link #cleanup()}.
+ *
+ * @author Sebastian Raubach
+ */
+public class ExportJobManager
+{
+	/** Used for jobs that export whole datasets */
+	public static final int PRIORITY_LOW    = 0;
+	public static final int PRIORITY_NORMAL = 5;
+	/** Used for jobs that continue the work of a previous job the user is waiting for, e.g. creating a Flapjack project from an export */
+	public static final int PRIORITY_HIGH   = 10;
+
+	private static final long KEEP_FINISHED_MINUTES   = 60;
+	private static final long ABANDONED_AFTER_MINUTES = 10;
+
+	private static final ExecutorService WORKERS = Executors.newCachedThreadPool(r ->
+	{
+		Thread thread = new Thread(r, "ExportJob");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static final PriorityQueue<ExportJob<?>> QUEUE            = new PriorityQueue<>(Comparator.comparingInt((ExportJob<?> job) -> -job.getPriority()).thenComparingLong(ExportJob::getSequence));
+	private static final Map<String, ExportJob<?>>   JOBS             = new ConcurrentHashMap<>();
+	private static final Map<String, Integer>        RUNNING_PER_USER = new HashMap<>();
+	private static final AtomicLong                  SEQUENCE         = new AtomicLong();
+	private static       int                         running          = 0;
+
+	/**
+	 * Queues a new {@link ExportJob}
+	 *
+	 * @param name      A short description of the job
+	 * @param userAuth  The {@link UserAuth} of the user that submits the job
+	 * @param sessionId The id of the session that submits the job
+	 * @param priority  The priority, higher priorities run first
+	 * @param task      The {@link ExportJob.Task} to run
+	 * @return The queued {@link ExportJob}
+	 */
+	public static <T> ExportJob<T> submit(String name, UserAuth userAuth, String sessionId, int priority, ExportJob.Task<T> task)
+	{
+		ExportJob<T> job = new ExportJob<>(name, getOwner(userAuth, sessionId), sessionId, priority, SEQUENCE.incrementAndGet(), task);
+		JOBS.put(job.getId(), job);
+
+		synchronized (ExportJobManager.class)
+		{
+			QUEUE.add(job);
+		}
+
+		dispatch();
+
+		return job;
+	}
+
+	/**
+	 * Registers an {@link ExportJob} that has already finished with the given result, e.g. because the result has been taken from the {@link
+	 * ExportCache}. It doesn't count towards the limits, but clients follow it like any other job.
+	 *
+	 * @param name      A short description of the job
+	 * @param userAuth  The {@link UserAuth} of the user that submits the job
+	 * @param sessionId The id of the session that submits the job
+	 * @param result    The result of the job
+	 * @param files     The files created for the job
+	 * @return The finished {@link ExportJob}
+	 */
+	public static <T> ExportJob<T> complete(String name, UserAuth userAuth, String sessionId, T result, File... files)
+	{
+		ExportJob<T> job = new ExportJob<>(name, getOwner(userAuth, sessionId), sessionId, PRIORITY_NORMAL, SEQUENCE.incrementAndGet(), j -> result);
+		for (File file : files)
+			job.addFile(file);
+		job.complete(result);
+		JOBS.put(job.getId(), job);
+
+		return job;
+	}
+
+	/**
+	 * Queues a new {@link ExportJob} and waits for its result
+	 *
+	 * @see #submit(String, UserAuth, String, int, ExportJob.Task)
+	 * @see ExportJob#await()
+	 */
+	public static <T> T run(String name, UserAuth userAuth, String sessionId, int priority, ExportJob.Task<T> task) throws Exception
+	{
+		return submit(name, userAuth, sessionId, priority, task).await();
+	}
+
+	private static String getOwner(UserAuth userAuth, String sessionId)
+	{
+		// Anonymous users all share the same id, so use their session instead
+		Long userId = userAuth == null ? null : userAuth.getId();
+		return (userId == null || userId < 0) ? "session:" + sessionId : "user:" + userId;
+	}
+
+	/**
+	 * Returns the {@link ExportJob} with the given id if it belongs to the given session
+	 *
+	 * @param id        The job id
+	 * @param sessionId The session id
+	 * @return The {@link ExportJob} or <code>null</code>
+	 */
+	public static ExportJob<?> get(String id, String sessionId)
+	{
+		ExportJob<?> job = id == null ? null : JOBS.get(id);
+
+		if (job == null || !Objects.equals(job.getSessionId(), sessionId))
+			return null;
+
+		job.touch();
+		return job;
+	}
+
+	/**
+	 * Returns all known {@link ExportJob}s of the given session in order of submission
+	 *
+	 * @param sessionId The session id
+	 * @return All known {@link ExportJob}s of the given session
+	 */
+	public static List<ExportJob<?>> getJobs(String sessionId)
+	{
+		List<ExportJob<?>> result = new ArrayList<>();
+		for (ExportJob<?> job : JOBS.values())
+		{
+			if (Objects.equals(job.getSessionId(), sessionId))
+			{
+				job.touch();
+				result.add(job);
+			}
+		}
+
+		result.sort(Comparator.comparingLong(ExportJob::getSequence));
+		return result;
+	}
+
+	/**
+	 * Creates a snapshot of the given job including its position in the queue
+	 *
+	 * @param job The {@link ExportJob}
+	 * @return The {@link ExportJobStatus}
+	 */
+	public static ExportJobStatus getStatus(ExportJob<?> job)
+	{
+		Integer position = null;
+
+		synchronized (ExportJobManager.class)
+		{
+			if (QUEUE.contains(job))
+			{
+				position = 0;
+				for (ExportJob<?> other : QUEUE)
+				{
+					if (QUEUE.comparator().compare(other, job) < 0)
+						position++;
+				}
+			}
+		}
+
+		return job.toStatus(position);
+	}
+
+	static synchronized boolean dequeue(ExportJob<?> job)
+	{
+		return QUEUE.remove(job);
+	}
+
+	/**
+	 * Starts queued jobs as long as the limits allow it. The limits are read every time, so changes to the properties apply immediately.
+	 */
+	private static void dispatch()
+	{
+		List<ExportJob<?>> toStart = new ArrayList<>();
+
+		synchronized (ExportJobManager.class)
+		{
+			int maxConcurrent = Math.max(1, getLimit(ServerProperty.GERMINATE_EXPORT_JOBS_MAX_CONCURRENT));
+			int maxPerUser = Math.max(1, getLimit(ServerProperty.GERMINATE_EXPORT_JOBS_MAX_PER_USER));
+
+			if (running < maxConcurrent && !QUEUE.isEmpty())
+			{
+				// Take the jobs in priority order and skip those of users that already use up their share
+				List<ExportJob<?>> ordered = new ArrayList<>(QUEUE);
+				ordered.sort(QUEUE.comparator());
+
+				for (ExportJob<?> job : ordered)
+				{
+					if (running >= maxConcurrent)
+						break;
+
+					int userRunning = RUNNING_PER_USER.getOrDefault(job.getOwner(), 0);
+					if (userRunning >= maxPerUser)
+						continue;
+
+					QUEUE.remove(job);
+					RUNNING_PER_USER.put(job.getOwner(), userRunning + 1);
+					running++;
+					toStart.add(job);
+				}
+			}
+		}
+
+		for (ExportJob<?> job : toStart)
+		{
+			try
+			{
+				WORKERS.execute(() ->
+				{
+					try
+					{
+						job.execute();
+					}
+					finally
+					{
+						onFinished(job);
+					}
+				});
+			}
+			catch (RejectedExecutionException e)
+			{
+				// Shutting down
+				job.abort();
+				onFinished(job);
+			}
+		}
+	}
+
+	private static void onFinished(ExportJob<?> job)
+	{
+		synchronized (ExportJobManager.class)
+		{
+			running--;
+			RUNNING_PER_USER.computeIfPresent(job.getOwner(), (k, v) -> v > 1 ? v - 1 : null);
+		}
+
+		dispatch();
+	}
+
+	private static int getLimit(ServerProperty property)
+	{
+		Integer value = PropertyWatcher.getInteger(property);
+		return value == null ? 1 : value;
+	}
+
+	/**
+	 * Cancels abandoned jobs and forgets finished jobs after {@link #KEEP_FINISHED_MINUTES}. Their files are left to the regular clean up of the
+	 * temporary folder.
+	 */
+	public static void cleanup()
+	{
+		long now = System.currentTimeMillis();
+
+		int cancelled = 0;
+		int removed = 0;
+
+		Iterator<ExportJob<?>> it = JOBS.values().iterator();
+		while (it.hasNext())
+		{
+			ExportJob<?> job = it.next();
+
+			if (job.isDone())
+			{
+				if (now - job.getFinished() > TimeUnit.MINUTES.toMillis(KEEP_FINISHED_MINUTES))
+				{
+					it.remove();
+					removed++;
+				}
+			}
+			else if (!job.isAwaited() && now - job.getLastAccess() > TimeUnit.MINUTES.toMillis(ABANDONED_AFTER_MINUTES))
+			{
+				job.cancel();
+				cancelled++;
+			}
+		}
+
+		if (cancelled > 0 || removed > 0)
+			Logger.getLogger("").log(Level.INFO, "Export jobs: cancelled " + cancelled + " abandoned, removed " + removed + " finished. " + getSummary());
+	}
+
+	/**
+	 * Returns a short summary of the running and queued jobs
+	 *
+	 * @return A short summary of the running and queued jobs
+	 */
+	public static synchronized String getSummary()
+	{
+		return "ExportJobManager{" +
+				"running=" + running +
+				", queued=" + QUEUE.size() +
+				", known=" + JOBS.size() +
+				'}';
+	}
+
+	/**
+	 * Cancels all jobs and stops the worker threads
+	 */
+	public static void shutdown()
+	{
+		for (ExportJob<?> job : JOBS.values())
+		{
+			if (!job.isDone())
+				job.cancel();
+		}
+
+		WORKERS.shutdownNow();
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import ch.systemsx.cisd.hdf5.*;
+
+/**
+ * {@link FJTabbedAlleleFrequencyToHdf5Converter} converts a tab-delimited allele frequency file (lines as rows, markers as columns) into an HDF5
+ * file with the same layout as the genotype files written by {@link FJTabbedToHdf5Converter}: <code>Lines</code>, <code>Markers</code>, a
+ * float matrix <code>DataMatrix</code> with one row per line and <code>MarkerStats</code> with the number of missing values per marker. Missing
+ * values are stored as {@link Float#NaN}.
+ * <p>
+ * <code>DataMatrix</code> has the attributes <code>ExactText</code> and <code>MissingText</code>. <code>ExactText</code> is <code>true</code> if
+ * formatting the stored values with {@link AlleleFrequencyDataExporter#formatValue(float)} and using <code>MissingText</code> for missing values
+ * reproduces the text of the file exactly. Otherwise exports have to copy the values from the text file to keep them unchanged.
+ *
+ * @author Sebastian Raubach
+ */
+public class FJTabbedAlleleFrequencyToHdf5Converter
+{
+	static final String LINES        = "Lines";
+	static final String MARKERS      = "Markers";
+	static final String DATA         = "DataMatrix";
+	static final String MARKER_STATS = "MarkerStats";
+	static final String EXACT_TEXT   = "ExactText";
+	static final String MISSING_TEXT = "MissingText";
+
+	/** The maximal number of rows that are staged in memory before they are flushed to the matrix */
+	private static final int  BLOCK_ROWS       = 256;
+	/** The maximal size of the staging buffer in bytes */
+	private static final long MAX_BUFFER_BYTES = 64L * 1024L * 1024L;
+
+	private File inputFile;
+	private File hdf5File;
+
+	/** Does formatting the parsed values reproduce the text of the file? */
+	private boolean exactText = true;
+	/** The text of the missing values, they all have to be the same for the text to be reproducible */
+	private String  missingText;
+
+	public FJTabbedAlleleFrequencyToHdf5Converter(File inputFile, File hdf5File)
+	{
+		this.inputFile = inputFile;
+		this.hdf5File = hdf5File;
+	}
+
+	/**
+	 * Converts the allele frequency file in a single pass. The result is written to a temporary file first and then moved into place, so readers
+	 * never see a partial file.
+	 *
+	 * @throws IOException Thrown if the file interaction fails
+	 */
+	public void convertToHdf5() throws IOException
+	{
+		long s = System.currentTimeMillis();
+
+		File tempFile = new File(hdf5File.getParentFile(), hdf5File.getName() + ".tmp");
+		if (tempFile.exists())
+			tempFile.delete();
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8)))
+		{
+			// Skip comments, the first remaining row is the header
+			String line = reader.readLine();
+			while (line != null && (line.length() == 0 || line.startsWith("#")))
+				line = reader.readLine();
+
+			if (line == null)
+				throw new IOException("Allele frequency file is empty: " + inputFile.getName());
+
+			String[] tokens = line.split("\t", -1);
+			String[] markers = Arrays.copyOfRange(tokens, 1, tokens.length);
+
+			int rowsPerBlock = (int) Math.max(1, Math.min(BLOCK_ROWS, MAX_BUFFER_BYTES / (4L * Math.max(1, markers.length))));
+
+			List<String> lines = new ArrayList<>();
+			int[][] markerStats = new int[markers.length][3];
+			float[][] buffer = new float[rowsPerBlock][markers.length];
+			int buffered = 0;
+			int counter = 0;
+
+			IHDF5Writer writer = HDF5Factory.open(tempFile);
+			try
+			{
+				// Create an empty matrix that grows along the row dimension as blocks get written
+				writer.float32().createMatrix(DATA, 0, markers.length, rowsPerBlock, Math.max(1, markers.length), HDF5FloatStorageFeatures.FLOAT_CHUNKED);
+
+				while ((line = reader.readLine()) != null)
+				{
+					int tab = line.indexOf('\t');
+					if (tab == -1 || !parseRow(line, tab + 1, buffer[buffered]))
+					{
+						if (!line.isEmpty())
+							System.err.println("Skipping row with an invalid number of columns: " + (tab == -1 ? line : line.substring(0, tab)));
+						continue;
+					}
+
+					lines.add(line.substring(0, tab));
+
+					float[] row = buffer[buffered];
+					for (int m = 0; m < row.length; m++)
+					{
+						if (Float.isNaN(row[m]))
+							markerStats[m][FJTabbedToHdf5Converter.STATS_MISSING]++;
+					}
+					buffered++;
+
+					if (buffered == rowsPerBlock)
+					{
+						writer.float32().writeMatrixBlockWithOffset(DATA, buffer, counter, 0);
+						counter += buffered;
+						buffered = 0;
+					}
+				}
+
+				// Write whatever is left in the buffer
+				if (buffered > 0)
+				{
+					writer.float32().writeMatrixBlockWithOffset(DATA, Arrays.copyOf(buffer, buffered), counter, 0);
+					counter += buffered;
+				}
+
+				writer.string().writeArray(MARKERS, markers, HDF5GenericStorageFeatures.GENERIC_DEFLATE);
+				writer.string().writeArray(LINES, lines.toArray(new String[0]), HDF5GenericStorageFeatures.GENERIC_DEFLATE);
+				writer.int32().writeMatrix(MARKER_STATS, markerStats, HDF5IntStorageFeatures.INT_DEFLATE);
+				writer.bool().setAttr(DATA, EXACT_TEXT, exactText);
+				writer.string().setAttr(DATA, MISSING_TEXT, missingText == null ? "" : missingText);
+			}
+			finally
+			{
+				writer.close();
+			}
+
+			Files.move(tempFile.toPath(), hdf5File.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Hdf5IndexCache.invalidate(hdf5File);
+
+			System.out.println("Converted allele frequency file: " + counter + " lines, " + markers.length + " markers, " + (System.currentTimeMillis() - s) + " (ms)");
+		}
+		finally
+		{
+			if (tempFile.exists())
+				tempFile.delete();
+		}
+	}
+
+	/**
+	 * Parses the tab-separated values of the given line starting at <code>start</code> into <code>row</code>. Empty values, <code>"-"</code>
+	 * and values that aren't numbers are missing.
+	 *
+	 * @return <code>true</code> if the number of values matches the length of <code>row</code>
+	 */
+	private boolean parseRow(String line, int start, float[] row)
+	{
+		int column = 0;
+		int length = line.length();
+
+		while (true)
+		{
+			int end = line.indexOf('\t', start);
+			if (end == -1)
+				end = length;
+
+			if (column == row.length)
+				return false;
+
+			row[column++] = parse(line, start, end);
+
+			if (end == length)
+				break;
+
+			start = end + 1;
+		}
+
+		return column == row.length;
+	}
+
+	private float parse(String line, int start, int end)
+	{
+		int textStart = start;
+		int textEnd = end;
+
+		// Trim
+		while (start < end && line.charAt(start) <= ' ')
+			start++;
+		while (end > start && line.charAt(end - 1) <= ' ')
+			end--;
+
+		float value;
+		if (start == end || (end - start == 1 && line.charAt(start) == '-'))
+		{
+			value = Float.NaN;
+		}
+		else
+		{
+			try
+			{
+				value = Float.parseFloat(line.substring(start, end));
+			}
+			catch (NumberFormatException e)
+			{
+				value = Float.NaN;
+			}
+		}
+
+		if (exactText)
+			checkText(line.substring(textStart, textEnd), value);
+
+		return value;
+	}
+
+	/**
+	 * Checks whether the value can be written back as the given text
+	 */
+	private void checkText(String text, float value)
+	{
+		if (Float.isNaN(value))
+		{
+			if (missingText == null)
+				missingText = text;
+			else if (!missingText.equals(text))
+				exactText = false;
+		}
+		else if (!AlleleFrequencyDataExporter.formatValue(value).equals(text))
+		{
+			exactText = false;
+		}
+	}
+}
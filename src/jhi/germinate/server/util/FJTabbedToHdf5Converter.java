@@ -20,7 +20,6 @@ package jhi.germinate.server.util;
 import java.io.*;
 import java.nio.charset.*;
 import java.util.*;
-import java.util.stream.*;
 
 import ch.systemsx.cisd.hdf5.*;
 
@@ -29,14 +28,34 @@ import ch.systemsx.cisd.hdf5.*;
  */
 public class FJTabbedToHdf5Converter
 {
-	private static final String LINES       = "Lines";
-	private static final String MARKERS     = "Markers";
-	private static final String DATA        = "DataMatrix";
-	private static final String STATE_TABLE = "StateTable";
+	private static final String LINES        = "Lines";
+	private static final String MARKERS      = "Markers";
+	private static final String DATA         = "DataMatrix";
+	private static final String DATA_T       = "DataMatrixTransposed";
+	private static final String STATE_TABLE  = "StateTable";
+	private static final String MARKER_STATS = "MarkerStats";
+	private static final String LINE_STATS   = "LineStats";
+
+	/** The columns of the {@link #MARKER_STATS} and {@link #LINE_STATS} matrices */
+	static final int STATS_MISSING      = 0;
+	static final int STATS_HOMOZYGOUS   = 1;
+	static final int STATS_HETEROZYGOUS = 2;
+
+	/** The maximal number of rows that are staged in memory before they are flushed to the matrix */
+	private static final int  DEFAULT_BLOCK_ROWS = 256;
+	/** The maximal size of the staging buffer in bytes */
+	private static final long MAX_BUFFER_BYTES   = 64L * 1024L * 1024L;
+	/** HDF5 has a hard limit of 4GB per chunk */
+	private static final long MAX_CHUNK_BYTES    = 4L * 1024L * 1024L * 1024L;
+	/** The size of a chunk of the transposed matrix. Kept small, so that reading a few markers doesn't read much else */
+	private static final int  T_CHUNK_BYTES      = 64 * 1024;
 
 	private File genotypeFile;
 	private File hdf5File;
 	private int  skipLines = 0;
+	private int  blockRows = DEFAULT_BLOCK_ROWS;
+
+	private boolean writeTransposed = true;
 
 	public FJTabbedToHdf5Converter(File genotypeFile, File hdf5File)
 	{
@@ -49,124 +68,343 @@ public class FJTabbedToHdf5Converter
 		this.skipLines = skipLines;
 	}
 
+	/**
+	 * Sets the number of rows that are staged in memory and written to the matrix in one block. The actual number of rows may be lower if the
+	 * staging buffer would otherwise exceed {@link #MAX_BUFFER_BYTES}.
+	 *
+	 * @param blockRows The number of rows per block
+	 */
+	public void setBlockRows(int blockRows)
+	{
+		this.blockRows = Math.max(1, blockRows);
+	}
+
+	/**
+	 * Sets whether a marker-major copy of the data matrix should be written alongside the line-major one. The copy is chunked for column access
+	 * and used by {@link Hdf5ToFJTabbedConverter} for transposed and marker-subset exports.
+	 *
+	 * @param writeTransposed Write the marker-major copy?
+	 */
+	public void setWriteTransposed(boolean writeTransposed)
+	{
+		this.writeTransposed = writeTransposed;
+	}
+
 	private void checkFileExists(File file)
 	{
 		if (!file.exists())
 			System.err.println("Genotype file doesn't exist. Please specify a valid genotype file.");
 	}
 
+	/**
+	 * Converts the genotype file into the HDF5 format. The input file is read exactly once. Rows are staged in a reusable primitive buffer and
+	 * written to a matrix with an extendable row dimension in blocks of {@link #setBlockRows(int)} rows. Unless disabled via {@link
+	 * #setWriteTransposed(boolean)}, each block is also written to a marker-major copy of the matrix.
+	 */
 	public void convertToHdf5()
 	{
 		checkFileExists(genotypeFile);
 
 		long s = System.currentTimeMillis();
-		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(genotypeFile), StandardCharsets.UTF_8));
-			 // The second reader is just to get the number of rows
-			 LineNumberReader lineNumberReader = new LineNumberReader(new InputStreamReader(new FileInputStream(genotypeFile), StandardCharsets.UTF_8)))
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(genotypeFile), StandardCharsets.UTF_8)))
 		{
 			// Delete old files with this name, because otherwise the new data will get appended to the old data
 			if (hdf5File.exists() && hdf5File.isFile())
 				hdf5File.delete();
 
-			IHDF5Writer writer = HDF5Factory.open(hdf5File);
-			LinkedHashMap<String, Byte> stateTable = new LinkedHashMap<>();
-			stateTable.put("", (byte) 0);
+			StateTable stateTable = new StateTable();
+			stateTable.add("");
 
-			int counter = 0;
-
-			// Count the number of header rows and skip them
-			int offset = 0;
+			// Skip the header rows
 			String line = reader.readLine();
 			while (line.length() == 0 || line.startsWith("#"))
-			{
-				offset++;
 				line = reader.readLine();
-			}
 
 			for (int i = 0; i < skipLines; i++)
-			{
-				offset++;
 				line = reader.readLine();
-			}
 
-			// Skip to the end
-			lineNumberReader.skip(Long.MAX_VALUE);
-
-			// Get the number of actual data rows
-			int nrOfRows = lineNumberReader.getLineNumber() - 1 - offset;
-
-			// We need to generate a mapping between the marker indices in the
-			// genotype file and those in the map file
 			String[] tokens = line.split("\t", -1);
 			String[] markers = Arrays.copyOfRange(tokens, 1, tokens.length);
 
-			// Here we determine the size of the chunks within the matrix.
-			// HDF5 has a hard limit of 4GB per chunk, so we need to set the chunk sizes appropriately.
-			// IMPORTANT: If we ever move away from using bytes for the states, then this needs to be adjusted.
-			long fourGig = 4L * 1024L * 1024L * 1024L;
-			// The number of rows is at least one and then depends on the number of times we can fit all the markers into 4GB
-			int accessionChunk = (int) Math.min(nrOfRows, Math.max(1, Math.floor(fourGig / (markers.length * 1d))));
-			// The number of columns is at most the number of markers and if the row is more than 4GB, then it's  the maximal number of columns that fit in 4GB
-			int markerChunk = (int) Math.min(markers.length, fourGig);
-
-			// Create the matrix based on the number of rows and the number of markers
-			writer.int8().createMatrix(DATA, nrOfRows, markers.length, accessionChunk, markerChunk);
+			// Don't let the staging buffer grow beyond MAX_BUFFER_BYTES. IMPORTANT: If we ever move away from using bytes for the states, then this needs to be adjusted.
+			int rowsPerBlock = (int) Math.max(1, Math.min(blockRows, MAX_BUFFER_BYTES / Math.max(1, markers.length)));
+			// The chunk covers a whole block of rows and as many markers as fit into the HDF5 chunk limit
+			int markerChunk = (int) Math.max(1, Math.min(markers.length, MAX_CHUNK_BYTES / rowsPerBlock));
 
 			// Remember the line names
 			List<String> lines = new ArrayList<>();
 
-			while ((line = reader.readLine()) != null)
+			// Count the missing, homozygous and heterozygous calls per marker and per line
+			int[][] markerStats = new int[markers.length][3];
+			List<int[]> lineStats = new ArrayList<>();
+
+			long bytesRead = 0;
+			int counter = 0;
+			int buffered = 0;
+			byte[][] buffer = new byte[rowsPerBlock][markers.length];
+			// The transposed block mirrors the staging buffer, so that both matrices are written in the same pass
+			byte[][] transposedBuffer = writeTransposed ? new byte[markers.length][rowsPerBlock] : null;
+
+			IHDF5Writer writer = HDF5Factory.open(hdf5File);
+			try
+			{
+				// Create an empty matrix that grows along the row dimension as blocks get written
+				writer.int8().createMatrix(DATA, 0, markers.length, rowsPerBlock, markerChunk, HDF5IntStorageFeatures.INT_CHUNKED);
+
+				// The marker-major copy grows along the column dimension instead
+				if (writeTransposed)
+					writer.int8().createMatrix(DATA_T, markers.length, 0, Math.max(1, Math.min(markers.length, T_CHUNK_BYTES / rowsPerBlock)), rowsPerBlock, HDF5IntStorageFeatures.INT_CHUNKED);
+
+				while ((line = reader.readLine()) != null)
+				{
+					bytesRead += line.length() + 1;
+
+					int tab = line.indexOf('\t');
+					if (tab == -1 || !parseRow(line, tab + 1, stateTable, buffer[buffered]))
+					{
+						System.err.println("Skipping row with an invalid number of columns: " + (tab == -1 ? line : line.substring(0, tab)));
+						continue;
+					}
+
+					// Remember the line name
+					lines.add(line.substring(0, tab));
+					lineStats.add(count(buffer[buffered], stateTable, markerStats));
+					buffered++;
+
+					if (buffered == rowsPerBlock)
+					{
+						flush(writer, buffer, transposedBuffer, buffered, counter);
+						counter += buffered;
+						buffered = 0;
+
+						System.out.println("Processed: " + counter);
+					}
+				}
+
+				// Write whatever is left in the buffer
+				if (buffered > 0)
+				{
+					flush(writer, buffer, transposedBuffer, buffered, counter);
+					counter += buffered;
+				}
+
+				// Write the marker and line names as arrays
+				writer.string().writeArray(MARKERS, markers, HDF5GenericStorageFeatures.GENERIC_DEFLATE);
+				writer.string().writeArray(LINES, lines.toArray(new String[0]), HDF5GenericStorageFeatures.GENERIC_DEFLATE);
+
+				// Write the state table
+				writer.string().writeArray(STATE_TABLE, stateTable.toArray(), HDF5GenericStorageFeatures.GENERIC_DEFLATE);
+
+				// Write the quality statistics used by the export filters
+				writer.int32().writeMatrix(MARKER_STATS, markerStats, HDF5IntStorageFeatures.INT_DEFLATE);
+				writer.int32().writeMatrix(LINE_STATS, lineStats.toArray(new int[0][]), HDF5IntStorageFeatures.INT_DEFLATE);
+			}
+			finally
 			{
-				if (counter % 1000 == 0)
-					System.out.println("Processed: " + counter);
+				writer.close();
+				// The file may have been replaced within the resolution of its last modified date
+				Hdf5IndexCache.invalidate(hdf5File);
+			}
 
-				String[] columns = line.split("\t", -1);
+			float seconds = Math.max(1, System.currentTimeMillis() - s) / 1000f;
+			System.out.println("Rows: " + counter + " (" + (counter / seconds) + " rows/s)");
+			System.out.println("Input: " + (bytesRead / (1024f * 1024f)) + " MB (" + (bytesRead / (1024f * 1024f) / seconds) + " MB/s)");
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			System.exit(1);
+		}
+		System.out.println("Took: " + ((System.currentTimeMillis() - s) / 1000f));
+	}
 
-				// Remember the line name
-				lines.add(columns[0]);
+	/**
+	 * Parses the tab-separated calls of the given line starting at <code>start</code> into <code>row</code> without creating intermediate
+	 * objects.
+	 *
+	 * @param line       The line from the genotype file
+	 * @param start      The index of the first character of the first call
+	 * @param stateTable The {@link StateTable} mapping calls to their byte representation
+	 * @param row        The target row
+	 * @return <code>true</code> if the number of calls matches the length of <code>row</code>
+	 */
+	private static boolean parseRow(String line, int start, StateTable stateTable, byte[] row)
+	{
+		int column = 0;
+		int length = line.length();
 
-				// The actual SNP calls are all but the first element of the split line
-				String[] snpCalls = Arrays.copyOfRange(columns, 1, columns.length);
-				Stream.of(snpCalls).forEach(token -> stateTable.putIfAbsent(token, (byte) stateTable.size()));
+		while (true)
+		{
+			int end = line.indexOf('\t', start);
+			if (end == -1)
+				end = length;
 
-				Byte[] bytes = Stream.of(snpCalls).map(stateTable::get).toArray(Byte[]::new);
-				byte[] outBytes = convertBytesToPrimitive(bytes);
+			if (column == row.length)
+				return false;
 
-				if (outBytes.length != markers.length)
-					continue;
+			row[column++] = stateTable.getOrAdd(line, start, end);
 
-				// Place the array in a dummy 2d array
-				byte[][] outMatrixBytes = new byte[1][outBytes.length];
-				outMatrixBytes[0] = outBytes;
+			if (end == length)
+				break;
 
-				// Write the row as a block to the matrix
-				writer.int8().writeMatrixBlock(DATA, outMatrixBytes, counter, 0);
-				counter++;
-			}
+			start = end + 1;
+		}
 
-			// Write the marker and line names as arrays
-			writer.string().writeArray(MARKERS, markers, HDF5GenericStorageFeatures.GENERIC_DEFLATE);
-			writer.string().writeArray(LINES, lines.toArray(new String[0]), HDF5GenericStorageFeatures.GENERIC_DEFLATE);
+		return column == row.length;
+	}
 
-			// Write the state table
-			writer.string().writeArray(STATE_TABLE, stateTable.keySet().toArray(new String[0]), HDF5GenericStorageFeatures.GENERIC_DEFLATE);
-			writer.close();
+	/**
+	 * Adds the calls of the given row to the marker statistics and returns the statistics of the row itself
+	 */
+	private static int[] count(byte[] row, StateTable stateTable, int[][] markerStats)
+	{
+		int[] lineStats = new int[3];
+		for (int m = 0; m < row.length; m++)
+		{
+			int type = stateTable.getType(row[m]);
+			markerStats[m][type]++;
+			lineStats[type]++;
 		}
-		catch (IOException e)
+
+		return lineStats;
+	}
+
+	/**
+	 * Determines whether the given state is missing, homozygous or heterozygous. Heterozygous states use "/" to separate the two alleles.
+	 *
+	 * @param state The state
+	 * @return One of {@link #STATS_MISSING}, {@link #STATS_HOMOZYGOUS} or {@link #STATS_HETEROZYGOUS}
+	 */
+	static int classify(String state)
+	{
+		String trimmed = state.trim();
+		if (trimmed.isEmpty() || trimmed.equals("-"))
+			return STATS_MISSING;
+
+		int separator = trimmed.indexOf('/');
+		if (separator != -1 && !trimmed.substring(0, separator).equals(trimmed.substring(separator + 1)))
+			return STATS_HETEROZYGOUS;
+		else
+			return STATS_HOMOZYGOUS;
+	}
+
+	/**
+	 * Writes the first <code>rows</code> rows of the buffer to the matrix starting at row <code>offset</code>. If <code>transposedBuffer</code>
+	 * is not <code>null</code>, the rows are also written to the marker-major matrix starting at column <code>offset</code>.
+	 */
+	private static void flush(IHDF5Writer writer, byte[][] buffer, byte[][] transposedBuffer, int rows, int offset)
+	{
+		// Copying the outer array only shares the row arrays, so this doesn't copy any data
+		byte[][] block = rows == buffer.length ? buffer : Arrays.copyOf(buffer, rows);
+		writer.int8().writeMatrixBlockWithOffset(DATA, block, offset, 0);
+
+		if (transposedBuffer != null)
 		{
-			e.printStackTrace();
-			System.exit(1);
+			// The last block is usually shorter than the others, so the columns need to be trimmed
+			byte[][] transposed = rows == buffer.length ? transposedBuffer : new byte[transposedBuffer.length][rows];
+
+			for (int r = 0; r < rows; r++)
+			{
+				byte[] row = buffer[r];
+				for (int m = 0; m < row.length; m++)
+					transposed[m][r] = row[m];
+			}
+
+			writer.int8().writeMatrixBlockWithOffset(DATA_T, transposed, 0, offset);
 		}
-		System.out.println("Took: " + ((System.currentTimeMillis() - s) / 1000f));
 	}
 
-	private byte[] convertBytesToPrimitive(Byte[] bytes)
+	/**
+	 * {@link StateTable} is an open addressing hash table mapping allele calls to their byte representation. Lookups operate on character ranges
+	 * of the input line, so no {@link String} is created unless a new state is encountered.
+	 */
+	private static class StateTable
 	{
-		byte[] outBytes = new byte[bytes.length];
-		int i = 0;
-		for (Byte b : bytes)
-			outBytes[i++] = b;
+		private String[] keys   = new String[256];
+		private byte[]   values = new byte[256];
+		private byte[]   types  = new byte[256];
+		private int      size   = 0;
+
+		private List<String> ordered = new ArrayList<>();
+
+		byte getOrAdd(String line, int start, int end)
+		{
+			int length = end - start;
+			int hash = 0;
+			for (int i = start; i < end; i++)
+				hash = 31 * hash + line.charAt(i);
+
+			int mask = keys.length - 1;
+			int slot = mix(hash) & mask;
+
+			String key;
+			while ((key = keys[slot]) != null)
+			{
+				if (key.length() == length && line.regionMatches(start, key, 0, length))
+					return values[slot];
+
+				slot = (slot + 1) & mask;
+			}
+
+			return add(line.substring(start, end));
+		}
 
-		return outBytes;
+		byte add(String state)
+		{
+			// Grow the table while it's at most half full to keep the probe sequences short
+			if ((size + 1) * 2 > keys.length)
+				rehash();
+
+			int mask = keys.length - 1;
+			int slot = mix(state.hashCode()) & mask;
+			while (keys[slot] != null)
+				slot = (slot + 1) & mask;
+
+			byte value = (byte) size++;
+			types[value & 0xFF] = (byte) classify(state);
+			keys[slot] = state;
+			values[slot] = value;
+			ordered.add(state);
+
+			return value;
+		}
+
+		int getType(byte value)
+		{
+			return types[value & 0xFF];
+		}
+
+		String[] toArray()
+		{
+			return ordered.toArray(new String[0]);
+		}
+
+		private void rehash()
+		{
+			String[] oldKeys = keys;
+			byte[] oldValues = values;
+
+			keys = new String[oldKeys.length * 2];
+			values = new byte[oldValues.length * 2];
+
+			int mask = keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++)
+			{
+				if (oldKeys[i] == null)
+					continue;
+
+				int slot = mix(oldKeys[i].hashCode()) & mask;
+				while (keys[slot] != null)
+					slot = (slot + 1) & mask;
+
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+
+		private static int mix(int hash)
+		{
+			return hash ^ (hash >>> 16);
+		}
 	}
-}
\ No newline at end of file
+}
@@ -159,21 +159,10 @@ public class FlapjackUtils
 	{
 		try
 		{
-			//			if (USE_FLAPJACK_API)
-			//			{
-			//				File map = new File(params.getParam(FlapjackParams.Param.map));
-			//				File genotypes = new File(params.getParam(FlapjackParams.Param.genotypes));
-			//				FlapjackFile project = new FlapjackFile(params.getParam(FlapjackParams.Param.project));
-			//				CreateProjectSettings cps = new CreateProjectSettings(genotypes, map, null, null, project, null);
-			//				DataImportSettings dis = new DataImportSettings();
-			//				CreateProject cp = new CreateProject(cps, dis);
-			//
-			//				return handleOutput(cp.doProjectCreation());
-			//
-			////				throw new FlapjackException("API for CreateProject not implemented yet.");
-			//			}
-			//			else
-			//			{
+			// Flapjack exits the JVM if the project creation fails, so it runs in a separate, long-lived JVM
+			if (FlapjackWorkerPool.isEnabled())
+				return FlapjackWorkerPool.createProject(params);
+
 			String javaPath = PropertyWatcher.getJavaPath();
 
 			List<String> parameters = new ArrayList<>();
@@ -186,7 +175,10 @@ public class FlapjackUtils
 			ProcessBuilder processBuilder = new ProcessBuilder(parameters);
 
 			return runAndCaptureOutput(processBuilder);
-			//			}
+		}
+		catch (FlapjackException e)
+		{
+			throw e;
 		}
 		catch (Exception e)
 		{
@@ -378,7 +370,7 @@ public class FlapjackUtils
 		}
 	}
 
-	private static String getFlapjackPath() throws FlapjackException
+	static String getFlapjackPath() throws FlapjackException
 	{
 		File folder = FileUtils.getFromPath(FileLocation.apps, null, ReferenceFolder.flapjack, "");
 
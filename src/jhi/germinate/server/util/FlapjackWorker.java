@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import jhi.flapjack.io.*;
+import jhi.flapjack.io.cmd.*;
+
+/**
+ * {@link FlapjackWorker} is the main class of the long-lived JVMs started by the {@link FlapjackWorkerPool}. It reads one request per line from
+ * stdin, each consisting of the tab-separated Flapjack parameters (<code>-map=...</code>, <code>-genotypes=...</code>, <code>-project=...</code>),
+ * and creates the project in this JVM. The response starts with <code>OK\t&lt;n&gt;</code> followed by <code>n</code> lines of output or is a
+ * single line <code>ERROR\t&lt;message&gt;</code>.
+ * <p>
+ * Flapjack exits the JVM if the project creation fails, the pool notices this and starts a new worker. This class must not depend on anything
+ * other than the JDK and Flapjack, because it runs with only those on the classpath.
+ *
+ * @author Sebastian Raubach
+ */
+public class FlapjackWorker
+{
+	static final String OK    = "OK";
+	static final String ERROR = "ERROR";
+
+	public static void main(String[] args) throws IOException
+	{
+		// Keep stdout for the protocol, anything Flapjack prints goes to stderr
+		PrintStream protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+		System.setOut(System.err);
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			if (line.isEmpty())
+				continue;
+
+			try
+			{
+				List<String> output = createProject(line.split("\t"));
+
+				protocol.println(OK + "\t" + output.size());
+				for (String out : output)
+					protocol.println(out.replace('\n', ' ').replace('\r', ' '));
+			}
+			catch (Exception e)
+			{
+				protocol.println(ERROR + "\t" + String.valueOf(e.getMessage()).replace('\n', ' ').replace('\r', ' '));
+			}
+		}
+	}
+
+	/**
+	 * Mirrors the legacy argument handling of {@link CreateProject#main(String[])} without exiting the JVM on success
+	 */
+	private static List<String> createProject(String[] args)
+	{
+		File map = null;
+		File genotypes = null;
+		File traits = null;
+		File qtls = null;
+		FlapjackFile project = null;
+
+		for (String arg : args)
+		{
+			if (arg.startsWith("-map="))
+				map = new File(arg.substring(5));
+			else if (arg.startsWith("-genotypes="))
+				genotypes = new File(arg.substring(11));
+			else if (arg.startsWith("-traits="))
+				traits = new File(arg.substring(8));
+			else if (arg.startsWith("-qtls="))
+				qtls = new File(arg.substring(6));
+			else if (arg.startsWith("-project="))
+				project = new FlapjackFile(arg.substring(9));
+		}
+
+		if (genotypes == null || project == null)
+			throw new IllegalArgumentException("Missing genotype or project file");
+
+		CreateProjectSettings projectSettings = new CreateProjectSettings(genotypes, map, traits, qtls, project, null);
+
+		return new CreateProject(projectSettings, new DataImportSettings()).doProjectCreation();
+	}
+}
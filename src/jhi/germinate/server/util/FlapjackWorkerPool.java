@@ -0,0 +1,333 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.io.*;
+import java.io.IOException;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import jhi.germinate.server.util.FlapjackUtils.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * {@link FlapjackWorkerPool} creates Flapjack projects in long-lived {@link FlapjackWorker} JVMs instead of starting a new JVM for each project.
+ * Flapjack exits the JVM when the project creation fails, so it can't run inside the web application itself.
+ * <p>
+ * There are {@link ServerProperty#GERMINATE_FLAPJACK_WORKERS} workers, each limited to {@link ServerProperty#GERMINATE_FLAPJACK_MEMORY_MB} of
+ * heap. At most {@link ServerProperty#GERMINATE_FLAPJACK_QUEUE_SIZE} further requests wait for a free worker, any more are rejected. A worker
+ * that takes longer than {@link ServerProperty#GERMINATE_FLAPJACK_TIMEOUT_MINUTES} is killed. Workers are replaced after {@link
+ * #MAX_JOBS_PER_WORKER} projects and stopped after being idle for {@link #IDLE_MINUTES}. The settings are read when the pool is first used.
+ *
+ * @author Sebastian Raubach
+ */
+public class FlapjackWorkerPool
+{
+	private static final int  MAX_JOBS_PER_WORKER = 100;
+	private static final long IDLE_MINUTES        = 30;
+
+	private static final Set<WorkerProcess>         PROCESSES = ConcurrentHashMap.newKeySet();
+	private static final ThreadLocal<WorkerProcess> CURRENT   = new ThreadLocal<>();
+	private static final ScheduledExecutorService   WATCHDOG  = Executors.newSingleThreadScheduledExecutor(r ->
+	{
+		Thread thread = new Thread(r, "FlapjackWatchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static final AtomicLong JOBS            = new AtomicLong();
+	private static final AtomicLong FAILED          = new AtomicLong();
+	private static final AtomicLong WORKERS_STARTED = new AtomicLong();
+	private static final AtomicLong TOTAL_MILLIS    = new AtomicLong();
+
+	private static ThreadPoolExecutor executor;
+
+	/**
+	 * Returns <code>true</code> if projects should be created by the pool
+	 *
+	 * @return <code>true</code> if projects should be created by the pool
+	 */
+	public static boolean isEnabled()
+	{
+		Integer workers = PropertyWatcher.getInteger(ServerProperty.GERMINATE_FLAPJACK_WORKERS);
+		return workers != null && workers > 0;
+	}
+
+	private static synchronized ThreadPoolExecutor getExecutor()
+	{
+		if (executor == null)
+		{
+			int workers = Math.max(1, getInteger(ServerProperty.GERMINATE_FLAPJACK_WORKERS));
+			int queueSize = Math.max(1, getInteger(ServerProperty.GERMINATE_FLAPJACK_QUEUE_SIZE));
+
+			executor = new ThreadPoolExecutor(workers, workers, IDLE_MINUTES, TimeUnit.MINUTES, new ArrayBlockingQueue<>(queueSize), r ->
+			{
+				// Stop the worker JVM of this thread when the thread ends
+				Thread thread = new Thread(() ->
+				{
+					try
+					{
+						r.run();
+					}
+					finally
+					{
+						WorkerProcess worker = CURRENT.get();
+						if (worker != null)
+							worker.destroy();
+						CURRENT.remove();
+					}
+				}, "FlapjackWorker");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.allowCoreThreadTimeOut(true);
+		}
+
+		return executor;
+	}
+
+	/**
+	 * Creates a Flapjack project on one of the workers and waits for it to finish
+	 *
+	 * @param params The {@link FlapjackParams}
+	 * @return The debug output
+	 * @throws FlapjackException Thrown if the queue is full, the worker fails or times out or the waiting thread is interrupted
+	 */
+	public static String createProject(FlapjackParams params) throws FlapjackException
+	{
+		long queued = System.currentTimeMillis();
+		AtomicReference<WorkerProcess> used = new AtomicReference<>();
+
+		Future<String> future;
+		try
+		{
+			future = getExecutor().submit(() -> run(params, queued, used));
+		}
+		catch (RejectedExecutionException e)
+		{
+			throw new FlapjackException("Too many Flapjack projects are being created at the moment. Please try again later.");
+		}
+
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			// The export has been cancelled, don't keep the worker busy
+			future.cancel(true);
+			WorkerProcess worker = used.get();
+			if (worker != null)
+				worker.destroy();
+			Thread.currentThread().interrupt();
+			throw new FlapjackException(e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof FlapjackException)
+				throw (FlapjackException) e.getCause();
+			else if (e.getCause() instanceof Exception)
+				throw new FlapjackException((Exception) e.getCause());
+			else
+				throw new FlapjackException(e);
+		}
+	}
+
+	private static String run(FlapjackParams params, long queued, AtomicReference<WorkerProcess> used) throws Exception
+	{
+		long start = System.currentTimeMillis();
+
+		WorkerProcess worker = CURRENT.get();
+		boolean cold = worker == null || !worker.isAlive() || worker.jobs >= MAX_JOBS_PER_WORKER;
+		if (cold)
+		{
+			if (worker != null)
+				worker.destroy();
+			worker = new WorkerProcess();
+			CURRENT.set(worker);
+		}
+		used.set(worker);
+
+		long started = System.currentTimeMillis();
+
+		long timeout = Math.max(1, getInteger(ServerProperty.GERMINATE_FLAPJACK_TIMEOUT_MINUTES));
+		AtomicBoolean timedOut = new AtomicBoolean(false);
+		WorkerProcess w = worker;
+		ScheduledFuture<?> watchdog = WATCHDOG.schedule(() ->
+		{
+			timedOut.set(true);
+			w.destroy();
+		}, timeout, TimeUnit.MINUTES);
+
+		try
+		{
+			String output = worker.run(params);
+
+			long end = System.currentTimeMillis();
+			JOBS.incrementAndGet();
+			TOTAL_MILLIS.addAndGet(end - start);
+			Logger.getLogger("").log(Level.INFO, "Flapjack project created in " + (end - queued) + " ms (queued: " + (start - queued) + " ms, " + (cold ? "worker start: " + (started - start) + " ms" : "warm worker") + ", creation: " + (end - started) + " ms, job " + worker.jobs + " of this worker)");
+
+			return output;
+		}
+		catch (Exception e)
+		{
+			FAILED.incrementAndGet();
+			worker.destroy();
+			CURRENT.remove();
+
+			Logger.getLogger("").log(Level.INFO, "Flapjack project creation failed after " + (System.currentTimeMillis() - start) + " ms: " + e.getMessage());
+
+			if (timedOut.get())
+				throw new FlapjackException("Flapjack project creation took longer than " + timeout + " minutes.");
+			else
+				throw e;
+		}
+		finally
+		{
+			watchdog.cancel(false);
+		}
+	}
+
+	private static int getInteger(ServerProperty property)
+	{
+		Integer value = PropertyWatcher.getInteger(property);
+		return value == null ? Integer.parseInt(property.getDefaultValue()) : value;
+	}
+
+	/**
+	 * Returns a short summary of the pool including the average creation time
+	 *
+	 * @return A short summary of the pool
+	 */
+	public static synchronized String getSummary()
+	{
+		long jobs = JOBS.get();
+		return "FlapjackWorkerPool{" +
+				"workers=" + PROCESSES.size() +
+				", queued=" + (executor == null ? 0 : executor.getQueue().size()) +
+				", workersStarted=" + WORKERS_STARTED.get() +
+				", jobs=" + jobs +
+				", failed=" + FAILED.get() +
+				", averageMillis=" + (jobs == 0 ? 0 : TOTAL_MILLIS.get() / jobs) +
+				'}';
+	}
+
+	/**
+	 * Stops all workers
+	 */
+	public static synchronized void shutdown()
+	{
+		if (executor != null)
+			executor.shutdownNow();
+		executor = null;
+
+		WATCHDOG.shutdownNow();
+
+		for (WorkerProcess worker : PROCESSES)
+			worker.destroy();
+	}
+
+	/**
+	 * A single {@link FlapjackWorker} JVM
+	 */
+	private static class WorkerProcess
+	{
+		private final Process        process;
+		private final BufferedWriter writer;
+		private final BufferedReader reader;
+		private       int            jobs = 0;
+
+		WorkerProcess() throws FlapjackException, IOException
+		{
+			String classpath;
+			try
+			{
+				classpath = FlapjackUtils.getFlapjackPath() + File.pathSeparator + new File(FlapjackWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+			}
+			catch (java.net.URISyntaxException e)
+			{
+				throw new FlapjackException(e);
+			}
+
+			ProcessBuilder processBuilder = new ProcessBuilder(PropertyWatcher.getJavaPath(), "-Xmx" + Math.max(64, getInteger(ServerProperty.GERMINATE_FLAPJACK_MEMORY_MB)) + "m", "-Djava.awt.headless=true", "-cp", classpath, FlapjackWorker.class.getName())
+					.redirectError(ProcessBuilder.Redirect.INHERIT);
+
+			process = processBuilder.start();
+			writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+			reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+
+			PROCESSES.add(this);
+			WORKERS_STARTED.incrementAndGet();
+		}
+
+		String run(FlapjackParams params) throws IOException, FlapjackException
+		{
+			jobs++;
+
+			writer.write(String.join("\t", params.getParamsForProcessBuilder()));
+			writer.newLine();
+			writer.flush();
+
+			String header = reader.readLine();
+
+			if (header == null)
+				throw new FlapjackException("Flapjack worker stopped unexpectedly" + (process.isAlive() ? "" : " with exit code " + process.exitValue()));
+
+			String[] parts = header.split("\t", 2);
+
+			if (FlapjackWorker.OK.equals(parts[0]) && parts.length == 2)
+			{
+				int lines = Integer.parseInt(parts[1]);
+				StringBuilder builder = new StringBuilder();
+
+				for (int i = 0; i < lines; i++)
+				{
+					String line = reader.readLine();
+					if (line == null)
+						throw new FlapjackException("Flapjack worker stopped unexpectedly");
+
+					builder.append(line);
+					builder.append("<br/>");
+				}
+
+				return builder.toString();
+			}
+			else
+			{
+				throw new FlapjackException(parts.length == 2 ? parts[1] : header);
+			}
+		}
+
+		boolean isAlive()
+		{
+			return process.isAlive();
+		}
+
+		void destroy()
+		{
+			process.destroyForcibly();
+			PROCESSES.remove(this);
+		}
+	}
+}
@@ -0,0 +1,454 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import ch.systemsx.cisd.hdf5.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.enums.*;
+
+/**
+ * {@link Hdf5IndexCache} keeps the line and marker names, the name to index lookups, the state table and the marker statistics of recently used
+ * HDF5 genotype files in memory. These don't change between exports of the same file, but reading and indexing them used to make up a large
+ * part of the time of small exports from wide files.
+ * <p>
+ * The cache is shared by the whole application and bounded by {@link ServerProperty#GERMINATE_HDF5_INDEX_CACHE_SIZE_MB}. Entries are
+ * invalidated when the size or the last modified date of the file changes.
+ *
+ * @author Sebastian Raubach
+ */
+public class Hdf5IndexCache
+{
+	private static final String LINES        = "Lines";
+	private static final String MARKERS      = "Markers";
+	private static final String DATA_T       = "DataMatrixTransposed";
+	private static final String STATE_TABLE  = "StateTable";
+	private static final String MARKER_STATS = "MarkerStats";
+
+	private static final LinkedHashMap<String, Index>      INDICES = new LinkedHashMap<>(16, 0.75f, true);
+	private static final ConcurrentHashMap<String, Object> LOCKS   = new ConcurrentHashMap<>();
+	private static       long                              size    = 0;
+
+	private static final AtomicLong HITS      = new AtomicLong();
+	private static final AtomicLong MISSES    = new AtomicLong();
+	private static final AtomicLong EVICTIONS = new AtomicLong();
+
+	/**
+	 * Returns the {@link Index} of the given HDF5 file. The file is only opened if there is no valid cached {@link Index}.
+	 *
+	 * @param hdf5File The HDF5 file
+	 * @return The {@link Index} of the given HDF5 file
+	 */
+	public static Index get(File hdf5File)
+	{
+		String path = hdf5File.getAbsolutePath();
+
+		Index index = getValid(path, hdf5File);
+		if (index != null)
+		{
+			HITS.incrementAndGet();
+			return index;
+		}
+
+		// Only let one thread at a time load the same file, the others wait for the result
+		synchronized (LOCKS.computeIfAbsent(path, k -> new Object()))
+		{
+			index = getValid(path, hdf5File);
+			if (index != null)
+			{
+				HITS.incrementAndGet();
+				return index;
+			}
+
+			MISSES.incrementAndGet();
+			index = load(hdf5File);
+
+			if (getMaxSize() > 0)
+			{
+				synchronized (INDICES)
+				{
+					Index old = INDICES.put(path, index);
+					if (old != null)
+						size -= old.size;
+					size += index.size;
+				}
+
+				evict();
+			}
+
+			return index;
+		}
+	}
+
+	/**
+	 * Removes the {@link Index} of the given file from the cache. Use this after replacing a file if its size and last modified date may not
+	 * have changed.
+	 *
+	 * @param hdf5File The HDF5 file
+	 */
+	public static void invalidate(File hdf5File)
+	{
+		synchronized (INDICES)
+		{
+			Index old = INDICES.remove(hdf5File.getAbsolutePath());
+			if (old != null)
+				size -= old.size;
+		}
+	}
+
+	/**
+	 * Removes all entries from the cache
+	 */
+	public static void clear()
+	{
+		synchronized (INDICES)
+		{
+			INDICES.clear();
+			size = 0;
+		}
+	}
+
+	private static Index getValid(String path, File hdf5File)
+	{
+		synchronized (INDICES)
+		{
+			Index index = INDICES.get(path);
+
+			if (index != null && (index.lastModified != hdf5File.lastModified() || index.length != hdf5File.length()))
+			{
+				INDICES.remove(path);
+				size -= index.size;
+				index = null;
+			}
+
+			return index;
+		}
+	}
+
+	private static Index load(File hdf5File)
+	{
+		long s = System.currentTimeMillis();
+
+		// Get these before reading, so that a file that changes while we read it is reloaded next time
+		long lastModified = hdf5File.lastModified();
+		long length = hdf5File.length();
+
+		IHDF5Reader reader = HDF5Factory.openForReading(hdf5File);
+		try
+		{
+			String[] lines = reader.readStringArray(LINES);
+			String[] markers = reader.readStringArray(MARKERS);
+			// Allele frequency files don't have a state table
+			String[] stateTable = reader.exists(STATE_TABLE) ? reader.readStringArray(STATE_TABLE) : new String[0];
+			boolean hasTransposed = reader.exists(DATA_T);
+
+			int[] missing = null;
+			int[] heterozygous = null;
+			if (reader.exists(MARKER_STATS))
+			{
+				int[][] stats = reader.int32().readMatrix(MARKER_STATS);
+				missing = new int[stats.length];
+				heterozygous = new int[stats.length];
+				for (int i = 0; i < stats.length; i++)
+				{
+					missing[i] = stats[i][FJTabbedToHdf5Converter.STATS_MISSING];
+					heterozygous[i] = stats[i][FJTabbedToHdf5Converter.STATS_HETEROZYGOUS];
+				}
+			}
+
+			Index index = new Index(lastModified, length, lines, markers, stateTable, hasTransposed, missing, heterozygous);
+
+			System.out.println("Indexed " + hdf5File.getName() + ": " + (System.currentTimeMillis() - s) + " (ms), " + (index.size / 1024) + " KB");
+
+			return index;
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	private static void evict()
+	{
+		long maxSize = getMaxSize();
+
+		int evicted = 0;
+		synchronized (INDICES)
+		{
+			Iterator<Map.Entry<String, Index>> it = INDICES.entrySet().iterator();
+			// Always keep the most recently used entry, even if it exceeds the limit on its own
+			while (size > maxSize && INDICES.size() > 1 && it.hasNext())
+			{
+				size -= it.next().getValue().size;
+				it.remove();
+				evicted++;
+			}
+		}
+
+		if (evicted > 0)
+		{
+			EVICTIONS.addAndGet(evicted);
+			Logger.getLogger("").log(Level.INFO, "HDF5 index cache evicted " + evicted + " entries: " + getStatus());
+		}
+	}
+
+	private static long getMaxSize()
+	{
+		Long sizeMb = PropertyWatcher.getLong(ServerProperty.GERMINATE_HDF5_INDEX_CACHE_SIZE_MB);
+		return sizeMb == null ? 0 : sizeMb * 1024L * 1024L;
+	}
+
+	/**
+	 * Returns a short summary of the cache state and its hit rate
+	 *
+	 * @return A short summary of the cache state and its hit rate
+	 */
+	public static String getStatus()
+	{
+		long h = HITS.get();
+		long m = MISSES.get();
+
+		int entries;
+		long bytes;
+		synchronized (INDICES)
+		{
+			entries = INDICES.size();
+			bytes = size;
+		}
+
+		return "Hdf5IndexCache{" +
+				"entries=" + entries +
+				", size=" + bytes +
+				", hits=" + h +
+				", misses=" + m +
+				", hitRate=" + (h + m == 0 ? 0 : (h * 100 / (h + m))) + "%" +
+				", evictions=" + EVICTIONS.get() +
+				'}';
+	}
+
+	/**
+	 * An {@link Index} holds everything about an HDF5 file that is needed to resolve a selection before reading the data matrix. It is
+	 * immutable and shared between concurrent exports.
+	 */
+	public static class Index
+	{
+		private final long lastModified;
+		private final long length;
+		private final long size;
+
+		private final String[]  lines;
+		private final String[]  markers;
+		private final NameIndex lineIndex;
+		private final NameIndex markerIndex;
+
+		private final String[] stateTable;
+		private final byte[][] encodedStates;
+		private final boolean  hasTransposed;
+
+		private final int[] markerMissing;
+		private final int[] markerHeterozygous;
+
+		private Index(long lastModified, long length, String[] lines, String[] markers, String[] stateTable, boolean hasTransposed, int[] markerMissing, int[] markerHeterozygous)
+		{
+			this.lastModified = lastModified;
+			this.length = length;
+			this.lines = lines;
+			this.markers = markers;
+			this.stateTable = stateTable;
+			this.hasTransposed = hasTransposed;
+			this.markerMissing = markerMissing;
+			this.markerHeterozygous = markerHeterozygous;
+
+			lineIndex = new NameIndex(lines);
+			markerIndex = new NameIndex(markers);
+
+			// Allow for every possible byte value, so that invalid states don't cause an exception
+			encodedStates = new byte[256][];
+			Arrays.fill(encodedStates, new byte[0]);
+			for (int i = 0; i < stateTable.length && i < encodedStates.length; i++)
+				encodedStates[i] = stateTable[i].getBytes(StandardCharsets.UTF_8);
+
+			long bytes = estimateSize(lines) + estimateSize(markers) + estimateSize(stateTable);
+			bytes += lineIndex.table.length * 4L + markerIndex.table.length * 4L;
+			if (markerMissing != null)
+				bytes += markerMissing.length * 8L;
+			size = bytes;
+		}
+
+		private static long estimateSize(String[] names)
+		{
+			// Array slot, object header and the characters
+			long bytes = 16;
+			for (String name : names)
+				bytes += 8 + 40 + 2L * name.length();
+			return bytes;
+		}
+
+		/**
+		 * Returns the indices of the given lines in the order of the {@link Collection}. Lines that aren't part of the file are skipped.
+		 *
+		 * @param names The line names or <code>null</code> for all lines
+		 * @return The indices of the given lines
+		 */
+		public int[] findLines(Collection<String> names)
+		{
+			return lineIndex.find(names);
+		}
+
+		/**
+		 * Returns the indices of the given markers in the order of the {@link Collection}. Markers that aren't part of the file are skipped.
+		 *
+		 * @param names The marker names or <code>null</code> for all markers
+		 * @return The indices of the given markers
+		 */
+		public int[] findMarkers(Collection<String> names)
+		{
+			return markerIndex.find(names);
+		}
+
+		public int getLineCount()
+		{
+			return lines.length;
+		}
+
+		public int getMarkerCount()
+		{
+			return markers.length;
+		}
+
+		public String getLine(int index)
+		{
+			return lines[index];
+		}
+
+		public String getMarker(int index)
+		{
+			return markers[index];
+		}
+
+		public String[] getStateTable()
+		{
+			return Arrays.copyOf(stateTable, stateTable.length);
+		}
+
+		/**
+		 * Returns the UTF-8 encoded states indexed by the unsigned byte value used in the data matrix. Must not be modified.
+		 *
+		 * @return The UTF-8 encoded states
+		 */
+		byte[][] getEncodedStates()
+		{
+			return encodedStates;
+		}
+
+		public boolean hasTransposed()
+		{
+			return hasTransposed;
+		}
+
+		public boolean hasMarkerStats()
+		{
+			return markerMissing != null;
+		}
+
+		public int getMarkerMissing(int index)
+		{
+			return markerMissing[index];
+		}
+
+		public int getMarkerHeterozygous(int index)
+		{
+			return markerHeterozygous[index];
+		}
+	}
+
+	/**
+	 * {@link NameIndex} is an open addressing hash table from names to their position in the name array. It stores only an int per slot
+	 * instead of a boxed map entry per name, which matters for files with hundreds of thousands of markers.
+	 */
+	private static class NameIndex
+	{
+		private final String[] names;
+		private final int[]    table;
+		private final int      mask;
+
+		NameIndex(String[] names)
+		{
+			this.names = names;
+
+			int capacity = Integer.highestOneBit(Math.max(2, names.length * 2) - 1) << 1;
+			table = new int[capacity];
+			mask = capacity - 1;
+
+			for (int i = 0; i < names.length; i++)
+			{
+				int slot = slot(names[i]);
+				// Keep the first occurrence of duplicate names
+				if (table[slot] == 0)
+					table[slot] = i + 1;
+			}
+		}
+
+		private int slot(String name)
+		{
+			int slot = mix(name.hashCode()) & mask;
+			while (table[slot] != 0 && !names[table[slot] - 1].equals(name))
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		private static int mix(int hash)
+		{
+			hash *= 0x9E3779B9;
+			return hash ^ (hash >>> 16);
+		}
+
+		int indexOf(String name)
+		{
+			return table[slot(name)] - 1;
+		}
+
+		int[] find(Collection<String> selection)
+		{
+			if (selection == null)
+			{
+				int[] result = new int[names.length];
+				for (int i = 0; i < result.length; i++)
+					result[i] = i;
+				return result;
+			}
+
+			int[] result = new int[selection.size()];
+			int count = 0;
+			for (String name : selection)
+			{
+				int index = name == null ? -1 : indexOf(name);
+				if (index != -1)
+					result[count++] = index;
+			}
+
+			return count == result.length ? result : Arrays.copyOf(result, count);
+		}
+	}
+}
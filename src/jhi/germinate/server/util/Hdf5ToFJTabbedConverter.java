@@ -20,7 +20,7 @@ package jhi.germinate.server.util;
 import java.io.*;
 import java.nio.charset.*;
 import java.util.*;
-import java.util.stream.*;
+import java.util.concurrent.*;
 
 import ch.systemsx.cisd.hdf5.*;
 
@@ -29,28 +29,67 @@ import ch.systemsx.cisd.hdf5.*;
  */
 public class Hdf5ToFJTabbedConverter
 {
-	private static final String LINES   = "Lines";
-	private static final String MARKERS = "Markers";
+	private static final String DATA   = "DataMatrix";
+	private static final String DATA_T = "DataMatrixTransposed";
+
+	private static final byte TAB      = '\t';
+	private static final byte NEW_LINE = '\n';
+
+	/** The maximal number of output rows that are read and formatted at once */
+	private static final int  MAX_WINDOW_ROWS     = 1024;
+	/** The maximal number of genotype bytes that are read at once */
+	private static final long MAX_WINDOW_BYTES    = 32L * 1024L * 1024L;
+	/** The maximal size of a marker-major sub-matrix that is kept in memory for non-transposed exports */
+	private static final long MAX_SUBMATRIX_BYTES = 64L * 1024L * 1024L;
+	private static final int  OUTPUT_BUFFER_SIZE  = 1024 * 1024;
+
+	/** Bounded pool shared by all exports, so that concurrent exports can't saturate all cores */
+	private static final ExecutorService FORMATTERS = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r ->
+	{
+		Thread thread = new Thread(r, "Hdf5ExportFormatter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * The copies of the data matrix. {@link #LINE_MAJOR} has one row per line, {@link #MARKER_MAJOR} has one row per marker.
+	 */
+	private enum Layout
+	{
+		LINE_MAJOR,
+		MARKER_MAJOR
+	}
 
-	private static final String DATA = "DataMatrix";
+	private interface RowConsumer
+	{
+		void accept(int position, byte[] genotypes);
+	}
 
-	private static final String STATE_TABLE = "StateTable";
+	/**
+	 * Receives the progress of {@link #extractData(String)}. Implementations may throw an unchecked exception to stop the export.
+	 */
+	public interface ProgressListener
+	{
+		void onProgress(float progress);
+	}
 
-	private File                  hdf5File;
-	private LinkedHashSet<String> lines;
-	private LinkedHashSet<String> markers;
+	private File               hdf5File;
+	private Collection<String> lines;
+	private Collection<String> markers;
 
 	private boolean transposed;
 
-	private HashMap<String, Integer> lineInds;
-	private HashMap<String, Integer> markerInds;
-	private LinkedHashSet<String> hdf5Lines;
-	private LinkedHashSet<String> hdf5Markers;
+	private Hdf5IndexCache.Index  index;
+	private int[]                 lineIndices;
+	private int[]                 markerIndices;
+	private LinkedHashSet<String> deletedMarkers = new LinkedHashSet<>();
 
 	private IHDF5Reader reader;
 
 	private String outputFilePath;
 
+	private ProgressListener progressListener;
+
 	public Hdf5ToFJTabbedConverter(File hdf5File, LinkedHashSet<String> lines, LinkedHashSet<String> markers, String outputFilePath, boolean transposed)
 	{
 		// Setup input and output files
@@ -61,143 +100,457 @@ public class Hdf5ToFJTabbedConverter
 		this.transposed = transposed;
 	}
 
-	public void readInput()
+	public void setProgressListener(ProgressListener progressListener)
 	{
-		reader = HDF5Factory.openForReading(hdf5File);
+		this.progressListener = progressListener;
+	}
 
+	/**
+	 * Resolves the requested lines and markers to their indices in the HDF5 file. The names, lookups and statistics of the file are taken from
+	 * the {@link Hdf5IndexCache}, so the file itself is only opened if they aren't cached yet.
+	 */
+	public void readInput()
+	{
 		long s = System.currentTimeMillis();
+		index = Hdf5IndexCache.get(hdf5File);
 
 		System.out.println();
-		System.out.println("Hdf5 file opened for reading: " + (System.currentTimeMillis() - s) + " (ms)");
+		System.out.println("Hdf5 index loaded: " + (System.currentTimeMillis() - s) + " (ms)");
 
 		s = System.currentTimeMillis();
-		// Load lines from HDF5 and find the indices of our loaded lines
-		String[] hdf5LinesArray = reader.readStringArray(LINES);
-		hdf5Lines = new LinkedHashSet<>(Arrays.asList(hdf5LinesArray));
+		// Find the indices of our requested lines and markers. Names that aren't part of the file are dropped.
+		lineIndices = index.findLines(lines);
+		markerIndices = index.findMarkers(markers);
 
-		if (lines == null)
-			lines = hdf5Lines;
-		else
-			lines = lines.stream().filter(line -> hdf5Lines.contains(line)).collect(Collectors.toCollection(LinkedHashSet::new));
-
-		lineInds = new HashMap<>();
-		for (int i = 0; i < hdf5LinesArray.length; i++)
-			lineInds.put(hdf5LinesArray[i], i);
+		System.out.println("Resolved " + lineIndices.length + " lines and " + markerIndices.length + " markers: " + (System.currentTimeMillis() - s) + " (ms)");
+	}
 
-		System.out.println();
-		System.out.println("Read and filtered lines: " + (System.currentTimeMillis() - s) + " (ms)");
+	/**
+	 * Removes all markers from the selection whose percentage of missing or heterozygous calls exceeds the given limits. The percentages are
+	 * based on the statistics across all lines of the dataset that have been computed by {@link FJTabbedToHdf5Converter}, so this doesn't
+	 * require any access to the data matrix. Files without these statistics aren't filtered. Has to be called after {@link #readInput()}.
+	 *
+	 * @param maxMissing      The maximal percentage of missing calls per marker
+	 * @param maxHeterozygous The maximal percentage of heterozygous calls per marker
+	 */
+	public void applyQualityFilters(float maxMissing, float maxHeterozygous)
+	{
+		if (maxMissing >= 100 && maxHeterozygous >= 100)
+			return;
 
-		s = System.currentTimeMillis();
-		// Load markers from HDF5 and find the indices of our loaded markers
-		String[] hdf5MarkersArray = reader.readStringArray(MARKERS);
-		hdf5Markers = new LinkedHashSet<>(Arrays.asList(hdf5MarkersArray));
+		if (!index.hasMarkerStats())
+		{
+			System.out.println("No marker statistics available. Quality filters not applied.");
+			return;
+		}
 
-		if (markers == null)
-			markers = hdf5Markers;
-		else
-			markers = markers.stream().filter(marker -> hdf5Markers.contains(marker)).collect(Collectors.toCollection(LinkedHashSet::new));
+		long s = System.currentTimeMillis();
 
-		markerInds = new HashMap<>();
-		for (int i = 0; i < hdf5MarkersArray.length; i++)
-			markerInds.put(hdf5MarkersArray[i], i);
+		// Get the actual number of allowed calls
+		double missingLimit = maxMissing * (index.getLineCount() / 100.0);
+		double heterozygousLimit = maxHeterozygous * (index.getLineCount() / 100.0);
 
-		System.out.println();
-		System.out.println("Read and filtered markers: " + (System.currentTimeMillis() - s) + " (ms)");
+		int kept = 0;
+		for (int markerIndex : markerIndices)
+		{
+			if (index.getMarkerMissing(markerIndex) > missingLimit || index.getMarkerHeterozygous(markerIndex) > heterozygousLimit)
+				deletedMarkers.add(index.getMarker(markerIndex));
+			else
+				markerIndices[kept++] = markerIndex;
+		}
+		markerIndices = Arrays.copyOf(markerIndices, kept);
 
-		reader.close();
+		System.out.println("Applied quality filters: " + (System.currentTimeMillis() - s) + " (ms), deleted markers: " + deletedMarkers.size());
 	}
 
 	public void extractData(String headerLines)
+	{
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFilePath), OUTPUT_BUFFER_SIZE))
+		{
+			extractData(headerLines, out);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the data to the given {@link OutputStream} instead of the output file. The stream is flushed, but not closed.
+	 *
+	 * @param headerLines Any extra header lines such as database links
+	 * @param out         The {@link OutputStream} to write to
+	 * @throws IOException Thrown if writing fails
+	 */
+	public void extractData(String headerLines, OutputStream out) throws IOException
 	{
 		System.out.println();
 		long s = System.currentTimeMillis();
-		List<Integer> markerIndices = markers.parallelStream().map(marker -> markerInds.get(marker)).collect(Collectors.toList());
-		List<Integer> lineIndices = lines.parallelStream().map(line -> lineInds.get(line)).collect(Collectors.toList());
-		System.out.println("Read and mapped markers: " + (System.currentTimeMillis() - s) + " (ms)");
+		String[] lineNames = getNames(lineIndices, true);
+		String[] markerNames = getNames(markerIndices, false);
+		byte[][] states = index.getEncodedStates();
+		System.out.println("Mapped lines and markers: " + (System.currentTimeMillis() - s) + " (ms)");
 
-		reader = HDF5Factory.openForReading(hdf5File);
+		Layout layout = chooseLayout(lineIndices.length, markerIndices.length);
+		System.out.println("Reading from " + layout + " matrix");
 
-		s = System.currentTimeMillis();
-		String[] stateTable = reader.readStringArray(STATE_TABLE);
-		System.out.println("Read statetable: " + (System.currentTimeMillis() - s) + " (ms)");
+		// This is the only time the file is opened if the index was cached
+		reader = HDF5Factory.openForReading(hdf5File);
 
-		// Write our output file line by line
-		try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFilePath), StandardCharsets.UTF_8))))
+		// Write our output line by line
+		try
 		{
 			// Write header for drag and drop
-			writer.println("# fjFile = GENOTYPE");
+			writeLine(out, "# fjFile = GENOTYPE");
 
 			// Output any extra header lines that have been provided such as db link urls
 			if (!headerLines.isEmpty())
-				writer.print(headerLines);
+				out.write(headerLines.getBytes(StandardCharsets.UTF_8));
 
+			long bytes;
+			int rows;
 			if (transposed)
 			{
 				// Write the header line of a Flapjack file
-				writer.println(lines.parallelStream().collect(Collectors.joining("\t", "Marker/Accession\t", "")));
+				writeLine(out, "Marker/Accession\t" + String.join("\t", lineNames));
 
 				s = System.currentTimeMillis();
+				rows = markerIndices.length;
 
-				markers.forEach(markerName ->
+				if (layout == Layout.MARKER_MAJOR)
+				{
+					// The rows of the marker-major matrix are exactly what we need to write
+					bytes = extractRows(out, DATA_T, index.getLineCount(), markerNames, markerIndices, lineIndices, states);
+				}
+				else
 				{
-					// Read in a marker row (all of its alleles from file)
-					// Get from DATA, lineInds.size(), 1 column, start from row 0 and column markerInds.get(markerName).
-					// The resulting 2d array only contains one 1d array. Take that as the marker genotype data.
-					byte[][] g = reader.int8().readMatrixBlock(DATA, lineInds.size(), 1, 0, markerInds.get(markerName));
-					byte[] genotypes = new byte[g.length];
-					for (int i = 0; i < g.length; i++)
-						genotypes[i] = g[i][0];
-					String outputGenotypes = createGenotypeFlatFileString(markerName, genotypes, lineIndices, stateTable);
-					writer.println(outputGenotypes);
-				});
+					bytes = 0;
+					byte[] genotypes = new byte[index.getLineCount()];
+					RowBuffer buffer = new RowBuffer();
+					for (int m = 0; m < markerIndices.length; m++)
+					{
+						// Read in a marker row (all of its alleles from file)
+						// Get from DATA, all lines, 1 column, start from row 0 and the column of the marker.
+						byte[][] g = reader.int8().readMatrixBlockWithOffset(DATA, genotypes.length, 1, 0, markerIndices[m]);
+						for (int i = 0; i < g.length; i++)
+							genotypes[i] = g[i][0];
+
+						formatRow(markerNames[m], genotypes, lineIndices, states, buffer);
+						out.write(buffer.data, 0, buffer.length);
+						bytes += buffer.length;
+
+						reportProgress(m + 1, markerIndices.length);
+					}
+				}
 			}
 			else
 			{
 				// Write the header line of a Flapjack file
-				writer.println(markers.parallelStream().collect(Collectors.joining("\t", "Accession/Marker\t", "")));
+				writeLine(out, "Accession/Marker\t" + String.join("\t", markerNames));
 
 				s = System.currentTimeMillis();
+				rows = lineIndices.length;
 
-				lines.forEach(lineName ->
-				{
-					// Read in a line (all of its alleles from file)
-					// Get from DATA, 1 row, markerInds.size() columns, start from row lineInds.get(lineName) and column 0.
-					// The resulting 2d array only contains one 1d array. Take that as the lines genotype data.
-					byte[] genotypes = reader.int8().readMatrixBlock(DATA, 1, markerInds.size(), lineInds.get(lineName), 0)[0];
-					String outputGenotypes = createGenotypeFlatFileString(lineName, genotypes, markerIndices, stateTable);
-					writer.println(outputGenotypes);
-				});
+				if (layout == Layout.MARKER_MAJOR)
+					bytes = extractLinesFromMarkerMajor(out, lineNames, lineIndices, markerIndices, states);
+				else
+					bytes = extractRows(out, DATA, index.getMarkerCount(), lineNames, lineIndices, markerIndices, states);
 			}
+
+			float seconds = Math.max(1, System.currentTimeMillis() - s) / 1000f;
+			System.out.println("Rows: " + rows + " (" + (rows / seconds) + " rows/s)");
+			System.out.println("Output: " + (bytes / (1024f * 1024f)) + " MB (" + (bytes / (1024f * 1024f) / seconds) + " MB/s)");
 			System.out.println("Output lines to genotype file: " + (System.currentTimeMillis() - s) + " (ms)");
+
+			out.flush();
 		}
-		catch (IOException e)
+		finally
 		{
-			e.printStackTrace();
-			System.exit(1);
+			reader.close();
 		}
 
-		reader.close();
-
 		System.out.println();
 		System.out.println("HDF5 file converted to Flapjack genotype format");
+		System.out.println(Hdf5IndexCache.getStatus());
 	}
 
-	private String createGenotypeFlatFileString(String lineName, byte[] genotypes, List<Integer> markerIndices, String[] stateTable)
+	private String[] getNames(int[] indices, boolean isLines)
 	{
-		// Collect the alleles which match the line and markers we're looking for
-		return markerIndices.parallelStream()
-							.map(index -> genotypes[index])
-							.map(allele -> stateTable[allele])
-							.collect(Collectors.joining("\t", lineName + "\t", ""));
+		String[] result = new String[indices.length];
+		for (int i = 0; i < indices.length; i++)
+			result[i] = isLines ? index.getLine(indices[i]) : index.getMarker(indices[i]);
+
+		return result;
+	}
+
+	/**
+	 * Decides which copy of the data matrix to read from. Files that have been created before the marker-major copy was introduced only have the
+	 * line-major matrix. Otherwise, transposed exports always use the marker-major matrix. For non-transposed exports, the marker-major matrix is
+	 * used if the selected markers across all lines are less data than the selected lines across all markers and fit into memory.
+	 *
+	 * @param lineCount   The number of selected lines
+	 * @param markerCount The number of selected markers
+	 * @return The {@link Layout} to read from
+	 */
+	private Layout chooseLayout(int lineCount, int markerCount)
+	{
+		if (!index.hasTransposed())
+			return Layout.LINE_MAJOR;
+		if (transposed)
+			return Layout.MARKER_MAJOR;
+
+		long markerMajorBytes = (long) markerCount * index.getLineCount();
+		long lineMajorBytes = (long) lineCount * index.getMarkerCount();
+
+		if (markerMajorBytes < lineMajorBytes && markerMajorBytes <= MAX_SUBMATRIX_BYTES)
+			return Layout.MARKER_MAJOR;
+		else
+			return Layout.LINE_MAJOR;
 	}
 
+	/**
+	 * Writes the requested rows of the given matrix to the output. The rows are processed in windows of consecutive output rows. Within a window,
+	 * the row indices are sorted and contiguous runs are read as multi-row blocks. The rows are then formatted on {@link #FORMATTERS} while the
+	 * next window is being read. The output order is the order of <code>rowNames</code>.
+	 *
+	 * @param out           The {@link OutputStream} to write to
+	 * @param dataset       The matrix to read from
+	 * @param rowWidth      The number of columns of the matrix
+	 * @param rowNames      The names of the rows to export in output order
+	 * @param rowIndices    The row indices in the matrix
+	 * @param columnIndices The column indices to export
+	 * @param states        The UTF-8 encoded state table
+	 * @return The number of bytes written
+	 * @throws IOException Thrown if the interaction with the output fails or if formatting a row fails
+	 */
+	private long extractRows(OutputStream out, String dataset, int rowWidth, String[] rowNames, int[] rowIndices, int[] columnIndices, byte[][] states) throws IOException
+	{
+		// Limit the number of rows that are read at once so that wide matrices don't use up all the memory
+		int window = (int) Math.max(1, Math.min(MAX_WINDOW_ROWS, MAX_WINDOW_BYTES / Math.max(1, rowWidth)));
+
+		// Two sets of reusable row buffers: one is being formatted while the other one is written
+		RowBuffer[][] buffers = new RowBuffer[2][window];
+		for (RowBuffer[] set : buffers)
+		{
+			for (int i = 0; i < set.length; i++)
+				set[i] = new RowBuffer();
+		}
+
+		long written = 0;
+		Future<?>[] pending = null;
+		RowBuffer[] pendingBuffers = null;
+
+		for (int start = 0, set = 0; start < rowIndices.length; start += window, set ^= 1)
+		{
+			int end = Math.min(rowIndices.length, start + window);
+			Future<?>[] futures = submitWindow(dataset, rowWidth, rowNames, rowIndices, start, end, columnIndices, states, buffers[set]);
+
+			// While this window is being formatted, write the previous one
+			if (pending != null)
+				written += writeWindow(out, pending, pendingBuffers);
+
+			pending = futures;
+			pendingBuffers = buffers[set];
+
+			reportProgress(start, rowIndices.length);
+		}
+
+		if (pending != null)
+			written += writeWindow(out, pending, pendingBuffers);
+
+		reportProgress(rowIndices.length, rowIndices.length);
+
+		return written;
+	}
+
+	/**
+	 * Writes the requested lines to the output by reading the selected markers from the marker-major matrix. The selected sub-matrix is kept in
+	 * memory, so this must only be used if {@link #chooseLayout(int, int)} decided that it's small enough.
+	 */
+	private long extractLinesFromMarkerMajor(OutputStream out, String[] lineNames, int[] lineIndices, int[] markerIndices, byte[][] states) throws IOException
+	{
+		byte[][] subMatrix = new byte[markerIndices.length][];
+		readRows(DATA_T, index.getLineCount(), markerIndices, 0, markerIndices.length, (position, genotypes) -> subMatrix[position] = genotypes);
+
+		// Gather each line into a row and format it. The columns of the row are the selected markers in output order.
+		int[] identity = new int[markerIndices.length];
+		for (int i = 0; i < identity.length; i++)
+			identity[i] = i;
+
+		byte[] genotypes = new byte[markerIndices.length];
+		RowBuffer buffer = new RowBuffer();
+
+		long written = 0;
+		for (int l = 0; l < lineIndices.length; l++)
+		{
+			int lineIndex = lineIndices[l];
+			for (int m = 0; m < subMatrix.length; m++)
+				genotypes[m] = subMatrix[m][lineIndex];
+
+			formatRow(lineNames[l], genotypes, identity, states, buffer);
+			out.write(buffer.data, 0, buffer.length);
+			written += buffer.length;
+
+			if (l % MAX_WINDOW_ROWS == 0)
+				reportProgress(l, lineIndices.length);
+		}
+
+		reportProgress(lineIndices.length, lineIndices.length);
+
+		return written;
+	}
+
+	private Future<?>[] submitWindow(String dataset, int rowWidth, String[] rowNames, int[] rowIndices, int start, int end, int[] columnIndices, byte[][] states, RowBuffer[] buffers)
+	{
+		Future<?>[] futures = new Future<?>[end - start];
+
+		readRows(dataset, rowWidth, rowIndices, start, end, (position, genotypes) ->
+		{
+			String rowName = rowNames[start + position];
+			RowBuffer buffer = buffers[position];
+			futures[position] = FORMATTERS.submit(() -> formatRow(rowName, genotypes, columnIndices, states, buffer));
+		});
+
+		return futures;
+	}
+
+	/**
+	 * Reads the rows <code>rowIndices[start]</code> to <code>rowIndices[end - 1]</code> of the given matrix. The row indices are sorted and
+	 * contiguous runs are read as a single block. Each row is passed to the consumer along with its position relative to <code>start</code>.
+	 */
+	private void readRows(String dataset, int rowWidth, int[] rowIndices, int start, int end, RowConsumer consumer)
+	{
+		// Pack the row index and the output position into a long, so sorting doesn't require boxing
+		long[] order = new long[end - start];
+		for (int i = start; i < end; i++)
+			order[i - start] = ((long) rowIndices[i] << 32) | (i - start);
+		Arrays.sort(order);
+
+		// Don't read more than MAX_WINDOW_BYTES at once
+		int maxRun = (int) Math.max(1, MAX_WINDOW_BYTES / Math.max(1, rowWidth));
+
+		int i = 0;
+		while (i < order.length)
+		{
+			// Find the end of the run of consecutive row indices
+			int first = (int) (order[i] >>> 32);
+			int j = i + 1;
+			while (j < order.length && j - i < maxRun && (int) (order[j] >>> 32) == first + (j - i))
+				j++;
+
+			byte[][] block = reader.int8().readMatrixBlockWithOffset(dataset, j - i, rowWidth, first, 0);
+
+			for (int k = i; k < j; k++)
+				consumer.accept((int) order[k], block[k - i]);
+
+			i = j;
+		}
+	}
+
+	private void reportProgress(int done, int total)
+	{
+		if (progressListener != null)
+			progressListener.onProgress(total == 0 ? 1 : done / (float) total);
+	}
+
+	private static long writeWindow(OutputStream out, Future<?>[] futures, RowBuffer[] buffers) throws IOException
+	{
+		long written = 0;
+		for (int i = 0; i < futures.length; i++)
+		{
+			try
+			{
+				futures[i].get();
+			}
+			catch (InterruptedException | ExecutionException e)
+			{
+				throw new IOException(e);
+			}
+
+			out.write(buffers[i].data, 0, buffers[i].length);
+			written += buffers[i].length;
+		}
+
+		return written;
+	}
+
+	private static void formatRow(String lineName, byte[] genotypes, int[] markerIndices, byte[][] states, RowBuffer buffer)
+	{
+		buffer.length = 0;
+		buffer.append(lineName.getBytes(StandardCharsets.UTF_8));
+		for (int index : markerIndices)
+		{
+			buffer.append(TAB);
+			buffer.append(states[genotypes[index] & 0xFF]);
+		}
+		buffer.append(NEW_LINE);
+	}
+
+	private static int writeLine(OutputStream out, String line) throws IOException
+	{
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		out.write(bytes);
+		out.write(NEW_LINE);
+
+		return bytes.length + 1;
+	}
+
+	/**
+	 * Shuts down the pool of threads used to format the exported rows
+	 */
+	public static void shutdown()
+	{
+		FORMATTERS.shutdownNow();
+	}
+
+	/**
+	 * {@link RowBuffer} is a growable byte buffer that holds one formatted output row and is reused across windows.
+	 */
+	private static class RowBuffer
+	{
+		private byte[] data = new byte[1024];
+		private int    length;
+
+		void append(byte[] bytes)
+		{
+			ensureCapacity(length + bytes.length);
+			System.arraycopy(bytes, 0, data, length, bytes.length);
+			length += bytes.length;
+		}
+
+		void append(byte b)
+		{
+			ensureCapacity(length + 1);
+			data[length++] = b;
+		}
+
+		private void ensureCapacity(int capacity)
+		{
+			if (capacity > data.length)
+				data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+		}
+	}
+
+	public LinkedHashSet<String> getDeletedMarkers()
+	{
+		return deletedMarkers;
+	}
+
+	/**
+	 * Returns the selected markers that are part of the file and have passed the quality filters in the order of the file
+	 *
+	 * @return The selected markers that are part of the file and have passed the quality filters
+	 */
 	public LinkedHashSet<String> getKeptMarkers()
 	{
-		// Filter the markers from the hdf5 file so that we have a list of only those markers that were in both the hdf5
-		// file and the list of desired markers / input list
-		LinkedHashSet<String> keptMarkers = hdf5Markers;
-		keptMarkers.retainAll(markers);
+		int[] sorted = Arrays.copyOf(markerIndices, markerIndices.length);
+		Arrays.sort(sorted);
+
+		LinkedHashSet<String> keptMarkers = new LinkedHashSet<>();
+		for (int markerIndex : sorted)
+			keptMarkers.add(index.getMarker(markerIndex));
 
 		return keptMarkers;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,492 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.util.*;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import jhi.germinate.server.database.*;
+import jhi.germinate.server.database.query.*;
+import jhi.germinate.server.manager.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.datastructure.database.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * {@link LocationGrid} aggregates the locations into the cells of a grid for each zoom level of the maps, so that the maps receive one {@link
+ * MapCluster} per visible cell instead of all locations. Each map tile is split into {@link #CELLS_PER_TILE} cells per direction.
+ * <p>
+ * The levels up to {@link ServerProperty#GERMINATE_MAP_GRID_MAX_ZOOM} are kept in memory for each {@link LocationType}. They're rebuilt every
+ * {@link ServerProperty#GERMINATE_MAP_GRID_REFRESH_MINUTES} if the number of locations or their last update has changed, which picks up the
+ * locations added by the data importers. Higher zoom levels only show a small area, so their cells are aggregated from the locations within it,
+ * which are found via the spatial index on <code>locations.point</code>.
+ *
+ * @author Sebastian Raubach
+ */
+public class LocationGrid
+{
+	/** Each map tile is split into this many cells per direction, i.e. a cell is 64 pixels wide */
+	private static final int    CELLS_PER_TILE  = 4;
+	private static final int    MAX_ZOOM        = 18;
+	/** Cells with a single location contain the location, but at most this many are loaded per request */
+	private static final int    MAX_LOCATIONS   = 1000;
+	/** Locations on the edge of the visible area would otherwise not be contained */
+	private static final double EPSILON_DEGREES = 0.000001;
+
+	private static final String SELECT_FINGERPRINT = "SELECT CONCAT(COUNT(1), '-', IFNULL(UNIX_TIMESTAMP(MAX(`updated_on`)), 0)) AS fingerprint FROM `locations`";
+	private static final String SELECT_ALL         = "SELECT `id`, `locationtype_id`, `latitude`, `longitude` FROM `locations` WHERE `latitude` IS NOT NULL AND `longitude` IS NOT NULL";
+	private static final String SELECT_IN_BOX      = SELECT_ALL + " AND MBRContains(ST_GeomFromText(?), `point`)";
+	private static final String SELECT_TYPE_IN_BOX = SELECT_IN_BOX + " AND `locationtype_id` = ?";
+
+	private static final AtomicLong GRID_REQUESTS     = new AtomicLong();
+	private static final AtomicLong DATABASE_REQUESTS = new AtomicLong();
+	private static final AtomicLong REBUILDS          = new AtomicLong();
+
+	private static volatile Grid                     grid;
+	private static          ScheduledExecutorService scheduler;
+
+	/**
+	 * Builds the grid and starts keeping it up-to-date. Does nothing if {@link ServerProperty#GERMINATE_MAP_GRID_REFRESH_MINUTES} is
+	 * <code>0</code>, all requests are answered from the database in this case.
+	 */
+	public static synchronized void initialize()
+	{
+		int minutes = getInteger(ServerProperty.GERMINATE_MAP_GRID_REFRESH_MINUTES);
+
+		if (minutes <= 0 || scheduler != null)
+			return;
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(r ->
+		{
+			Thread thread = new Thread(r, "LocationGrid");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+
+		scheduler.scheduleWithFixedDelay(LocationGrid::refresh, 0, minutes, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Stops updating the grid. Call this when the application terminates.
+	 */
+	public static synchronized void shutdown()
+	{
+		if (scheduler != null)
+			scheduler.shutdownNow();
+
+		scheduler = null;
+		grid = null;
+	}
+
+	/**
+	 * Returns the {@link MapCluster}s of the cells within the given area
+	 *
+	 * @param userAuth  The {@link UserAuth}
+	 * @param type      The {@link LocationType} of the locations, {@link LocationType#all} or <code>null</code> for all locations
+	 * @param southWest The south west corner of the visible area or <code>null</code> for the whole world. The longitude may be outside of
+	 *                  [-180, 180] once the map has been panned across the antimeridian.
+	 * @param northEast The north east corner of the visible area or <code>null</code> for the whole world
+	 * @param zoom      The zoom level of the map
+	 * @param locations Include the {@link Location} of cells that only contain one? Maps only showing the density don't need them.
+	 * @return The {@link MapCluster}s of the cells within the given area
+	 * @throws DatabaseException      Thrown if the interaction with the database fails
+	 * @throws InvalidColumnException Thrown if the locations can't be sorted
+	 */
+	public static ServerResult<List<MapCluster>> getClusters(UserAuth userAuth, LocationType type, LatLngPoint southWest, LatLngPoint northEast, int zoom, boolean locations) throws DatabaseException, InvalidColumnException
+	{
+		zoom = Math.max(0, Math.min(zoom, MAX_ZOOM));
+		Long typeId = type == null ? LocationType.all.getId() : type.getId();
+
+		double minLat = southWest == null ? -90 : clamp(southWest.latitude, -90, 90);
+		double maxLat = northEast == null ? 90 : clamp(northEast.latitude, -90, 90);
+
+		DebugInfo debugInfo = DebugInfo.create(userAuth);
+
+		Grid current = grid;
+		boolean useGrid = current != null && zoom <= current.maxZoom;
+
+		if (useGrid)
+			GRID_REQUESTS.incrementAndGet();
+		else
+			DATABASE_REQUESTS.incrementAndGet();
+
+		List<MapCluster> result = new ArrayList<>();
+		Map<Long, MapCluster> singles = new HashMap<>();
+
+		for (LongitudeRange range : getLongitudeRanges(southWest, northEast))
+		{
+			Collection<Cell> cells;
+
+			if (useGrid)
+				cells = current.find(typeId, zoom, minLat, range.min, maxLat, range.max);
+			else
+				cells = aggregate(userAuth, typeId, zoom, minLat, range.min, maxLat, range.max);
+
+			for (Cell cell : cells)
+			{
+				/* Place the cluster on the copy of the world that is visible */
+				MapCluster cluster = new MapCluster(cell.latitude / cell.count, cell.longitude / cell.count + range.offset, cell.count);
+				result.add(cluster);
+
+				if (locations && cell.count == 1 && singles.size() < MAX_LOCATIONS)
+					singles.put(cell.id, cluster);
+			}
+		}
+
+		/* Load the locations of single location cells, so they can be shown as markers */
+		if (!singles.isEmpty())
+		{
+			List<String> ids = new ArrayList<>();
+			for (Long id : singles.keySet())
+				ids.add(Long.toString(id));
+
+			ServerResult<List<Location>> singleLocations = LocationManager.getByIds(userAuth, ids, new Pagination(0, ids.size()));
+			debugInfo.addAll(singleLocations.getDebugInfo());
+
+			if (singleLocations.hasData())
+			{
+				for (Location location : singleLocations.getServerResult())
+				{
+					MapCluster cluster = singles.get(location.getId());
+
+					if (cluster != null)
+						cluster.setLocation(location);
+				}
+			}
+		}
+
+		return new ServerResult<>(debugInfo, result);
+	}
+
+	/**
+	 * Returns the longitude ranges within [-180, 180] that cover the visible area. Leaflet keeps counting beyond &plusmn;180 once the map has been
+	 * panned across the antimeridian, e.g. from 150 to 210. Such an area is wrapped around and split into the ranges on either side of the
+	 * antimeridian, here from 150 to 180 and from -180 to -150.
+	 *
+	 * @param southWest The south west corner of the visible area or <code>null</code> for the whole world
+	 * @param northEast The north east corner of the visible area or <code>null</code> for the whole world
+	 * @return The longitude ranges within [-180, 180]
+	 */
+	private static List<LongitudeRange> getLongitudeRanges(LatLngPoint southWest, LatLngPoint northEast)
+	{
+		if (southWest == null || northEast == null)
+			return Collections.singletonList(new LongitudeRange(-180, 180, 0));
+
+		double west = southWest.longitude;
+		double east = northEast.longitude;
+
+		/* Bounds that have already been wrapped */
+		if (east < west)
+			east += 360;
+
+		if (east - west >= 360)
+			return Collections.singletonList(new LongitudeRange(-180, 180, 0));
+
+		/* Move the western edge into [-180, 180) and remember by how much */
+		double offset = 360 * Math.floor((west + 180) / 360);
+		west -= offset;
+		east -= offset;
+
+		if (east <= 180)
+			return Collections.singletonList(new LongitudeRange(west, east, offset));
+		else
+			return Arrays.asList(new LongitudeRange(west, 180, offset), new LongitudeRange(-180, east - 360, offset + 360));
+	}
+
+	private static Collection<Cell> aggregate(UserAuth userAuth, Long typeId, int zoom, double minLat, double minLng, double maxLat, double maxLng) throws DatabaseException
+	{
+		String left = format(minLng - EPSILON_DEGREES);
+		String right = format(maxLng + EPSILON_DEGREES);
+		String bottom = format(minLat - EPSILON_DEGREES);
+		String top = format(maxLat + EPSILON_DEGREES);
+
+		String box = "POLYGON((" + left + " " + bottom + ", " + right + " " + bottom + ", " + right + " " + top + ", " + left + " " + top + ", " + left + " " + bottom + "))";
+
+		boolean all = Objects.equals(typeId, LocationType.all.getId());
+
+		DefaultQuery query = new DefaultQuery(all ? SELECT_IN_BOX : SELECT_TYPE_IN_BOX, userAuth)
+				.setString(box);
+
+		if (!all)
+			query.setLong(typeId);
+
+		double size = getCellSize(zoom);
+		Map<Long, Cell> cells = new HashMap<>();
+
+		try (DefaultStreamer streamer = query.getStreamer())
+		{
+			DatabaseResult res;
+			while ((res = streamer.next()) != null)
+			{
+				double latitude = res.getDouble("latitude");
+				double longitude = res.getDouble("longitude");
+
+				cells.computeIfAbsent(getKey(getColumn(longitude, size), getRow(latitude, size)), k -> new Cell())
+					 .add(res.getLong("id"), latitude, longitude);
+			}
+		}
+
+		return cells.values();
+	}
+
+	private static void refresh()
+	{
+		try
+		{
+			String fingerprint = new ValueQuery(SELECT_FINGERPRINT)
+					.run("fingerprint")
+					.getString()
+					.getServerResult();
+
+			int maxZoom = Math.max(0, Math.min(getInteger(ServerProperty.GERMINATE_MAP_GRID_MAX_ZOOM), MAX_ZOOM));
+
+			Grid current = grid;
+			if (current != null && current.maxZoom == maxZoom && Objects.equals(current.fingerprint, fingerprint))
+				return;
+
+			/* Build a new grid in the background, requests keep using the old one until it's done */
+			long start = System.currentTimeMillis();
+			Grid newGrid = new Grid(fingerprint, maxZoom);
+
+			try (DefaultStreamer streamer = new DefaultQuery(SELECT_ALL, null).getStreamer())
+			{
+				DatabaseResult res;
+				while ((res = streamer.next()) != null)
+					newGrid.add(res.getLong("locationtype_id"), res.getLong("id"), res.getDouble("latitude"), res.getDouble("longitude"));
+			}
+
+			grid = newGrid;
+			REBUILDS.incrementAndGet();
+
+			Logger.getLogger("").log(Level.INFO, "Built the location grid of " + newGrid.locations + " locations in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		catch (Exception e)
+		{
+			/* Keep the refresh running, the current grid stays as it is */
+			Logger.getLogger("").log(Level.WARNING, "Unable to update the location grid: " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Returns a human readable summary of the grid for monitoring
+	 *
+	 * @return A human readable summary of the grid
+	 */
+	public static String getSummary()
+	{
+		Grid current = grid;
+
+		return "LocationGrid{" +
+				"locations=" + (current == null ? 0 : current.locations) +
+				", cells=" + (current == null ? 0 : current.getCellCount()) +
+				", maxZoom=" + (current == null ? -1 : current.maxZoom) +
+				", rebuilds=" + REBUILDS.get() +
+				", gridRequests=" + GRID_REQUESTS.get() +
+				", databaseRequests=" + DATABASE_REQUESTS.get() +
+				'}';
+	}
+
+	private static double getCellSize(int zoom)
+	{
+		return 360d / (1 << zoom) / CELLS_PER_TILE;
+	}
+
+	private static int getColumn(double longitude, double size)
+	{
+		/* The eastern edge belongs to the last column */
+		return (int) Math.min(Math.floor((longitude + 180) / size), Math.ceil(360 / size) - 1);
+	}
+
+	private static int getRow(double latitude, double size)
+	{
+		return (int) Math.min(Math.floor((latitude + 90) / size), Math.ceil(180 / size) - 1);
+	}
+
+	private static long getKey(int column, int row)
+	{
+		return ((long) row << 32) | column;
+	}
+
+	private static String format(double value)
+	{
+		/* WKT doesn't support the scientific notation of Double.toString() */
+		return String.format(Locale.ENGLISH, "%.8f", value);
+	}
+
+	private static double clamp(double value, double min, double max)
+	{
+		return Math.max(min, Math.min(value, max));
+	}
+
+	private static int getInteger(ServerProperty property)
+	{
+		Integer value = PropertyWatcher.getInteger(property);
+		return value == null ? Integer.parseInt(property.getDefaultValue()) : value;
+	}
+
+	/**
+	 * The levels of each {@link LocationType}, the locations of all types are kept under the id of {@link LocationType#all}
+	 */
+	private static class Grid
+	{
+		private final String                           fingerprint;
+		private final int                              maxZoom;
+		private final Map<Long, List<Map<Long, Cell>>> types = new HashMap<>();
+		private       int                              locations;
+
+		private Grid(String fingerprint, int maxZoom)
+		{
+			this.fingerprint = fingerprint;
+			this.maxZoom = maxZoom;
+		}
+
+		private void add(Long typeId, long id, double latitude, double longitude)
+		{
+			locations++;
+
+			add(getLevels(LocationType.all.getId()), id, latitude, longitude);
+
+			if (typeId != null)
+				add(getLevels(typeId), id, latitude, longitude);
+		}
+
+		private void add(List<Map<Long, Cell>> levels, long id, double latitude, double longitude)
+		{
+			for (int zoom = 0; zoom <= maxZoom; zoom++)
+			{
+				double size = getCellSize(zoom);
+
+				levels.get(zoom)
+					  .computeIfAbsent(getKey(getColumn(longitude, size), getRow(latitude, size)), k -> new Cell())
+					  .add(id, latitude, longitude);
+			}
+		}
+
+		private List<Map<Long, Cell>> getLevels(Long typeId)
+		{
+			return types.computeIfAbsent(typeId, k ->
+			{
+				List<Map<Long, Cell>> levels = new ArrayList<>();
+				for (int zoom = 0; zoom <= maxZoom; zoom++)
+					levels.add(new HashMap<>());
+				return levels;
+			});
+		}
+
+		private List<Cell> find(Long typeId, int zoom, double minLat, double minLng, double maxLat, double maxLng)
+		{
+			List<Cell> result = new ArrayList<>();
+			List<Map<Long, Cell>> levels = types.get(typeId);
+
+			if (levels == null)
+				return result;
+
+			Map<Long, Cell> level = levels.get(zoom);
+			double size = getCellSize(zoom);
+
+			int minColumn = getColumn(minLng, size);
+			int maxColumn = getColumn(maxLng, size);
+			int minRow = getRow(minLat, size);
+			int maxRow = getRow(maxLat, size);
+
+			/* Look up the visible cells, unless there are fewer cells in total */
+			if ((long) (maxColumn - minColumn + 1) * (maxRow - minRow + 1) <= level.size())
+			{
+				for (int row = minRow; row <= maxRow; row++)
+				{
+					for (int column = minColumn; column <= maxColumn; column++)
+					{
+						Cell cell = level.get(getKey(column, row));
+
+						if (cell != null)
+							result.add(cell);
+					}
+				}
+			}
+			else
+			{
+				for (Map.Entry<Long, Cell> entry : level.entrySet())
+				{
+					int row = (int) (entry.getKey() >>> 32);
+					int column = (int) (entry.getKey() & 0xFFFFFFFFL);
+
+					if (row >= minRow && row <= maxRow && column >= minColumn && column <= maxColumn)
+						result.add(entry.getValue());
+				}
+			}
+
+			return result;
+		}
+
+		private long getCellCount()
+		{
+			long count = 0;
+			for (List<Map<Long, Cell>> levels : types.values())
+			{
+				for (Map<Long, Cell> level : levels)
+					count += level.size();
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * A range of longitudes within [-180, 180] along with the offset of the copy of the world it's shown on
+	 */
+	private static class LongitudeRange
+	{
+		private final double min;
+		private final double max;
+		private final double offset;
+
+		private LongitudeRange(double min, double max, double offset)
+		{
+			this.min = min;
+			this.max = max;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * A cell of the grid. It keeps the sum of the coordinates of its locations and the id of the first one.
+	 */
+	private static class Cell
+	{
+		private double latitude;
+		private double longitude;
+		private int    count;
+		private long   id;
+
+		private void add(long id, double latitude, double longitude)
+		{
+			if (count == 0)
+				this.id = id;
+
+			this.latitude += latitude;
+			this.longitude += longitude;
+			count++;
+		}
+	}
+}
@@ -0,0 +1,377 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.util.*;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import jhi.germinate.server.database.*;
+import jhi.germinate.server.manager.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.datastructure.database.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+import jhi.germinate.shared.search.*;
+
+/**
+ * {@link ParallelSearch} searches several {@link SearchCategory}s at once on a bounded pool of {@link ServerProperty#GERMINATE_SEARCH_THREADS}
+ * threads. The dataset permissions of the user are resolved once before the categories are searched.
+ * <p>
+ * Only the first page of each category is returned and its length is limited to {@link ServerProperty#GERMINATE_SEARCH_CATEGORY_LIMIT}. Results
+ * are returned as they arrive: {@link #search(UserAuth, Map, Pagination)} and {@link #getResults(UserAuth, String)} wait for at least one more
+ * category to finish and list the categories that are still running, the client asks for these again. All categories share a time budget of
+ * {@link ServerProperty#GERMINATE_SEARCH_TIMEOUT_SECONDS}. The queries of categories that haven't finished by then are stopped by the database
+ * (see {@link QueryDeadline}) and the categories are reported as timed out.
+ *
+ * @author Sebastian Raubach
+ */
+public class ParallelSearch
+{
+	private static final long IDLE_SECONDS = 60;
+	/** How long a request waits for the next category before it returns the categories that are still running */
+	private static final long POLL_SECONDS = 20;
+
+	private static final AtomicLong SEARCHES   = new AtomicLong();
+	private static final AtomicLong TIMEOUTS   = new AtomicLong();
+	private static final AtomicLong FAILURES   = new AtomicLong();
+	private static final AtomicLong REJECTED   = new AtomicLong();
+	private static final AtomicLong MAX_MILLIS = new AtomicLong();
+
+	private static final Map<String, RunningSearch> RUNNING = new ConcurrentHashMap<>();
+
+	private static ThreadPoolExecutor executor;
+
+	private static synchronized ThreadPoolExecutor getExecutor()
+	{
+		if (executor == null)
+		{
+			int threads = Math.max(1, getInteger(ServerProperty.GERMINATE_SEARCH_THREADS));
+
+			/* Enough room for a few concurrent searches of all categories, any more are rejected instead of piling up */
+			executor = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * SearchCategory.values().length), r ->
+			{
+				Thread thread = new Thread(r, "ParallelSearch");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.allowCoreThreadTimeOut(true);
+		}
+
+		return executor;
+	}
+
+	/**
+	 * Starts searching the given {@link SearchCategory}s in parallel
+	 *
+	 * @param userAuth   The {@link UserAuth}
+	 * @param queries    The {@link PartialSearchQuery} of each {@link SearchCategory}
+	 * @param pagination The {@link Pagination} of the first page, may be <code>null</code>
+	 * @return The first page of each {@link SearchCategory} that has finished so far and the id of the search to get the others via {@link
+	 * #getResults(UserAuth, String)}
+	 * @throws DatabaseException Thrown if the dataset permissions can't be resolved
+	 */
+	public static ServerResult<SearchAllResult> search(UserAuth userAuth, Map<SearchCategory, PartialSearchQuery> queries, Pagination pagination) throws DatabaseException
+	{
+		if (queries == null || queries.isEmpty())
+			return new ServerResult<>(DebugInfo.create(userAuth), new SearchAllResult());
+
+		SEARCHES.incrementAndGet();
+		removeAbandoned();
+
+		/* Resolve the permissions once, otherwise each category would miss the cache at the same time */
+		DatasetManager.getIdsForUser(userAuth, true);
+
+		int limit = Math.max(1, getInteger(ServerProperty.GERMINATE_SEARCH_CATEGORY_LIMIT));
+		int length = pagination == null ? limit : Math.max(1, Math.min(pagination.getLength(), limit));
+		String sortColumn = pagination == null ? null : pagination.getSortColumn();
+		boolean ascending = pagination == null || pagination.isAscending();
+
+		RunningSearch search = new RunningSearch(userAuth);
+
+		for (Map.Entry<SearchCategory, PartialSearchQuery> entry : queries.entrySet())
+		{
+			SearchCategory category = entry.getKey();
+			PartialSearchQuery filter = entry.getValue();
+
+			/* The managers update the pagination, so each category gets its own */
+			Pagination page = new Pagination(0, length, sortColumn, ascending);
+
+			try
+			{
+				search.futures.put(search.completed.submit(() ->
+				{
+					try (QueryDeadline.Scope scope = search.deadline.enter())
+					{
+						return search(userAuth, category, filter, page);
+					}
+				}), category);
+			}
+			catch (RejectedExecutionException e)
+			{
+				REJECTED.incrementAndGet();
+				search.result.addTimedOut(category);
+			}
+		}
+
+		RUNNING.put(search.id, search);
+
+		return collect(search);
+	}
+
+	/**
+	 * Returns the categories of the given search that have finished since the last call
+	 *
+	 * @param userAuth The {@link UserAuth}
+	 * @param searchId The id of the search as returned by {@link #search(UserAuth, Map, Pagination)}
+	 * @return The first page of each {@link SearchCategory} that has finished since the last call. If the search doesn't exist (anymore), no
+	 * categories are listed as running.
+	 */
+	public static ServerResult<SearchAllResult> getResults(UserAuth userAuth, String searchId)
+	{
+		RunningSearch search = searchId == null ? null : RUNNING.get(searchId);
+
+		if (search == null || !Objects.equals(search.userId, getUserId(userAuth)))
+			return new ServerResult<>(DebugInfo.create(userAuth), new SearchAllResult());
+
+		return collect(search);
+	}
+
+	/**
+	 * Waits for at least one category of the given search to finish (or the deadline to pass) and returns all finished categories
+	 */
+	private static ServerResult<SearchAllResult> collect(RunningSearch search)
+	{
+		synchronized (search)
+		{
+			long pollDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(POLL_SECONDS);
+			boolean interrupted = false;
+
+			try
+			{
+				Future<PaginatedServerResult<? extends List<? extends DatabaseObject>>> future = null;
+
+				if (!search.futures.isEmpty())
+					future = search.completed.poll(Math.max(0, Math.min(search.deadlineNanos, pollDeadline) - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+				/* Take everything else that has finished in the meantime as well */
+				while (future != null)
+				{
+					take(search, future);
+					future = search.futures.isEmpty() ? null : search.completed.poll();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				/* The request has been cancelled, don't keep the threads busy */
+				interrupted = true;
+			}
+
+			if (interrupted || System.nanoTime() >= search.deadlineNanos)
+			{
+				if (!interrupted && !search.futures.isEmpty())
+					Logger.getLogger("").log(Level.INFO, "Search of " + search.futures.values() + " timed out after " + (System.currentTimeMillis() - search.start) + " ms");
+
+				search.cancel();
+			}
+
+			SearchAllResult result = search.result;
+			result.setSearchId(search.id);
+			result.getRunning().clear();
+			result.getRunning().addAll(search.futures.values());
+
+			ServerResult<SearchAllResult> serverResult = new ServerResult<>(search.debugInfo, result);
+
+			if (search.futures.isEmpty())
+			{
+				RUNNING.remove(search.id);
+				MAX_MILLIS.accumulateAndGet(System.currentTimeMillis() - search.start, Math::max);
+			}
+			else
+			{
+				/* Only send each category once */
+				search.result = new SearchAllResult();
+				search.debugInfo = DebugInfo.create(search.userAuth);
+			}
+
+			if (interrupted)
+				Thread.currentThread().interrupt();
+
+			return serverResult;
+		}
+	}
+
+	private static void take(RunningSearch search, Future<PaginatedServerResult<? extends List<? extends DatabaseObject>>> future) throws InterruptedException
+	{
+		SearchCategory category = search.futures.remove(future);
+
+		if (category == null)
+			return;
+
+		try
+		{
+			PaginatedServerResult<? extends List<? extends DatabaseObject>> categoryResult = future.get();
+			search.debugInfo.addAll(categoryResult.getDebugInfo());
+			search.result.put(category, categoryResult);
+		}
+		catch (ExecutionException e)
+		{
+			FAILURES.incrementAndGet();
+			search.result.addFailed(category);
+			Logger.getLogger("").log(Level.INFO, "Search of " + category + " failed: " + e.getCause());
+		}
+		catch (CancellationException e)
+		{
+			search.result.addTimedOut(category);
+		}
+	}
+
+	/**
+	 * Stops the searches that are past their deadline and nobody has asked for
+	 */
+	private static void removeAbandoned()
+	{
+		long now = System.nanoTime();
+
+		RUNNING.values().removeIf(search ->
+		{
+			if (now - search.deadlineNanos < TimeUnit.SECONDS.toNanos(POLL_SECONDS))
+				return false;
+
+			search.deadline.cancel();
+			search.futures.keySet().forEach(future -> future.cancel(true));
+			return true;
+		});
+	}
+
+	private static Long getUserId(UserAuth userAuth)
+	{
+		return userAuth == null ? null : userAuth.getId();
+	}
+
+	private static PaginatedServerResult<? extends List<? extends DatabaseObject>> search(UserAuth userAuth, SearchCategory category, PartialSearchQuery filter, Pagination pagination) throws DatabaseException, InvalidColumnException, InvalidSearchQueryException, InvalidArgumentException, InsufficientPermissionsException
+	{
+		switch (category)
+		{
+			case ACCESSION_DATA:
+				return AccessionManager.getAllForFilter(userAuth, filter, pagination);
+			case ACCESSION_ATTRIBUTE_DATA:
+				return AttributeDataManager.getAllForAccessionFilter(userAuth, filter, pagination);
+			case PHENOTYPE_DATA:
+				return PhenotypeManager.getDataForFilter(userAuth, filter, pagination);
+			case COMPOUND_DATA:
+				return CompoundDataManager.getAllForFilter(userAuth, pagination, filter);
+			case MAPDEFINITION_DATA:
+				return MapDefinitionManager.getForFilter(userAuth, pagination, filter);
+			case DATASETS:
+				return DatasetManager.getAllForFilter(userAuth, filter, null, pagination);
+			case DATASET_ATTRIBUTE_DATA:
+				return AttributeDataManager.getAllForDatasetFilter(userAuth, filter, pagination, true);
+			case PEDIGREE_DATA:
+				return PedigreeManager.getAllForFilter(userAuth, filter, pagination);
+			case LOCATION_DATA:
+				return LocationManager.getAllForFilter(userAuth, filter, pagination);
+			default:
+				return new PaginatedServerResult<>(null, null, 0);
+		}
+	}
+
+	/**
+	 * Stops the search threads. Call this when the application terminates.
+	 */
+	public static synchronized void shutdown()
+	{
+		if (executor != null)
+		{
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Returns a human readable summary of the searches for monitoring
+	 *
+	 * @return A human readable summary of the searches
+	 */
+	public static String getSummary()
+	{
+		return "ParallelSearch{" +
+				"searches=" + SEARCHES.get() +
+				", timeouts=" + TIMEOUTS.get() +
+				", failures=" + FAILURES.get() +
+				", rejected=" + REJECTED.get() +
+				", maxMillis=" + MAX_MILLIS.get() +
+				'}';
+	}
+
+	private static int getInteger(ServerProperty property)
+	{
+		Integer value = PropertyWatcher.getInteger(property);
+		return value == null ? Integer.parseInt(property.getDefaultValue()) : value;
+	}
+
+	/**
+	 * A search whose categories haven't all been returned yet
+	 */
+	private static class RunningSearch
+	{
+		private final String        id    = UUID.randomUUID().toString();
+		private final long          start = System.currentTimeMillis();
+		private final UserAuth      userAuth;
+		private final Long          userId;
+		private final long          deadlineNanos;
+		private final QueryDeadline deadline;
+
+		private final CompletionService<PaginatedServerResult<? extends List<? extends DatabaseObject>>>     completed = new ExecutorCompletionService<>(getExecutor());
+		/** The categories that haven't been returned yet */
+		private final Map<Future<PaginatedServerResult<? extends List<? extends DatabaseObject>>>, SearchCategory> futures   = new ConcurrentHashMap<>();
+
+		/** The categories that have finished since the last request */
+		private SearchAllResult result = new SearchAllResult();
+		private DebugInfo       debugInfo;
+
+		private RunningSearch(UserAuth userAuth)
+		{
+			this.userAuth = userAuth;
+			this.userId = getUserId(userAuth);
+			this.deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, getInteger(ServerProperty.GERMINATE_SEARCH_TIMEOUT_SECONDS)));
+			this.deadline = new QueryDeadline(deadlineNanos);
+			this.debugInfo = DebugInfo.create(userAuth);
+		}
+
+		/**
+		 * Stops the queries of all categories that are still running and reports them as timed out
+		 */
+		private void cancel()
+		{
+			deadline.cancel();
+
+			for (Map.Entry<Future<PaginatedServerResult<? extends List<? extends DatabaseObject>>>, SearchCategory> entry : futures.entrySet())
+			{
+				TIMEOUTS.incrementAndGet();
+				entry.getKey().cancel(true);
+				result.addTimedOut(entry.getValue());
+			}
+
+			futures.clear();
+		}
+	}
+}
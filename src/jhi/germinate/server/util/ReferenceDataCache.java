@@ -0,0 +1,358 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.util.*;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+import java.util.stream.*;
+
+import jhi.germinate.server.database.query.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.datastructure.database.*;
+import jhi.germinate.shared.enums.*;
+
+/**
+ * {@link ReferenceDataCache} is an application-wide cache for small tables that rarely change, like taxonomies, institutions and countries. Unlike
+ * the {@link DatabaseObjectCache}s, which are cleared for every query, it keeps the objects across queries and users. {@link DatabaseObjectCache}
+ * reads through it whenever it would otherwise query one of these objects by its id.
+ * <p>
+ * Entries expire after {@link ServerProperty#GERMINATE_DATABASE_REFERENCE_CACHE_MINUTES} and the least recently used ones are dropped once there
+ * are more than {@link ServerProperty#GERMINATE_DATABASE_REFERENCE_CACHE_SIZE}. Call {@link #invalidate()} after changing any of these tables.
+ * <p>
+ * Changes made by other processes, like the data importers, are picked up by checking the row counts and the latest <code>updated_on</code> of
+ * these tables every {@link ServerProperty#GERMINATE_DATABASE_REFERENCE_CACHE_CHECK_SECONDS}. Until then, the cache may return the old objects.
+ *
+ * @author Sebastian Raubach
+ */
+public class ReferenceDataCache
+{
+	private static final Set<Class<? extends DatabaseObject>> TYPES = new HashSet<>(Arrays.asList(
+			Taxonomy.class,
+			Institution.class,
+			Country.class,
+			BiologicalStatus.class,
+			CollectingSource.class,
+			MlsStatus.class,
+			Unit.class,
+			Treatment.class
+	));
+
+	private static final List<String> TABLES = Arrays.asList("taxonomies", "institutions", "countries", "biologicalstatus", "collectingsources", "mlsstatus", "units", "treatments");
+
+	/** The row counts and latest updates of all cached tables */
+	private static final String SELECT_FINGERPRINT = "SELECT CONCAT_WS('-', " + TABLES.stream()
+																					.map(t -> "(SELECT COUNT(1) FROM `" + t + "`), (SELECT IFNULL(UNIX_TIMESTAMP(MAX(`updated_on`)), 0) FROM `" + t + "`)")
+																					.collect(Collectors.joining(", ")) + ") AS fingerprint";
+
+	private static final Map<Key, Entry> CACHE = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+		{
+			boolean remove = size() > getInteger(ServerProperty.GERMINATE_DATABASE_REFERENCE_CACHE_SIZE);
+
+			if (remove)
+				EVICTIONS.incrementAndGet();
+
+			return remove;
+		}
+	};
+
+	private static final AtomicLong HITS      = new AtomicLong();
+	private static final AtomicLong MISSES    = new AtomicLong();
+	private static final AtomicLong EVICTIONS = new AtomicLong();
+
+	/** Incremented on every invalidation so that objects loaded before it aren't cached */
+	private static long generation = 0;
+
+	private static          ScheduledExecutorService scheduler;
+	private static volatile String                   fingerprint;
+
+	/**
+	 * Starts checking the cached tables for changes made by other processes. Does nothing if {@link
+	 * ServerProperty#GERMINATE_DATABASE_REFERENCE_CACHE_CHECK_SECONDS} is <code>0</code>.
+	 */
+	public static synchronized void initialize()
+	{
+		int seconds = getInteger(ServerProperty.GERMINATE_DATABASE_REFERENCE_CACHE_CHECK_SECONDS);
+
+		if (seconds <= 0 || scheduler != null)
+			return;
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(r ->
+		{
+			Thread thread = new Thread(r, "ReferenceDataCache");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		scheduler.scheduleWithFixedDelay(ReferenceDataCache::checkForChanges, 0, seconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops checking for changes
+	 */
+	public static synchronized void shutdown()
+	{
+		if (scheduler != null)
+			scheduler.shutdownNow();
+
+		scheduler = null;
+		fingerprint = null;
+	}
+
+	private static void checkForChanges()
+	{
+		try
+		{
+			String current = new ValueQuery(SELECT_FINGERPRINT)
+					.run("fingerprint")
+					.getString()
+					.getServerResult();
+
+			if (fingerprint != null && !Objects.equals(fingerprint, current))
+			{
+				Logger.getLogger("").log(Level.INFO, "Reference data has changed, clearing the ReferenceDataCache");
+				invalidate();
+			}
+
+			fingerprint = current;
+		}
+		catch (Exception e)
+		{
+			/* Keep checking, the entries still expire on their own */
+			Logger.getLogger("").log(Level.WARNING, "Unable to check the reference data for changes: " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Checks if objects of the given type are kept in this cache
+	 *
+	 * @param clazz The type
+	 * @return <code>true</code> if objects of the given type are kept in this cache
+	 */
+	public static boolean isReferenceType(Class<?> clazz)
+	{
+		return TYPES.contains(clazz);
+	}
+
+	/**
+	 * Returns the object of the given type with the given id if it's cached
+	 *
+	 * @param clazz The type
+	 * @param id    The id
+	 * @param <T>   The type
+	 * @return The object or <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends DatabaseObject> T get(Class<?> clazz, Long id)
+	{
+		if (id == null)
+			return null;
+
+		Key key = new Key(clazz, id);
+		Entry entry;
+
+		synchronized (CACHE)
+		{
+			entry = CACHE.get(key);
+
+			if (entry != null && entry.expires < System.currentTimeMillis())
+			{
+				CACHE.remove(key);
+				entry = null;
+			}
+		}
+
+		if (entry == null)
+		{
+			MISSES.incrementAndGet();
+			return null;
+		}
+		else
+		{
+			HITS.incrementAndGet();
+			return (T) entry.object;
+		}
+	}
+
+	/**
+	 * Returns the current generation. Get it before loading the objects that are passed to {@link #put(Class, Collection, long)}.
+	 *
+	 * @return The current generation
+	 */
+	public static long getGeneration()
+	{
+		synchronized (CACHE)
+		{
+			return generation;
+		}
+	}
+
+	/**
+	 * Adds the given objects to the cache unless the cache has been invalidated since they have been loaded
+	 *
+	 * @param clazz          The type
+	 * @param objects        The objects
+	 * @param fromGeneration The result of {@link #getGeneration()} before the objects have been loaded
+	 */
+	public static void put(Class<?> clazz, Collection<? extends DatabaseObject> objects, long fromGeneration)
+	{
+		long ttl = TimeUnit.MINUTES.toMillis(getInteger(ServerProperty.GERMINATE_DATABASE_REFERENCE_CACHE_MINUTES));
+
+		if (ttl <= 0)
+			return;
+
+		synchronized (CACHE)
+		{
+			// Don't cache objects that have been loaded before the data changed
+			if (fromGeneration != generation)
+				return;
+
+			long expires = System.currentTimeMillis() + ttl;
+			for (DatabaseObject object : objects)
+			{
+				if (object != null && object.getId() != null)
+					CACHE.put(new Key(clazz, object.getId()), new Entry(object, expires));
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached objects. Call this whenever any of the cached tables changes.
+	 */
+	public static void invalidate()
+	{
+		synchronized (CACHE)
+		{
+			generation++;
+			CACHE.clear();
+		}
+	}
+
+	/**
+	 * Removes all cached objects of the given type
+	 *
+	 * @param clazz The type
+	 */
+	public static void invalidate(Class<?> clazz)
+	{
+		synchronized (CACHE)
+		{
+			generation++;
+			CACHE.keySet().removeIf(key -> key.clazz == clazz);
+		}
+	}
+
+	public static long getHits()
+	{
+		return HITS.get();
+	}
+
+	public static long getMisses()
+	{
+		return MISSES.get();
+	}
+
+	public static long getEvictions()
+	{
+		return EVICTIONS.get();
+	}
+
+	/**
+	 * Returns the share of lookups that were answered from the cache
+	 *
+	 * @return The share of lookups that were answered from the cache between <code>0</code> and <code>1</code>
+	 */
+	public static double getHitRate()
+	{
+		long hits = HITS.get();
+		long total = hits + MISSES.get();
+		return total == 0 ? 0 : hits / (double) total;
+	}
+
+	/**
+	 * Returns a human readable summary of the cache for monitoring
+	 *
+	 * @return A human readable summary of the cache
+	 */
+	public static String getSummary()
+	{
+		int size;
+		synchronized (CACHE)
+		{
+			size = CACHE.size();
+		}
+
+		return "ReferenceDataCache{" +
+				"size=" + size +
+				", hits=" + HITS.get() +
+				", misses=" + MISSES.get() +
+				", hitRate=" + String.format("%.3f", getHitRate()) +
+				", evictions=" + EVICTIONS.get() +
+				'}';
+	}
+
+	private static int getInteger(ServerProperty property)
+	{
+		Integer value = PropertyWatcher.getInteger(property);
+		return value == null ? Integer.parseInt(property.getDefaultValue()) : value;
+	}
+
+	private static class Key
+	{
+		private final Class<?> clazz;
+		private final long     id;
+
+		private Key(Class<?> clazz, long id)
+		{
+			this.clazz = clazz;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return id == key.id && clazz == key.clazz;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(clazz, id);
+		}
+	}
+
+	private static class Entry
+	{
+		private final DatabaseObject object;
+		private final long           expires;
+
+		private Entry(DatabaseObject object, long expires)
+		{
+			this.object = object;
+			this.expires = expires;
+		}
+	}
+}
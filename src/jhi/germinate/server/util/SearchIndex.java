@@ -0,0 +1,766 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.io.*;
+import java.io.IOException;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.text.*;
+import java.util.*;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.logging.*;
+import java.util.regex.*;
+import java.util.zip.*;
+
+import jhi.germinate.server.database.*;
+import jhi.germinate.server.database.query.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.*;
+import jhi.germinate.shared.datastructure.database.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+import jhi.germinate.shared.search.*;
+import jhi.germinate.shared.search.operators.*;
+
+/**
+ * {@link SearchIndex} is an in-process inverted index over the text columns that the search page filters with <code>LIKE '%term%'</code>: the
+ * names and general identifiers of accessions, synonyms, marker names, location names and attribute values. Each column is indexed by the
+ * trigrams of its (lower case, accent free) values, so the rows containing a term are found without scanning the table.
+ * <p>
+ * {@link #find(PartialSearchQuery)} resolves the {@link Like} conditions on these columns to a {@link Match}: the ids of the matching rows plus
+ * the state of the index. The query then only has to check these rows and those that have been added (larger id) or updated (newer
+ * <code>updated_on</code>) since the last refresh (see {@link Match#toPreparedStatementString(SearchCondition)}). It still applies the original
+ * condition to them. The lower case, accent free matching of the index is only as lenient as the collation of the column for ASCII text, so rows
+ * containing other characters are always checked by the database and terms containing them aren't answered from the index. This way the
+ * result is the same as without the index. Conditions that can't be answered from the index (short terms, wildcards, non-ASCII terms, columns
+ * that haven't been indexed yet or terms that match too many rows) are left to the database.
+ * <p>
+ * The index is held in memory and kept in files in the temporary folder of the application, so it survives restarts. It's disabled by default,
+ * enable it by setting {@link ServerProperty#GERMINATE_SEARCH_INDEX_REFRESH_MINUTES}. It's then updated at this interval with the rows that have
+ * been added (their id is larger than any indexed id, which picks up rows written without <code>updated_on</code>, e.g. by the data importers)
+ * or whose <code>updated_on</code> has changed since, and rebuilt from scratch every {@link #FULL_REBUILD_HOURS}. Searches on a column go to the
+ * database while its index is being rebuilt, so only one copy is kept in memory. Columns with more than {@link
+ * ServerProperty#GERMINATE_SEARCH_INDEX_MAX_ROWS} rows aren't indexed.
+ *
+ * @author Sebastian Raubach
+ */
+public class SearchIndex
+{
+	/** Conditions matching more rows than this aren't selective enough to benefit from the index */
+	private static final int  MAX_MATCHES        = 10000;
+	private static final int  GRAM_LENGTH        = 3;
+	private static final long FULL_REBUILD_HOURS = 24;
+	/** Rows are read again if they've been updated this long before the last refresh, to include transactions that took a while to commit */
+	private static final long OVERLAP_SECONDS    = 600;
+	private static final int  FILE_VERSION       = 2;
+
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+	private static final String SELECT_NOW         = "SELECT UNIX_TIMESTAMP(NOW()) AS now";
+	private static final String SELECT_UPDATE_TIME = "SELECT UNIX_TIMESTAMP(`UPDATE_TIME`) AS updated FROM `information_schema`.`TABLES` WHERE `TABLE_SCHEMA` = DATABASE() AND `TABLE_NAME` = ?";
+	private static final String SELECT_COUNT       = "SELECT COUNT(1) AS count FROM `%s`";
+	private static final String SELECT_ALL         = "SELECT `id`, `%s` AS text FROM `%s`";
+	private static final String SELECT_UPDATED     = "SELECT `id`, `%s` AS text FROM `%s` WHERE `id` > ? OR `updated_on` >= FROM_UNIXTIME(?)";
+
+	private static final Map<Field, FieldIndex> INDICES   = new ConcurrentHashMap<>();
+	/** The database time (in seconds) at which a column was found to have too many rows to be indexed */
+	private static final Map<Field, Long>       TOO_LARGE = new ConcurrentHashMap<>();
+
+	private static File                     folder;
+	private static ScheduledExecutorService scheduler;
+
+	/**
+	 * The indexed columns
+	 */
+	public enum Field
+	{
+		ACCESSION_GENERAL_IDENTIFIER(Accession.GENERAL_IDENTIFIER, "germinatebase", "general_identifier"),
+		ACCESSION_NAME(Accession.NAME, "germinatebase", "name"),
+		SYNONYMS(Synonym.SYNONYM, "synonyms", "synonyms"),
+		MARKER_NAME(Marker.MARKER_NAME, "markers", "marker_name"),
+		LOCATION_SITE_NAME(Location.SITE_NAME, "locations", "site_name"),
+		ATTRIBUTE_VALUE(AttributeData.VALUE, "attributedata", "value");
+
+		private final String columnName;
+		private final String table;
+		private final String column;
+
+		Field(String columnName, String table, String column)
+		{
+			this.columnName = columnName;
+			this.table = table;
+			this.column = column;
+		}
+
+		public String getIdColumn()
+		{
+			return "`" + table + "`.`id`";
+		}
+
+		public String getUpdatedOnColumn()
+		{
+			return "`" + table + "`.`updated_on`";
+		}
+
+		private static Field forColumnName(String columnName)
+		{
+			for (Field field : values())
+			{
+				if (Objects.equals(field.columnName, columnName))
+					return field;
+			}
+
+			return null;
+		}
+	}
+
+	/**
+	 * Loads the index from the given folder and starts keeping it up-to-date. Does nothing if {@link ServerProperty#GERMINATE_SEARCH_INDEX_REFRESH_MINUTES}
+	 * is <code>0</code>.
+	 *
+	 * @param folder The folder to keep the index in
+	 */
+	public static synchronized void initialize(File folder)
+	{
+		Integer minutes = PropertyWatcher.getInteger(ServerProperty.GERMINATE_SEARCH_INDEX_REFRESH_MINUTES);
+		if (minutes == null)
+			minutes = Integer.parseInt(ServerProperty.GERMINATE_SEARCH_INDEX_REFRESH_MINUTES.getDefaultValue());
+
+		if (minutes <= 0 || scheduler != null)
+			return;
+
+		SearchIndex.folder = folder;
+		folder.mkdirs();
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(r ->
+		{
+			Thread thread = new Thread(r, "SearchIndex");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+
+		scheduler.execute(SearchIndex::load);
+		scheduler.scheduleWithFixedDelay(SearchIndex::refresh, 0, minutes, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Stops updating the index. Call this when the application terminates.
+	 */
+	public static synchronized void shutdown()
+	{
+		if (scheduler != null)
+			scheduler.shutdownNow();
+
+		scheduler = null;
+		INDICES.clear();
+		TOO_LARGE.clear();
+	}
+
+	/**
+	 * Looks up the conditions of the given {@link PartialSearchQuery} that can be answered from the index
+	 *
+	 * @param filter The {@link PartialSearchQuery}
+	 * @return The {@link Match} of each condition that can be answered from the index
+	 */
+	public static Map<SearchCondition, Match> find(PartialSearchQuery filter)
+	{
+		Map<SearchCondition, Match> result = new IdentityHashMap<>();
+
+		if (filter == null || INDICES.isEmpty())
+			return result;
+
+		for (SearchCondition condition : filter.getAll())
+		{
+			if (condition.getComp() == null || condition.getComp().getClass() != Like.class)
+				continue;
+
+			Field field = Field.forColumnName(condition.getColumnName());
+			FieldIndex index = field == null ? null : INDICES.get(field);
+
+			if (index == null)
+				continue;
+
+			try
+			{
+				List<String> values = condition.getValues();
+
+				if (values.size() != 1)
+					continue;
+
+				/* Like wraps the term in wildcards */
+				String value = values.get(0);
+				String term = value.substring(1, value.length() - 1);
+
+				Match match = index.find(field, term);
+
+				if (match != null)
+					result.put(condition, match);
+			}
+			catch (InvalidArgumentException | InvalidSearchQueryException e)
+			{
+				/* Leave it to the database to report */
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a human readable summary of the index for monitoring
+	 *
+	 * @return A human readable summary of the index
+	 */
+	public static String getSummary()
+	{
+		StringBuilder builder = new StringBuilder("SearchIndex{");
+
+		for (Field field : Field.values())
+		{
+			FieldIndex index = INDICES.get(field);
+
+			if (field.ordinal() > 0)
+				builder.append(", ");
+
+			builder.append(field.columnName)
+				   .append("=")
+				   .append(index == null ? "not ready" : Integer.toString(index.size()));
+		}
+
+		return builder.append("}").toString();
+	}
+
+	/**
+	 * Converts the text to lower case and removes accents. For ASCII text, matching is then (at least) as lenient as the collation of the columns.
+	 */
+	static String fold(String text)
+	{
+		if (text == null)
+			return "";
+
+		String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+		return COMBINING_MARKS.matcher(normalized).replaceAll("").toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Checks whether the given text only contains ASCII characters. The collation of a column may match other characters differently than
+	 * {@link #fold(String)}, e.g. <code>&szlig;</code> and <code>ss</code>.
+	 */
+	static boolean isAscii(String text)
+	{
+		if (text == null)
+			return true;
+
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (text.charAt(i) > 127)
+				return false;
+		}
+
+		return true;
+	}
+
+	private static Set<Long> getGrams(String folded)
+	{
+		Set<Long> result = new HashSet<>();
+
+		for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++)
+			result.add(((long) folded.charAt(i) << 32) | ((long) folded.charAt(i + 1) << 16) | folded.charAt(i + 2));
+
+		return result;
+	}
+
+	private static void load()
+	{
+		for (Field field : Field.values())
+		{
+			File file = new File(folder, field.name().toLowerCase(Locale.ROOT) + ".idx");
+
+			if (!file.exists())
+				continue;
+
+			try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)))))
+			{
+				if (in.readInt() != FILE_VERSION)
+					continue;
+
+				FieldIndex index = new FieldIndex(in.readLong(), in.readLong());
+
+				int count = in.readInt();
+				if (count > getMaxRows())
+					continue;
+
+				for (int i = 0; i < count; i++)
+				{
+					int id = in.readInt();
+					boolean ascii = in.readBoolean();
+					byte[] bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+
+					index.put(id, new String(bytes, StandardCharsets.UTF_8), ascii);
+				}
+
+				INDICES.put(field, index);
+			}
+			catch (IOException e)
+			{
+				/* It'll be rebuilt */
+				Logger.getLogger("").log(Level.WARNING, "Unable to read the search index " + file.getAbsolutePath() + ": " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+	private static int getMaxRows()
+	{
+		Integer maxRows = PropertyWatcher.getInteger(ServerProperty.GERMINATE_SEARCH_INDEX_MAX_ROWS);
+		return maxRows == null ? Integer.parseInt(ServerProperty.GERMINATE_SEARCH_INDEX_MAX_ROWS.getDefaultValue()) : maxRows;
+	}
+
+	/**
+	 * Stops using the index of the given column and deletes its file
+	 */
+	private static void drop(Field field)
+	{
+		INDICES.remove(field);
+
+		File file = new File(folder, field.name().toLowerCase(Locale.ROOT) + ".idx");
+		if (file.exists() && !file.delete())
+			Logger.getLogger("").log(Level.WARNING, "Unable to delete the search index " + file.getAbsolutePath());
+	}
+
+	private static void save(Field field, FieldIndex index) throws IOException
+	{
+		File file = new File(folder, field.name().toLowerCase(Locale.ROOT) + ".idx");
+		File temp = new File(folder, field.name().toLowerCase(Locale.ROOT) + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))))
+		{
+			out.writeInt(FILE_VERSION);
+			index.write(out);
+		}
+
+		try
+		{
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Brings the index of each column up-to-date with the database
+	 */
+	private static void refresh()
+	{
+		for (Field field : Field.values())
+		{
+			try
+			{
+				refresh(field);
+			}
+			catch (Exception e)
+			{
+				/* Keep the refresh running, the index of this column stays as it is */
+				Logger.getLogger("").log(Level.WARNING, "Unable to update the search index of " + field.columnName + ": " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+	private static void refresh(Field field) throws DatabaseException, IOException
+	{
+		long now = new ValueQuery(SELECT_NOW)
+				.run("now")
+				.getLong()
+				.getServerResult();
+
+		FieldIndex index = INDICES.get(field);
+
+		if (index == null || now - index.lastFullBuild > TimeUnit.HOURS.toSeconds(FULL_REBUILD_HOURS))
+		{
+			/* Don't count the rows of a large table again before the next rebuild */
+			Long tooLarge = TOO_LARGE.get(field);
+			if (index == null && tooLarge != null && now - tooLarge <= TimeUnit.HOURS.toSeconds(FULL_REBUILD_HOURS))
+				return;
+
+			int count = new ValueQuery(String.format(SELECT_COUNT, field.table))
+					.run("count")
+					.getInt()
+					.getServerResult();
+
+			if (count > getMaxRows())
+			{
+				if (TOO_LARGE.put(field, now) == null)
+					Logger.getLogger("").log(Level.INFO, "Not indexing " + field.columnName + ", it has more than " + getMaxRows() + " rows");
+				drop(field);
+				return;
+			}
+
+			TOO_LARGE.remove(field);
+
+			/* Don't keep two copies in memory, searches go to the database until the new index is ready */
+			INDICES.remove(field);
+
+			FieldIndex newIndex = new FieldIndex(now, now);
+
+			try (DefaultStreamer streamer = new DefaultQuery(String.format(SELECT_ALL, field.column, field.table), null).getStreamer())
+			{
+				DatabaseResult res;
+				while ((res = streamer.next()) != null)
+					newIndex.put(res.getLong("id").intValue(), res.getString("text"));
+			}
+
+			INDICES.put(field, newIndex);
+			save(field, newIndex);
+		}
+		else
+		{
+			/* Skip the table if it hasn't changed. The update time isn't always known, e.g. after the database server restarted. */
+			Long updated = new ValueQuery(SELECT_UPDATE_TIME)
+					.setString(field.table)
+					.run("updated")
+					.getLong()
+					.getServerResult();
+
+			if (updated != null && updated < index.lastSeen - OVERLAP_SECONDS)
+				return;
+
+			int changes = 0;
+			try (DefaultStreamer streamer = new DefaultQuery(String.format(SELECT_UPDATED, field.column, field.table), null)
+					.setInt(index.maxId)
+					.setLong(index.lastSeen - OVERLAP_SECONDS)
+					.getStreamer())
+			{
+				DatabaseResult res;
+				while ((res = streamer.next()) != null)
+				{
+					if (index.put(res.getLong("id").intValue(), res.getString("text")))
+						changes++;
+				}
+			}
+
+			index.lastSeen = now;
+
+			if (index.size() > getMaxRows())
+			{
+				Logger.getLogger("").log(Level.INFO, "Not indexing " + field.columnName + ", it has more than " + getMaxRows() + " rows");
+				TOO_LARGE.put(field, now);
+				drop(field);
+			}
+			else if (changes > 0)
+			{
+				save(field, index);
+			}
+		}
+	}
+
+	/**
+	 * {@link Match} is the answer of the index to a condition. Besides the rows matching it, the database has to check the rows that have been
+	 * added or updated since the last refresh, because the index doesn't know about them yet.
+	 */
+	public static class Match
+	{
+		private final Field      field;
+		private final List<Long> ids;
+		private final int        maxId;
+		/** The database time (in seconds) from which on updated rows may be missing from the index */
+		private final long       since;
+
+		private Match(Field field, List<Long> ids, int maxId, long since)
+		{
+			this.field = field;
+			this.ids = ids;
+			this.maxId = maxId;
+			this.since = since;
+		}
+
+		public List<Long> getIds()
+		{
+			return ids;
+		}
+
+		/**
+		 * Returns the SQL representation of the condition restricted to the rows the index has found and those it doesn't know about yet. Set the
+		 * parameters via {@link #setParameters(GerminateQuery, SearchCondition)}.
+		 *
+		 * @param condition The {@link SearchCondition}
+		 * @return The SQL representation of the condition
+		 * @throws InvalidArgumentException    Thrown if the condition is invalid
+		 * @throws InvalidSearchQueryException Thrown if the condition doesn't have a comparison operator
+		 */
+		public String toPreparedStatementString(SearchCondition condition) throws InvalidArgumentException, InvalidSearchQueryException
+		{
+			StringBuilder builder = new StringBuilder(" ((");
+
+			if (!ids.isEmpty())
+				builder.append(field.getIdColumn()).append(" IN (").append(StringUtils.generateSqlPlaceholderString(ids.size())).append(") OR ");
+
+			return builder.append(field.getIdColumn())
+						  .append(" > ? OR ")
+						  .append(field.getUpdatedOnColumn())
+						  .append(" >= FROM_UNIXTIME(?)) AND")
+						  .append(condition.toPreparedStatementString())
+						  .append(")")
+						  .toString();
+		}
+
+		/**
+		 * Sets the parameters of {@link #toPreparedStatementString(SearchCondition)}
+		 *
+		 * @param query     The query
+		 * @param condition The {@link SearchCondition}
+		 * @throws DatabaseException           Thrown if the interaction with the database fails
+		 * @throws InvalidArgumentException    Thrown if the condition is invalid
+		 * @throws InvalidSearchQueryException Thrown if the condition doesn't have a comparison operator
+		 */
+		public void setParameters(GerminateQuery<?> query, SearchCondition condition) throws DatabaseException, InvalidArgumentException, InvalidSearchQueryException
+		{
+			if (!ids.isEmpty())
+				query.setLongs(ids);
+
+			query.setInt(maxId)
+				 .setLong(since)
+				 .setStrings(condition.getValues());
+		}
+	}
+
+	/**
+	 * The index of a single column
+	 */
+	private static class FieldIndex
+	{
+		private final Map<Integer, String> texts    = new HashMap<>();
+		private final Map<Long, Postings>  postings = new HashMap<>();
+		/** The rows with non-ASCII text, the database has to check them for every term */
+		private final Postings             nonAscii = new Postings();
+		private final ReadWriteLock        lock     = new ReentrantReadWriteLock();
+
+		/** The database time (in seconds) of the last refresh and the last full build */
+		private volatile long lastSeen;
+		private final    long lastFullBuild;
+		/** The largest indexed id, rows with larger ids have been added since */
+		private volatile int  maxId;
+
+		private FieldIndex(long lastSeen, long lastFullBuild)
+		{
+			this.lastSeen = lastSeen;
+			this.lastFullBuild = lastFullBuild;
+		}
+
+		private int size()
+		{
+			lock.readLock().lock();
+			try
+			{
+				return texts.size();
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Adds or replaces the text of the row with the given id
+		 *
+		 * @return <code>true</code> if the text has changed
+		 */
+		private boolean put(int id, String text)
+		{
+			return put(id, fold(text), isAscii(text));
+		}
+
+		private boolean put(int id, String folded, boolean ascii)
+		{
+			lock.writeLock().lock();
+			try
+			{
+				String old = texts.put(id, folded);
+				maxId = Math.max(maxId, id);
+
+				boolean wasAscii = !nonAscii.contains(id);
+				if (ascii)
+					nonAscii.remove(id);
+				else
+					nonAscii.add(id);
+
+				if (Objects.equals(old, folded))
+					return wasAscii != ascii;
+
+				if (old != null)
+				{
+					for (Long gram : getGrams(old))
+					{
+						Postings list = postings.get(gram);
+						list.remove(id);
+
+						if (list.size == 0)
+							postings.remove(gram);
+					}
+				}
+
+				for (Long gram : getGrams(folded))
+					postings.computeIfAbsent(gram, k -> new Postings()).add(id);
+
+				return true;
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+		}
+
+		/**
+		 * Returns the {@link Match} of the rows that may contain the given term or <code>null</code> if the index can't answer this
+		 */
+		private Match find(Field field, String term)
+		{
+			/* The index doesn't know about wildcards and escaping or how the collation matches other characters */
+			if (term.contains("%") || term.contains("_") || term.contains("\\") || !isAscii(term))
+				return null;
+
+			String folded = fold(term);
+
+			if (folded.length() < GRAM_LENGTH)
+				return null;
+
+			lock.readLock().lock();
+			try
+			{
+				/* Rows with non-ASCII text are always checked by the database */
+				Set<Long> result = new TreeSet<>();
+				for (int i = 0; i < nonAscii.size; i++)
+					result.add((long) nonAscii.ids[i]);
+
+				List<Postings> lists = new ArrayList<>();
+				for (Long gram : getGrams(folded))
+				{
+					Postings list = postings.get(gram);
+
+					if (list == null)
+					{
+						lists.clear();
+						break;
+					}
+
+					lists.add(list);
+				}
+
+				lists.sort(Comparator.comparingInt(p -> p.size));
+
+				/* Walk the shortest list and check the others */
+				Postings shortest = lists.isEmpty() ? new Postings() : lists.get(0);
+
+				for (int i = 0; i < shortest.size && result.size() <= MAX_MATCHES; i++)
+				{
+					int id = shortest.ids[i];
+
+					boolean inAll = true;
+					for (int j = 1; j < lists.size() && inAll; j++)
+						inAll = lists.get(j).contains(id);
+
+					/* The trigrams may occur in a different order, so check the text itself */
+					if (inAll && texts.get(id).contains(folded))
+						result.add((long) id);
+				}
+
+				if (result.size() > MAX_MATCHES)
+					return null;
+
+				return new Match(field, new ArrayList<>(result), maxId, lastSeen - OVERLAP_SECONDS);
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+
+		private void write(DataOutputStream out) throws IOException
+		{
+			lock.readLock().lock();
+			try
+			{
+				out.writeLong(lastSeen);
+				out.writeLong(lastFullBuild);
+				out.writeInt(texts.size());
+
+				for (Map.Entry<Integer, String> entry : texts.entrySet())
+				{
+					byte[] bytes = entry.getValue().getBytes(StandardCharsets.UTF_8);
+
+					out.writeInt(entry.getKey());
+					out.writeBoolean(!nonAscii.contains(entry.getKey()));
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * A sorted list of row ids
+	 */
+	private static class Postings
+	{
+		private int[] ids = new int[4];
+		private int   size;
+
+		private void add(int id)
+		{
+			/* Ids are mostly added in increasing order */
+			int index = (size == 0 || ids[size - 1] < id) ? -(size + 1) : Arrays.binarySearch(ids, 0, size, id);
+
+			if (index >= 0)
+				return;
+
+			index = -(index + 1);
+
+			if (size == ids.length)
+				ids = Arrays.copyOf(ids, size * 2);
+
+			System.arraycopy(ids, index, ids, index + 1, size - index);
+			ids[index] = id;
+			size++;
+		}
+
+		private void remove(int id)
+		{
+			int index = Arrays.binarySearch(ids, 0, size, id);
+
+			if (index < 0)
+				return;
+
+			System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+			size--;
+		}
+
+		private boolean contains(int id)
+		{
+			return Arrays.binarySearch(ids, 0, size, id) >= 0;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.server.util;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A {@link StreamingExport} is an export that isn't written to a temporary file. Instead, it's registered under a file name in the temporary
+ * folder and the {@link jhi.germinate.server.service.FileServlet} writes it straight into the response when the client requests this file name.
+ * The {@link Writer} runs again for every request, so it has to query the data itself. Registrations expire after {@link
+ * #EXPIRES_AFTER_MINUTES}.
+ *
+ * @author Sebastian Raubach
+ */
+public class StreamingExport
+{
+	private static final long EXPIRES_AFTER_MINUTES = 60;
+
+	private static final Map<String, StreamingExport> EXPORTS = new ConcurrentHashMap<>();
+
+	/**
+	 * Writes the export. The {@link OutputStream} is buffered and must not be closed.
+	 */
+	public interface Writer
+	{
+		void write(OutputStream out) throws Exception;
+	}
+
+	private final String sessionId;
+	private final Writer writer;
+	private final long   created = System.currentTimeMillis();
+
+	private StreamingExport(String sessionId, Writer writer)
+	{
+		this.sessionId = sessionId;
+		this.writer = writer;
+	}
+
+	/**
+	 * Registers a new {@link StreamingExport}
+	 *
+	 * @param sessionId The id of the session that is allowed to download the export
+	 * @param prefix    An optional prefix to simplify identification
+	 * @param extension The file extension to use
+	 * @param writer    The {@link Writer} that writes the export
+	 * @return The file name that the client uses to download the export
+	 */
+	public static String register(String sessionId, String prefix, String extension, Writer writer)
+	{
+		String name = prefix + "_" + UUID.randomUUID() + "." + extension.replace(".", "");
+		EXPORTS.put(name, new StreamingExport(sessionId, writer));
+		return name;
+	}
+
+	/**
+	 * Returns the {@link StreamingExport} with the given file name if it belongs to the given session
+	 *
+	 * @param name      The file name
+	 * @param sessionId The session id
+	 * @return The {@link StreamingExport} or <code>null</code>
+	 */
+	public static StreamingExport get(String name, String sessionId)
+	{
+		StreamingExport export = name == null ? null : EXPORTS.get(name);
+
+		if (export == null || !Objects.equals(export.sessionId, sessionId))
+			return null;
+		else
+			return export;
+	}
+
+	/**
+	 * Writes the export to the given {@link OutputStream}
+	 *
+	 * @param out The {@link OutputStream}
+	 * @throws Exception Thrown if the export fails
+	 */
+	public void write(OutputStream out) throws Exception
+	{
+		writer.write(out);
+	}
+
+	/**
+	 * Removes expired registrations
+	 */
+	public static void cleanup()
+	{
+		long limit = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(EXPIRES_AFTER_MINUTES);
+		EXPORTS.values().removeIf(export -> export.created < limit);
+	}
+}
@@ -205,9 +205,30 @@ public class Util
 	public static Integer writeDefaultToFile(OperatingSystem os, String[] columns, DefaultStreamer table, File file) throws IOException,
 			DatabaseException
 	{
-		try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
-			 DefaultStreamer streamer = table)
+		try (OutputStream out = new FileOutputStream(file))
 		{
+			return writeDefault(os, columns, table, out);
+		}
+	}
+
+	/**
+	 * Writes the given {@link DefaultStreamer} to the given {@link OutputStream}. The stream is flushed, but not closed.
+	 *
+	 * @param os      The {@link OperatingSystem}
+	 * @param columns The columns to export (data will be exported in this get)
+	 * @param table   The {@link DefaultStreamer} to export
+	 * @param out     The {@link OutputStream} to write to
+	 * @return The number or rows that have been exported.
+	 * @throws IOException       Thrown if writing fails
+	 * @throws DatabaseException Thrown if the interaction with the database fails
+	 */
+	public static Integer writeDefault(OperatingSystem os, String[] columns, DefaultStreamer table, OutputStream out) throws IOException,
+			DatabaseException
+	{
+		try (DefaultStreamer streamer = table)
+		{
+			BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
 			if (ArrayUtils.isEmpty(columns))
 				columns = streamer.getColumnNames();
 
@@ -216,13 +237,9 @@ public class Util
 
 			int counter = 0;
 
-			DatabaseResult first = null;
 			DatabaseResult row;
 			while ((row = streamer.next()) != null)
 			{
-				if (first == null)
-					first = row;
-
 				String value = row.getString(columns[0]);
 				bw.write(value == null ? "" : value);
 
@@ -232,11 +249,12 @@ public class Util
 					bw.write("\t" + (value == null ? "" : value));
 				}
 
-				// bw.newLine();
 				bw.write(os.newLine);
 				counter++;
 			}
 
+			bw.flush();
+
 			return counter;
 		}
 	}
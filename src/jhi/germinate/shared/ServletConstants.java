@@ -56,6 +56,12 @@ public class ServletConstants
 	public static final String PARAM_PASSWORD        = "password";
 	/** The statistics view URL parameter */
 	public static final String PARAM_STATISTICS_VIEW = "statistics-view";
+	/** The number of reported queries URL parameter */
+	public static final String PARAM_LIMIT           = "limit";
+	/** The access token URL parameter */
+	public static final String PARAM_TOKEN           = "token";
+	/** The reset statistics URL parameter */
+	public static final String PARAM_RESET           = "reset";
 
 	public enum FragmentPosition
 	{
@@ -0,0 +1,146 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.shared.datastructure;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * {@link ExportJobStatus} is a snapshot of the state of a server-side export job.
+ *
+ * @author Sebastian Raubach
+ */
+public class ExportJobStatus implements Serializable
+{
+	private static final long serialVersionUID = -3816541723569212431L;
+
+	public enum Status
+	{
+		QUEUED,
+		RUNNING,
+		FINISHED,
+		FAILED,
+		CANCELLED
+	}
+
+	private String            id;
+	private String            name;
+	private Status            status;
+	private Float             progress;
+	private Integer           queuePosition;
+	private String            error;
+	private List<CreatedFile> files = new ArrayList<>();
+
+	public ExportJobStatus()
+	{
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public ExportJobStatus setId(String id)
+	{
+		this.id = id;
+		return this;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public ExportJobStatus setName(String name)
+	{
+		this.name = name;
+		return this;
+	}
+
+	public Status getStatus()
+	{
+		return status;
+	}
+
+	public ExportJobStatus setStatus(Status status)
+	{
+		this.status = status;
+		return this;
+	}
+
+	public Float getProgress()
+	{
+		return progress;
+	}
+
+	public ExportJobStatus setProgress(Float progress)
+	{
+		this.progress = progress;
+		return this;
+	}
+
+	public Integer getQueuePosition()
+	{
+		return queuePosition;
+	}
+
+	public ExportJobStatus setQueuePosition(Integer queuePosition)
+	{
+		this.queuePosition = queuePosition;
+		return this;
+	}
+
+	public String getError()
+	{
+		return error;
+	}
+
+	public ExportJobStatus setError(String error)
+	{
+		this.error = error;
+		return this;
+	}
+
+	public List<CreatedFile> getFiles()
+	{
+		return files;
+	}
+
+	public ExportJobStatus setFiles(List<CreatedFile> files)
+	{
+		this.files = files;
+		return this;
+	}
+
+	public boolean isDone()
+	{
+		return status == Status.FINISHED || status == Status.FAILED || status == Status.CANCELLED;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ExportJobStatus{" +
+				"id='" + id + '\'' +
+				", name='" + name + '\'' +
+				", status=" + status +
+				", progress=" + progress +
+				", queuePosition=" + queuePosition +
+				'}';
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.shared.datastructure;
+
+import java.io.*;
+
+import jhi.germinate.shared.datastructure.database.*;
+
+/**
+ * {@link MapCluster} is a cell of the map grid. It's placed at the mean position of the {@link Location}s it contains. Cells containing a single
+ * {@link Location} also contain the {@link Location} itself.
+ *
+ * @author Sebastian Raubach
+ */
+public class MapCluster implements Serializable
+{
+	private static final long serialVersionUID = 5316957726301458814L;
+
+	private double   latitude;
+	private double   longitude;
+	private int      count;
+	private Location location;
+
+	public MapCluster()
+	{
+	}
+
+	public MapCluster(double latitude, double longitude, int count)
+	{
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.count = count;
+	}
+
+	public double getLatitude()
+	{
+		return latitude;
+	}
+
+	public double getLongitude()
+	{
+		return longitude;
+	}
+
+	public int getCount()
+	{
+		return count;
+	}
+
+	public Location getLocation()
+	{
+		return location;
+	}
+
+	public MapCluster setLocation(Location location)
+	{
+		this.location = location;
+		return this;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "MapCluster{" +
+				"latitude=" + latitude +
+				", longitude=" + longitude +
+				", count=" + count +
+				", location=" + location +
+				'}';
+	}
+}
@@ -26,8 +26,10 @@ package jhi.germinate.shared.datastructure;
  */
 public class PaginatedServerResult<T> extends ServerResult<T>
 {
-	private static final long    serialVersionUID = -4128618658515217389L;
-	private              Integer resultSize       = null;
+	private static final long             serialVersionUID = -4128618658515217389L;
+	private              Integer          resultSize       = null;
+	private              PaginationCursor cursor           = null;
+	private              boolean          resultSizeExact  = true;
 
 	PaginatedServerResult()
 	{
@@ -57,6 +59,39 @@ public class PaginatedServerResult<T> extends ServerResult<T>
 		return this;
 	}
 
+	/**
+	 * Returns <code>false</code> if counting the results took too long and the result size is an estimate or only covers the rows up to this page
+	 * (plus one if there may be more). Don't keep such a result size, the next request will count again.
+	 *
+	 * @return <code>false</code> if the result size is only an estimate or a lower bound
+	 */
+	public boolean isResultSizeExact()
+	{
+		return resultSizeExact;
+	}
+
+	public PaginatedServerResult<T> setResultSizeExact(boolean resultSizeExact)
+	{
+		this.resultSizeExact = resultSizeExact;
+		return this;
+	}
+
+	/**
+	 * Returns the {@link PaginationCursor} of the last row of this page. Send it back with the {@link Pagination} of the next page.
+	 *
+	 * @return The {@link PaginationCursor} or <code>null</code>
+	 */
+	public PaginationCursor getCursor()
+	{
+		return cursor;
+	}
+
+	public PaginatedServerResult<T> setCursor(PaginationCursor cursor)
+	{
+		this.cursor = cursor;
+		return this;
+	}
+
 	public PaginatedServerResult<T> setResultSizeAndDebugInfo(ServerResult<Integer> countQueryResult)
 	{
 		if (countQueryResult != null)
@@ -32,11 +32,12 @@ public class Pagination implements Serializable
 {
 	private static final long serialVersionUID = -3472389651719345925L;
 
-	private int     start      = 0;
-	private int     length     = Integer.MAX_VALUE;
-	private String  sortColumn = "";
-	private boolean ascending  = true;
-	private Integer resultSize = null;
+	private int              start      = 0;
+	private int              length     = Integer.MAX_VALUE;
+	private String           sortColumn = "";
+	private boolean          ascending  = true;
+	private Integer          resultSize = null;
+	private PaginationCursor cursor     = null;
 
 	public static Pagination getDefault()
 	{
@@ -155,6 +156,16 @@ public class Pagination implements Serializable
 		this.resultSize = resultSize;
 	}
 
+	public PaginationCursor getCursor()
+	{
+		return cursor;
+	}
+
+	public void setCursor(PaginationCursor cursor)
+	{
+		this.cursor = cursor;
+	}
+
 	public String getSortQuery()
 	{
 		if (!StringUtils.isEmpty(sortColumn))
@@ -179,6 +190,7 @@ public class Pagination implements Serializable
 				", sortColumn='" + sortColumn + '\'' +
 				", ascending=" + ascending +
 				", resultSize=" + resultSize +
+				", cursor=" + cursor +
 				'}';
 	}
 }
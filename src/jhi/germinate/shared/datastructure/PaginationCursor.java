@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.shared.datastructure;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A {@link PaginationCursor} marks the last row of a page: its value of the sort column and its id. The server returns it with a {@link
+ * PaginatedServerResult} and the client sends it back with the {@link Pagination} of the next page, which lets the server continue right after
+ * that row instead of skipping all previous rows.
+ *
+ * @author Sebastian Raubach
+ */
+public class PaginationCursor implements Serializable
+{
+	private static final long serialVersionUID = 6154398263530216437L;
+
+	private int     start;
+	private String  sortColumn;
+	private boolean ascending;
+	private String  sortValue;
+	private Long    id;
+
+	public PaginationCursor()
+	{
+	}
+
+	/**
+	 * Creates a new instance of {@link PaginationCursor}
+	 *
+	 * @param start      The start of the page that follows the row
+	 * @param sortColumn The sort column of the page
+	 * @param ascending  The sort direction of the page
+	 * @param sortValue  The value of the sort column of the row
+	 * @param id         The id of the row
+	 */
+	public PaginationCursor(int start, String sortColumn, boolean ascending, String sortValue, Long id)
+	{
+		this.start = start;
+		this.sortColumn = sortColumn;
+		this.ascending = ascending;
+		this.sortValue = sortValue;
+		this.id = id;
+	}
+
+	public int getStart()
+	{
+		return start;
+	}
+
+	public String getSortColumn()
+	{
+		return sortColumn;
+	}
+
+	public boolean isAscending()
+	{
+		return ascending;
+	}
+
+	public String getSortValue()
+	{
+		return sortValue;
+	}
+
+	public Long getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Checks if this cursor can be used for the given {@link Pagination}, i.e. if the requested page directly follows the row of this cursor and is
+	 * sorted the same way
+	 *
+	 * @param pagination The {@link Pagination}
+	 * @return <code>true</code> if this cursor can be used for the given {@link Pagination}
+	 */
+	public boolean matches(Pagination pagination)
+	{
+		return start == pagination.getStart() && ascending == pagination.isAscending() && Objects.equals(sortColumn, pagination.getSortColumn());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PaginationCursor{" +
+				"start=" + start +
+				", sortColumn='" + sortColumn + '\'' +
+				", ascending=" + ascending +
+				", sortValue='" + sortValue + '\'' +
+				", id=" + id +
+				'}';
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.shared.datastructure;
+
+import java.io.*;
+import java.util.*;
+
+import jhi.germinate.shared.datastructure.database.*;
+import jhi.germinate.shared.enums.*;
+
+/**
+ * {@link SearchAllResult} contains the first page of each {@link SearchCategory} of a search that has finished. Categories that didn't finish
+ * within the time budget or failed don't have a result and are listed in {@link #getTimedOut()} or {@link #getFailed()} instead. Categories that
+ * are still running are listed in {@link #getRunning()}, their results can be requested again using the {@link #getSearchId()}.
+ *
+ * @author Sebastian Raubach
+ */
+public class SearchAllResult implements Serializable
+{
+	private static final long serialVersionUID = -2783012365014763120L;
+
+	private HashMap<SearchCategory, PaginatedServerResult<? extends List<? extends DatabaseObject>>> results  = new HashMap<>();
+	private HashSet<SearchCategory>                                                                  timedOut = new HashSet<>();
+	private HashSet<SearchCategory>                                                                  failed   = new HashSet<>();
+	private HashSet<SearchCategory>                                                                  running  = new HashSet<>();
+	private String                                                                                   searchId;
+
+	public SearchAllResult()
+	{
+
+	}
+
+	public SearchAllResult put(SearchCategory category, PaginatedServerResult<? extends List<? extends DatabaseObject>> result)
+	{
+		results.put(category, result);
+		return this;
+	}
+
+	/**
+	 * Returns the result of the given {@link SearchCategory}
+	 *
+	 * @param category The {@link SearchCategory}
+	 * @param <T>      The type of the {@link DatabaseObject}s of this {@link SearchCategory}
+	 * @return The result or <code>null</code> if the category hasn't been searched, has timed out or failed
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends DatabaseObject> PaginatedServerResult<List<T>> get(SearchCategory category)
+	{
+		return (PaginatedServerResult<List<T>>) results.get(category);
+	}
+
+	/**
+	 * Removes the result of the given {@link SearchCategory}
+	 *
+	 * @param category The {@link SearchCategory}
+	 * @param <T>      The type of the {@link DatabaseObject}s of this {@link SearchCategory}
+	 * @return The removed result or <code>null</code> if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends DatabaseObject> PaginatedServerResult<List<T>> remove(SearchCategory category)
+	{
+		return (PaginatedServerResult<List<T>>) results.remove(category);
+	}
+
+	public Set<SearchCategory> getTimedOut()
+	{
+		return timedOut;
+	}
+
+	public SearchAllResult addTimedOut(SearchCategory category)
+	{
+		timedOut.add(category);
+		return this;
+	}
+
+	public Set<SearchCategory> getFailed()
+	{
+		return failed;
+	}
+
+	public SearchAllResult addFailed(SearchCategory category)
+	{
+		failed.add(category);
+		return this;
+	}
+
+	public Set<SearchCategory> getRunning()
+	{
+		return running;
+	}
+
+	public String getSearchId()
+	{
+		return searchId;
+	}
+
+	public SearchAllResult setSearchId(String searchId)
+	{
+		this.searchId = searchId;
+		return this;
+	}
+
+	/**
+	 * Returns <code>true</code> if no category is running anymore
+	 *
+	 * @return <code>true</code> if no category is running anymore
+	 */
+	public boolean isDone()
+	{
+		return running.isEmpty();
+	}
+
+	/**
+	 * Returns <code>true</code> if all searched categories have a result
+	 *
+	 * @return <code>true</code> if all searched categories have a result
+	 */
+	public boolean isComplete()
+	{
+		return timedOut.isEmpty() && failed.isEmpty();
+	}
+}
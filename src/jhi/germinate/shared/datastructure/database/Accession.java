@@ -621,6 +621,13 @@ public class Accession extends DatabaseObject
 			COLLECTINGSOURCE_CACHE = createCache(CollectingSource.class, CollectingSourceManager.class);
 			LOCATION_CACHE = createCache(Location.class, LocationManager.class);
 			MLSSTATUS_CACHE = createCache(MlsStatus.class, MlsStatusManager.class);
+
+			addForeignKey(() -> TAXONOMY_CACHE, TAXONOMY_ID);
+			addForeignKey(() -> INSTITUTION_CACHE, INSTITUTION_ID, true);
+			addForeignKey(() -> MLSSTATUS_CACHE, MLSSTATUS);
+			addForeignKey(() -> BIOLOGICALSTATUS_CACHE, BIOLOGICALSTATUS_ID);
+			addForeignKey(() -> COLLECTINGSOURCE_CACHE, COLLSRC_ID);
+			addForeignKey(() -> LOCATION_CACHE, LOCATION_ID);
 		}
 
 		public static final class Inst
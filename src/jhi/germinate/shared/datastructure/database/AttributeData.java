@@ -172,6 +172,9 @@ public class AttributeData extends DatabaseObject
 		{
 			ATTRIBUTE_CACHE = createCache(Attribute.class, AttributeManager.class);
 			ACCESSION_CACHE = createCache(Accession.class, AccessionManager.class);
+
+			addForeignKey(() -> ATTRIBUTE_CACHE, ATTRIBUTE_ID);
+			addForeignKey(() -> ACCESSION_CACHE, FOREIGN_ID);
 		}
 
 		@Override
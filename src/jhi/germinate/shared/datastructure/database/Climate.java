@@ -181,6 +181,8 @@ public class Climate extends DatabaseObject
 		private Parser()
 		{
 			UNIT_CACHE = createCache(Unit.class, UnitManager.class);
+
+			addForeignKey(() -> UNIT_CACHE, UNIT_ID);
 		}
 
 		@Override
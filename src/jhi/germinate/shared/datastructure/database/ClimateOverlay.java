@@ -231,6 +231,8 @@ public class ClimateOverlay extends DatabaseObject
 		private Parser()
 		{
 			CLIMATE_CACHE = createCache(Climate.class, ClimateManager.class);
+
+			addForeignKey(() -> CLIMATE_CACHE, CLIMATE_ID);
 		}
 
 		@Override
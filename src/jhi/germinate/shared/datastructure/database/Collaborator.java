@@ -188,6 +188,8 @@ public class Collaborator extends DatabaseObject
 		private Parser()
 		{
 			INSTITUTION_CACHE = createCache(Institution.class, InstitutionManager.class);
+
+			addForeignKey(() -> INSTITUTION_CACHE, INSTITUTION_ID);
 		}
 
 		@Override
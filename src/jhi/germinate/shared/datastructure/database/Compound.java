@@ -260,6 +260,8 @@ public class Compound extends DatabaseObject
 		private Parser()
 		{
 			UNIT_CACHE = createCache(Unit.class, UnitManager.class);
+
+			addForeignKey(() -> UNIT_CACHE, UNIT_ID);
 		}
 
 		@Override
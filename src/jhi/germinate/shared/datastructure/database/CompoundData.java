@@ -208,6 +208,11 @@ public class CompoundData extends DatabaseObject
 			ACCESSION_CACHE = createCache(Accession.class, AccessionManager.class);
 			DATASET_CACHE = createCache(Dataset.class, DatasetManager.class);
 			ANALYSISMETHOD_CACHE = createCache(AnalysisMethod.class, AnalysisMethodManager.class);
+
+			addForeignKey(() -> COMPOUND_CACHE, COMPOUND_ID);
+			addForeignKey(() -> ACCESSION_CACHE, GERMINATEBASE_ID);
+			addForeignKey(() -> DATASET_CACHE, DATASET_ID);
+			addForeignKey(() -> ANALYSISMETHOD_CACHE, ANALYSISMETHOD_ID);
 		}
 
 		@Override
@@ -518,6 +518,10 @@ public class Dataset extends DatabaseObject
 			EXPERIMENT_CACHE = createCache(Experiment.class, ExperimentManager.class);
 			LOCATION_CACHE = createCache(Location.class, LocationManager.class);
 			LICENSE_CACHE = createCache(License.class, LicenseManager.class);
+
+			addForeignKey(() -> EXPERIMENT_CACHE, EXPERIMENT_ID);
+			addForeignKey(() -> LOCATION_CACHE, LOCATION_ID);
+			addForeignKey(() -> LICENSE_CACHE, LICENSE_ID);
 		}
 
 		public static final class Inst
@@ -74,6 +74,9 @@ public class EntityPair extends DatabaseObject
 		private Parser()
 		{
 			ACCESSION_CACHE = createCache(Accession.class, AccessionManager.class);
+
+			addForeignKey(() -> ACCESSION_CACHE, CHILD_ID);
+			addForeignKey(() -> ACCESSION_CACHE, PARENT_ID);
 		}
 
 		@Override
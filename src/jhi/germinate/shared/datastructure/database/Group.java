@@ -253,6 +253,8 @@ public class Group extends DatabaseObject
 		{
 			GROUPTYPE_CACHE = createCache(GroupType.class, GroupTypeManager.class);
 			GATEKEEPER_USER_CACHE = createCache(GatekeeperUser.class, GatekeeperUserManager.class);
+
+			addForeignKey(() -> GROUPTYPE_CACHE, GROUP_TYPE_ID);
 		}
 
 		public static final class Inst
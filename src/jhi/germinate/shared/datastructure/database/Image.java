@@ -180,6 +180,8 @@ public class Image extends DatabaseObject
 		private Parser()
 		{
 			IMAGETYPE_CACHE = createCache(ImageType.class, ImageTypeManager.class);
+
+			addForeignKey(() -> IMAGETYPE_CACHE, IMAGETYPE_ID);
 		}
 
 		@Override
@@ -225,6 +225,8 @@ public class Institution extends DatabaseObject
 		private Parser()
 		{
 			COUNTRY_CACHE = createCache(Country.class, CountryManager.class);
+
+			addForeignKey(() -> COUNTRY_CACHE, COUNTRY_ID);
 		}
 
 		@Override
@@ -192,6 +192,8 @@ public class Link extends DatabaseObject
 		private Parser()
 		{
 			LINKTYPE_CACHE = createCache(LinkType.class, LinkTypeManager.class);
+
+			addForeignKey(() -> LINKTYPE_CACHE, LINKTYPE_ID);
 		}
 
 		@Override
@@ -344,6 +344,8 @@ public class Location extends DatabaseObject
 		protected Parser()
 		{
 			COUNTRY_CACHE = createCache(Country.class, CountryManager.class);
+
+			addForeignKey(() -> COUNTRY_CACHE, COUNTRY_ID);
 		}
 
 		@Override
@@ -243,6 +243,10 @@ public class MapDefinition extends DatabaseObject
 			MAPFEATURETYPE_CACHE = createCache(MapFeatureType.class, MapFeatureTypeManager.class);
 			MARKER_CACHE = createCache(Marker.class, MarkerManager.class);
 			MAP_CACHE = createCache(Map.class, MapManager.class);
+
+			addForeignKey(() -> MAPFEATURETYPE_CACHE, MAPFEATURETYPE_ID);
+			addForeignKey(() -> MARKER_CACHE, MARKER_ID);
+			addForeignKey(() -> MAP_CACHE, MAP_ID);
 		}
 
 		@Override
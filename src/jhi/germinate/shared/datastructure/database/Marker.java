@@ -162,6 +162,8 @@ public class Marker extends DatabaseObject
 		private Parser()
 		{
 			MARKERTYPE_CACHE = createCache(MarkerType.class, MarkerTypeManager.class);
+
+			addForeignKey(() -> MARKERTYPE_CACHE, MARKERTYPE_ID);
 		}
 
 		public static final class Inst
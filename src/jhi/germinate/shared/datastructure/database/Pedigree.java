@@ -187,6 +187,10 @@ public class Pedigree extends DatabaseObject
 		{
 			ACCESSION_CACHE = createCache(Accession.class, AccessionManager.class);
 			PEDIGREEDESCRIPTION_CACHE = createCache(PedigreeDescription.class, PedigreeDescriptionManager.class);
+
+			addForeignKey(() -> ACCESSION_CACHE, GERMINATEBASE_ID);
+			addForeignKey(() -> ACCESSION_CACHE, PARENT_ID);
+			addForeignKey(() -> PEDIGREEDESCRIPTION_CACHE, PEDIGREEDESCRIPTION_ID);
 		}
 
 		@Override
@@ -161,6 +161,9 @@ public class PedigreeDefinition extends DatabaseObject
 		{
 			ACCESSION_CACHE = createCache(Accession.class, AccessionManager.class);
 			PEDIGREENOTATION_CACHE = createCache(PedigreeNotation.class, PedigreeNotationManager.class);
+
+			addForeignKey(() -> ACCESSION_CACHE, GERMINATEBASE_ID);
+			addForeignKey(() -> PEDIGREENOTATION_CACHE, PEDIGREENOTATION_ID);
 		}
 
 		@Override
@@ -205,6 +205,8 @@ public class Phenotype extends DatabaseObject
 		private Parser()
 		{
 			UNIT_CACHE = createCache(Unit.class, UnitManager.class);
+
+			addForeignKey(() -> UNIT_CACHE, UNIT_ID);
 		}
 
 		@Override
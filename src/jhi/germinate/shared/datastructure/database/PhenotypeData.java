@@ -238,6 +238,13 @@ public class PhenotypeData extends DatabaseObject
 			LOCATION_CACHE = createCache(Location.class, LocationManager.class);
 			TREATMENT_CACHE = createCache(Treatment.class, TreatmentManager.class);
 			TRIALSERIES_CACHE = createCache(Trialseries.class, TrialseriesManager.class);
+
+			addForeignKey(() -> PHENOTYPE_CACHE, PHENOTYPE_ID);
+			addForeignKey(() -> ACCESSION_CACHE, GERMINATEBASE_ID);
+			addForeignKey(() -> DATASET_CACHE, DATASET_ID);
+			addForeignKey(() -> LOCATION_CACHE, LOCATION_ID);
+			addForeignKey(() -> TREATMENT_CACHE, TREATMENT_ID);
+			addForeignKey(() -> TRIALSERIES_CACHE, TRIALSERIES_ID);
 		}
 
 		@Override
@@ -149,6 +149,9 @@ public class StorageData extends DatabaseObject
 		{
 			ACCESSION_CACHE = createCache(Accession.class, AccessionManager.class);
 			STORAGE_CACHE = createCache(Storage.class, StorageManager.class);
+
+			addForeignKey(() -> ACCESSION_CACHE, GERMINATEBASE_ID);
+			addForeignKey(() -> STORAGE_CACHE, STORAGE_ID);
 		}
 
 		@Override
@@ -0,0 +1,36 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.shared.enums;
+
+/**
+ * This {@link Enum} represents the categories of the search page that can be searched with a single request.
+ *
+ * @author Sebastian Raubach
+ */
+public enum SearchCategory
+{
+	ACCESSION_DATA,
+	ACCESSION_ATTRIBUTE_DATA,
+	PHENOTYPE_DATA,
+	COMPOUND_DATA,
+	MAPDEFINITION_DATA,
+	DATASETS,
+	DATASET_ATTRIBUTE_DATA,
+	PEDIGREE_DATA,
+	LOCATION_DATA
+}
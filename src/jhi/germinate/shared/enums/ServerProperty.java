@@ -39,6 +39,38 @@ public enum ServerProperty
 	GERMINATE_DEBUG("Germinate.Debug", "false", false),
 	GERMINATE_AUTO_UPDATE_DATABASE("Germinate.AutoUpdateDatabase", "true", false),
 	GERMINATE_KEEP_TEMPORARY_FILES_FOR_HOURS("Germinate.KeepTemporaryFileForHours", "24", false),
+	GERMINATE_EXPORT_CACHE_SIZE_MB("Germinate.ExportCache.SizeMB", "1024", false),
+	GERMINATE_HDF5_INDEX_CACHE_SIZE_MB("Germinate.Hdf5IndexCache.SizeMB", "256", false),
+	GERMINATE_EXPORT_JOBS_MAX_CONCURRENT("Germinate.ExportJobs.MaxConcurrent", "4", false),
+	GERMINATE_EXPORT_JOBS_MAX_PER_USER("Germinate.ExportJobs.MaxPerUser", "2", false),
+	GERMINATE_FLAPJACK_WORKERS("Germinate.Flapjack.Workers", "1", false),
+	GERMINATE_FLAPJACK_QUEUE_SIZE("Germinate.Flapjack.QueueSize", "16", false),
+	GERMINATE_FLAPJACK_TIMEOUT_MINUTES("Germinate.Flapjack.TimeoutMinutes", "15", false),
+	GERMINATE_FLAPJACK_MEMORY_MB("Germinate.Flapjack.MemoryMB", "1024", false),
+	GERMINATE_DATABASE_POOL_MAX_SIZE("Germinate.Database.Pool.MaxSize", "20", false),
+	GERMINATE_DATABASE_POOL_MAX_WAIT_SECONDS("Germinate.Database.Pool.MaxWaitSeconds", "30", false),
+	GERMINATE_DATABASE_POOL_IDLE_TIMEOUT_MINUTES("Germinate.Database.Pool.IdleTimeoutMinutes", "10", false),
+	GERMINATE_DATABASE_POOL_LEAK_THRESHOLD_SECONDS("Germinate.Database.Pool.LeakThresholdSeconds", "300", false),
+	GERMINATE_DATABASE_STATEMENT_CACHE_SIZE("Germinate.Database.StatementCacheSize", "250", false),
+	GERMINATE_DATABASE_COUNT_CACHE_MINUTES("Germinate.Database.CountCacheMinutes", "10", false),
+	GERMINATE_DATABASE_COUNT_TIMEOUT_SECONDS("Germinate.Database.CountTimeoutSeconds", "1", false),
+	GERMINATE_DATABASE_REFERENCE_CACHE_SIZE("Germinate.Database.ReferenceCacheSize", "10000", false),
+	GERMINATE_DATABASE_REFERENCE_CACHE_MINUTES("Germinate.Database.ReferenceCacheMinutes", "60", false),
+	GERMINATE_DATABASE_REFERENCE_CACHE_CHECK_SECONDS("Germinate.Database.ReferenceCacheCheckSeconds", "60", false),
+	GERMINATE_DATABASE_SLOW_QUERY_MILLIS("Germinate.Database.SlowQueryMillis", "2000", false),
+	GERMINATE_DATABASE_STATISTICS_TOKEN("Germinate.Database.StatisticsToken", null, false),
+	GERMINATE_DATABASE_DATASET_PERMISSION_CACHE_SECONDS("Germinate.Database.DatasetPermissionCacheSeconds", "60", false),
+	GERMINATE_DATABASE_REPLICAS("Germinate.Database.Replicas", null, false),
+	GERMINATE_DATABASE_REPLICA_MAX_LAG_SECONDS("Germinate.Database.Replica.MaxLagSeconds", "5", false),
+	GERMINATE_DATABASE_REPLICA_STICKY_SECONDS("Germinate.Database.Replica.StickySeconds", "30", false),
+	GERMINATE_DATABASE_REPLICA_ASSUME_NO_LAG("Germinate.Database.Replica.AssumeNoLag", "false", false),
+	GERMINATE_SEARCH_INDEX_REFRESH_MINUTES("Germinate.SearchIndex.RefreshMinutes", "0", false),
+	GERMINATE_SEARCH_INDEX_MAX_ROWS("Germinate.SearchIndex.MaxRows", "1000000", false),
+	GERMINATE_SEARCH_THREADS("Germinate.Search.Threads", "8", false),
+	GERMINATE_SEARCH_CATEGORY_LIMIT("Germinate.Search.CategoryLimit", "100", false),
+	GERMINATE_SEARCH_TIMEOUT_SECONDS("Germinate.Search.TimeoutSeconds", "5", false),
+	GERMINATE_MAP_GRID_REFRESH_MINUTES("Germinate.MapGrid.RefreshMinutes", "10", false),
+	GERMINATE_MAP_GRID_MAX_ZOOM("Germinate.MapGrid.MaxZoom", "7", false),
 	GERMINATE_UPLOAD_SIZE_LIMIT_MB("Germinate.UploadSizeLimitMB", "0.5", false),
 	GOOGLE_ANALYTICS_ENABLED("GoogleAnalytics.Enabled", "false", false),
 	GOOGLE_ANALYTICS_TRACKING_ID("GoogleAnalytics.TrackingId", null, false),
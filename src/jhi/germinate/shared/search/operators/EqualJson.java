@@ -78,7 +78,8 @@ public class EqualJson implements ComparisonOperator
 			throw new InvalidArgumentException("Equal to requires that one comparison value is provided.");
 		}
 
-		return " NOT ISNULL(JSON_SEARCH(LOWER(" + columnName + "), 'one', LOWER(?)))";
+		/* See LikeJson */
+		return " " + LikeJson.getSynonymIdColumn(columnName) + " IN (SELECT `synonymlookups`.`synonym_id` FROM `synonymlookups` WHERE `synonymlookups`.`synonym` = LOWER(?))";
 	}
 
 	@Override
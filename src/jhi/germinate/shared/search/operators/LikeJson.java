@@ -79,7 +79,25 @@ public class LikeJson implements ComparisonOperator
 			throw new InvalidArgumentException("LikeJson requires that one comparison value is provided.");
 		}
 
-		return " NOT ISNULL(JSON_SEARCH(LOWER(" + columnName + "), 'one', LOWER(?)))";
+		/* The individual synonyms are looked up in their own table, so the json arrays don't have to be parsed row by row. They're stored in lower
+		 * case with a binary collation, which matches how JSON_SEARCH(LOWER(...), 'one', LOWER(?)) compared them. */
+		return " " + getSynonymIdColumn(columnName) + " IN (SELECT `synonymlookups`.`synonym_id` FROM `synonymlookups` WHERE `synonymlookups`.`synonym` LIKE LOWER(?))";
+	}
+
+	/**
+	 * Returns the id column of the synonyms table the given json column belongs to
+	 *
+	 * @param columnName The json column, e.g. <code>synonyms.synonyms</code>
+	 * @return The id column, e.g. <code>synonyms.id</code>
+	 */
+	static String getSynonymIdColumn(String columnName)
+	{
+		int index = columnName == null ? -1 : columnName.lastIndexOf('.');
+
+		if (index == -1)
+			return "`synonyms`.`id`";
+		else
+			return columnName.substring(0, index) + ".id";
 	}
 
 	@Override
@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.test.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.io.IOException;
+import java.nio.charset.*;
+import java.sql.*;
+
+import jhi.germinate.server.database.*;
+import jhi.germinate.server.database.query.*;
+import jhi.germinate.shared.exception.*;
+import jhi.germinate.test.importer.*;
+
+/**
+ * {@link BenchmarkDatabase} creates the database the benchmarks run against from <code>database/germinate_template.sql</code> and seeds it with
+ * accessions and datasets. The MySQL server is given via the system properties <code>germinate.benchmark.server</code>,
+ * <code>germinate.benchmark.username</code> and <code>germinate.benchmark.password</code> (<code>localhost</code>, <code>root</code> and no
+ * password by default).
+ *
+ * @author Sebastian Raubach
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase
+{
+	public static final int ACCESSIONS = 2000;
+	public static final int DATASETS   = 50;
+
+	private static final String DATABASE = "germinate_benchmark";
+
+	private static final String[] SEED = {
+			"INSERT INTO `taxonomies` (`genus`, `species`, `cropname`) SELECT CONCAT('Genus ', `id`), CONCAT('species ', `id`), 'Crop' FROM `countries` WHERE `id` <= 10",
+			"INSERT INTO `institutions` (`code`, `name`, `country_id`) SELECT CONCAT('INST', `id`), CONCAT('Institution ', `id`), `id` FROM `countries` WHERE `id` <= 10",
+			"INSERT INTO `locations` (`locationtype_id`, `country_id`, `site_name`, `elevation`, `latitude`, `longitude`) SELECT 1, `id`, CONCAT('Location ', `id`), `id`, (`id` % 160) - 80, (`id` * 7 % 360) - 180 FROM `countries` WHERE `id` <= 200",
+			"INSERT INTO `germinatebase` (`general_identifier`, `name`, `number`, `collnumb`, `taxonomy_id`, `institution_id`, `location_id`, `entitytype_id`, `biologicalstatus_id`, `collsrc_id`, `colldate`, `pdci`) SELECT CONCAT('GID ', `n`), CONCAT('Accession ', `n`), `n`, CONCAT('COLL', `n`), `n` % 10 + 1, `n` % 10 + 1, `n` % 200 + 1, 1, 100, 10, '2018-01-01', `n` % 10 FROM (SELECT @n := @n + 1 AS n FROM `countries` a, `countries` b, (SELECT @n := 0) c LIMIT " + ACCESSIONS + ") numbers",
+			"INSERT INTO `synonyms` (`foreign_id`, `synonymtype_id`, `synonyms`) SELECT `id`, 1, JSON_ARRAY(CONCAT('Synonym ', `id`), CONCAT('Other ', `id`)) FROM `germinatebase`",
+			"INSERT INTO `experiments` (`experiment_name`, `experiment_type_id`) VALUES ('Benchmark', 1)",
+			"INSERT INTO `datasets` (`experiment_id`, `location_id`, `name`, `description`, `dataset_state_id`) SELECT 1, `id`, CONCAT('Dataset ', `id`), CONCAT('Dataset ', `id`), 1 FROM `locations` LIMIT " + DATASETS
+	};
+
+	private final String server   = System.getProperty("germinate.benchmark.server", "localhost");
+	private final String username = System.getProperty("germinate.benchmark.username", "root");
+	private final String password = System.getProperty("germinate.benchmark.password", "");
+
+	@Setup(Level.Trial)
+	public void createDatabase() throws DatabaseException, IOException, SQLException
+	{
+		Database.setDefaults(Database.DatabaseType.MYSQL_DATA_IMPORT, server, "", "", username, password);
+
+		new ValueQuery("DROP DATABASE IF EXISTS `" + DATABASE + "`")
+				.execute();
+		new ValueQuery("CREATE DATABASE `" + DATABASE + "`")
+				.execute();
+
+		Database.setDefaults(Database.DatabaseType.MYSQL_DATA_IMPORT, server, DATABASE, "", username, password);
+
+		File databaseScript = new File("database/germinate_template.sql");
+		assert databaseScript.exists();
+
+		Database database = Database.connect();
+
+		try
+		{
+			ScriptRunner runner = new ScriptRunner(database.getConnection(), false, true);
+			runner.setLogWriter(null);
+			runner.setErrorLogWriter(new PrintWriter(System.err));
+			runner.runScript(new BufferedReader(new InputStreamReader(new FileInputStream(databaseScript), StandardCharsets.UTF_8)));
+
+			try (Statement stmt = database.getConnection().createStatement())
+			{
+				for (String seed : SEED)
+					stmt.execute(seed);
+			}
+		}
+		finally
+		{
+			database.close();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void dropDatabase() throws DatabaseException
+	{
+		Database.setDefaults(Database.DatabaseType.MYSQL_DATA_IMPORT, server, "", "", username, password);
+
+		new ValueQuery("DROP DATABASE IF EXISTS `" + DATABASE + "`")
+				.execute();
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.test.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import java.sql.*;
+import java.util.concurrent.*;
+
+import jhi.germinate.server.database.*;
+import jhi.germinate.shared.datastructure.database.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * Parses all the accessions of the {@link BenchmarkDatabase} with {@link Accession.Parser}, which reads its columns from a {@link DatabaseResult}
+ * by label. The rows are selected once with the columns of the accession table and then read from the driver's buffer, so only the parsing is
+ * measured.
+ *
+ * @author Sebastian Raubach
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class DatabaseResultBenchmark
+{
+	private static final String SELECT_ACCESSIONS = "SELECT `germinatebase`.*, `entitytypes`.*, `taxonomies`.*, `locations`.*, `countries`.*, `biologicalstatus`.*, `institutions`.*, `collectingsources`.*, `synonyms`.* FROM `germinatebase` LEFT JOIN `entitytypes` ON `germinatebase`.`entitytype_id` = `entitytypes`.`id` LEFT JOIN `taxonomies` ON `germinatebase`.`taxonomy_id` = `taxonomies`.`id` LEFT JOIN `locations` ON `germinatebase`.`location_id` = `locations`.`id` LEFT JOIN `countries` ON `locations`.`country_id` = `countries`.`id` LEFT JOIN `biologicalstatus` ON `biologicalstatus`.`id` = `germinatebase`.`biologicalstatus_id` LEFT JOIN `institutions` ON `institutions`.`id` = `germinatebase`.`institution_id` LEFT JOIN `collectingsources` ON `collectingsources`.`id` = `germinatebase`.`collsrc_id` LEFT JOIN `synonyms` ON (`synonyms`.`foreign_id` = `germinatebase`.`id` AND `synonyms`.`synonymtype_id` = 1)";
+
+	private Database          database;
+	private PreparedStatement stmt;
+	private ResultSet         rs;
+
+	@Setup(Level.Trial)
+	public void selectAccessions(BenchmarkDatabase benchmarkDatabase) throws DatabaseException, SQLException
+	{
+		database = Database.connect();
+		stmt = database.getConnection().prepareStatement(SELECT_ACCESSIONS, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+		rs = stmt.executeQuery();
+	}
+
+	@Benchmark
+	public int parseAccessions(Blackhole blackhole) throws DatabaseException, SQLException
+	{
+		rs.beforeFirst();
+
+		/* A new result for every pass, like every query gets */
+		DatabaseResult result = new DatabaseResult(rs, database);
+
+		int count = 0;
+		while (result.next())
+		{
+			blackhole.consume(Accession.Parser.Inst.get().parse(result, null, true));
+			count++;
+		}
+
+		return count;
+	}
+
+	@TearDown(Level.Trial)
+	public void close() throws SQLException
+	{
+		rs.close();
+		stmt.close();
+		database.close();
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.test.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import jhi.germinate.server.database.*;
+import jhi.germinate.server.manager.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.datastructure.database.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * Runs the queries behind the accession and dataset tables on pooled connections, with and without the prepared statement cache (see {@link
+ * ServerProperty#GERMINATE_DATABASE_STATEMENT_CACHE_SIZE}). The pages are spread over the first {@link #PAGES} pages, so they aren't all answered
+ * from the same rows.
+ *
+ * @author Sebastian Raubach
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class StatementCacheBenchmark
+{
+	private static final int PAGES     = 10;
+	private static final int PAGE_SIZE = 25;
+
+	@Param({"0", "250"})
+	private String statementCacheSize;
+
+	private int page = 0;
+
+	@Setup(Level.Trial)
+	public void configure(BenchmarkDatabase benchmarkDatabase)
+	{
+		PropertyWatcher.set(ServerProperty.GERMINATE_DATABASE_POOL_MAX_SIZE, "4");
+		PropertyWatcher.set(ServerProperty.GERMINATE_DATABASE_STATEMENT_CACHE_SIZE, statementCacheSize);
+	}
+
+	@Benchmark
+	public List<Accession> accessionPage() throws DatabaseException, InvalidSearchQueryException, InvalidArgumentException, InvalidColumnException
+	{
+		return AccessionManager.getAllForFilter(null, null, nextPage())
+							   .getServerResult();
+	}
+
+	@Benchmark
+	public List<Dataset> datasetPage() throws DatabaseException, InvalidSearchQueryException, InvalidArgumentException, InvalidColumnException, InsufficientPermissionsException
+	{
+		return DatasetManager.getAllForFilter(null, null, ExperimentType.genotype, nextPage())
+							 .getServerResult();
+	}
+
+	@Benchmark
+	public Accession accessionById() throws DatabaseException, InsufficientPermissionsException
+	{
+		return new AccessionManager().getById(null, (long) (page++ % BenchmarkDatabase.ACCESSIONS) + 1)
+									 .getServerResult();
+	}
+
+	private Pagination nextPage()
+	{
+		return new Pagination((page++ % PAGES) * PAGE_SIZE, PAGE_SIZE);
+	}
+
+	@TearDown(Level.Trial)
+	public void reset()
+	{
+		PropertyWatcher.set(ServerProperty.GERMINATE_DATABASE_POOL_MAX_SIZE, null);
+		PropertyWatcher.set(ServerProperty.GERMINATE_DATABASE_STATEMENT_CACHE_SIZE, null);
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.test.database;
+
+import org.junit.jupiter.api.*;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import jhi.germinate.server.database.*;
+
+/**
+ * Runs the {@link ConnectionPool} against stand-in {@link Connection}s, so no database is required.
+ *
+ * @author Sebastian Raubach
+ */
+public class ConnectionPoolTest
+{
+	private final List<StandIn> created = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	public void setUp()
+	{
+		created.clear();
+	}
+
+	private ConnectionPool createPool(int maxSize, long maxWaitMillis)
+	{
+		return new ConnectionPool("test", () ->
+		{
+			StandIn standIn = new StandIn();
+			created.add(standIn);
+			return standIn.connection;
+		}, maxSize, maxWaitMillis, TimeUnit.MINUTES.toMillis(10), 0);
+	}
+
+	@Test
+	public void reusesReturnedConnections() throws Exception
+	{
+		ConnectionPool pool = createPool(2, 100);
+
+		Connection first = pool.borrow();
+		pool.release(first);
+		Connection second = pool.borrow();
+
+		assert first == second;
+		assert created.size() == 1;
+		assert pool.getActive() == 1;
+		assert pool.getIdle() == 0;
+		assert pool.getBorrowed() == 2;
+
+		pool.release(second);
+		pool.close();
+	}
+
+	@Test
+	public void timesOutWhenFull() throws Exception
+	{
+		ConnectionPool pool = createPool(1, 100);
+
+		Connection connection = pool.borrow();
+
+		try
+		{
+			pool.borrow();
+			assert false;
+		}
+		catch (SQLTransientConnectionException e)
+		{
+			/* Expected, the only connection is in use */
+		}
+
+		assert pool.getTimeouts() == 1;
+		assert created.size() == 1;
+
+		pool.release(connection);
+		pool.close();
+	}
+
+	@Test
+	public void waitingCallerGetsReturnedConnection() throws Exception
+	{
+		ConnectionPool pool = createPool(1, 5000);
+
+		Connection connection = pool.borrow();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<Connection> waiting = executor.submit(pool::borrow);
+
+		Thread.sleep(100);
+		assert !waiting.isDone();
+
+		pool.release(connection);
+
+		assert waiting.get(5, TimeUnit.SECONDS) == connection;
+		assert created.size() == 1;
+
+		executor.shutdown();
+		pool.release(connection);
+		pool.close();
+	}
+
+	@Test
+	public void resetsConnectionsOnRelease() throws Exception
+	{
+		ConnectionPool pool = createPool(1, 100);
+
+		Connection connection = pool.borrow();
+		connection.setAutoCommit(false);
+		pool.release(connection);
+
+		StandIn standIn = created.get(0);
+		assert standIn.rolledBack;
+		assert standIn.autoCommit;
+
+		/* Releasing it again has no effect */
+		pool.release(connection);
+		assert pool.getIdle() == 1;
+
+		pool.close();
+		assert standIn.closed;
+	}
+
+	@Test
+	public void discardsBrokenConnections() throws Exception
+	{
+		ConnectionPool pool = createPool(1, 100);
+
+		Connection connection = pool.borrow();
+		connection.close();
+		pool.release(connection);
+
+		assert pool.getIdle() == 0;
+
+		/* The broken connection no longer counts towards the limit */
+		Connection replacement = pool.borrow();
+		assert replacement != connection;
+		assert created.size() == 2;
+
+		/* Idle connections that fail the validation are replaced as well */
+		pool.release(replacement);
+		created.get(1).valid = false;
+		Thread.sleep(600);
+
+		Connection validated = pool.borrow();
+		assert validated != replacement;
+		assert created.get(1).closed;
+		assert created.size() == 3;
+
+		pool.release(validated);
+		pool.close();
+	}
+
+	@Test
+	public void rejectsBorrowingWhenClosed() throws Exception
+	{
+		ConnectionPool pool = createPool(1, 100);
+		pool.close();
+
+		try
+		{
+			pool.borrow();
+			assert false;
+		}
+		catch (SQLException e)
+		{
+			/* Expected, the pool has been closed */
+		}
+
+		assert created.isEmpty();
+	}
+
+	/**
+	 * A stand-in {@link Connection} that only supports the calls made by the {@link ConnectionPool}
+	 */
+	private static class StandIn implements InvocationHandler
+	{
+		private final Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+
+		private volatile boolean closed     = false;
+		private volatile boolean valid      = true;
+		private volatile boolean autoCommit = true;
+		private volatile boolean rolledBack = false;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+		{
+			switch (method.getName())
+			{
+				case "close":
+					closed = true;
+					return null;
+				case "isClosed":
+					return closed;
+				case "isValid":
+					return !closed && valid;
+				case "getAutoCommit":
+					return autoCommit;
+				case "setAutoCommit":
+					autoCommit = (Boolean) args[0];
+					return null;
+				case "rollback":
+					rolledBack = true;
+					return null;
+				case "clearWarnings":
+					return null;
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		}
+	}
+}
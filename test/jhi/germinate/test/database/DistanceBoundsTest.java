@@ -0,0 +1,259 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.test.database;
+
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.io.IOException;
+import java.math.*;
+import java.nio.charset.*;
+import java.sql.*;
+import java.util.*;
+
+import jhi.germinate.client.service.*;
+import jhi.germinate.server.database.*;
+import jhi.germinate.server.database.query.*;
+import jhi.germinate.server.manager.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.datastructure.database.*;
+import jhi.germinate.shared.exception.*;
+import jhi.germinate.test.importer.*;
+
+/**
+ * Compares the distance and polygon queries that use the spatial index on <code>locations.point</code> with the full scans they replace. The
+ * locations are seeded with random coordinates, so the pages cross the radii of {@link DistanceBounds} at arbitrary points.
+ *
+ * @author Sebastian Raubach
+ */
+public class DistanceBoundsTest extends DatabaseTest
+{
+	private static final int LOCATIONS = 5000;
+
+	private static final String DISTANCE = "CAST(REPLACE(FORMAT(6378.7 * ACOS(SIN(RADIANS(`latitude`)) * SIN(RADIANS(?)) + COS(RADIANS(`latitude`)) * COS(RADIANS(?)) * COS(RADIANS(?) - RADIANS(`longitude`))),   2), ',','') AS DECIMAL(10,4))";
+
+	private static final String SELECT_SORTED_BY_DISTANCE = "SELECT " + DISTANCE + " AS distance FROM `locations` WHERE `locationtype_id` = 1 AND `latitude` IS NOT NULL AND `longitude` IS NOT NULL ORDER BY distance LIMIT ?, ?";
+	private static final String SELECT_IDS_IN_POLYGON     = "SELECT `id` FROM `locations` WHERE `locationtype_id` = 1 AND `latitude` IS NOT NULL AND `longitude` IS NOT NULL AND ST_CONTAINS(ST_GeomFromText(?), ST_GeomFromText(CONCAT('POINT(', `longitude`, ' ', `latitude`, ')')))";
+
+	/** Trial sites are only used by {@link #growsRememberedRadius()}, so it can delete them */
+	private static final String COUNT_TRIAL_SITES = "SELECT COUNT(1) AS count FROM `locations` WHERE `locationtype_id` = 3 AND `latitude` IS NOT NULL AND `longitude` IS NOT NULL";
+
+	private static final double[][] POINTS = {
+			{56.4573, -3.0694},
+			{0, 0},
+			{-33.8688, 151.2093},
+			{40.7128, -74.0060},
+			/* The bounding box would cross the antimeridian, so all rows are sorted */
+			{10, 179.9}
+	};
+
+	@BeforeAll
+	public void seedLocations() throws DatabaseException, IOException, SQLException
+	{
+		Database database = Database.connect();
+
+		try
+		{
+			File migration = new File("src/jhi/germinate/server/database/migration/V3.6.0.2__update.sql");
+			assert migration.exists();
+
+			ScriptRunner runner = new ScriptRunner(database.getConnection(), false, true);
+			runner.setLogWriter(new PrintWriter(System.out));
+			runner.setErrorLogWriter(new PrintWriter(System.err));
+			runner.runScript(new BufferedReader(new InputStreamReader(new FileInputStream(migration), StandardCharsets.UTF_8)));
+
+			Random random = new Random(42);
+
+			try (PreparedStatement stmt = database.getConnection().prepareStatement("INSERT INTO `locations` (`locationtype_id`, `country_id`, `site_name`, `latitude`, `longitude`) VALUES (?, 1, ?, ?, ?)"))
+			{
+				for (int i = 0; i < LOCATIONS; i++)
+				{
+					/* Some locations of other types and some without coordinates, which all queries have to exclude */
+					stmt.setInt(1, i % 10 == 0 ? 2 : 1);
+					stmt.setString(2, "Location " + i);
+
+					if (i % 25 == 0)
+					{
+						stmt.setNull(3, Types.DECIMAL);
+						stmt.setNull(4, Types.DECIMAL);
+					}
+					else
+					{
+						stmt.setBigDecimal(3, BigDecimal.valueOf(random.nextDouble() * 160 - 80).setScale(6, RoundingMode.HALF_UP));
+						stmt.setBigDecimal(4, BigDecimal.valueOf(random.nextDouble() * 360 - 180).setScale(6, RoundingMode.HALF_UP));
+					}
+
+					stmt.addBatch();
+				}
+
+				/* Trial sites along a meridian, 11 km apart */
+				for (int i = 1; i <= 50; i++)
+				{
+					stmt.setInt(1, 3);
+					stmt.setString(2, "Trial site " + i);
+					stmt.setBigDecimal(3, BigDecimal.valueOf(i * 0.1));
+					stmt.setBigDecimal(4, BigDecimal.valueOf(-30));
+					stmt.addBatch();
+				}
+
+				stmt.executeBatch();
+			}
+		}
+		finally
+		{
+			database.close();
+		}
+	}
+
+	@Test
+	public void distancePagesMatchFullScan() throws DatabaseException, InvalidColumnException, SQLException
+	{
+		for (double[] point : POINTS)
+		{
+			for (int[] page : new int[][]{{0, 10}, {10, 10}, {0, 100}, {250, 25}, {1000, 50}, {4300, 50}, {4400, 50}})
+			{
+				Pagination pagination = new Pagination(page[0], page[1], LocationService.DISTANCE, true);
+
+				List<BigDecimal> actual = new ArrayList<>();
+				for (Location location : LocationManager.getSortedByDistance(null, point[0], point[1], pagination).getServerResult())
+					actual.add(new BigDecimal(location.getExtra(LocationService.DISTANCE)));
+
+				List<BigDecimal> expected = getDistances(point[0], point[1], page[0], page[1]);
+
+				assert actual.size() == expected.size() : Arrays.toString(point) + " " + Arrays.toString(page);
+
+				/* Locations at the same distance may be swapped, so compare the distances rather than the ids */
+				for (int i = 0; i < expected.size(); i++)
+					assert actual.get(i).compareTo(expected.get(i)) == 0 : Arrays.toString(point) + " " + Arrays.toString(page) + " " + i;
+			}
+		}
+	}
+
+	@Test
+	public void reusesRememberedRadius() throws DatabaseException
+	{
+		String count = "SELECT COUNT(1) AS count FROM `locations` WHERE `locationtype_id` = 1 AND `latitude` IS NOT NULL AND `longitude` IS NOT NULL";
+
+		DistanceBounds first = DistanceBounds.get(null, count, 12.5, 45.5, new Pagination(100, 50, LocationService.DISTANCE, true));
+		DistanceBounds second = DistanceBounds.get(null, count, 12.5, 45.5, new Pagination(100, 50, LocationService.DISTANCE, true));
+
+		assert first != null && second != null;
+		assert second.getRadius() == first.getRadius();
+
+		/* The next page starts from the radius of this one */
+		DistanceBounds next = DistanceBounds.get(null, count, 12.5, 45.5, new Pagination(150, 50, LocationService.DISTANCE, true));
+		assert next != null && next.getRadius() >= first.getRadius();
+	}
+
+	@Test
+	public void growsRememberedRadius() throws DatabaseException
+	{
+		DistanceBounds before = DistanceBounds.get(null, COUNT_TRIAL_SITES, 0, -30, new Pagination(0, 20, LocationService.DISTANCE, true));
+		assert before != null;
+
+		/* The nearest trial sites are gone, so the remembered radius no longer contains the page */
+		new ValueQuery("DELETE FROM `locations` WHERE `locationtype_id` = 3 AND `latitude` < 2.05")
+				.execute();
+
+		DistanceBounds after = DistanceBounds.get(null, COUNT_TRIAL_SITES, 0, -30, new Pagination(0, 20, LocationService.DISTANCE, true));
+		assert after != null;
+		assert after.getRadius() > before.getRadius();
+
+		int rows = after.setParameters(new ValueQuery(COUNT_TRIAL_SITES + DistanceBounds.WHERE))
+						.run(AbstractManager.COUNT)
+						.getInt(0)
+						.getServerResult();
+		assert rows >= 20;
+	}
+
+	@Test
+	public void polygonMatchesFullScan() throws DatabaseException, SQLException
+	{
+		List<List<List<LatLngPoint>>> polygons = Arrays.asList(
+				/* A rectangle */
+				Collections.singletonList(new ArrayList<>(Arrays.asList(new LatLngPoint(-20, -40), new LatLngPoint(-20, 60), new LatLngPoint(30, 60), new LatLngPoint(30, -40)))),
+				/* A triangle and a second polygon */
+				Arrays.asList(new ArrayList<>(Arrays.asList(new LatLngPoint(0, 0), new LatLngPoint(60, 20), new LatLngPoint(10, 90))),
+						new ArrayList<>(Arrays.asList(new LatLngPoint(-70, -170), new LatLngPoint(-70, -100), new LatLngPoint(-10, -135)))),
+				/* Nothing in it */
+				Collections.singletonList(new ArrayList<>(Arrays.asList(new LatLngPoint(85, 0), new LatLngPoint(85, 1), new LatLngPoint(86, 1))))
+		);
+
+		for (List<List<LatLngPoint>> polygon : polygons)
+		{
+			/* getPolygon() closes the rings of the list it's given */
+			List<List<LatLngPoint>> copy = new ArrayList<>();
+			polygon.forEach(ring -> copy.add(new ArrayList<>(ring)));
+
+			Set<String> expected = getIdsInPolygon(LocationManager.getPolygon(copy));
+			Set<String> actual = new HashSet<>(LocationManager.getIdsInPolygon(null, polygon).getServerResult());
+
+			assert actual.equals(expected) : polygon;
+		}
+	}
+
+	private static List<BigDecimal> getDistances(double latitude, double longitude, int start, int length) throws DatabaseException, SQLException
+	{
+		List<BigDecimal> result = new ArrayList<>();
+
+		Database database = Database.connect();
+		try (PreparedStatement stmt = database.getConnection().prepareStatement(SELECT_SORTED_BY_DISTANCE))
+		{
+			stmt.setDouble(1, latitude);
+			stmt.setDouble(2, latitude);
+			stmt.setDouble(3, longitude);
+			stmt.setInt(4, start);
+			stmt.setInt(5, length);
+
+			try (ResultSet rs = stmt.executeQuery())
+			{
+				while (rs.next())
+					result.add(rs.getBigDecimal("distance"));
+			}
+		}
+		finally
+		{
+			database.close();
+		}
+
+		return result;
+	}
+
+	private static Set<String> getIdsInPolygon(String polygon) throws DatabaseException, SQLException
+	{
+		Set<String> result = new HashSet<>();
+
+		Database database = Database.connect();
+		try (PreparedStatement stmt = database.getConnection().prepareStatement(SELECT_IDS_IN_POLYGON))
+		{
+			stmt.setString(1, polygon);
+
+			try (ResultSet rs = stmt.executeQuery())
+			{
+				while (rs.next())
+					result.add(rs.getString("id"));
+			}
+		}
+		finally
+		{
+			database.close();
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.test.database;
+
+import org.junit.jupiter.api.*;
+
+import java.sql.*;
+
+import jhi.germinate.server.database.*;
+import jhi.germinate.server.database.query.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.datastructure.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+
+/**
+ * Runs the {@link ReplicaRouter} against two databases: the primary and a "replica" that isn't kept up-to-date. Each contains a row that names its
+ * database, so the tests can tell where a query went.
+ *
+ * @author Sebastian Raubach
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ReplicaRouterTest
+{
+	private static final String READ = "SELECT `source` FROM `replica_test` WHERE `id` = 1";
+
+	protected String server   = "localhost";
+	protected String primary  = "germinate_replica_test_primary";
+	protected String replica  = "germinate_replica_test_replica";
+	protected String username = "root";
+	protected String password = "";
+
+	@BeforeAll
+	public void initDatabases() throws DatabaseException, SQLException
+	{
+		Database.setDefaults(Database.DatabaseType.MYSQL, server, "", "", username, password);
+
+		for (String database : new String[]{primary, replica})
+		{
+			new ValueQuery("DROP DATABASE IF EXISTS `" + database + "`")
+					.execute();
+			new ValueQuery("CREATE DATABASE `" + database + "`")
+					.execute();
+
+			Database connection = Database.connect(Database.DatabaseType.MYSQL, server + "/" + database, username, password);
+			try (Statement stmt = connection.getConnection().createStatement())
+			{
+				stmt.execute("CREATE TABLE `replica_test` (`id` INT NOT NULL PRIMARY KEY, `source` VARCHAR(255) NOT NULL, `updates` INT NOT NULL DEFAULT 0)");
+				stmt.execute("INSERT INTO `replica_test` (`id`, `source`) VALUES (1, '" + (database.equals(primary) ? "primary" : "replica") + "')");
+			}
+			finally
+			{
+				connection.close();
+			}
+		}
+
+		Database.setDefaults(Database.DatabaseType.MYSQL, server, primary, "", username, password);
+		PropertyWatcher.set(ServerProperty.GERMINATE_DATABASE_REPLICAS, server + "/" + replica);
+	}
+
+	@BeforeEach
+	public void checkReplicas()
+	{
+		/* The "replica" isn't configured as one, so its lag is unknown */
+		PropertyWatcher.setBoolean(ServerProperty.GERMINATE_DATABASE_REPLICA_ASSUME_NO_LAG, true);
+		ReplicaRouter.checkReplicas();
+	}
+
+	@Test
+	public void readsGoToTheReplica() throws DatabaseException
+	{
+		assert getSource(1L).equals("replica");
+		assert getSource(null).equals("replica");
+	}
+
+	@Test
+	public void writesGoToThePrimaryAndPinTheUser() throws DatabaseException
+	{
+		new ValueQuery("UPDATE `replica_test` SET `updates` = `updates` + 1 WHERE `id` = 1", getUser(2L))
+				.execute();
+
+		assert new ValueQuery("SELECT `updates` FROM `replica_test` WHERE `id` = 1 FOR UPDATE", getUser(3L))
+				.run("updates")
+				.getInt()
+				.getServerResult() == 1;
+
+		/* Only the user who wrote is pinned to the primary */
+		assert getSource(2L).equals("primary");
+		assert getSource(3L).equals("replica");
+	}
+
+	@Test
+	public void unknownLagMakesTheReplicaUnavailable() throws DatabaseException
+	{
+		PropertyWatcher.setBoolean(ServerProperty.GERMINATE_DATABASE_REPLICA_ASSUME_NO_LAG, false);
+		ReplicaRouter.checkReplicas();
+
+		assert getSource(4L).equals("primary");
+		assert ReplicaRouter.getSummary().contains("available=false");
+	}
+
+	@Test
+	public void unreachableReplicaIsUnavailable() throws DatabaseException
+	{
+		PropertyWatcher.set(ServerProperty.GERMINATE_DATABASE_REPLICAS, server + "/germinate_replica_test_missing");
+		try
+		{
+			ReplicaRouter.checkReplicas();
+
+			assert getSource(5L).equals("primary");
+		}
+		finally
+		{
+			PropertyWatcher.set(ServerProperty.GERMINATE_DATABASE_REPLICAS, server + "/" + replica);
+		}
+	}
+
+	@Test
+	public void reloadsAfterChangesGoToThePrimary() throws DatabaseException
+	{
+		try (ReplicaRouter.PrimaryScope scope = ReplicaRouter.usePrimaryAfterChange(System.currentTimeMillis()))
+		{
+			assert getSource(6L).equals("primary");
+		}
+
+		assert getSource(6L).equals("replica");
+
+		/* Without a recent change, the scope doesn't do anything */
+		try (ReplicaRouter.PrimaryScope scope = ReplicaRouter.usePrimaryAfterChange(0))
+		{
+			assert getSource(6L).equals("replica");
+		}
+	}
+
+	@Test
+	public void rowsAreCountedOnThePrimaryAfterChanges() throws DatabaseException
+	{
+		/* Clears the cached counts and only adds the row to the primary */
+		new ValueQuery("INSERT INTO `replica_test` (`id`, `source`) VALUES (2, 'primary')", getUser(7L))
+				.execute();
+
+		String query = "SELECT * FROM `replica_test` LIMIT ?, ?";
+		UserAuth userAuth = getUser(8L);
+
+		Database database = ReplicaRouter.connect(query, userAuth);
+		try
+		{
+			assert database.isReplica();
+
+			DatabaseStatement stmt = database.prepareStatement(query);
+			stmt.setInt(1, 0);
+			stmt.setInt(2, 10);
+
+			assert RowCountCache.getCount(database, query, stmt, userAuth).getValue() == 2;
+		}
+		finally
+		{
+			database.close();
+		}
+	}
+
+	private static UserAuth getUser(Long id)
+	{
+		UserAuth userAuth = new UserAuth();
+		userAuth.setId(id);
+		return userAuth;
+	}
+
+	private static String getSource(Long userId) throws DatabaseException
+	{
+		return new ValueQuery(READ, userId == null ? null : getUser(userId))
+				.run("source")
+				.getString()
+				.getServerResult();
+	}
+
+	@AfterAll
+	public void closeDatabases() throws DatabaseException
+	{
+		PropertyWatcher.set(ServerProperty.GERMINATE_DATABASE_REPLICAS, null);
+		ReplicaRouter.checkReplicas();
+
+		Database.setDefaults(Database.DatabaseType.MYSQL, server, "", "", username, password);
+
+		for (String database : new String[]{primary, replica})
+		{
+			new ValueQuery("DROP DATABASE IF EXISTS `" + database + "`")
+					.execute();
+		}
+	}
+}
@@ -152,7 +152,7 @@ public class ScriptRunner
 				String trimmedLine = line.trim();
 				final Matcher delimMatch = delimP.matcher(trimmedLine);
 				if (trimmedLine.length() < 1
-						|| trimmedLine.startsWith("//"))
+						|| trimmedLine.startsWith("//") && !trimmedLine.equals(getDelimiter()))
 				{
 					// Do nothing
 				}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright 2018 Information and Computational Sciences,
+ *  The James Hutton Institute.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package jhi.germinate.test.util;
+
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.io.IOException;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+
+import jhi.germinate.server.database.*;
+import jhi.germinate.server.database.query.*;
+import jhi.germinate.server.manager.*;
+import jhi.germinate.server.util.*;
+import jhi.germinate.server.watcher.*;
+import jhi.germinate.shared.datastructure.database.*;
+import jhi.germinate.shared.enums.*;
+import jhi.germinate.shared.exception.*;
+import jhi.germinate.shared.search.*;
+import jhi.germinate.shared.search.operators.*;
+import jhi.germinate.test.importer.*;
+
+/**
+ * Compares the results of searches answered from the {@link SearchIndex} with those of the database alone, including rows written between two
+ * refreshes of the index.
+ *
+ * @author Sebastian Raubach
+ */
+public class SearchIndexTest extends DatabaseTest
+{
+	private static final String SELECT_FILTERED = "SELECT `germinatebase`.`id` FROM `germinatebase` {{FILTER}}";
+	private static final String SELECT_LIKE     = "SELECT `germinatebase`.`id` FROM `germinatebase` WHERE `germinatebase`.`name` LIKE ?";
+
+	private static final String[] TERMS = {"barley", "arl", "wheat 1", "strasse", "stra", "olweide", "weide", "nothing"};
+
+	@BeforeAll
+	public void buildIndex() throws DatabaseException, IOException, SQLException, InterruptedException
+	{
+		Database database = Database.connect();
+
+		try
+		{
+			File migration = new File("src/jhi/germinate/server/database/migration/V3.6.0.3__update.sql");
+			assert migration.exists();
+
+			ScriptRunner runner = new ScriptRunner(database.getConnection(), false, true);
+			runner.setLogWriter(new PrintWriter(System.out));
+			runner.setErrorLogWriter(new PrintWriter(System.err));
+			runner.runScript(new BufferedReader(new InputStreamReader(new FileInputStream(migration), StandardCharsets.UTF_8)));
+
+			try (PreparedStatement stmt = database.getConnection().prepareStatement("INSERT INTO `germinatebase` (`general_identifier`, `name`) VALUES (?, ?)"))
+			{
+				for (int i = 1; i <= 200; i++)
+				{
+					stmt.setString(1, "ID " + i);
+					stmt.setString(2, (i % 2 == 0 ? "Barley " : "Wheat ") + i);
+					stmt.addBatch();
+				}
+
+				/* Text that the collation may match differently than the index */
+				stmt.setString(1, "ID 201");
+				stmt.setString(2, "Stra\u00dfe Gerste");
+				stmt.addBatch();
+				stmt.setString(1, "ID 202");
+				stmt.setString(2, "\u00d6lweide");
+				stmt.addBatch();
+
+				stmt.executeBatch();
+			}
+		}
+		finally
+		{
+			database.close();
+		}
+
+		/* Only the initial refresh runs during the test */
+		PropertyWatcher.set(ServerProperty.GERMINATE_SEARCH_INDEX_REFRESH_MINUTES, "1440");
+		SearchIndex.initialize(Files.createTempDirectory("search-index").toFile());
+
+		long deadline = System.currentTimeMillis() + 60000;
+		while (getMatch("barley") == null)
+		{
+			assert System.currentTimeMillis() < deadline : "The search index hasn't been built";
+			Thread.sleep(100);
+		}
+	}
+
+	@Test
+	public void findsRowsWrittenBetweenRefreshes() throws DatabaseException, InvalidArgumentException, InvalidSearchQueryException, InvalidColumnException
+	{
+		/* Added without updated_on like the data importers do, and renamed */
+		new ValueQuery("INSERT INTO `germinatebase` (`general_identifier`, `name`, `updated_on`) VALUES ('ID 203', 'Barley added', NULL)")
+				.execute();
+		new ValueQuery("UPDATE `germinatebase` SET `name` = 'Barley renamed' WHERE `general_identifier` = 'ID 1'")
+				.execute();
+
+		SearchIndex.Match match = getMatch("barley");
+		assert match != null;
+		/* The index only knows the 100 rows it was built with plus the two rows with non-ASCII text */
+		assert match.getIds().size() == 102;
+
+		List<String> indexed = getIndexed("barley");
+		assert indexed.equals(getUnindexed("barley"));
+		assert indexed.size() == 102;
+	}
+
+	@Test
+	public void matchesUnindexedResults() throws DatabaseException, InvalidArgumentException, InvalidSearchQueryException, InvalidColumnException
+	{
+		for (String term : TERMS)
+			assert getIndexed(term).equals(getUnindexed(term)) : term;
+	}
+
+	private static SearchIndex.Match getMatch(String term)
+	{
+		SearchCondition condition = new SearchCondition(Accession.NAME, new Like(), term, String.class);
+		return SearchIndex.find(new PartialSearchQuery(condition)).get(condition);
+	}
+
+	private static List<String> getIndexed(String term) throws DatabaseException, InvalidArgumentException, InvalidSearchQueryException, InvalidColumnException
+	{
+		PartialSearchQuery filter = new PartialSearchQuery(new SearchCondition(Accession.NAME, new Like(), term, String.class));
+
+		List<String> result = AbstractManager.getFilteredValueQuery(filter, null, SELECT_FILTERED, new String[]{Accession.NAME})
+											 .run("id")
+											 .getStrings()
+											 .getServerResult();
+
+		/* There is no list if nothing matches */
+		if (result == null)
+			return Collections.emptyList();
+
+		Collections.sort(result);
+		return result;
+	}
+
+	private static List<String> getUnindexed(String term) throws DatabaseException
+	{
+		List<String> result = new ValueQuery(SELECT_LIKE)
+				.setString("%" + term + "%")
+				.run("id")
+				.getStrings()
+				.getServerResult();
+
+		/* There is no list if nothing matches */
+		if (result == null)
+			return Collections.emptyList();
+
+		Collections.sort(result);
+		return result;
+	}
+
+	@AfterAll
+	public void stopIndex()
+	{
+		SearchIndex.shutdown();
+		PropertyWatcher.set(ServerProperty.GERMINATE_SEARCH_INDEX_REFRESH_MINUTES, null);
+	}
+}